@@ -0,0 +1,138 @@
+package ru.panyukovnn.longpollingtgbotstarter.service;
+
+import java.util.Random;
+
+/**
+ * Тексты для бенчмарков форматирования
+ * <p>
+ * Тексты собираются из абзацев, похожих на ответы бота: обычный текст со знаками препинания, текст с плотной
+ * markdown разметкой и текст с блоками кода. Генератор детерминирован, поэтому результаты разных запусков
+ * сравнимы.
+ */
+public enum BenchmarkCorpus {
+
+    PLAIN {
+        @Override
+        void appendParagraph(StringBuilder out, Random random) {
+            appendSentences(out, random, 4 + random.nextInt(4));
+            out.append("\n\n");
+        }
+
+        @Override
+        void appendHtmlParagraph(StringBuilder out, Random random) {
+            appendSentences(out, random, 4 + random.nextInt(4));
+            out.append("\n\n");
+        }
+    },
+
+    MARKDOWN {
+        @Override
+        void appendParagraph(StringBuilder out, Random random) {
+            out.append("## ").append(word(random)).append(' ').append(word(random)).append("\n\n");
+            for (int i = 0; i < 3; i++) {
+                out.append("- **").append(word(random)).append("** ").append(word(random))
+                    .append(" _").append(word(random)).append(' ').append(word(random)).append("_ ")
+                    .append('`').append(word(random)).append("()` [").append(word(random))
+                    .append("](https://example.com/").append(word(random)).append(")\n");
+            }
+            appendSentences(out, random, 2);
+            out.append("\n\n");
+        }
+
+        @Override
+        void appendHtmlParagraph(StringBuilder out, Random random) {
+            out.append("<b>").append(word(random)).append(' ').append(word(random)).append("</b>\n\n");
+            for (int i = 0; i < 3; i++) {
+                out.append("• <b>").append(word(random)).append("</b> ").append(word(random))
+                    .append(" <i>").append(word(random)).append(' ').append(word(random)).append("</i> ")
+                    .append("<code>").append(word(random)).append("()</code> <a href=\"https://example.com/")
+                    .append(word(random)).append("\">").append(word(random)).append("</a>\n");
+            }
+            appendSentences(out, random, 2);
+            out.append("\n\n");
+        }
+    },
+
+    CODE {
+        @Override
+        void appendParagraph(StringBuilder out, Random random) {
+            appendSentences(out, random, 1);
+            out.append("\n```java\n");
+            appendCode(out, random, false);
+            out.append("```\n\n");
+        }
+
+        @Override
+        void appendHtmlParagraph(StringBuilder out, Random random) {
+            appendSentences(out, random, 1);
+            out.append("\n<pre><code class=\"language-java\">");
+            appendCode(out, random, true);
+            out.append("</code></pre>\n\n");
+        }
+    };
+
+    private static final String[] WORDS = {"бот", "сообщение", "обновление", "telegram", "запрос", "ответ",
+        "очередь", "чат", "команда", "markdown", "формат", "часть", "лимит", "поток", "сервер", "клиент"};
+
+    private static final String[] PUNCTUATION = {".", ",", "!", " -", ":", "(1)", "...", "?"};
+
+    abstract void appendParagraph(StringBuilder out, Random random);
+
+    abstract void appendHtmlParagraph(StringBuilder out, Random random);
+
+    /**
+     * Markdown текст длиной {@code size} символов
+     */
+    String markdown(int size) {
+        Random random = new Random(size);
+        StringBuilder out = new StringBuilder(size + 1024);
+        while (out.length() < size) {
+            appendParagraph(out, random);
+        }
+
+        return out.substring(0, size);
+    }
+
+    /**
+     * Тот же по структуре текст в Telegram HTML длиной не меньше {@code size} символов. Не обрезается,
+     * чтобы теги в конце оставались закрытыми
+     */
+    String html(int size) {
+        Random random = new Random(size);
+        StringBuilder out = new StringBuilder(size + 1024);
+        while (out.length() < size) {
+            appendHtmlParagraph(out, random);
+        }
+
+        return out.toString();
+    }
+
+    private static void appendSentences(StringBuilder out, Random random, int count) {
+        for (int i = 0; i < count; i++) {
+            int words = 5 + random.nextInt(10);
+            for (int j = 0; j < words; j++) {
+                if (j > 0) {
+                    out.append(' ');
+                }
+                out.append(word(random));
+            }
+            out.append(PUNCTUATION[random.nextInt(PUNCTUATION.length)]).append(' ');
+        }
+    }
+
+    private static void appendCode(StringBuilder out, Random random, boolean html) {
+        String greater = html ? "&gt;" : ">";
+        String comment = html ? "// x &lt; y &amp;&amp; y &gt; z" : "// x < y && y > z";
+        int lines = 4 + random.nextInt(8);
+        for (int i = 0; i < lines; i++) {
+            out.append("    if (").append(word(random)).append(".size() ").append(greater).append(' ')
+                .append(random.nextInt(100))
+                .append(") { map.put(\"").append(word(random)).append("\", list[").append(i)
+                .append("]); } ").append(comment).append('\n');
+        }
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+}
@@ -0,0 +1,86 @@
+package ru.panyukovnn.longpollingtgbotstarter.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.telegram.telegrambots.meta.api.methods.ParseMode;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость подготовки сообщения в {@link TgSender} в зависимости от размера и плотности разметки
+ * <p>
+ * Запуск: {@code ./gradlew jmh}. Профилировщик gc включен в build.gradle, поэтому в результатах есть
+ * gc.alloc.rate.norm - байты, выделенные на одну операцию. {@code ./gradlew jmh jmhBaseline} копирует
+ * результаты в src/jmh/baseline, и изменения относительно прошлого запуска видны в git diff.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TgSenderFormattingBenchmark {
+
+    @Param({"PLAIN", "MARKDOWN", "CODE"})
+    private BenchmarkCorpus corpus;
+
+    @Param({"4096", "65536", "1048576"})
+    private int size;
+
+    private TgSender sender;
+    private String markdown;
+    private String markdownV2;
+    private String html;
+
+    @Setup
+    public void setUp() {
+        sender = TgSender.builder(null)
+            .executor(Runnable::run)
+            .rateLimiter(TgRateLimiter.unlimited())
+            .maxRetries(0)
+            .build();
+        markdown = corpus.markdown(size);
+        markdownV2 = sender.convertMarkdownToTelegramMarkdownV2(markdown);
+        html = corpus.html(size);
+    }
+
+    @Benchmark
+    public String convertMarkdownToTelegramMarkdownV2() {
+        return sender.convertMarkdownToTelegramMarkdownV2(markdown);
+    }
+
+    @Benchmark
+    public String escapeMarkdownV2() {
+        return sender.escapeMarkdownV2(markdown);
+    }
+
+    @Benchmark
+    public String escapeHtml() {
+        return sender.escapeHtml(markdown);
+    }
+
+    @Benchmark
+    public List<String> splitMarkdownV2IntoParts() {
+        return sender.splitMessageIntoParts(markdownV2, ParseMode.MARKDOWNV2);
+    }
+
+    @Benchmark
+    public List<String> splitHtmlIntoParts() {
+        return sender.splitMessageIntoParts(html, ParseMode.HTML);
+    }
+
+    @Benchmark
+    public List<String> extractOpenHtmlTags() {
+        return sender.extractOpenHtmlTags(html);
+    }
+}
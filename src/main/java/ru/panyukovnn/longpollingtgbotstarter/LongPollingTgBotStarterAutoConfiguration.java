@@ -1,47 +1,471 @@
 package ru.panyukovnn.longpollingtgbotstarter;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Import;
+import org.springframework.util.StringUtils;
 import org.telegram.telegrambots.extensions.bots.commandbot.commands.BotCommand;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
+import ru.panyukovnn.longpollingtgbotstarter.checkpoint.AckWatermark;
+import ru.panyukovnn.longpollingtgbotstarter.checkpoint.CheckpointWriter;
+import ru.panyukovnn.longpollingtgbotstarter.checkpoint.OffsetCheckpoint;
+import ru.panyukovnn.longpollingtgbotstarter.cluster.ClusterPoller;
+import ru.panyukovnn.longpollingtgbotstarter.cluster.ClusterTransport;
+import ru.panyukovnn.longpollingtgbotstarter.cluster.ClusterWorker;
+import ru.panyukovnn.longpollingtgbotstarter.cluster.FileLockLeaderElection;
+import ru.panyukovnn.longpollingtgbotstarter.cluster.LeaderElection;
+import ru.panyukovnn.longpollingtgbotstarter.cluster.LoopbackClusterTransport;
+import ru.panyukovnn.longpollingtgbotstarter.command.TgCommandRouter;
+import ru.panyukovnn.longpollingtgbotstarter.config.OnBotInstancesCondition;
+import ru.panyukovnn.longpollingtgbotstarter.config.OnSingleBotCondition;
 import ru.panyukovnn.longpollingtgbotstarter.config.TgBotApi;
+import ru.panyukovnn.longpollingtgbotstarter.config.TgBotInstancesRegistrar;
+import ru.panyukovnn.longpollingtgbotstarter.config.TgBotOptions;
+import ru.panyukovnn.longpollingtgbotstarter.config.TgBots;
+import ru.panyukovnn.longpollingtgbotstarter.dedup.UpdateDeduplicator;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.DirectUpdateDispatcher;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.InboundBuffer;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.StripedUpdateDispatcher;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.UpdateDispatcher;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.VirtualThreadUpdateDispatcher;
+import ru.panyukovnn.longpollingtgbotstarter.metrics.MicrometerTgBotMetrics;
+import ru.panyukovnn.longpollingtgbotstarter.metrics.TgBotMetrics;
+import ru.panyukovnn.longpollingtgbotstarter.metrics.TgBotMetricsFactory;
+import ru.panyukovnn.longpollingtgbotstarter.outbox.OutboxLog;
 import ru.panyukovnn.longpollingtgbotstarter.property.TgBotProperties;
+import ru.panyukovnn.longpollingtgbotstarter.router.TgUpdateRouter;
+import ru.panyukovnn.longpollingtgbotstarter.service.TgRateLimiter;
 import ru.panyukovnn.longpollingtgbotstarter.service.TgSender;
+import ru.panyukovnn.longpollingtgbotstarter.transport.AbsSenderTgTransport;
+import ru.panyukovnn.longpollingtgbotstarter.transport.JdkHttpConnectionPool;
+import ru.panyukovnn.longpollingtgbotstarter.transport.JdkHttpTgTransport;
+import ru.panyukovnn.longpollingtgbotstarter.transport.TgPollingSession;
+import ru.panyukovnn.longpollingtgbotstarter.transport.TgTransport;
+import ru.panyukovnn.longpollingtgbotstarter.transport.TransportType;
 
-import java.util.List;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-@AutoConfiguration
+@AutoConfiguration(
+    afterName = "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration")
 @EnableConfigurationProperties(TgBotProperties.class)
 public class LongPollingTgBotStarterAutoConfiguration {
 
+    public static final String TG_SENDER_EXECUTOR = "tgSenderExecutor";
+
     @Bean
-    public TgBotApi botApi(ApplicationEventPublisher eventPublisher, TgBotProperties botProperties) throws TelegramApiException {
-        TgBotApi botApi = new TgBotApi(eventPublisher, botProperties.getName(), botProperties.getToken());
+    @Conditional(OnSingleBotCondition.class)
+    public TgBotApi botApi(ApplicationEventPublisher eventPublisher,
+                           TgBotProperties botProperties,
+                           UpdateDispatcher updateDispatcher,
+                           ListableBeanFactory beanFactory,
+                           ObjectProvider<AckWatermark> ackWatermark,
+                           ObjectProvider<UpdateDeduplicator> updateDeduplicator,
+                           TgBotMetrics tgBotMetrics,
+                           TgUpdateRouter tgUpdateRouter,
+                           TgCommandRouter tgCommandRouter) throws TelegramApiException {
+        TgBotProperties.Dispatch dispatch = botProperties.getDispatch();
+        InboundBuffer inboundBuffer = dispatch.getInboundCapacity() > 0
+            ? new InboundBuffer(dispatch.getInboundCapacity(), dispatch.getOverflowPolicy())
+            : null;
+        TgBotApi botApi = TgBotApi.builder(eventPublisher, botProperties.getName(), botProperties.getToken())
+            .updateDispatcher(updateDispatcher)
+            .publishBatchEvents(dispatch.isBatchEvent())
+            .publishUpdateEvents(!dispatch.isBatchEvent() || !dispatch.isBatchOnly())
+            .botOptions(TgBotOptions.from(botProperties, beanFactory))
+            .ackWatermark(ackWatermark.getIfAvailable())
+            .metrics(tgBotMetrics)
+            .inboundBuffer(inboundBuffer)
+            .deduplicator(updateDeduplicator.getIfAvailable())
+            .router(tgUpdateRouter)
+            .commandRouter(tgCommandRouter)
+            .build();
 
-        new TelegramBotsApi(DefaultBotSession.class).registerBot(botApi);
+        // В кластерном режиме опрос ведет ClusterPoller на узле-лидере
+        if (botProperties.getTransport().getType() == TransportType.TELEGRAMBOTS
+            && !botProperties.getCluster().isEnabled()) {
+            new TelegramBotsApi(DefaultBotSession.class).registerBot(botApi);
+        }
 
         return botApi;
     }
 
+    /**
+     * Транспорт запросов к Bot API из telegram.bot.transport.*
+     */
+    @Bean
+    @Conditional(OnSingleBotCondition.class)
+    @ConditionalOnMissingBean
+    public TgTransport tgTransport(TgBotApi botApi, TgBotProperties botProperties) {
+        TgBotProperties.Transport transport = botProperties.getTransport();
+
+        return switch (transport.getType()) {
+            case TELEGRAMBOTS -> new AbsSenderTgTransport(botApi);
+            case JDK -> new JdkHttpTgTransport(botProperties.getBaseUrl(), botProperties.getToken(),
+                transport.getConnections(), transport.getConnectTimeout(), transport.getRequestTimeout(),
+                transport.isHttp2());
+        };
+    }
+
+    /**
+     * Сессия long polling поверх {@link TgTransport}, заменяет DefaultBotSession в транспорте jdk
+     */
+    @Bean(destroyMethod = "stop")
+    @ConditionalOnExpression("'${telegram.bot.transport.type:telegrambots}'.equalsIgnoreCase('jdk') "
+        + "and !${telegram.bot.cluster.enabled:false}")
+    @Conditional(OnSingleBotCondition.class)
+    public TgPollingSession tgPollingSession(TgBotApi botApi, TgTransport tgTransport,
+                                             TgBotProperties botProperties,
+                                             ObjectProvider<AckWatermark> ackWatermark,
+                                             TgBotMetrics tgBotMetrics) throws TelegramApiException {
+        TgPollingSession session = TgPollingSession.builder(botApi, tgTransport, botApi.getOptions())
+            .lazyUpdates(botProperties.getPolling().isLazyUpdates())
+            .ackWatermark(ackWatermark.getIfAvailable())
+            .metrics(tgBotMetrics)
+            .build();
+        session.start();
+
+        return session;
+    }
+
+    /**
+     * Роутер обработчиков {@link ru.panyukovnn.longpollingtgbotstarter.router.TgHandler}, общий для всех ботов
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public TgUpdateRouter tgUpdateRouter(ListableBeanFactory beanFactory) {
+        return new TgUpdateRouter(beanFactory);
+    }
+
+    /**
+     * Команды бота: бины {@link BotCommand} и методы {@link ru.panyukovnn.longpollingtgbotstarter.command.TgCommand},
+     * общие для всех ботов
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public TgCommandRouter tgCommandRouter(ListableBeanFactory beanFactory) {
+        return new TgCommandRouter(beanFactory);
+    }
+
+    /**
+     * Диспетчер входящих обновлений в режиме из telegram.bot.dispatch.mode
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public UpdateDispatcher updateDispatcher(TgBotProperties botProperties) {
+        TgBotProperties.Dispatch dispatch = botProperties.getDispatch();
+
+        return switch (dispatch.getMode()) {
+            case DIRECT -> new DirectUpdateDispatcher();
+            case STRIPED -> new StripedUpdateDispatcher(dispatch.getLanes(), dispatch.getQueueCapacity());
+            case VIRTUAL -> new VirtualThreadUpdateDispatcher(dispatch.getPerChatConcurrency());
+        };
+    }
+
+    /**
+     * Исполнитель асинхронной отправки сообщений {@link TgSender#sendAsync}, общий для всех ботов.
+     * Выполняет не больше telegram.bot.sender.executor-threads отправок одновременно в виртуальных потоках,
+     * может быть переопределен бином с тем же именем
+     */
+    @Bean(name = TG_SENDER_EXECUTOR)
+    @ConditionalOnMissingBean(name = TG_SENDER_EXECUTOR)
+    public ExecutorService tgSenderExecutor(TgBotProperties botProperties) {
+        TgBotProperties.Sender sender = botProperties.getSender();
+
+        return TgSender.newBoundedExecutor(sender.getExecutorThreads(), sender.getExecutorQueueCapacity());
+    }
+
+    /**
+     * Ограничитель частоты исходящих сообщений с лимитами из telegram.bot.rate-limit.*
+     */
     @Bean
-    public TgSender tgSender(TgBotApi botApi) {
-        return new TgSender(botApi);
+    @Conditional(OnSingleBotCondition.class)
+    @ConditionalOnMissingBean
+    public TgRateLimiter tgRateLimiter(TgBotProperties botProperties) {
+        TgBotProperties.RateLimit rateLimit = botProperties.getRateLimit();
+
+        return new TgRateLimiter(rateLimit.getGlobalPerSecond(), rateLimit.getChatPerSecond(),
+            rateLimit.getGroupPerMinute(), rateLimit.getChatBurst());
+    }
+
+    @Bean(destroyMethod = "close")
+    @Conditional(OnSingleBotCondition.class)
+    public TgSender tgSender(TgTransport tgTransport,
+                             @Qualifier(TG_SENDER_EXECUTOR) Executor tgSenderExecutor,
+                             TgRateLimiter tgRateLimiter,
+                             TgBotProperties botProperties,
+                             ObjectProvider<OutboxLog> outboxLog,
+                             TgBotMetrics tgBotMetrics) {
+        return TgSender.builder(tgTransport)
+            .executor(tgSenderExecutor)
+            .rateLimiter(tgRateLimiter)
+            .maxRetries(botProperties.getRateLimit().getMaxRetries())
+            .outbox(outboxLog.getIfAvailable())
+            .metrics(tgBotMetrics)
+            .coalesceWindow(botProperties.getSender().getCoalesceWindow())
+            .streamInterval(botProperties.getSender().getStreamInterval())
+            .build();
     }
 
     /**
-     * Регистрирует команды в боте после старта приложения
-     *
-     * @param botApi интерфейс бота
-     * @param commands список команд
-     * @return ignore
+     * Метрики бота с тегом bot=telegram.bot.name. Без Micrometer метрики не собираются
      */
     @Bean
-    public ApplicationRunner commandRegistrar(TgBotApi botApi, List<BotCommand> commands) {
-        return args -> commands.forEach(botApi::register);
+    @Conditional(OnSingleBotCondition.class)
+    @ConditionalOnMissingBean
+    public TgBotMetrics tgBotMetrics(ObjectProvider<TgBotMetricsFactory> tgBotMetricsFactory,
+                                     TgBotProperties botProperties) {
+        TgBotMetricsFactory factory = tgBotMetricsFactory.getIfAvailable();
+
+        return factory != null ? factory.forBot(botProperties.getName()) : TgBotMetrics.NOOP;
+    }
+
+    /**
+     * Метрики Micrometer, если в приложении есть MeterRegistry
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(MeterRegistry.class)
+    @ConditionalOnBean(MeterRegistry.class)
+    static class MetricsConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public TgBotMetricsFactory tgBotMetricsFactory(MeterRegistry meterRegistry) {
+            return MicrometerTgBotMetrics.factory(meterRegistry);
+        }
+
+        /**
+         * Глубина очередей диспетчера в режиме striped
+         */
+        @Bean
+        public SmartInitializingSingleton tgDispatcherMetrics(MeterRegistry meterRegistry,
+                                                              ObjectProvider<UpdateDispatcher> updateDispatcher) {
+            return () -> {
+                if (updateDispatcher.getIfAvailable() instanceof StripedUpdateDispatcher striped) {
+                    MicrometerTgBotMetrics.bindDispatcher(meterRegistry, striped);
+                }
+            };
+        }
+    }
+
+    /**
+     * Журнал исходящих сообщений из telegram.bot.outbox.*
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(prefix = "telegram.bot.outbox", name = "enabled", havingValue = "true")
+    @Conditional(OnSingleBotCondition.class)
+    static class OutboxConfiguration {
+
+        /**
+         * Закрывается после исполнителя отправки, чтобы отправки, завершающиеся при остановке, успели
+         * отметить свои части. Каталог обязателен: временный каталог не переживает перезапуск пода, и журнал
+         * в нем молча терял бы недосланные сообщения
+         */
+        @Bean(destroyMethod = "close")
+        @DependsOn(TG_SENDER_EXECUTOR)
+        public OutboxLog outboxLog(TgBotProperties botProperties) {
+            TgBotProperties.Outbox outbox = botProperties.getOutbox();
+            if (!StringUtils.hasText(outbox.getDirectory())) {
+                throw new IllegalStateException("При telegram.bot.outbox.enabled=true необходимо задать "
+                    + "telegram.bot.outbox.directory - каталог на диске, сохраняющемся между перезапусками");
+            }
+
+            return new OutboxLog(Path.of(outbox.getDirectory()), outbox.getSegmentSize());
+        }
+
+        /**
+         * Досылает сообщения, не отправленные до прошлой остановки
+         */
+        @Bean
+        public ApplicationRunner outboxReplayRunner(TgSender tgSender) {
+            return args -> tgSender.resumePending();
+        }
+    }
+
+    /**
+     * Сохранение смещения обработанных обновлений из telegram.bot.checkpoint.*. Смещение передается в getUpdates
+     * сессией {@link TgPollingSession}, поэтому действует только для транспорта jdk без кластерного режима
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(prefix = "telegram.bot.checkpoint", name = "enabled", havingValue = "true")
+    @ConditionalOnExpression("'${telegram.bot.transport.type:telegrambots}'.equalsIgnoreCase('jdk') "
+        + "and !${telegram.bot.cluster.enabled:false}")
+    @Conditional(OnSingleBotCondition.class)
+    static class CheckpointConfiguration {
+
+        /**
+         * Файл обязателен: временный каталог не переживает перезапуск пода, и смещение в нем молча терялось бы
+         */
+        @Bean(destroyMethod = "close")
+        public OffsetCheckpoint offsetCheckpoint(TgBotProperties botProperties) {
+            String file = botProperties.getCheckpoint().getFile();
+            if (!StringUtils.hasText(file)) {
+                throw new IllegalStateException("При telegram.bot.checkpoint.enabled=true необходимо задать "
+                    + "telegram.bot.checkpoint.file - файл на диске, сохраняющемся между перезапусками");
+            }
+
+            return new OffsetCheckpoint(Path.of(file));
+        }
+
+        /**
+         * getUpdates возвращает не больше polling.limit обновлений после границы, поэтому неподтвержденных
+         * обновлений не бывает больше polling.limit, и буфер границы ограничивается этим значением
+         */
+        @Bean
+        public AckWatermark ackWatermark(OffsetCheckpoint offsetCheckpoint, TgBotProperties botProperties) {
+            TgBotProperties.Checkpoint checkpoint = botProperties.getCheckpoint();
+            int maxInFlight = Math.min(checkpoint.getMaxInFlight(), botProperties.getPolling().getLimit());
+
+            return new AckWatermark(offsetCheckpoint.read(), maxInFlight, checkpoint.getAckTimeout());
+        }
+
+        /**
+         * Закрывается раньше файла смещения, так как зависит от него, и успевает сохранить последнюю границу
+         */
+        @Bean(destroyMethod = "close")
+        public CheckpointWriter checkpointWriter(OffsetCheckpoint offsetCheckpoint, AckWatermark ackWatermark,
+                                                 TgBotProperties botProperties) {
+            CheckpointWriter writer = new CheckpointWriter(offsetCheckpoint, ackWatermark,
+                botProperties.getCheckpoint().getFlushInterval());
+            writer.start();
+
+            return writer;
+        }
+    }
+
+    /**
+     * Отсеивание повторно полученных обновлений из telegram.bot.dedup.*
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(prefix = "telegram.bot.dedup", name = "enabled", havingValue = "true")
+    @Conditional(OnSingleBotCondition.class)
+    static class DedupConfiguration {
+
+        /**
+         * Сохраняет снимок при остановке, если задан telegram.bot.dedup.snapshot-file. При сохранении смещения
+         * в снимок не попадают обновления, которые еще не обработаны
+         */
+        @Bean(destroyMethod = "close")
+        public UpdateDeduplicator updateDeduplicator(TgBotProperties botProperties,
+                                                     ObjectProvider<AckWatermark> ackWatermark) {
+            TgBotProperties.Dedup dedup = botProperties.getDedup();
+
+            return new UpdateDeduplicator(dedup.getCapacity(),
+                dedup.getSnapshotFile() != null ? Path.of(dedup.getSnapshotFile()) : null,
+                ackWatermark.getIfAvailable());
+        }
+    }
+
+    /**
+     * Распределенная обработка обновлений из telegram.bot.cluster.*: узел-лидер опрашивает Telegram, а узлы
+     * с ролью worker обрабатывают свои партиции
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(prefix = "telegram.bot.cluster", name = "enabled", havingValue = "true")
+    @Conditional(OnSingleBotCondition.class)
+    static class ClusterConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public ClusterTransport clusterTransport() {
+            return new LoopbackClusterTransport();
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        public LeaderElection leaderElection(TgBotProperties botProperties) {
+            TgBotProperties.Cluster cluster = botProperties.getCluster();
+            Path lockFile = cluster.getLockFile() != null
+                ? Path.of(cluster.getLockFile())
+                : Path.of(System.getProperty("java.io.tmpdir"), "tg-bot-" + botProperties.getName() + ".lock");
+
+            return new FileLockLeaderElection(lockFile, cluster.getLeaderRetryInterval());
+        }
+
+        @Bean(destroyMethod = "close")
+        @ConditionalOnProperty(prefix = "telegram.bot.cluster", name = "worker", havingValue = "true", matchIfMissing = true)
+        public ClusterWorker clusterWorker(ClusterTransport clusterTransport, TgBotApi botApi,
+                                           TgBotProperties botProperties) {
+            TgBotProperties.Cluster cluster = botProperties.getCluster();
+            Set<Integer> partitions = cluster.getWorkerPartitions().isEmpty()
+                ? IntStream.range(0, cluster.getPartitions()).boxed().collect(Collectors.toSet())
+                : Set.copyOf(cluster.getWorkerPartitions());
+
+            ClusterWorker worker = new ClusterWorker(clusterTransport, botApi, partitions,
+                botProperties.getPolling().isLazyUpdates());
+            worker.start();
+
+            return worker;
+        }
+
+        /**
+         * Обработчик этого узла подписывается до начала опроса, чтобы первые пачки не уходили на повтор
+         */
+        @Bean(destroyMethod = "close")
+        public ClusterPoller clusterPoller(TgBotApi botApi, TgTransport tgTransport, ClusterTransport clusterTransport,
+                                           LeaderElection leaderElection, TgBotProperties botProperties,
+                                           ObjectProvider<ClusterWorker> clusterWorker) {
+            clusterWorker.getIfAvailable();
+
+            ClusterPoller poller = new ClusterPoller(botApi, tgTransport, clusterTransport, leaderElection,
+                botProperties.getCluster().getPartitions());
+            poller.start();
+
+            return poller;
+        }
+    }
+
+    /**
+     * Несколько ботов из telegram.bot.instances.* с общим диспетчером, исполнителем отправки и пулом соединений
+     */
+    @Configuration(proxyBeanMethods = false)
+    @Conditional(OnBotInstancesCondition.class)
+    @Import(TgBotInstancesRegistrar.class)
+    static class BotInstancesConfiguration {
+
+        @Bean
+        public TgBots tgBots(ApplicationEventPublisher eventPublisher,
+                             TgBotProperties botProperties,
+                             UpdateDispatcher updateDispatcher,
+                             @Qualifier(TG_SENDER_EXECUTOR) Executor tgSenderExecutor,
+                             ListableBeanFactory beanFactory,
+                             ObjectProvider<TgBotMetricsFactory> tgBotMetricsFactory) {
+            return new TgBots(eventPublisher, botProperties, updateDispatcher, tgSenderExecutor, beanFactory,
+                tgBotMetricsFactory.getIfAvailable(() -> bot -> TgBotMetrics.NOOP));
+        }
+
+        /**
+         * Пул HTTP соединений транспорта jdk, общий для всех ботов
+         */
+        @Bean(name = TgBotInstancesRegistrar.TG_HTTP_CONNECTION_POOL)
+        @ConditionalOnProperty(prefix = "telegram.bot.transport", name = "type", havingValue = "jdk")
+        public JdkHttpConnectionPool tgHttpConnectionPool(TgBotProperties botProperties) {
+            TgBotProperties.Transport transport = botProperties.getTransport();
+
+            return new JdkHttpConnectionPool(transport.getConnections(), transport.getConnectTimeout(),
+                transport.isHttp2());
+        }
     }
 }
@@ -0,0 +1,269 @@
+package ru.panyukovnn.longpollingtgbotstarter.checkpoint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Граница подтвержденных обновлений при параллельной обработке
+ * <p>
+ * Обновления регистрируются в порядке update_id и подтверждаются в любом порядке. Граница (watermark) -
+ * наибольший update_id, до которого включительно обработаны все обновления; именно ее можно сообщить Telegram
+ * как смещение и сохранить в {@link OffsetCheckpoint}. Незавершенные обновления хранятся в кольцевом буфере
+ * фиксированного размера, поэтому регистрация не аллоцирует, а при заполнении буфера поток опроса ждет,
+ * пока обработчики догонят.
+ * <p>
+ * Граница не может обогнать самое старое неподтвержденное обновление: одно зависшее обработчиком или потерянное
+ * отложенное подтверждение останавливает сдвиг смещения. getUpdates возвращает не больше limit обновлений после
+ * границы, поэтому после получения limit обновлений за зависшим новые обновления перестают приходить, и опрос
+ * стоит до его подтверждения. Неподтвержденных обновлений при этом не бывает больше limit, поэтому maxInFlight
+ * больше limit не достигается. Обновление, не подтвержденное за ackTimeout, подтверждается принудительно
+ * с предупреждением в журнале, что ограничивает остановку опроса этим временем.
+ * Обработка такого обновления может продолжаться, но после перезапуска оно уже не будет получено повторно.
+ */
+public class AckWatermark {
+
+    private static final Logger log = LoggerFactory.getLogger(AckWatermark.class);
+
+    private final int[] updateIds;
+    private final boolean[] acked;
+    private final long[] registeredAt;
+    private final long ackTimeoutNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition advanced = lock.newCondition();
+    private long head;
+    private long tail;
+    private volatile long watermark;
+    private long forcedAckCount;
+
+    /**
+     * Граница без ограничения времени подтверждения
+     *
+     * @param initialWatermark сохраненная граница, например из {@link OffsetCheckpoint#read()}
+     * @param maxInFlight      максимальное количество зарегистрированных, но не подтвержденных обновлений
+     */
+    public AckWatermark(long initialWatermark, int maxInFlight) {
+        this(initialWatermark, maxInFlight, Duration.ZERO);
+    }
+
+    /**
+     * @param initialWatermark сохраненная граница, например из {@link OffsetCheckpoint#read()}
+     * @param maxInFlight      максимальное количество зарегистрированных, но не подтвержденных обновлений
+     * @param ackTimeout       через сколько после регистрации самое старое неподтвержденное обновление
+     *                         подтверждается принудительно; 0 - ждать подтверждения без ограничения
+     */
+    public AckWatermark(long initialWatermark, int maxInFlight, Duration ackTimeout) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Количество обрабатываемых обновлений должно быть положительным");
+        }
+
+        this.updateIds = new int[maxInFlight];
+        this.acked = new boolean[maxInFlight];
+        this.registeredAt = new long[maxInFlight];
+        this.ackTimeoutNanos = ackTimeout.toNanos();
+        this.watermark = initialWatermark;
+    }
+
+    /**
+     * Регистрирует обновление перед передачей на обработку. Ждет, если буфер заполнен, но не дольше, чем
+     * до принудительного подтверждения самого старого обновления
+     *
+     * @param updateId update_id, больший всех зарегистрированных ранее
+     * @return квитанция для {@link #ack(long)}
+     * @throws RejectedExecutionException если поток был прерван во время ожидания
+     */
+    public long register(int updateId) {
+        lock.lock();
+        try {
+            while (tail - head == updateIds.length) {
+                long now = System.nanoTime();
+                if (!advance(now)) {
+                    notFull.awaitNanos(untilOverdue(now));
+                }
+            }
+
+            int index = index(tail);
+            updateIds[index] = updateId;
+            acked[index] = false;
+            registeredAt[index] = System.nanoTime();
+
+            return tail++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Прервано ожидание подтверждения обработанных обновлений", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Подтверждает обработку обновления и сдвигает границу через все подряд подтвержденные обновления
+     *
+     * @param ticket квитанция из {@link #register(int)}
+     */
+    public void ack(long ticket) {
+        lock.lock();
+        try {
+            if (ticket < head || ticket >= tail) {
+                return;
+            }
+
+            acked[index(ticket)] = true;
+            advance(System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Сдвигает границу через все подряд подтвержденные обновления и принудительно подтверждает самые старые
+     * обновления, время подтверждения которых истекло. Вызывается под блокировкой
+     *
+     * @return true, если граница сдвинулась
+     */
+    private boolean advance(long now) {
+        long start = head;
+        while (head < tail) {
+            int index = index(head);
+            if (!acked[index]) {
+                if (ackTimeoutNanos <= 0 || now - registeredAt[index] < ackTimeoutNanos) {
+                    break;
+                }
+
+                forcedAckCount++;
+                log.warn("Обновление {} не подтверждено за {} мс, подтверждаем принудительно",
+                    updateIds[index], ackTimeoutNanos / 1_000_000);
+            }
+
+            watermark = updateIds[index];
+            head++;
+        }
+
+        if (head == start) {
+            return false;
+        }
+
+        notFull.signalAll();
+        advanced.signalAll();
+
+        return true;
+    }
+
+    /**
+     * Сколько ждать до принудительного подтверждения самого старого обновления. Вызывается под блокировкой
+     */
+    private long untilOverdue(long now) {
+        if (ackTimeoutNanos <= 0 || head == tail) {
+            return Long.MAX_VALUE;
+        }
+
+        return Math.max(1, registeredAt[index(head)] + ackTimeoutNanos - now);
+    }
+
+    /**
+     * Регистрирует обновление и передает исполнителю задачу, которая подтверждает его после выполнения.
+     * Обработчик может отложить подтверждение через {@link UpdateAcks#defer()}. Если исполнитель отклонил
+     * задачу, регистрация отменяется, чтобы необработанное обновление не задерживало границу навсегда
+     *
+     * @param executor передает задачу на выполнение, например {@link
+     *                 ru.panyukovnn.longpollingtgbotstarter.dispatch.UpdateDispatcher#execute}
+     */
+    public void submit(int updateId, Runnable task, Consumer<Runnable> executor) {
+        long ticket = register(updateId);
+        try {
+            executor.accept(() -> UpdateAcks.run(this, ticket, task));
+        } catch (RuntimeException e) {
+            cancel(ticket);
+            throw e;
+        }
+    }
+
+    /**
+     * Регистрирует и сразу подтверждает обновление, которое не будет обработано, например отброшенное при
+     * переполнении буфера входящих обновлений. Без этого граница остановится перед последним отброшенным
+     * обновлением, и после перезапуска оно будет получено повторно
+     */
+    public void skip(int updateId) {
+        ack(register(updateId));
+    }
+
+    /**
+     * Отменяет последнюю регистрацию, если она еще не вышла за границу
+     */
+    void cancel(long ticket) {
+        lock.lock();
+        try {
+            if (ticket == tail - 1 && ticket >= head) {
+                tail--;
+                notFull.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Наибольший update_id, до которого включительно обработаны все обновления
+     */
+    public long watermark() {
+        return watermark;
+    }
+
+    /**
+     * Количество зарегистрированных, но еще не подтвержденных обновлений
+     */
+    public int inFlight() {
+        lock.lock();
+        try {
+            return (int) (tail - head);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Количество обновлений, подтвержденных принудительно по истечении ackTimeout
+     */
+    public long getForcedAckCount() {
+        lock.lock();
+        try {
+            return forcedAckCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ждет, пока граница сдвинется дальше {@code from}. Самые старые обновления, время подтверждения которых
+     * истекло, подтверждаются принудительно
+     *
+     * @return true, если граница сдвинулась
+     */
+    public boolean awaitAdvance(long from, Duration timeout) throws InterruptedException {
+        lock.lock();
+        try {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            while (watermark == from) {
+                long now = System.nanoTime();
+                if (advance(now) && watermark != from || deadline - now <= 0) {
+                    break;
+                }
+                advanced.awaitNanos(Math.min(deadline - now, untilOverdue(now)));
+            }
+
+            return watermark != from;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % updateIds.length);
+    }
+}
@@ -0,0 +1,81 @@
+package ru.panyukovnn.longpollingtgbotstarter.checkpoint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+
+/**
+ * Периодически сохраняет границу {@link AckWatermark} в {@link OffsetCheckpoint}
+ * <p>
+ * Подтверждения обновлений только сдвигают границу в памяти, а на диск она попадает раз в интервал, если
+ * изменилась. Так одна запись с fsync покрывает все обновления, обработанные за интервал, и поток опроса
+ * никогда не ждет диска. При остановке граница сохраняется последний раз.
+ */
+public class CheckpointWriter implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(CheckpointWriter.class);
+
+    private final OffsetCheckpoint checkpoint;
+    private final AckWatermark watermark;
+    private final Duration interval;
+    private volatile boolean running;
+    private Thread thread;
+
+    public CheckpointWriter(OffsetCheckpoint checkpoint, AckWatermark watermark, Duration interval) {
+        this.checkpoint = checkpoint;
+        this.watermark = watermark;
+        this.interval = interval;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            throw new IllegalStateException("Сохранение смещения уже запущено");
+        }
+
+        running = true;
+        thread = Thread.ofPlatform().daemon().name("tg-offset-checkpoint").start(this::writeLoop);
+    }
+
+    /**
+     * Сохраняет текущую границу, если она изменилась с прошлой записи
+     */
+    public void flush() {
+        long current = watermark.watermark();
+        if (current != checkpoint.read()) {
+            checkpoint.write(current);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void writeLoop() {
+        while (running) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.error("Не удалось сохранить смещение в {}: {}", checkpoint.getFile(), e.getMessage(), e);
+            }
+        }
+    }
+}
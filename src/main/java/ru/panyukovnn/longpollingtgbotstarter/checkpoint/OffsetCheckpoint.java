@@ -0,0 +1,124 @@
+package ru.panyukovnn.longpollingtgbotstarter.checkpoint;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Смещение getUpdates в отображаемом в память файле
+ * <p>
+ * Файл занимает 64 байта: заголовок и две ячейки с номером записи, update_id и контрольной суммой. Запись
+ * идет в ячейку, противоположную последней, поэтому оборванная запись не портит предыдущее значение: при чтении
+ * выбирается ячейка с корректной суммой и наибольшим номером. Записи вызывает {@link CheckpointWriter}
+ * в отдельном потоке, поток опроса файл не трогает.
+ */
+public class OffsetCheckpoint implements AutoCloseable {
+
+    private static final int MAGIC = 0x54474F43;
+    private static final int VERSION = 1;
+    private static final int FILE_SIZE = 64;
+    private static final int HEADER_SIZE = 8;
+    private static final int SLOT_SIZE = 24;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private long sequence;
+    private long offset;
+
+    /**
+     * Открывает файл или создает новый с нулевым смещением
+     */
+    public OffsetCheckpoint(Path file) {
+        this.file = file;
+
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть файл смещения " + file, e);
+        }
+
+        if (buffer.getInt(0) != MAGIC) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.force();
+        } else if (buffer.getInt(4) != VERSION) {
+            throw new IllegalStateException("Неподдерживаемая версия файла смещения " + file);
+        }
+
+        readSlots();
+    }
+
+    /**
+     * Последнее сохраненное смещение: update_id, до которого включительно все обновления обработаны
+     *
+     * @return смещение или 0, если оно еще не сохранялось
+     */
+    public synchronized long read() {
+        return offset;
+    }
+
+    /**
+     * Сохраняет смещение и сбрасывает его на диск
+     */
+    public synchronized void write(long updateId) {
+        long nextSequence = sequence + 1;
+        int slot = slotPosition(nextSequence);
+
+        buffer.putLong(slot, nextSequence);
+        buffer.putLong(slot + 8, updateId);
+        buffer.putLong(slot + 16, checksum(nextSequence, updateId));
+        buffer.force(slot, SLOT_SIZE);
+
+        sequence = nextSequence;
+        offset = updateId;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось закрыть файл смещения " + file, e);
+        }
+    }
+
+    private void readSlots() {
+        for (int i = 0; i < 2; i++) {
+            int slot = HEADER_SIZE + i * SLOT_SIZE;
+            long slotSequence = buffer.getLong(slot);
+            long slotOffset = buffer.getLong(slot + 8);
+
+            if (slotSequence > sequence && buffer.getLong(slot + 16) == checksum(slotSequence, slotOffset)) {
+                sequence = slotSequence;
+                offset = slotOffset;
+            }
+        }
+    }
+
+    private static int slotPosition(long sequence) {
+        return HEADER_SIZE + (int) (sequence & 1) * SLOT_SIZE;
+    }
+
+    private static long checksum(long sequence, long updateId) {
+        CRC32 crc = new CRC32();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (sequence >>> shift));
+        }
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (updateId >>> shift));
+        }
+
+        return crc.getValue();
+    }
+}
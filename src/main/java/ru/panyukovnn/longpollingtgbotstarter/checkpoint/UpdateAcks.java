@@ -0,0 +1,90 @@
+package ru.panyukovnn.longpollingtgbotstarter.checkpoint;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Подтверждение обработки текущего обновления
+ * <p>
+ * По умолчанию обновление подтверждается, когда обработчик команды или синхронный слушатель события
+ * завершился, в том числе с ошибкой. Слушатель, который продолжает обработку в другом потоке (@Async,
+ * CompletableFuture), откладывает подтверждение и подтверждает обновление сам:
+ * <pre>{@code
+ * AckHandle ack = UpdateAcks.defer();
+ * CompletableFuture.runAsync(() -> process(update)).whenComplete((result, e) -> ack.ack());
+ * }</pre>
+ */
+public final class UpdateAcks {
+
+    private static final ThreadLocal<Context> CURRENT = new ThreadLocal<>();
+
+    private static final AckHandle NO_OP = () -> {
+    };
+
+    private UpdateAcks() {
+    }
+
+    /**
+     * Откладывает подтверждение обновления, которое обрабатывается в текущем потоке. Если сохранение смещения
+     * не включено или вызов сделан вне обработки обновления, возвращает пустое подтверждение
+     */
+    public static AckHandle defer() {
+        Context context = CURRENT.get();
+
+        return context != null ? context.defer() : NO_OP;
+    }
+
+    static void run(AckWatermark watermark, long ticket, Runnable task) {
+        Context context = new Context(watermark, ticket);
+        Context previous = CURRENT.get();
+        CURRENT.set(context);
+        try {
+            task.run();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+            context.release();
+        }
+    }
+
+    /**
+     * Отложенное подтверждение обновления. Повторные вызовы {@link #ack()} игнорируются
+     */
+    @FunctionalInterface
+    public interface AckHandle {
+
+        void ack();
+    }
+
+    private static final class Context {
+
+        private final AckWatermark watermark;
+        private final long ticket;
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        Context(AckWatermark watermark, long ticket) {
+            this.watermark = watermark;
+            this.ticket = ticket;
+        }
+
+        AckHandle defer() {
+            pending.incrementAndGet();
+            AtomicBoolean acked = new AtomicBoolean();
+
+            return () -> {
+                if (acked.compareAndSet(false, true)) {
+                    release();
+                }
+            };
+        }
+
+        void release() {
+            if (pending.decrementAndGet() == 0) {
+                watermark.ack(ticket);
+            }
+        }
+    }
+}
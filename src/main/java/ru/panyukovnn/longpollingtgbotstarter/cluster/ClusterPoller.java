@@ -0,0 +1,160 @@
+package ru.panyukovnn.longpollingtgbotstarter.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import org.telegram.telegrambots.meta.generics.BotOptions;
+import org.telegram.telegrambots.meta.generics.LongPollingBot;
+import ru.panyukovnn.longpollingtgbotstarter.config.TgBotApi;
+import ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdate;
+import ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdatesReceiver;
+import ru.panyukovnn.longpollingtgbotstarter.transport.TgPollingSession;
+import ru.panyukovnn.longpollingtgbotstarter.transport.TgTransport;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Опрашивает Telegram, пока узел является лидером, и передает обновления узлам-обработчикам
+ * <p>
+ * Получив лидерство, запускает {@link TgPollingSession} в ленивом режиме и раскладывает обновления каждого
+ * ответа getUpdates по партициям {@link UpdatePartitioner}. Смещение сдвигается только после того, как все
+ * партиции пачки приняты {@link ClusterTransport}, поэтому при недоступном обработчике обновления будут
+ * запрошены повторно - доставка не реже одного раза. Потеряв лидерство, останавливает опрос, а бот узла
+ * продолжает отправлять сообщения.
+ */
+public class ClusterPoller implements LongPollingBot, RawUpdatesReceiver, LeadershipListener, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterPoller.class);
+
+    private final TgBotApi botApi;
+    private final TgTransport transport;
+    private final ClusterTransport clusterTransport;
+    private final LeaderElection leaderElection;
+    private final int partitions;
+    private TgPollingSession session;
+
+    /**
+     * @param botApi           бот, от имени которого выполняется опрос
+     * @param transport        транспорт запросов getUpdates
+     * @param clusterTransport передача обновлений узлам-обработчикам
+     * @param leaderElection   выбор узла, который опрашивает Telegram
+     * @param partitions       количество партиций
+     */
+    public ClusterPoller(TgBotApi botApi, TgTransport transport, ClusterTransport clusterTransport,
+                         LeaderElection leaderElection, int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Количество партиций должно быть положительным");
+        }
+
+        this.botApi = botApi;
+        this.transport = transport;
+        this.clusterTransport = clusterTransport;
+        this.leaderElection = leaderElection;
+        this.partitions = partitions;
+    }
+
+    /**
+     * Начинает участие в выборе лидера
+     */
+    public void start() {
+        leaderElection.start(this);
+    }
+
+    /**
+     * Опрашивает ли этот узел Telegram
+     */
+    public synchronized boolean isPolling() {
+        return session != null && session.isRunning();
+    }
+
+    @Override
+    public synchronized void onGranted() {
+        if (session != null) {
+            return;
+        }
+
+        TgPollingSession newSession = TgPollingSession.builder(this, transport, botApi.getOptions())
+            .lazyUpdates(true)
+            .build();
+        try {
+            newSession.start();
+            session = newSession;
+        } catch (TelegramApiRequestException e) {
+            log.error("Не удалось начать опрос после получения лидерства: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void onRevoked() {
+        if (session != null) {
+            session.stop();
+            session = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        leaderElection.close();
+        onRevoked();
+    }
+
+    /**
+     * Раскладывает обновления по партициям с сохранением порядка и передает каждую партицию обработчику
+     *
+     * @throws UncheckedIOException если обработчик партиции недоступен, сессия повторит запрос
+     */
+    @Override
+    public void onRawUpdatesReceived(List<RawUpdate> updates) {
+        Map<Integer, List<RawUpdate>> byPartition = new LinkedHashMap<>();
+        for (RawUpdate update : updates) {
+            byPartition.computeIfAbsent(UpdatePartitioner.partition(update.chatKey(), partitions), key -> new ArrayList<>())
+                .add(update);
+        }
+
+        for (Map.Entry<Integer, List<RawUpdate>> entry : byPartition.entrySet()) {
+            try {
+                clusterTransport.send(entry.getKey(), entry.getValue());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось передать обновления партиции " + entry.getKey(), e);
+            }
+        }
+    }
+
+    @Override
+    public void onUpdateReceived(Update update) {
+        onRawUpdatesReceived(List.of(RawUpdate.of(update)));
+    }
+
+    @Override
+    public String getBotUsername() {
+        return botApi.getBotUsername();
+    }
+
+    @Override
+    public String getBotToken() {
+        return botApi.getBotToken();
+    }
+
+    @Override
+    public BotOptions getOptions() {
+        return botApi.getOptions();
+    }
+
+    @Override
+    public void clearWebhook() throws TelegramApiRequestException {
+        botApi.clearWebhook();
+    }
+
+    /**
+     * Бот продолжает работать на узле после потери лидерства, поэтому его ресурсы не освобождаются
+     */
+    @Override
+    public void onClosing() {
+    }
+}
@@ -0,0 +1,47 @@
+package ru.panyukovnn.longpollingtgbotstarter.cluster;
+
+import ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdate;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Передача обновлений от узла, опрашивающего Telegram, узлам-обработчикам
+ * <p>
+ * Обновления разбиты на партиции по ключу чата ({@link UpdatePartitioner}), поэтому все обновления одного чата
+ * обрабатывает один узел в порядке получения. Реализации передают исходный JSON обновлений
+ * ({@link RawUpdate#writeTo}), а получатель восстанавливает их через
+ * {@link ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdateParser#parseUpdate}. Реализация по умолчанию
+ * {@link LoopbackClusterTransport} работает внутри одной JVM, сетевую можно подключить бином ClusterTransport.
+ */
+public interface ClusterTransport extends AutoCloseable {
+
+    /**
+     * Передает обновления партиции ее обработчику. Возврат без исключения означает, что обновления приняты
+     * и смещение getUpdates можно сдвинуть
+     *
+     * @param partition номер партиции
+     * @param updates   обновления партиции в порядке получения
+     * @throws IOException если обработчик недоступен, обновления будут переданы повторно
+     */
+    void send(int partition, List<RawUpdate> updates) throws IOException;
+
+    /**
+     * Начинает получать обновления партиций
+     *
+     * @param partitions номера партиций этого узла
+     * @param consumer   обработчик пачки обновлений одной партиции
+     */
+    void subscribe(Set<Integer> partitions, Consumer<List<RawUpdate>> consumer);
+
+    /**
+     * Прекращает получать обновления партиций
+     */
+    void unsubscribe(Set<Integer> partitions);
+
+    @Override
+    default void close() {
+    }
+}
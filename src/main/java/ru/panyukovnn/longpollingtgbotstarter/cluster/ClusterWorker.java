@@ -0,0 +1,54 @@
+package ru.panyukovnn.longpollingtgbotstarter.cluster;
+
+import ru.panyukovnn.longpollingtgbotstarter.config.TgBotApi;
+import ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdate;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Получает обновления своих партиций от {@link ClusterPoller} и передает их боту узла
+ * <p>
+ * Дальше обновления обрабатываются как при обычном опросе: через диспетчер бота, обработчик команд
+ * и события Spring. В ленивом режиме слушатели получают {@link RawUpdate}, иначе {@link org.telegram.telegrambots.meta.api.objects.Update}.
+ */
+public class ClusterWorker implements AutoCloseable {
+
+    private final ClusterTransport clusterTransport;
+    private final TgBotApi botApi;
+    private final Set<Integer> partitions;
+    private final boolean lazyUpdates;
+
+    /**
+     * @param partitions  номера партиций этого узла
+     * @param lazyUpdates публиковать обновления как {@link RawUpdate}
+     */
+    public ClusterWorker(ClusterTransport clusterTransport, TgBotApi botApi, Set<Integer> partitions,
+                         boolean lazyUpdates) {
+        this.clusterTransport = clusterTransport;
+        this.botApi = botApi;
+        this.partitions = Set.copyOf(partitions);
+        this.lazyUpdates = lazyUpdates;
+    }
+
+    public void start() {
+        clusterTransport.subscribe(partitions, this::onUpdates);
+    }
+
+    public Set<Integer> getPartitions() {
+        return partitions;
+    }
+
+    @Override
+    public void close() {
+        clusterTransport.unsubscribe(partitions);
+    }
+
+    private void onUpdates(List<RawUpdate> updates) {
+        if (lazyUpdates) {
+            botApi.onRawUpdatesReceived(updates);
+        } else {
+            botApi.onUpdatesReceived(updates.stream().map(RawUpdate::update).toList());
+        }
+    }
+}
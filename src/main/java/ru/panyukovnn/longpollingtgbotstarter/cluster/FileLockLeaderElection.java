@@ -0,0 +1,140 @@
+package ru.panyukovnn.longpollingtgbotstarter.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+/**
+ * Выбор лидера блокировкой файла
+ * <p>
+ * Лидером становится узел, захвативший эксклюзивную блокировку файла, остальные периодически пытаются ее
+ * захватить. Операционная система снимает блокировку при завершении процесса, поэтому после падения лидера
+ * его место занимает другой узел. Подходит для узлов на одной машине или с общей файловой системой,
+ * поддерживающей блокировки. Несколько экземпляров в одной JVM тоже конкурируют за файл.
+ */
+public class FileLockLeaderElection implements LeaderElection {
+
+    private static final Logger log = LoggerFactory.getLogger(FileLockLeaderElection.class);
+
+    private final Path lockFile;
+    private final Duration retryInterval;
+    private final Object monitor = new Object();
+    private volatile FileChannel channel;
+    private volatile FileLock lock;
+    private volatile boolean running;
+    private LeadershipListener listener;
+    private Thread thread;
+
+    /**
+     * @param lockFile      файл блокировки, общий для всех узлов одного бота
+     * @param retryInterval интервал попыток захватить блокировку
+     */
+    public FileLockLeaderElection(Path lockFile, Duration retryInterval) {
+        this.lockFile = lockFile;
+        this.retryInterval = retryInterval;
+    }
+
+    @Override
+    public void start(LeadershipListener listener) {
+        synchronized (monitor) {
+            if (running) {
+                throw new IllegalStateException("Выбор лидера уже запущен");
+            }
+
+            this.listener = listener;
+            this.running = true;
+            this.thread = Thread.ofVirtual().name("tg-leader-election").start(this::electionLoop);
+        }
+    }
+
+    @Override
+    public boolean isLeader() {
+        FileLock current = lock;
+
+        return current != null && current.isValid();
+    }
+
+    @Override
+    public void close() {
+        synchronized (monitor) {
+            if (!running) {
+                return;
+            }
+            running = false;
+        }
+
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (lock != null) {
+            listener.onRevoked();
+        }
+        release();
+    }
+
+    private void electionLoop() {
+        while (running) {
+            if (lock == null && tryAcquire()) {
+                log.info("Узел стал лидером по блокировке {}", lockFile);
+                listener.onGranted();
+            }
+
+            try {
+                Thread.sleep(retryInterval);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private boolean tryAcquire() {
+        try {
+            FileChannel opened = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock acquired = null;
+            try {
+                acquired = opened.tryLock();
+            } catch (OverlappingFileLockException e) {
+                // Блокировку держит другой экземпляр в этой же JVM
+            }
+
+            if (acquired == null) {
+                opened.close();
+                return false;
+            }
+
+            channel = opened;
+            lock = acquired;
+            return true;
+        } catch (IOException e) {
+            log.warn("Не удалось захватить блокировку {}: {}", lockFile, e.getMessage());
+            return false;
+        }
+    }
+
+    private void release() {
+        try {
+            if (lock != null && lock.isValid()) {
+                lock.release();
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            log.warn("Не удалось освободить блокировку {}: {}", lockFile, e.getMessage());
+        } finally {
+            lock = null;
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package ru.panyukovnn.longpollingtgbotstarter.cluster;
+
+/**
+ * Выбор узла, который опрашивает Telegram
+ * <p>
+ * Telegram допускает только одного получателя getUpdates на токен и отвечает 409 Conflict второму, поэтому
+ * опрос ведет один узел - лидер. Реализация по умолчанию {@link FileLockLeaderElection}, свою можно подключить
+ * бином LeaderElection, например поверх блокировки в базе данных или ZooKeeper.
+ */
+public interface LeaderElection extends AutoCloseable {
+
+    /**
+     * Начинает участие в выборах. Уведомления приходят в потоке реализации
+     */
+    void start(LeadershipListener listener);
+
+    boolean isLeader();
+
+    /**
+     * Прекращает участие в выборах. Если узел был лидером, вызывает {@link LeadershipListener#onRevoked()}
+     * и освобождает лидерство
+     */
+    @Override
+    void close();
+}
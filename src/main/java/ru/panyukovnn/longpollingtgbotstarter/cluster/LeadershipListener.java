@@ -0,0 +1,17 @@
+package ru.panyukovnn.longpollingtgbotstarter.cluster;
+
+/**
+ * Получает уведомления о смене лидерства узла
+ */
+public interface LeadershipListener {
+
+    /**
+     * Узел стал лидером и должен начать опрос Telegram
+     */
+    void onGranted();
+
+    /**
+     * Узел перестал быть лидером и должен прекратить опрос
+     */
+    void onRevoked();
+}
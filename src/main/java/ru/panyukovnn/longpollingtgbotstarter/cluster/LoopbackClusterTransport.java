@@ -0,0 +1,52 @@
+package ru.panyukovnn.longpollingtgbotstarter.cluster;
+
+import ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdate;
+import ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdateParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Передача обновлений внутри одной JVM
+ * <p>
+ * Обновления передаются обработчику партиции синхронно в потоке отправителя. Как и сетевая реализация,
+ * транспорт передает копию исходного JSON и разбирает ее заново, поэтому узлы не делят объекты обновлений,
+ * а весь путь поллер-обработчик можно проверить на одной машине.
+ */
+public class LoopbackClusterTransport implements ClusterTransport {
+
+    private final Map<Integer, Consumer<List<RawUpdate>>> consumers = new ConcurrentHashMap<>();
+
+    @Override
+    public void send(int partition, List<RawUpdate> updates) throws IOException {
+        Consumer<List<RawUpdate>> consumer = consumers.get(partition);
+        if (consumer == null) {
+            throw new IOException("Нет обработчика партиции " + partition);
+        }
+
+        List<RawUpdate> received = new ArrayList<>(updates.size());
+        for (RawUpdate update : updates) {
+            received.add(RawUpdateParser.parseUpdate(update.bytes()));
+        }
+        consumer.accept(received);
+    }
+
+    @Override
+    public void subscribe(Set<Integer> partitions, Consumer<List<RawUpdate>> consumer) {
+        for (Integer partition : partitions) {
+            if (consumers.putIfAbsent(partition, consumer) != null) {
+                throw new IllegalStateException("Партиция " + partition + " уже обрабатывается");
+            }
+        }
+    }
+
+    @Override
+    public void unsubscribe(Set<Integer> partitions) {
+        partitions.forEach(consumers::remove);
+    }
+}
@@ -0,0 +1,30 @@
+package ru.panyukovnn.longpollingtgbotstarter.cluster;
+
+/**
+ * Номер партиции обновления по ключу чата
+ */
+public final class UpdatePartitioner {
+
+    private UpdatePartitioner() {
+    }
+
+    /**
+     * Ключ перемешивается финализатором MurmurHash3, а не тем же умножением, что и номер очереди в
+     * {@link ru.panyukovnn.longpollingtgbotstarter.dispatch.StripedUpdateDispatcher}: иначе чаты одной партиции
+     * попадали бы в одни и те же очереди узла
+     *
+     * @param chatKey    ключ чата из {@link ru.panyukovnn.longpollingtgbotstarter.dispatch.UpdateKeys}
+     * @param partitions количество партиций
+     * @return номер партиции от 0 до partitions - 1
+     */
+    public static int partition(long chatKey, int partitions) {
+        long mixed = chatKey;
+        mixed ^= mixed >>> 33;
+        mixed *= 0xFF51AFD7ED558CCDL;
+        mixed ^= mixed >>> 33;
+        mixed *= 0xC4CEB9FE1A85EC53L;
+        mixed ^= mixed >>> 33;
+
+        return (int) Math.floorMod(mixed, (long) partitions);
+    }
+}
@@ -0,0 +1,38 @@
+package ru.panyukovnn.longpollingtgbotstarter.command;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Команда бота, которую выбирает {@link TgCommandRouter}
+ * <p>
+ * На методе бина объявляет обработчик команды. Параметры метода могут быть любыми из {@code Update},
+ * {@code Message}, {@code User}, {@code Chat}, {@code TgBotApi} или {@code AbsSender}, {@link TgCommandArgs}
+ * и {@code String[]} с аргументами, возвращаемое значение игнорируется. На классе, реализующем
+ * {@code IBotCommand}, добавляет к его идентификатору псевдонимы и задает исполнитель.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface TgCommand {
+
+    /**
+     * Имя команды без косой черты и ее псевдонимы. Для {@code IBotCommand} - только псевдонимы
+     */
+    String[] value() default {};
+
+    /**
+     * Считать имена префиксами: команда получает все команды, которые с них начинаются, а остаток имени
+     * доступен через {@link TgCommandArgs#suffix()}. Команда с точно совпавшим именем важнее префикса
+     */
+    boolean prefix() default false;
+
+    /**
+     * Имя бина {@link java.util.concurrent.Executor}, в котором выполняется команда. Если не задано,
+     * команда выполняется в потоке диспетчера обновлений, как слушатели событий
+     */
+    String executor() default "";
+}
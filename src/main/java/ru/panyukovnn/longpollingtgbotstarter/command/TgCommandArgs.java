@@ -0,0 +1,114 @@
+package ru.panyukovnn.longpollingtgbotstarter.command;
+
+import java.util.Arrays;
+
+/**
+ * Аргументы команды - часть текста сообщения после {@code /команда@бот}
+ * <p>
+ * Текст не копируется и не разбивается при разборе команды: слова выделяются при первом обращении к ним.
+ */
+public final class TgCommandArgs {
+
+    private static final String[] NO_TOKENS = new String[0];
+
+    private final String text;
+    private final int start;
+    private final String suffix;
+    private String[] tokens;
+
+    /**
+     * @param text   полный текст сообщения
+     * @param start  начало аргументов в тексте
+     * @param suffix остаток имени команды после префикса
+     */
+    TgCommandArgs(String text, int start, String suffix) {
+        this.text = text;
+        this.start = start;
+        this.suffix = suffix;
+    }
+
+    /**
+     * Аргументы одной строкой, как их отправил пользователь
+     */
+    public String raw() {
+        return text.substring(start);
+    }
+
+    /**
+     * Остаток имени команды после префикса {@link TgCommand#prefix()}: для /user_42 и префикса user_ - 42.
+     * Для команды, совпавшей по имени, пустая строка
+     */
+    public String suffix() {
+        return suffix;
+    }
+
+    /**
+     * Количество аргументов, разделенных пробельными символами
+     */
+    public int size() {
+        return tokens().length;
+    }
+
+    public boolean isEmpty() {
+        return start == text.length();
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException если аргумента с таким номером нет
+     */
+    public String get(int index) {
+        return tokens()[index];
+    }
+
+    /**
+     * Аргументы массивом, как их передает {@code IBotCommand#processMessage}
+     */
+    public String[] toArray() {
+        return tokens().clone();
+    }
+
+    private String[] tokens() {
+        String[] result = tokens;
+        if (result == null) {
+            result = tokenize();
+            tokens = result;
+        }
+
+        return result;
+    }
+
+    private String[] tokenize() {
+        int count = 0;
+        int length = text.length();
+        for (int i = start; i < length; i++) {
+            if (!Character.isWhitespace(text.charAt(i)) && (i == start || Character.isWhitespace(text.charAt(i - 1)))) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return NO_TOKENS;
+        }
+
+        String[] result = new String[count];
+        int index = 0;
+        int i = start;
+        while (index < count) {
+            while (Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            int end = i;
+            while (end < length && !Character.isWhitespace(text.charAt(end))) {
+                end++;
+            }
+            result[index++] = text.substring(i, end);
+            i = end;
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(tokens());
+    }
+}
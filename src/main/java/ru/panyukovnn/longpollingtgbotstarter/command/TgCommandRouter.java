@@ -0,0 +1,389 @@
+package ru.panyukovnn.longpollingtgbotstarter.command;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.util.ClassUtils;
+import org.telegram.telegrambots.extensions.bots.commandbot.commands.IBotCommand;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import ru.panyukovnn.longpollingtgbotstarter.checkpoint.UpdateAcks;
+import ru.panyukovnn.longpollingtgbotstarter.config.TgBotApi;
+import ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdate;
+import ru.panyukovnn.longpollingtgbotstarter.router.CharTrie;
+import ru.panyukovnn.longpollingtgbotstarter.router.MethodInvokers;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Выбирает и выполняет команды бота вместо {@code CommandRegistry} из telegrambots
+ * <p>
+ * При старте бины {@code IBotCommand} и методы {@link TgCommand} раскладываются в префиксное дерево символов
+ * по именам и псевдонимам. Текст {@code /команда@бот аргументы} разбирается за один проход по дереву без
+ * создания объектов, пока команда не найдена: строки не режутся, упоминание бота сравнивается на месте.
+ * Аргументы выделяются только при обращении к {@link TgCommandArgs}. Команда с заданным исполнителем
+ * выполняется в нем и не задерживает остальные обновления чата, подтверждение обновления при этом
+ * откладывается до ее завершения. Пока команда выполняется, граница сохраненного смещения стоит на ней,
+ * поэтому долгие команды ограничены telegram.bot.checkpoint.ack-timeout.
+ * <p>
+ * Обновления, пришедшие до построения дерева, ждут его завершения.
+ */
+public class TgCommandRouter implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(TgCommandRouter.class);
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(void.class, TgBotApi.class, Update.class,
+        TgCommandArgs.class);
+    private static final MethodHandle PROCESS_MESSAGE;
+    private static final MethodHandle MESSAGE_PARAMETER;
+    private static final MethodHandle USER_PARAMETER;
+    private static final MethodHandle CHAT_PARAMETER;
+    private static final MethodHandle ARGUMENTS_PARAMETER;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            PROCESS_MESSAGE = lookup.findVirtual(IBotCommand.class, "processMessage",
+                MethodType.methodType(void.class, AbsSender.class, Message.class, String[].class));
+            MESSAGE_PARAMETER = lookup.findVirtual(Update.class, "getMessage", MethodType.methodType(Message.class));
+            USER_PARAMETER = MethodHandles.filterArguments(
+                lookup.findVirtual(Message.class, "getFrom", MethodType.methodType(User.class)), 0, MESSAGE_PARAMETER);
+            CHAT_PARAMETER = MethodHandles.filterArguments(
+                lookup.findVirtual(Message.class, "getChat", MethodType.methodType(Chat.class)), 0, MESSAGE_PARAMETER);
+            ARGUMENTS_PARAMETER = lookup.findVirtual(TgCommandArgs.class, "toArray",
+                MethodType.methodType(String[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final ListableBeanFactory beanFactory;
+    private final CountDownLatch initialized = new CountDownLatch(1);
+    private volatile CharTrie<Commands> root;
+
+    /**
+     * Роутер, который соберет команды из бинов контекста после создания всех синглтонов
+     */
+    public TgCommandRouter(ListableBeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    /**
+     * Роутер с командами из переданных объектов, без контекста Spring
+     */
+    public static TgCommandRouter of(Object... commandBeans) {
+        return of(Map.of(), commandBeans);
+    }
+
+    /**
+     * Роутер с командами из переданных объектов, без контекста Spring
+     *
+     * @param executors исполнители команд по именам из {@link TgCommand#executor()}
+     */
+    public static TgCommandRouter of(Map<String, ? extends Executor> executors, Object... commandBeans) {
+        TgCommandRouter router = new TgCommandRouter(null);
+        router.build(Arrays.asList(commandBeans), name -> {
+            Executor executor = executors.get(name);
+            if (executor == null) {
+                throw new IllegalStateException("Не найден исполнитель команд " + name);
+            }
+
+            return executor;
+        });
+
+        return router;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        List<Object> commandBeans = new ArrayList<>();
+        for (String beanName : beanFactory.getBeanDefinitionNames()) {
+            Class<?> beanType = beanFactory.getType(beanName, false);
+            if (beanType != null && isCommandBean(ClassUtils.getUserClass(beanType))) {
+                commandBeans.add(beanFactory.getBean(beanName));
+            }
+        }
+
+        build(commandBeans, name -> beanFactory.getBean(name, Executor.class));
+    }
+
+    /**
+     * Выполняет команду из текста сообщения
+     *
+     * @return true, если команда найдена. false для обычных сообщений, неизвестных команд и команд,
+     * адресованных другому боту
+     */
+    public boolean route(TgBotApi botApi, Update update) {
+        Message message = update.hasMessage() ? update.getMessage() : null;
+        String text = message != null ? message.getText() : null;
+        Match match = match(text, botApi.getBotUsername());
+        if (match == null) {
+            return false;
+        }
+
+        execute(match, botApi, update);
+
+        return true;
+    }
+
+    /**
+     * Вариант {@link #route(TgBotApi, Update)} для ленивых обновлений. Полное {@link Update} строится,
+     * только если команда найдена
+     */
+    public boolean route(TgBotApi botApi, RawUpdate update) {
+        if (!"message".equals(update.type())) {
+            return false;
+        }
+
+        Match match = match(update.text(), botApi.getBotUsername());
+        if (match == null) {
+            return false;
+        }
+
+        execute(match, botApi, update.update());
+
+        return true;
+    }
+
+    /**
+     * Разбирает {@code /команда@бот аргументы}. Объекты создаются, только если команда найдена
+     */
+    private Match match(String text, String botUsername) {
+        if (text == null || text.length() < 2 || text.charAt(0) != '/') {
+            return null;
+        }
+
+        CharTrie<Commands> node = awaitRoot();
+        Command prefixCommand = null;
+        int prefixEnd = 0;
+        int length = text.length();
+        int nameEnd = 1;
+        for (; nameEnd < length; nameEnd++) {
+            char c = text.charAt(nameEnd);
+            if (c == '@' || Character.isWhitespace(c)) {
+                break;
+            }
+            if (node != null) {
+                node = node.child(c);
+                if (node != null && node.value() != null && node.value().prefix() != null) {
+                    prefixCommand = node.value().prefix();
+                    prefixEnd = nameEnd + 1;
+                }
+            }
+            if (node == null && prefixCommand == null) {
+                return null;
+            }
+        }
+
+        Command command = node != null && node.value() != null ? node.value().exact() : null;
+        if (command == null && prefixCommand == null || nameEnd == 1) {
+            return null;
+        }
+
+        int argsStart = nameEnd;
+        if (nameEnd < length && text.charAt(nameEnd) == '@') {
+            int mentionEnd = nameEnd + 1;
+            while (mentionEnd < length && !Character.isWhitespace(text.charAt(mentionEnd))) {
+                mentionEnd++;
+            }
+            if (botUsername == null || mentionEnd - nameEnd - 1 != botUsername.length()
+                || !text.regionMatches(true, nameEnd + 1, botUsername, 0, botUsername.length())) {
+                return null;
+            }
+            argsStart = mentionEnd;
+        }
+        while (argsStart < length && Character.isWhitespace(text.charAt(argsStart))) {
+            argsStart++;
+        }
+
+        if (command != null) {
+            return new Match(command, new TgCommandArgs(text, argsStart, ""));
+        }
+
+        return new Match(prefixCommand, new TgCommandArgs(text, argsStart, text.substring(prefixEnd, nameEnd)));
+    }
+
+    private static void execute(Match match, TgBotApi botApi, Update update) {
+        Command command = match.command();
+        if (command.executor() == null) {
+            command.invoke(botApi, update, match.args());
+            return;
+        }
+
+        UpdateAcks.AckHandle ack = UpdateAcks.defer();
+        try {
+            command.executor().execute(() -> {
+                try {
+                    command.invoke(botApi, update, match.args());
+                } catch (RuntimeException | Error e) {
+                    log.error("Ошибка выполнения команды /{}", command.name(), e);
+                } finally {
+                    ack.ack();
+                }
+            });
+        } catch (RuntimeException e) {
+            ack.ack();
+            throw e;
+        }
+    }
+
+    private CharTrie<Commands> awaitRoot() {
+        CharTrie<Commands> current = root;
+        if (current != null) {
+            return current;
+        }
+
+        try {
+            initialized.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        return root;
+    }
+
+    private void build(List<Object> commandBeans, Function<String, Executor> executors) {
+        CharTrie<Commands> tree = new CharTrie<>();
+        int count = 0;
+
+        for (Object bean : commandBeans) {
+            Class<?> userClass = ClassUtils.getUserClass(bean.getClass());
+            if (bean instanceof IBotCommand botCommand) {
+                TgCommand annotation = AnnotatedElementUtils.findMergedAnnotation(userClass, TgCommand.class);
+                List<String> names = new ArrayList<>();
+                names.add(botCommand.getCommandIdentifier());
+                Executor executor = null;
+                boolean prefix = false;
+                if (annotation != null) {
+                    names.addAll(Arrays.asList(annotation.value()));
+                    executor = executor(annotation, executors);
+                    prefix = annotation.prefix();
+                }
+
+                MethodHandle invoker = invoker(PROCESS_MESSAGE.bindTo(botCommand),
+                    new Class<?>[]{AbsSender.class, Message.class, String[].class}, userClass.getName());
+                add(tree, names, prefix, new Command(names.get(0), invoker, executor));
+                count++;
+            }
+
+            for (Method method : userClass.getMethods()) {
+                TgCommand annotation = AnnotatedElementUtils.findMergedAnnotation(method, TgCommand.class);
+                if (annotation == null) {
+                    continue;
+                }
+                if (annotation.value().length == 0) {
+                    throw new IllegalStateException("Не задано имя команды " + method);
+                }
+
+                MethodHandle target = MethodInvokers.bind(bean,
+                    AopUtils.selectInvocableMethod(method, bean.getClass()));
+
+                List<String> names = Arrays.asList(annotation.value());
+                MethodHandle invoker = invoker(target, method.getParameterTypes(), method.toString());
+                add(tree, names, annotation.prefix(), new Command(names.get(0), invoker,
+                    executor(annotation, executors)));
+                count++;
+            }
+        }
+
+        root = tree;
+        initialized.countDown();
+        log.info("Зарегистрировано команд: {}", count);
+    }
+
+    private static void add(CharTrie<Commands> tree, List<String> names, boolean prefix, Command command) {
+        for (String name : names) {
+            String normalized = name.startsWith("/") ? name.substring(1) : name;
+            if (normalized.isEmpty()) {
+                throw new IllegalStateException("Пустое имя команды " + command.name());
+            }
+
+            CharTrie<Commands> node = tree.descend(normalized);
+            Commands commands = node.value() != null ? node.value() : new Commands(null, null);
+            if ((prefix ? commands.prefix() : commands.exact()) != null) {
+                throw new IllegalStateException("Команда /" + normalized + " объявлена несколько раз");
+            }
+            node.value(prefix ? new Commands(commands.exact(), command) : new Commands(command, commands.prefix()));
+        }
+    }
+
+    private static Executor executor(TgCommand annotation, Function<String, Executor> executors) {
+        return annotation.executor().isEmpty() ? null : executors.apply(annotation.executor());
+    }
+
+    private static boolean isCommandBean(Class<?> type) {
+        if (IBotCommand.class.isAssignableFrom(type)) {
+            return true;
+        }
+        for (Method method : type.getMethods()) {
+            if (AnnotatedElementUtils.hasAnnotation(method, TgCommand.class)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Приводит обработчик к виду (TgBotApi, Update, TgCommandArgs)void. Кроме бота, обновления и аргументов
+     * команда может принимать сообщение, его автора, чат или аргументы массивом строк
+     */
+    private static MethodHandle invoker(MethodHandle target, Class<?>[] parameterTypes, String source) {
+        return MethodInvokers.adapt(target, parameterTypes, INVOKER_TYPE, parameterType -> {
+            if (parameterType == Message.class) {
+                return MESSAGE_PARAMETER;
+            }
+            if (parameterType == User.class) {
+                return USER_PARAMETER;
+            }
+            if (parameterType == Chat.class) {
+                return CHAT_PARAMETER;
+            }
+            if (parameterType == String[].class) {
+                return ARGUMENTS_PARAMETER;
+            }
+
+            return null;
+        }, "команде " + source);
+    }
+
+    private record Match(Command command, TgCommandArgs args) {
+    }
+
+    private record Command(String name, MethodHandle invoker, Executor executor) {
+
+        void invoke(TgBotApi botApi, Update update, TgCommandArgs args) {
+            try {
+                invoker.invokeExact(botApi, update, args);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new UndeclaredThrowableException(e, "Команда /" + name + " выбросила исключение");
+            }
+        }
+    }
+
+    /**
+     * Команды узла дерева имен: вызываемая по точному имени и по префиксу
+     */
+    private record Commands(Command exact, Command prefix) {
+    }
+}
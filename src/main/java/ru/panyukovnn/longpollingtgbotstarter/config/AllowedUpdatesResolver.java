@@ -0,0 +1,174 @@
+package ru.panyukovnn.longpollingtgbotstarter.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.PayloadApplicationEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.util.ClassUtils;
+import org.telegram.telegrambots.extensions.bots.commandbot.commands.IBotCommand;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import ru.panyukovnn.longpollingtgbotstarter.command.TgCommand;
+import ru.panyukovnn.longpollingtgbotstarter.event.BotRawUpdateEvent;
+import ru.panyukovnn.longpollingtgbotstarter.event.BotUpdateEvent;
+import ru.panyukovnn.longpollingtgbotstarter.event.RawUpdateBatchEvent;
+import ru.panyukovnn.longpollingtgbotstarter.event.TgUpdateTypes;
+import ru.panyukovnn.longpollingtgbotstarter.event.UpdateBatchEvent;
+import ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdate;
+import ru.panyukovnn.longpollingtgbotstarter.router.TgHandler;
+import ru.panyukovnn.longpollingtgbotstarter.router.TgUpdateRouter;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Определяет allowed_updates для getUpdates по слушателям обновлений, зарегистрированным в контексте
+ * <p>
+ * Учитываются методы {@link EventListener}, принимающие {@link Update}, {@link RawUpdate}, их пачки или
+ * события нескольких ботов {@link BotUpdateEvent}, в том числе непубличные, бины {@link ApplicationListener},
+ * в чье событие может попасть обновление, обработчики {@link TgHandler} и команды. Типы обновлений слушателя
+ * берутся из {@link TgUpdateTypes}, обработчика - из его type и префиксов; команды требуют тип message.
+ * Если хотя бы один слушатель не объявил свои типы, сузить список нельзя и используется набор Telegram
+ * по умолчанию. Бины не создаются: анализируются только их классы.
+ */
+public final class AllowedUpdatesResolver {
+
+    private static final Logger log = LoggerFactory.getLogger(AllowedUpdatesResolver.class);
+
+    public static final String MESSAGE = "message";
+
+    private AllowedUpdatesResolver() {
+    }
+
+    /**
+     * @return список типов обновлений или пустой список, если его нельзя определить
+     */
+    public static List<String> resolve(ListableBeanFactory beanFactory) {
+        Set<String> allowedUpdates = new LinkedHashSet<>();
+
+        for (String beanName : beanFactory.getBeanDefinitionNames()) {
+            Class<?> beanType = beanFactory.getType(beanName, false);
+            if (beanType == null) {
+                continue;
+            }
+
+            Class<?> userClass = ClassUtils.getUserClass(beanType);
+            if (IBotCommand.class.isAssignableFrom(userClass) || hasCommandMethods(userClass)) {
+                allowedUpdates.add(MESSAGE);
+            }
+
+            if (isUpdateApplicationListener(userClass)) {
+                TgUpdateTypes types = AnnotatedElementUtils.findMergedAnnotation(userClass, TgUpdateTypes.class);
+                if (types == null) {
+                    log.info("Слушатель {} не объявил типы обновлений через @TgUpdateTypes, "
+                        + "allowed_updates не будет ограничен", userClass.getSimpleName());
+
+                    return List.of();
+                }
+
+                allowedUpdates.addAll(Arrays.asList(types.value()));
+            }
+
+            for (Method method : methods(userClass)) {
+                TgHandler handler = AnnotatedElementUtils.findMergedAnnotation(method, TgHandler.class);
+                if (handler != null) {
+                    Set<String> handledTypes = TgUpdateRouter.handledTypes(handler);
+                    if (handledTypes.isEmpty()) {
+                        log.info("Обработчик {}.{} получает обновления любого типа, allowed_updates не будет ограничен",
+                            userClass.getSimpleName(), method.getName());
+
+                        return List.of();
+                    }
+                    allowedUpdates.addAll(handledTypes);
+                }
+
+                if (!isUpdateListener(method)) {
+                    continue;
+                }
+
+                TgUpdateTypes types = AnnotatedElementUtils.findMergedAnnotation(method, TgUpdateTypes.class);
+                if (types == null) {
+                    types = AnnotatedElementUtils.findMergedAnnotation(userClass, TgUpdateTypes.class);
+                }
+                if (types == null) {
+                    log.info("Слушатель {}.{} не объявил типы обновлений через @TgUpdateTypes, "
+                        + "allowed_updates не будет ограничен", userClass.getSimpleName(), method.getName());
+
+                    return List.of();
+                }
+
+                allowedUpdates.addAll(Arrays.asList(types.value()));
+            }
+        }
+
+        return new ArrayList<>(allowedUpdates);
+    }
+
+    /**
+     * Все методы класса, включая непубличные и унаследованные: Spring регистрирует {@link EventListener}
+     * на любом из них
+     */
+    private static Set<Method> methods(Class<?> type) {
+        return MethodIntrospector.selectMethods(type, (Method method) -> method.getDeclaringClass() != Object.class);
+    }
+
+    private static boolean hasCommandMethods(Class<?> type) {
+        return !MethodIntrospector.selectMethods(type,
+            (Method method) -> AnnotatedElementUtils.hasAnnotation(method, TgCommand.class)).isEmpty();
+    }
+
+    /**
+     * Проверяет, может ли в событие слушателя попасть обновление. Обновления публикуются как
+     * {@link PayloadApplicationEvent}, поэтому подходят слушатели любого его предка, например
+     * {@link ApplicationEvent}, и слушатели {@link PayloadApplicationEvent} с подходящим типом содержимого
+     */
+    private static boolean isUpdateApplicationListener(Class<?> type) {
+        if (!ApplicationListener.class.isAssignableFrom(type)) {
+            return false;
+        }
+
+        ResolvableType eventType = ResolvableType.forClass(type).as(ApplicationListener.class).getGeneric();
+        Class<?> eventClass = eventType.resolve(ApplicationEvent.class);
+        if (!eventClass.isAssignableFrom(PayloadApplicationEvent.class)) {
+            return false;
+        }
+        if (eventClass != PayloadApplicationEvent.class) {
+            return true;
+        }
+
+        return canHoldUpdate(eventType.as(PayloadApplicationEvent.class).getGeneric().resolve(Object.class));
+    }
+
+    private static boolean isUpdateListener(Method method) {
+        EventListener eventListener = AnnotatedElementUtils.findMergedAnnotation(method, EventListener.class);
+        if (eventListener == null) {
+            return false;
+        }
+
+        List<Class<?>> eventTypes = new ArrayList<>(Arrays.asList(eventListener.classes()));
+        eventTypes.addAll(Arrays.asList(eventListener.value()));
+        if (eventTypes.isEmpty()) {
+            eventTypes.addAll(Arrays.asList(method.getParameterTypes()));
+        }
+
+        return eventTypes.stream().anyMatch(AllowedUpdatesResolver::canHoldUpdate);
+    }
+
+    private static boolean canHoldUpdate(Class<?> type) {
+        return type.isAssignableFrom(Update.class)
+            || type.isAssignableFrom(UpdateBatchEvent.class)
+            || type.isAssignableFrom(RawUpdate.class)
+            || type.isAssignableFrom(RawUpdateBatchEvent.class)
+            || type.isAssignableFrom(BotUpdateEvent.class)
+            || type.isAssignableFrom(BotRawUpdateEvent.class);
+    }
+}
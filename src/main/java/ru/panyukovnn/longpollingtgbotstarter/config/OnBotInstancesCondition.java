@@ -0,0 +1,41 @@
+package ru.panyukovnn.longpollingtgbotstarter.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import ru.panyukovnn.longpollingtgbotstarter.property.TgBotProperties;
+
+import java.util.Map;
+
+/**
+ * Выполняется, если боты заданы в telegram.bot.instances.*
+ */
+public class OnBotInstancesCondition extends SpringBootCondition {
+
+    static final String INSTANCES_PROPERTY = "telegram.bot.instances";
+
+    @Override
+    public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        return hasInstances(context.getEnvironment())
+            ? ConditionOutcome.match("Заданы боты " + INSTANCES_PROPERTY)
+            : ConditionOutcome.noMatch("Не заданы боты " + INSTANCES_PROPERTY);
+    }
+
+    static boolean hasInstances(Environment environment) {
+        return !bindInstances(environment).isEmpty();
+    }
+
+    /**
+     * Боты из telegram.bot.instances.* в порядке объявления. Нужны до создания бина {@link TgBotProperties},
+     * поэтому читаются из окружения напрямую
+     */
+    static Map<String, TgBotProperties.Instance> bindInstances(Environment environment) {
+        return Binder.get(environment)
+            .bind(INSTANCES_PROPERTY, Bindable.mapOf(String.class, TgBotProperties.Instance.class))
+            .orElseGet(Map::of);
+    }
+}
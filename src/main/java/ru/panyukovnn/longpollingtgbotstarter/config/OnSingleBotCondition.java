@@ -0,0 +1,19 @@
+package ru.panyukovnn.longpollingtgbotstarter.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+/**
+ * Выполняется, если бот задан свойствами telegram.bot.name и telegram.bot.token, а telegram.bot.instances.* пуст
+ */
+public class OnSingleBotCondition extends SpringBootCondition {
+
+    @Override
+    public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        return OnBotInstancesCondition.hasInstances(context.getEnvironment())
+            ? ConditionOutcome.noMatch("Заданы боты " + OnBotInstancesCondition.INSTANCES_PROPERTY)
+            : ConditionOutcome.match("Один бот");
+    }
+}
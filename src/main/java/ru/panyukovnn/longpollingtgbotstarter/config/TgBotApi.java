@@ -1,20 +1,80 @@
 package ru.panyukovnn.longpollingtgbotstarter.config;
 
 import org.springframework.context.ApplicationEventPublisher;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.extensions.bots.commandbot.TelegramLongPollingCommandBot;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import ru.panyukovnn.longpollingtgbotstarter.checkpoint.AckWatermark;
+import ru.panyukovnn.longpollingtgbotstarter.checkpoint.UpdateAcks;
+import ru.panyukovnn.longpollingtgbotstarter.command.TgCommandRouter;
+import ru.panyukovnn.longpollingtgbotstarter.dedup.UpdateDeduplicator;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.DirectUpdateDispatcher;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.InboundBuffer;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.UpdateDispatcher;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.UpdateKeys;
+import ru.panyukovnn.longpollingtgbotstarter.event.BotRawUpdateEvent;
+import ru.panyukovnn.longpollingtgbotstarter.event.BotUpdateEvent;
+import ru.panyukovnn.longpollingtgbotstarter.event.RawUpdateBatchEvent;
+import ru.panyukovnn.longpollingtgbotstarter.event.UpdateBatchEvent;
+import ru.panyukovnn.longpollingtgbotstarter.metrics.TgBotMetrics;
+import ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdate;
+import ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdatesReceiver;
+import ru.panyukovnn.longpollingtgbotstarter.router.TgHandler;
+import ru.panyukovnn.longpollingtgbotstarter.router.TgUpdateRouter;
 
-public class TgBotApi extends TelegramLongPollingCommandBot {
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+public class TgBotApi extends TelegramLongPollingCommandBot implements RawUpdatesReceiver {
 
     private final ApplicationEventPublisher eventPublisher;
     private final String username;
     private final String token;
+    private final UpdateDispatcher updateDispatcher;
+    private final boolean publishBatchEvents;
+    private final boolean publishUpdateEvents;
+    private final String botId;
+    private final AckWatermark ackWatermark;
+    private final TgBotMetrics metrics;
+    private final InboundBuffer inboundBuffer;
+    private final UpdateDeduplicator deduplicator;
+    private final TgUpdateRouter router;
+    private final TgCommandRouter commandRouter;
+    private final ThreadLocal<RawUpdate> currentRawUpdate = new ThreadLocal<>();
 
     public TgBotApi(ApplicationEventPublisher eventPublisher, String username, String token) {
-        super();
-        this.eventPublisher = eventPublisher;
-        this.username = username;
-        this.token = token;
+        this(builder(eventPublisher, username, token));
+    }
+
+    private TgBotApi(Builder builder) {
+        super(builder.botOptions);
+        this.eventPublisher = builder.eventPublisher;
+        this.username = builder.username;
+        this.token = builder.token;
+        this.updateDispatcher = builder.updateDispatcher;
+        this.publishBatchEvents = builder.publishBatchEvents;
+        this.publishUpdateEvents = builder.publishUpdateEvents;
+        this.botId = builder.botId;
+        this.ackWatermark = builder.ackWatermark;
+        this.metrics = builder.metrics;
+        this.inboundBuffer = builder.inboundBuffer;
+        this.deduplicator = builder.deduplicator;
+        this.router = builder.router;
+        this.commandRouter = builder.commandRouter;
+
+        if (inboundBuffer != null) {
+            metrics.inboundBuffer(inboundBuffer);
+        }
+    }
+
+    /**
+     * Бот, параметры которого не заданы в {@link Builder}, работает так же, как
+     * {@link #TgBotApi(ApplicationEventPublisher, String, String)}
+     */
+    public static Builder builder(ApplicationEventPublisher eventPublisher, String username, String token) {
+        return new Builder(eventPublisher, username, token);
     }
 
     @Override
@@ -27,8 +87,341 @@ public class TgBotApi extends TelegramLongPollingCommandBot {
         return this.token;
     }
 
+    /**
+     * @return идентификатор бота из telegram.bot.instances или null, если бот один
+     */
+    public String getBotId() {
+        return this.botId;
+    }
+
+    /**
+     * @return буфер входящих обновлений или null, если количество необработанных обновлений не ограничено
+     */
+    public InboundBuffer getInboundBuffer() {
+        return this.inboundBuffer;
+    }
+
+    /**
+     * Передает каждое обновление из ответа getUpdates в {@link UpdateDispatcher}. Обработка команд и публикация
+     * событий выполняются уже в потоке диспетчера
+     */
+    @Override
+    public void onUpdatesReceived(List<Update> received) {
+        List<Update> updates = withoutDuplicates(received, Update::getUpdateId);
+        if (publishBatchEvents && !updates.isEmpty()) {
+            eventPublisher.publishEvent(new UpdateBatchEvent(botId, updates));
+        }
+
+        for (Update update : updates) {
+            Runnable task = timed(update);
+            if (inboundBuffer != null) {
+                task = inboundBuffer.admit(UpdateKeys.chatKey(update), UpdateKeys.type(update), task);
+                if (task == null) {
+                    skip(update.getUpdateId());
+                    continue;
+                }
+            }
+            submit(update.getUpdateId(), task, command -> updateDispatcher.dispatch(update, command));
+            markSeen(update.getUpdateId());
+        }
+    }
+
+    /**
+     * Ленивый вариант {@link #onUpdatesReceived}: обновления публикуются как {@link RawUpdate}. Полное
+     * {@link Update} строится только для сообщений, похожих на команду, чтобы передать их обработчику команд
+     */
+    @Override
+    public void onRawUpdatesReceived(List<RawUpdate> received) {
+        List<RawUpdate> updates = withoutDuplicates(received, RawUpdate::updateId);
+        if (publishBatchEvents && !updates.isEmpty()) {
+            eventPublisher.publishEvent(new RawUpdateBatchEvent(botId, updates));
+        }
+
+        for (RawUpdate update : updates) {
+            Runnable task = timed(update);
+            if (inboundBuffer != null) {
+                task = inboundBuffer.admit(update.chatKey(), update.type(), task);
+                if (task == null) {
+                    skip(update.updateId());
+                    continue;
+                }
+            }
+            submit(update.updateId(), task, command -> updateDispatcher.execute(update.chatKey(), command));
+            markSeen(update.updateId());
+        }
+    }
+
+    /**
+     * Убирает обновления, которые уже были приняты в обработку. Новый список создается, только если повтор
+     * найден. Сами обновления запоминаются {@link #markSeen} после того, как задача принята: если передача
+     * пачки прервется исключением, непринятые обновления будут обработаны при повторном запросе
+     */
+    private <T> List<T> withoutDuplicates(List<T> updates, ToIntFunction<T> updateId) {
+        if (deduplicator == null) {
+            return updates;
+        }
+
+        List<T> fresh = null;
+        for (int i = 0; i < updates.size(); i++) {
+            T update = updates.get(i);
+            if (!deduplicator.isDuplicate(updateId.applyAsInt(update))) {
+                if (fresh != null) {
+                    fresh.add(update);
+                }
+            } else {
+                metrics.duplicateUpdate();
+                if (fresh == null) {
+                    fresh = new ArrayList<>(updates.subList(0, i));
+                }
+            }
+        }
+
+        return fresh != null ? fresh : updates;
+    }
+
+    private void markSeen(int updateId) {
+        if (deduplicator != null) {
+            deduplicator.markSeen(updateId);
+        }
+    }
+
+    /**
+     * Передает задачу диспетчеру, при включенном сохранении смещения - с подтверждением после выполнения.
+     * Если диспетчер отклонил задачу, освобождает ее место в буфере входящих обновлений
+     */
+    private void submit(int updateId, Runnable task, Consumer<Runnable> executor) {
+        try {
+            if (ackWatermark != null) {
+                ackWatermark.submit(updateId, task, executor);
+            } else {
+                executor.accept(task);
+            }
+        } catch (RuntimeException e) {
+            if (task instanceof InboundBuffer.Entry entry) {
+                entry.cancel();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Отмечает обновление, отброшенное буфером входящих обновлений, как обработанное: при включенном
+     * сохранении смещения граница сдвигается через него так же, как через обработанное
+     */
+    private void skip(int updateId) {
+        if (ackWatermark != null) {
+            ackWatermark.skip(updateId);
+        }
+        markSeen(updateId);
+    }
+
     @Override
     public void processNonCommandUpdate(Update update) {
-        eventPublisher.publishEvent(update);
+        RawUpdate rawUpdate = currentRawUpdate.get();
+        if (rawUpdate != null) {
+            publishRawUpdate(rawUpdate);
+        } else if ((router == null || !router.route(this, update)) && publishUpdateEvents) {
+            eventPublisher.publishEvent(botId != null ? new BotUpdateEvent(botId, update) : update);
+        }
+    }
+
+    private void onRawUpdateReceived(RawUpdate update) {
+        if (!isCommandCandidate(update)) {
+            publishRawUpdate(update);
+            return;
+        }
+        if (commandRouter != null && commandRouter.route(this, update)) {
+            return;
+        }
+        if (getRegisteredCommands().isEmpty()) {
+            // В CommandRegistry нет команд, строить Update ради него не нужно
+            publishRawUpdate(update);
+            return;
+        }
+
+        // Обработчик команд сам решает, команда ли это, а не-команды возвращает в processNonCommandUpdate
+        currentRawUpdate.set(update);
+        try {
+            onUpdateReceived(update.update());
+        } finally {
+            currentRawUpdate.remove();
+        }
+    }
+
+    private void handle(Update update) {
+        if (commandRouter == null || !commandRouter.route(this, update)) {
+            onUpdateReceived(update);
+        }
+    }
+
+    private Runnable timed(Update update) {
+        if (metrics == TgBotMetrics.NOOP) {
+            return () -> handle(update);
+        }
+
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                handle(update);
+            } finally {
+                metrics.updateHandled(UpdateKeys.type(update), UpdateKeys.date(update), System.nanoTime() - start);
+            }
+        };
+    }
+
+    private Runnable timed(RawUpdate update) {
+        if (metrics == TgBotMetrics.NOOP) {
+            return () -> onRawUpdateReceived(update);
+        }
+
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                onRawUpdateReceived(update);
+            } finally {
+                metrics.updateHandled(update.type(), update.date(), System.nanoTime() - start);
+            }
+        };
+    }
+
+    private void publishRawUpdate(RawUpdate update) {
+        if (router != null && router.route(this, update) || !publishUpdateEvents) {
+            return;
+        }
+
+        eventPublisher.publishEvent(botId != null ? new BotRawUpdateEvent(botId, update) : update);
+    }
+
+    private static boolean isCommandCandidate(RawUpdate update) {
+        String text = update.text();
+
+        return "message".equals(update.type()) && text != null && text.startsWith("/");
+    }
+
+    public static final class Builder {
+
+        private final ApplicationEventPublisher eventPublisher;
+        private final String username;
+        private final String token;
+        private UpdateDispatcher updateDispatcher = new DirectUpdateDispatcher();
+        private boolean publishBatchEvents;
+        private boolean publishUpdateEvents = true;
+        private DefaultBotOptions botOptions = new DefaultBotOptions();
+        private String botId;
+        private AckWatermark ackWatermark;
+        private TgBotMetrics metrics = TgBotMetrics.NOOP;
+        private InboundBuffer inboundBuffer;
+        private UpdateDeduplicator deduplicator;
+        private TgUpdateRouter router;
+        private TgCommandRouter commandRouter;
+
+        private Builder(ApplicationEventPublisher eventPublisher, String username, String token) {
+            this.eventPublisher = eventPublisher;
+            this.username = username;
+            this.token = token;
+        }
+
+        /**
+         * @param updateDispatcher определяет, в каком потоке обрабатываются команды и события входящих обновлений
+         */
+        public Builder updateDispatcher(UpdateDispatcher updateDispatcher) {
+            this.updateDispatcher = updateDispatcher;
+            return this;
+        }
+
+        /**
+         * @param publishBatchEvents публиковать ли {@link UpdateBatchEvent} с пачкой обновлений каждого опроса
+         */
+        public Builder publishBatchEvents(boolean publishBatchEvents) {
+            this.publishBatchEvents = publishBatchEvents;
+            return this;
+        }
+
+        /**
+         * @param publishUpdateEvents публиковать ли события отдельных обновлений. false вместе с
+         *                            {@link #publishBatchEvents} оставляет слушателям только пачки, команды и
+         *                            обработчики {@link TgHandler} по-прежнему вызываются для каждого обновления
+         */
+        public Builder publishUpdateEvents(boolean publishUpdateEvents) {
+            this.publishUpdateEvents = publishUpdateEvents;
+            return this;
+        }
+
+        /**
+         * @param botOptions параметры long polling: limit, timeout, allowed_updates и количество потоков отправки
+         */
+        public Builder botOptions(DefaultBotOptions botOptions) {
+            this.botOptions = botOptions;
+            return this;
+        }
+
+        /**
+         * @param botId идентификатор бота из telegram.bot.instances. Если задан, обновления публикуются как
+         *              {@link BotUpdateEvent} и {@link BotRawUpdateEvent}, чтобы слушатели различали ботов
+         */
+        public Builder botId(String botId) {
+            this.botId = botId;
+            return this;
+        }
+
+        /**
+         * @param ackWatermark граница обработанных обновлений. Если задана, каждое обновление подтверждается
+         *                     после завершения обработчика, а отложить подтверждение можно через
+         *                     {@link UpdateAcks#defer()}
+         */
+        public Builder ackWatermark(AckWatermark ackWatermark) {
+            this.ackWatermark = ackWatermark;
+            return this;
+        }
+
+        /**
+         * @param metrics метрики задержки и времени обработки обновлений
+         */
+        public Builder metrics(TgBotMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @param inboundBuffer ограничение количества необработанных обновлений или null, если оно не нужно
+         */
+        public Builder inboundBuffer(InboundBuffer inboundBuffer) {
+            this.inboundBuffer = inboundBuffer;
+            return this;
+        }
+
+        /**
+         * @param deduplicator отсеивает повторно полученные обновления до публикации событий и обработки команд
+         *                     или null, если повторы не отсеиваются
+         */
+        public Builder deduplicator(UpdateDeduplicator deduplicator) {
+            this.deduplicator = deduplicator;
+            return this;
+        }
+
+        /**
+         * @param router выбирает обработчики {@link TgHandler} для обновлений, не являющихся командами. Событие
+         *               публикуется, только если ни один обработчик не подошел. null - обновления только
+         *               публикуются
+         */
+        public Builder router(TgUpdateRouter router) {
+            this.router = router;
+            return this;
+        }
+
+        /**
+         * @param commandRouter выполняет команды бинов {@code IBotCommand} и методов
+         *                      {@link ru.panyukovnn.longpollingtgbotstarter.command.TgCommand}. Команды, которые
+         *                      он не нашел, передаются в {@code CommandRegistry} telegrambots. null - только
+         *                      CommandRegistry
+         */
+        public Builder commandRouter(TgCommandRouter commandRouter) {
+            this.commandRouter = commandRouter;
+            return this;
+        }
+
+        public TgBotApi build() {
+            return new TgBotApi(this);
+        }
     }
 }
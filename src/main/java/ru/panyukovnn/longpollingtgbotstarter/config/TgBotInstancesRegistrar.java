@@ -0,0 +1,96 @@
+package ru.panyukovnn.longpollingtgbotstarter.config;
+
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.AnnotationMetadata;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import ru.panyukovnn.longpollingtgbotstarter.property.TgBotProperties;
+import ru.panyukovnn.longpollingtgbotstarter.service.TgSender;
+import ru.panyukovnn.longpollingtgbotstarter.transport.TgPollingSession;
+import ru.panyukovnn.longpollingtgbotstarter.transport.TgTransport;
+import ru.panyukovnn.longpollingtgbotstarter.transport.TransportType;
+
+import java.util.Map;
+
+/**
+ * Регистрирует бины каждого бота из telegram.bot.instances.*. Сами объекты создает {@link TgBots}
+ */
+public class TgBotInstancesRegistrar implements ImportBeanDefinitionRegistrar, EnvironmentAware {
+
+    public static final String TG_HTTP_CONNECTION_POOL = "tgHttpConnectionPool";
+
+    private Environment environment;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void registerBeanDefinitions(AnnotationMetadata importingClassMetadata, BeanDefinitionRegistry registry) {
+        BeanFactory beanFactory = (BeanFactory) registry;
+        TransportType transportType = Binder.get(environment)
+            .bind("telegram.bot.transport.type", TransportType.class)
+            .orElse(TransportType.TELEGRAMBOTS);
+
+        for (Map.Entry<String, TgBotProperties.Instance> entry : OnBotInstancesCondition.bindInstances(environment).entrySet()) {
+            String botId = entry.getKey();
+            boolean primary = entry.getValue().isPrimary();
+
+            String botApiName = TgBots.botApiBeanName(botId);
+            RootBeanDefinition botApi = new RootBeanDefinition(TgBotApi.class,
+                () -> create(botApiName, () -> tgBots(beanFactory).createBotApi(botId)));
+            botApi.setPrimary(primary);
+            registry.registerBeanDefinition(botApiName, botApi);
+
+            String transportName = TgBots.transportBeanName(botId);
+            RootBeanDefinition transport = new RootBeanDefinition(TgTransport.class,
+                () -> tgBots(beanFactory).createTransport(botId));
+            transport.setPrimary(primary);
+            transport.setDestroyMethodName(AbstractBeanDefinition.INFER_METHOD);
+            transport.setDependsOn(transportType == TransportType.JDK ? TG_HTTP_CONNECTION_POOL : botApiName);
+            registry.registerBeanDefinition(transportName, transport);
+
+            if (transportType == TransportType.JDK) {
+                String sessionName = TgBots.pollingSessionBeanName(botId);
+                RootBeanDefinition session = new RootBeanDefinition(TgPollingSession.class,
+                    () -> create(sessionName, () -> tgBots(beanFactory).createPollingSession(botId)));
+                session.setDestroyMethodName("stop");
+                session.setDependsOn(botApiName, transportName);
+                registry.registerBeanDefinition(sessionName, session);
+            }
+
+            RootBeanDefinition sender = new RootBeanDefinition(TgSender.class,
+                () -> tgBots(beanFactory).createSender(botId));
+            sender.setPrimary(primary);
+            sender.setDestroyMethodName("close");
+            sender.setDependsOn(transportName);
+            registry.registerBeanDefinition(TgBots.senderBeanName(botId), sender);
+        }
+    }
+
+    private static TgBots tgBots(BeanFactory beanFactory) {
+        return beanFactory.getBean(TgBots.class);
+    }
+
+    private static <T> T create(String beanName, BotFactory<T> factory) {
+        try {
+            return factory.create();
+        } catch (TelegramApiException e) {
+            throw new BeanCreationException(beanName, "Не удалось запустить бота: " + e.getMessage(), e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface BotFactory<T> {
+
+        T create() throws TelegramApiException;
+    }
+}
@@ -0,0 +1,35 @@
+package ru.panyukovnn.longpollingtgbotstarter.config;
+
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import ru.panyukovnn.longpollingtgbotstarter.property.TgBotProperties;
+
+import java.util.List;
+
+/**
+ * Собирает параметры getUpdates бота из telegram.bot.polling.*
+ */
+public final class TgBotOptions {
+
+    private TgBotOptions() {
+    }
+
+    public static DefaultBotOptions from(TgBotProperties botProperties, ListableBeanFactory beanFactory) {
+        TgBotProperties.Polling polling = botProperties.getPolling();
+
+        DefaultBotOptions botOptions = new DefaultBotOptions();
+        botOptions.setBaseUrl(botProperties.getBaseUrl());
+        botOptions.setGetUpdatesLimit(polling.getLimit());
+        botOptions.setGetUpdatesTimeout(polling.getTimeout());
+        botOptions.setMaxThreads(polling.getMaxThreads());
+
+        List<String> allowedUpdates = polling.isAutoAllowedUpdates() && polling.getAllowedUpdates().isEmpty()
+            ? AllowedUpdatesResolver.resolve(beanFactory)
+            : polling.getAllowedUpdates();
+        if (!allowedUpdates.isEmpty()) {
+            botOptions.setAllowedUpdates(allowedUpdates);
+        }
+
+        return botOptions;
+    }
+}
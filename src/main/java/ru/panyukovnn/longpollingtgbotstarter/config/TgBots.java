@@ -0,0 +1,212 @@
+package ru.panyukovnn.longpollingtgbotstarter.config;
+
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
+import ru.panyukovnn.longpollingtgbotstarter.command.TgCommandRouter;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.InboundBuffer;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.UpdateDispatcher;
+import ru.panyukovnn.longpollingtgbotstarter.metrics.TgBotMetrics;
+import ru.panyukovnn.longpollingtgbotstarter.metrics.TgBotMetricsFactory;
+import ru.panyukovnn.longpollingtgbotstarter.property.TgBotProperties;
+import ru.panyukovnn.longpollingtgbotstarter.router.TgUpdateRouter;
+import ru.panyukovnn.longpollingtgbotstarter.service.TgRateLimiter;
+import ru.panyukovnn.longpollingtgbotstarter.service.TgSender;
+import ru.panyukovnn.longpollingtgbotstarter.transport.AbsSenderTgTransport;
+import ru.panyukovnn.longpollingtgbotstarter.transport.JdkHttpConnectionPool;
+import ru.panyukovnn.longpollingtgbotstarter.transport.JdkHttpTgTransport;
+import ru.panyukovnn.longpollingtgbotstarter.transport.TgPollingSession;
+import ru.panyukovnn.longpollingtgbotstarter.transport.TgTransport;
+import ru.panyukovnn.longpollingtgbotstarter.transport.TransportType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Боты из telegram.bot.instances.*
+ * <p>
+ * Для каждого бота регистрируются бины {@code <id>TgBotApi}, {@code <id>TgTransport}, {@code <id>TgSender}
+ * и для транспорта jdk {@code <id>TgPollingSession}. Диспетчер обновлений и ограниченный исполнитель
+ * асинхронной отправки общие. С транспортом jdk общий и {@link JdkHttpConnectionPool}, а потоки опроса
+ * виртуальные, поэтому количество потоков и соединений почти не зависит от количества ботов. С транспортом
+ * telegrambots каждый бот регистрируется в библиотеке со своим потоком опроса, пулом потоков и HTTP клиентом,
+ * и они растут линейно. Ограничитель частоты у каждого бота свой, так как лимиты Telegram действуют на токен.
+ * Метрики бота помечаются тегом bot с его идентификатором. Буфер входящих обновлений из
+ * telegram.bot.dispatch.inbound-capacity у каждого бота свой.
+ * <p>
+ * Журнал исходящих сообщений, отсеивание повторов, сохранение offset и кластерный режим рассчитаны на одного
+ * бота, поэтому вместе с ботами из telegram.bot.instances.* их включать нельзя.
+ */
+public class TgBots {
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final TgBotProperties botProperties;
+    private final UpdateDispatcher updateDispatcher;
+    private final Executor senderExecutor;
+    private final ListableBeanFactory beanFactory;
+    private final TgBotMetricsFactory metricsFactory;
+    private final Map<String, TgBotMetrics> metrics = new ConcurrentHashMap<>();
+
+    public TgBots(ApplicationEventPublisher eventPublisher, TgBotProperties botProperties,
+                  UpdateDispatcher updateDispatcher, Executor senderExecutor, ListableBeanFactory beanFactory) {
+        this(eventPublisher, botProperties, updateDispatcher, senderExecutor, beanFactory, bot -> TgBotMetrics.NOOP);
+    }
+
+    public TgBots(ApplicationEventPublisher eventPublisher, TgBotProperties botProperties,
+                  UpdateDispatcher updateDispatcher, Executor senderExecutor, ListableBeanFactory beanFactory,
+                  TgBotMetricsFactory metricsFactory) {
+        requireSingleBotFeaturesDisabled(botProperties);
+
+        this.eventPublisher = eventPublisher;
+        this.botProperties = botProperties;
+        this.updateDispatcher = updateDispatcher;
+        this.senderExecutor = senderExecutor;
+        this.beanFactory = beanFactory;
+        this.metricsFactory = metricsFactory;
+    }
+
+    /**
+     * Идентификаторы ботов в порядке объявления
+     */
+    public Set<String> getBotIds() {
+        return botProperties.getInstances().keySet();
+    }
+
+    public TgBotApi getBotApi(String botId) {
+        return beanFactory.getBean(botApiBeanName(requireBot(botId)), TgBotApi.class);
+    }
+
+    public TgSender getSender(String botId) {
+        return beanFactory.getBean(senderBeanName(requireBot(botId)), TgSender.class);
+    }
+
+    public static String botApiBeanName(String botId) {
+        return botId + "TgBotApi";
+    }
+
+    public static String transportBeanName(String botId) {
+        return botId + "TgTransport";
+    }
+
+    public static String pollingSessionBeanName(String botId) {
+        return botId + "TgPollingSession";
+    }
+
+    public static String senderBeanName(String botId) {
+        return botId + "TgSender";
+    }
+
+    TgBotApi createBotApi(String botId) throws TelegramApiException {
+        TgBotProperties.Instance instance = instance(botId);
+        TgBotProperties.Dispatch dispatch = botProperties.getDispatch();
+        InboundBuffer inboundBuffer = dispatch.getInboundCapacity() > 0
+            ? new InboundBuffer(dispatch.getInboundCapacity(), dispatch.getOverflowPolicy())
+            : null;
+        TgBotApi botApi = TgBotApi.builder(eventPublisher, instance.getName(), instance.getToken())
+            .updateDispatcher(updateDispatcher)
+            .publishBatchEvents(dispatch.isBatchEvent())
+            .publishUpdateEvents(!dispatch.isBatchEvent() || !dispatch.isBatchOnly())
+            .botOptions(TgBotOptions.from(botProperties, beanFactory))
+            .botId(botId)
+            .metrics(metrics(botId))
+            .inboundBuffer(inboundBuffer)
+            .router(beanFactory.getBeanProvider(TgUpdateRouter.class).getIfAvailable())
+            .commandRouter(beanFactory.getBeanProvider(TgCommandRouter.class).getIfAvailable())
+            .build();
+
+        if (botProperties.getTransport().getType() == TransportType.TELEGRAMBOTS) {
+            new TelegramBotsApi(DefaultBotSession.class).registerBot(botApi);
+        }
+
+        return botApi;
+    }
+
+    TgTransport createTransport(String botId) {
+        TgBotProperties.Transport transport = botProperties.getTransport();
+
+        return switch (transport.getType()) {
+            case TELEGRAMBOTS -> new AbsSenderTgTransport(getBotApi(botId));
+            case JDK -> new JdkHttpTgTransport(beanFactory.getBean(JdkHttpConnectionPool.class),
+                botProperties.getBaseUrl(), instance(botId).getToken(), transport.getRequestTimeout());
+        };
+    }
+
+    TgPollingSession createPollingSession(String botId) throws TelegramApiException {
+        TgBotApi botApi = getBotApi(botId);
+        TgPollingSession session = TgPollingSession.builder(botApi, transport(botId), botApi.getOptions())
+            .lazyUpdates(botProperties.getPolling().isLazyUpdates())
+            .threadFactory(Thread.ofVirtual().factory())
+            .metrics(metrics(botId))
+            .build();
+        session.start();
+
+        return session;
+    }
+
+    TgSender createSender(String botId) {
+        TgBotProperties.RateLimit rateLimit = botProperties.getRateLimit();
+        TgRateLimiter rateLimiter = new TgRateLimiter(rateLimit.getGlobalPerSecond(), rateLimit.getChatPerSecond(),
+            rateLimit.getGroupPerMinute(), rateLimit.getChatBurst());
+
+        TgBotProperties.Sender sender = botProperties.getSender();
+
+        return TgSender.builder(transport(botId))
+            .executor(senderExecutor)
+            .rateLimiter(rateLimiter)
+            .maxRetries(rateLimit.getMaxRetries())
+            .metrics(metrics(botId))
+            .coalesceWindow(sender.getCoalesceWindow())
+            .streamInterval(sender.getStreamInterval())
+            .build();
+    }
+
+    /**
+     * @throws IllegalStateException если включена настройка, которая работает только с одним ботом
+     */
+    private static void requireSingleBotFeaturesDisabled(TgBotProperties botProperties) {
+        List<String> enabled = new ArrayList<>();
+        if (botProperties.getOutbox().isEnabled()) {
+            enabled.add("telegram.bot.outbox.enabled");
+        }
+        if (botProperties.getDedup().isEnabled()) {
+            enabled.add("telegram.bot.dedup.enabled");
+        }
+        if (botProperties.getCheckpoint().isEnabled()) {
+            enabled.add("telegram.bot.checkpoint.enabled");
+        }
+        if (botProperties.getCluster().isEnabled()) {
+            enabled.add("telegram.bot.cluster.enabled");
+        }
+
+        if (!enabled.isEmpty()) {
+            throw new IllegalStateException("Настройки " + String.join(", ", enabled)
+                + " не поддерживаются вместе с telegram.bot.instances");
+        }
+    }
+
+    private TgBotMetrics metrics(String botId) {
+        return metrics.computeIfAbsent(botId, metricsFactory::forBot);
+    }
+
+    private TgTransport transport(String botId) {
+        return beanFactory.getBean(transportBeanName(botId), TgTransport.class);
+    }
+
+    private TgBotProperties.Instance instance(String botId) {
+        return botProperties.getInstances().get(requireBot(botId));
+    }
+
+    private String requireBot(String botId) {
+        if (!botProperties.getInstances().containsKey(botId)) {
+            throw new IllegalArgumentException("Бот '" + botId + "' не задан в telegram.bot.instances");
+        }
+
+        return botId;
+    }
+}
@@ -0,0 +1,152 @@
+package ru.panyukovnn.longpollingtgbotstarter.dedup;
+
+import java.util.Arrays;
+
+/**
+ * Множество последних добавленных значений long фиксированной емкости
+ * <p>
+ * Значения хранятся в хэш-таблице с открытой адресацией и линейным пробированием, порядок добавления -
+ * в кольцевом буфере. Когда множество заполнено, добавление вытесняет самое старое значение. Память
+ * выделяется только в конструкторе, значения не упаковываются в {@link Long}. Таблица заполнена не более
+ * чем наполовину, поэтому цепочки пробирования короткие. Класс не потокобезопасен.
+ */
+public class LongRingSet {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final long[] table;
+    private final int mask;
+    private final int shift;
+    private final long[] ring;
+    private int ringHead;
+    private int size;
+
+    /**
+     * @param capacity сколько последних значений помнит множество
+     */
+    public LongRingSet(int capacity) {
+        if (capacity < 1 || capacity > 1 << 29) {
+            throw new IllegalArgumentException("Емкость множества должна быть от 1 до 2^29");
+        }
+
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.table = new long[tableSize];
+        this.mask = tableSize - 1;
+        this.shift = Long.numberOfLeadingZeros(mask);
+        this.ring = new long[capacity];
+        Arrays.fill(table, EMPTY);
+    }
+
+    /**
+     * Добавляет значение, при заполненном множестве вытесняя самое старое
+     *
+     * @return true, если значения не было в множестве
+     * @throws IllegalArgumentException для {@link Long#MIN_VALUE}, оно обозначает пустую ячейку
+     */
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            throw new IllegalArgumentException("Значение Long.MIN_VALUE не поддерживается");
+        }
+
+        int slot = slot(value);
+        while (table[slot] != EMPTY) {
+            if (table[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == ring.length) {
+            long evicted = ring[ringHead];
+            remove(evicted);
+            // Удаление сдвигает цепочку, поэтому место для нового значения ищется заново
+            slot = slot(value);
+            while (table[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+        } else {
+            size++;
+        }
+
+        table[slot] = value;
+        ring[ringHead] = value;
+        ringHead = ringHead + 1 == ring.length ? 0 : ringHead + 1;
+
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == EMPTY) {
+            return false;
+        }
+
+        int slot = slot(value);
+        while (table[slot] != EMPTY) {
+            if (table[slot] == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return ring.length;
+    }
+
+    /**
+     * Копирует значения в порядке добавления, от самого старого к самому новому
+     *
+     * @return количество скопированных значений, равное {@link #size()}
+     */
+    public int copyTo(long[] target) {
+        int start = size == ring.length ? ringHead : 0;
+        for (int i = 0; i < size; i++) {
+            int index = start + i;
+            target[i] = ring[index < ring.length ? index : index - ring.length];
+        }
+
+        return size;
+    }
+
+    private int slot(long value) {
+        return (int) ((value * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    /**
+     * Удаляет значение со сдвигом следующих элементов цепочки назад, чтобы в таблице не оставалось
+     * пометок об удалении
+     */
+    private void remove(long value) {
+        int hole = slot(value);
+        while (table[hole] != value) {
+            hole = (hole + 1) & mask;
+        }
+
+        int next = hole;
+        while (true) {
+            next = (next + 1) & mask;
+            long candidate = table[next];
+            if (candidate == EMPTY) {
+                break;
+            }
+
+            int home = slot(candidate);
+            // Элемент можно перенести в дыру, если его исходная ячейка не лежит циклически в (hole, next]
+            boolean reachable = hole <= next
+                ? home > hole && home <= next
+                : home > hole || home <= next;
+            if (!reachable) {
+                table[hole] = candidate;
+                hole = next;
+            }
+        }
+
+        table[hole] = EMPTY;
+    }
+}
@@ -0,0 +1,228 @@
+package ru.panyukovnn.longpollingtgbotstarter.dedup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.panyukovnn.longpollingtgbotstarter.checkpoint.AckWatermark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Отсеивает повторно полученные обновления по update_id
+ * <p>
+ * После сетевых сбоев getUpdates может вернуть уже полученное обновление еще раз. Дедупликатор помнит
+ * последние update_id в {@link LongRingSet} и пропускает каждый из них только один раз. Если задан файл
+ * снимка, при создании из него загружаются update_id, сохраненные при прошлой остановке, так что повторы
+ * отсеиваются и после перезапуска. Снимок записывается во временный файл и атомарно заменяет предыдущий.
+ * <p>
+ * Бот проверяет обновление {@link #isDuplicate(int)} до обработки, а запоминает {@link #markSeen(int)} только
+ * после того, как задача принята диспетчером: обновления, которые не удалось принять, придут повторно и не
+ * будут отсеяны. С {@link AckWatermark} в снимок не попадают update_id выше границы обработанных обновлений,
+ * так как Telegram пришлет их снова после перезапуска.
+ */
+public class UpdateDeduplicator implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(UpdateDeduplicator.class);
+
+    private static final int MAGIC = 0x54474444;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+
+    private final LongRingSet seen;
+    private final Path snapshotFile;
+    private final AckWatermark ackWatermark;
+    private long duplicateCount;
+
+    /**
+     * Дедупликатор без сохранения между перезапусками
+     *
+     * @param capacity сколько последних update_id помнить
+     */
+    public UpdateDeduplicator(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * @param capacity     сколько последних update_id помнить
+     * @param snapshotFile файл снимка или null, если сохранять update_id между перезапусками не нужно
+     */
+    public UpdateDeduplicator(int capacity, Path snapshotFile) {
+        this(capacity, snapshotFile, null);
+    }
+
+    /**
+     * @param ackWatermark граница обработанных обновлений или null. Если задана, снимок сохраняет только
+     *                     update_id, которые не выше нее
+     */
+    public UpdateDeduplicator(int capacity, Path snapshotFile, AckWatermark ackWatermark) {
+        this.seen = new LongRingSet(capacity);
+        this.snapshotFile = snapshotFile;
+        this.ackWatermark = ackWatermark;
+
+        if (snapshotFile != null) {
+            load();
+        }
+    }
+
+    /**
+     * Отмечает обновление полученным
+     *
+     * @return true, если обновление получено впервые и его нужно обработать
+     */
+    public synchronized boolean firstSeen(int updateId) {
+        if (seen.add(updateId)) {
+            return true;
+        }
+
+        duplicateCount++;
+
+        return false;
+    }
+
+    /**
+     * Проверяет обновление, не запоминая его
+     *
+     * @return true, если обновление уже было отмечено и его нужно пропустить
+     */
+    public synchronized boolean isDuplicate(int updateId) {
+        if (!seen.contains(updateId)) {
+            return false;
+        }
+
+        duplicateCount++;
+
+        return true;
+    }
+
+    /**
+     * Запоминает обновление, принятое в обработку
+     */
+    public synchronized void markSeen(int updateId) {
+        seen.add(updateId);
+    }
+
+    /**
+     * Количество отсеянных повторов с момента создания
+     */
+    public synchronized long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     * Сохраняет запомненные update_id в файл снимка, если он задан
+     */
+    public void saveSnapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+
+        ByteBuffer buffer;
+        synchronized (this) {
+            long[] values = new long[seen.size()];
+            int count = processed(values, seen.copyTo(values));
+
+            buffer = ByteBuffer.allocate(HEADER_SIZE + count * Long.BYTES + Integer.BYTES);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(count);
+            for (int i = 0; i < count; i++) {
+                buffer.putLong(values[i]);
+            }
+        }
+        buffer.putInt(crc(buffer.array(), HEADER_SIZE, buffer.position() - HEADER_SIZE));
+        buffer.flip();
+
+        Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать снимок дедупликации " + tmp, e);
+        }
+
+        try {
+            Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось заменить снимок дедупликации " + snapshotFile, e);
+        }
+    }
+
+    public Path getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * Сохраняет снимок, если он задан
+     */
+    @Override
+    public void close() {
+        saveSnapshot();
+    }
+
+    /**
+     * Оставляет в начале массива update_id, не превышающие границу обработанных обновлений
+     *
+     * @return количество оставленных значений
+     */
+    private int processed(long[] values, int count) {
+        if (ackWatermark == null) {
+            return count;
+        }
+
+        long watermark = ackWatermark.watermark();
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (values[i] <= watermark) {
+                values[kept++] = values[i];
+            }
+        }
+
+        return kept;
+    }
+
+    private void load() {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(snapshotFile);
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать снимок дедупликации " + snapshotFile, e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (bytes.length < HEADER_SIZE + Integer.BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            log.warn("Файл {} не является снимком дедупликации, начинаем с пустого набора", snapshotFile);
+            return;
+        }
+
+        int count = buffer.getInt();
+        int valuesSize = count * Long.BYTES;
+        if (count < 0 || bytes.length != HEADER_SIZE + valuesSize + Integer.BYTES
+            || crc(bytes, HEADER_SIZE, valuesSize) != buffer.getInt(HEADER_SIZE + valuesSize)) {
+            log.warn("Снимок дедупликации {} поврежден, начинаем с пустого набора", snapshotFile);
+            return;
+        }
+
+        // Если емкость уменьшилась, останутся самые новые update_id
+        for (int i = 0; i < count; i++) {
+            seen.add(buffer.getLong());
+        }
+    }
+
+    private static int crc(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,12 @@
+package ru.panyukovnn.longpollingtgbotstarter.dispatch;
+
+/**
+ * Обрабатывает обновления синхронно в потоке сессии long polling
+ */
+public class DirectUpdateDispatcher implements UpdateDispatcher {
+
+    @Override
+    public void execute(long chatKey, Runnable task) {
+        task.run();
+    }
+}
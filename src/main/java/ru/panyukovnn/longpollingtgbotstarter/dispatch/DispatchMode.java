@@ -0,0 +1,23 @@
+package ru.panyukovnn.longpollingtgbotstarter.dispatch;
+
+/**
+ * Режим обработки входящих обновлений
+ */
+public enum DispatchMode {
+
+    /**
+     * Синхронно в потоке сессии long polling
+     */
+    DIRECT,
+
+    /**
+     * В фиксированном наборе очередей по чатам: порядок внутри чата сохраняется, разные чаты
+     * обрабатываются параллельно
+     */
+    STRIPED,
+
+    /**
+     * Каждое обновление в отдельном виртуальном потоке, без гарантии порядка
+     */
+    VIRTUAL
+}
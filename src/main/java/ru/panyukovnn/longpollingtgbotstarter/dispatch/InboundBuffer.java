@@ -0,0 +1,274 @@
+package ru.panyukovnn.longpollingtgbotstarter.dispatch;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ограничивает количество принятых, но еще не обработанных обновлений
+ * <p>
+ * {@link ru.panyukovnn.longpollingtgbotstarter.config.TgBotApi} пропускает через буфер каждое обновление
+ * перед передачей в {@link UpdateDispatcher}. Обновление занимает место с момента приема до завершения
+ * обработчика, поэтому буфер ограничивает и очереди диспетчера, и ожидающие разрешения чата виртуальные
+ * потоки. При переполнении действует {@link OverflowPolicy}: отбросить можно только обновление, обработка
+ * которого еще не началась. Отброшенное обновление не удерживает {@code Update} в памяти и считается
+ * обработанным для сохранения смещения: обновление, отброшенное при приеме, {@code TgBotApi} сразу подтверждает
+ * в {@link ru.panyukovnn.longpollingtgbotstarter.checkpoint.AckWatermark}.
+ */
+public class InboundBuffer {
+
+    private static final String MESSAGE_TYPE = "message";
+
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final EntryList waitingMessages = new EntryList();
+    private final EntryList waitingOthers = new EntryList();
+    private final Map<Long, ArrayDeque<Entry>> waitingByChat = new HashMap<>();
+    private long nextSeq;
+    private int size;
+    private long droppedCount;
+
+    /**
+     * @param capacity максимальное количество принятых и не обработанных обновлений
+     * @param policy   поведение при переполнении
+     */
+    public InboundBuffer(int capacity, OverflowPolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Емкость буфера входящих обновлений должна быть положительной");
+        }
+
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    /**
+     * Принимает обновление, при переполнении ждет места или отбрасывает обновление по {@link OverflowPolicy}
+     *
+     * @param chatKey    ключ чата из {@link UpdateKeys}
+     * @param updateType тип обновления: message, callback_query и т.д.
+     * @param task       обработчик обновления
+     * @return задача для диспетчера или null, если отброшено само принимаемое обновление
+     * @throws RejectedExecutionException если поток был прерван во время ожидания места
+     */
+    public Entry admit(long chatKey, String updateType, Runnable task) {
+        boolean message = MESSAGE_TYPE.equals(updateType);
+
+        lock.lock();
+        try {
+            while (size >= capacity) {
+                Entry victim = victim(chatKey);
+                if (victim != null) {
+                    drop(victim);
+                    break;
+                }
+                if (policy == OverflowPolicy.SHED_NON_MESSAGE && !message) {
+                    droppedCount++;
+                    return null;
+                }
+
+                notFull.await();
+            }
+
+            Entry entry = new Entry(nextSeq++, chatKey, message, task);
+            (message ? waitingMessages : waitingOthers).linkLast(entry);
+            waitingByChat.computeIfAbsent(chatKey, key -> new ArrayDeque<>()).addLast(entry);
+            size++;
+
+            return entry;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Прервано ожидание места в буфере входящих обновлений", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Количество принятых и не обработанных обновлений, включая обрабатываемые сейчас
+     */
+    public int getQueuedCount() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Количество отброшенных при переполнении обновлений с момента создания буфера
+     */
+    public long getDroppedCount() {
+        lock.lock();
+        try {
+            return droppedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    private Entry victim(long chatKey) {
+        return switch (policy) {
+            case BLOCK -> null;
+            case DROP_OLDEST -> {
+                ArrayDeque<Entry> chat = waitingByChat.get(chatKey);
+                yield chat != null ? chat.peekFirst() : oldest(waitingMessages.first, waitingOthers.first);
+            }
+            case SHED_NON_MESSAGE -> waitingOthers.first;
+        };
+    }
+
+    private static Entry oldest(Entry a, Entry b) {
+        if (a == null || b == null) {
+            return a != null ? a : b;
+        }
+
+        return a.seq < b.seq ? a : b;
+    }
+
+    private void drop(Entry entry) {
+        unlinkWaiting(entry);
+        entry.state = State.DROPPED;
+        entry.task = null;
+        size--;
+        droppedCount++;
+    }
+
+    private void unlinkWaiting(Entry entry) {
+        (entry.message ? waitingMessages : waitingOthers).unlink(entry);
+
+        ArrayDeque<Entry> chat = waitingByChat.get(entry.chatKey);
+        chat.removeFirstOccurrence(entry);
+        if (chat.isEmpty()) {
+            waitingByChat.remove(entry.chatKey);
+        }
+    }
+
+    private boolean start(Entry entry) {
+        lock.lock();
+        try {
+            if (entry.state != State.WAITING) {
+                return false;
+            }
+
+            unlinkWaiting(entry);
+            entry.state = State.RUNNING;
+
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void finish(Entry entry) {
+        lock.lock();
+        try {
+            if (entry.state == State.WAITING) {
+                unlinkWaiting(entry);
+            } else if (entry.state != State.RUNNING) {
+                return;
+            }
+
+            entry.state = State.DONE;
+            entry.task = null;
+            size--;
+            notFull.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private enum State {
+        WAITING, RUNNING, DROPPED, DONE
+    }
+
+    /**
+     * Принятое обновление. Диспетчер выполняет его как обычную задачу: отброшенное обновление завершается
+     * сразу, не вызывая обработчик
+     */
+    public final class Entry implements Runnable {
+
+        private final long seq;
+        private final long chatKey;
+        private final boolean message;
+        private Runnable task;
+        private State state = State.WAITING;
+        private Entry prev;
+        private Entry next;
+
+        private Entry(long seq, long chatKey, boolean message, Runnable task) {
+            this.seq = seq;
+            this.chatKey = chatKey;
+            this.message = message;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            if (!start(this)) {
+                return;
+            }
+
+            Runnable current = task;
+            try {
+                current.run();
+            } finally {
+                finish(this);
+            }
+        }
+
+        /**
+         * Освобождает место обновления, которое не удалось передать диспетчеру
+         */
+        public void cancel() {
+            finish(this);
+        }
+    }
+
+    /**
+     * Двусвязный список ожидающих обновлений в порядке приема, удаление из середины за O(1)
+     */
+    private static final class EntryList {
+
+        private Entry first;
+        private Entry last;
+
+        void linkLast(Entry entry) {
+            entry.prev = last;
+            if (last != null) {
+                last.next = entry;
+            } else {
+                first = entry;
+            }
+            last = entry;
+        }
+
+        void unlink(Entry entry) {
+            if (entry.prev != null) {
+                entry.prev.next = entry.next;
+            } else {
+                first = entry.next;
+            }
+            if (entry.next != null) {
+                entry.next.prev = entry.prev;
+            } else {
+                last = entry.prev;
+            }
+            entry.prev = null;
+            entry.next = null;
+        }
+    }
+}
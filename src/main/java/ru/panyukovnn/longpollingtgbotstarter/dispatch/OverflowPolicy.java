@@ -0,0 +1,24 @@
+package ru.panyukovnn.longpollingtgbotstarter.dispatch;
+
+/**
+ * Поведение {@link InboundBuffer}, когда принято максимальное количество необработанных обновлений
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Поток long polling ждет освобождения места. Новые обновления копятся на стороне Telegram
+     */
+    BLOCK,
+
+    /**
+     * Отбрасывается самое старое ожидающее обновление того же чата, а если у чата их нет - самое старое
+     * ожидающее обновление вообще
+     */
+    DROP_OLDEST,
+
+    /**
+     * Первыми отбрасываются ожидающие обновления кроме message: правки, callback_query, участники чатов
+     * и т.д. Если ожидают только сообщения, поток long polling ждет, как в {@link #BLOCK}
+     */
+    SHED_NON_MESSAGE
+}
@@ -0,0 +1,184 @@
+package ru.panyukovnn.longpollingtgbotstarter.dispatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Распределяет обновления по фиксированному набору последовательных очередей (lanes) по хэшу чата
+ * <p>
+ * Обновления одного чата всегда попадают в одну очередь и обрабатываются строго по порядку одним потоком,
+ * обновления разных чатов обрабатываются параллельно. Медленный обработчик задерживает только чаты своей
+ * очереди, а не весь бот. Если очередь заполнена, поток long polling ждет освобождения места, поэтому
+ * бот не запрашивает новые обновления быстрее, чем успевает их обработать.
+ */
+public class StripedUpdateDispatcher implements UpdateDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(StripedUpdateDispatcher.class);
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    /**
+     * Признак остановки очереди. Ставится в конец каждой очереди при остановке диспетчера, поэтому поток
+     * дообрабатывает уже принятые обновления и завершается, не прерывая выполняющийся обработчик
+     */
+    private static final Runnable STOP = () -> {
+    };
+
+    private final Lane[] lanes;
+    private volatile boolean closed;
+
+    /**
+     * @param laneCount     количество очередей, каждая обслуживается отдельным потоком
+     * @param queueCapacity максимальное количество ожидающих обновлений в одной очереди
+     */
+    public StripedUpdateDispatcher(int laneCount, int queueCapacity) {
+        if (laneCount < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Количество очередей и их емкость должны быть положительными");
+        }
+
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i, queueCapacity);
+        }
+    }
+
+    /**
+     * Ставит задачу в очередь, соответствующую ключу чата
+     *
+     * @param chatKey ключ чата, задачи с одинаковым ключом выполняются последовательно
+     * @param task    задача
+     * @throws RejectedExecutionException если диспетчер остановлен или поток был прерван во время ожидания
+     */
+    @Override
+    public void execute(long chatKey, Runnable task) {
+        if (closed) {
+            throw new RejectedExecutionException("Диспетчер обновлений остановлен");
+        }
+
+        try {
+            lanes[laneIndex(chatKey)].queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Прервано ожидание места в очереди обновлений", e);
+        }
+    }
+
+    /**
+     * Количество очередей
+     */
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Количество ожидающих обработки обновлений в очереди
+     *
+     * @param lane номер очереди от 0 до {@link #getLaneCount()} - 1
+     */
+    public int getLaneDepth(int lane) {
+        return lanes[lane].queue.size();
+    }
+
+    /**
+     * Наибольшая глубина очереди, показывает перекос нагрузки между чатами
+     */
+    public int getMaxLaneDepth() {
+        int max = 0;
+        for (Lane lane : lanes) {
+            max = Math.max(max, lane.queue.size());
+        }
+
+        return max;
+    }
+
+    /**
+     * Общее количество ожидающих обработки обновлений во всех очередях
+     */
+    public int getQueuedCount() {
+        int total = 0;
+        for (Lane lane : lanes) {
+            total += lane.queue.size();
+        }
+
+        return total;
+    }
+
+    /**
+     * Номер очереди для ключа чата. Ключ перемешивается, чтобы близкие идентификаторы чатов
+     * равномерно распределялись по очередям
+     */
+    int laneIndex(long chatKey) {
+        long mixed = chatKey * 0x9E3779B97F4A7C15L;
+
+        return Math.floorMod((int) (mixed >>> 32), lanes.length);
+    }
+
+    /**
+     * Останавливает прием обновлений и ждет, пока очереди дообработают уже принятые обновления. Потоки очередей
+     * не прерываются: обработчик, выполняющийся в момент остановки, и обновления за ним в очереди выполняются
+     * без флага прерывания, поэтому ожидание лимита отправки, HTTP-запросы и запись журналов в них не обрываются
+     */
+    @Override
+    public void close() {
+        closed = true;
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_TIMEOUT_SECONDS);
+        try {
+            for (Lane lane : lanes) {
+                if (lane.thread.isAlive()) {
+                    lane.queue.offer(STOP, Math.max(1, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                }
+            }
+            for (Lane lane : lanes) {
+                lane.thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Последовательная очередь с собственным потоком
+     */
+    private final class Lane implements Runnable {
+
+        private final BlockingQueue<Runnable> queue;
+        private final Thread thread;
+
+        Lane(int index, int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.thread = new Thread(this, "tg-update-lane-" + index);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    // Поток очереди останавливается только признаком STOP
+                    continue;
+                }
+
+                if (task == STOP) {
+                    return;
+                }
+
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    log.error("Ошибка при обработке обновления в потоке '{}': {}",
+                        Thread.currentThread().getName(), e.getMessage(), e);
+                }
+            }
+        }
+    }
+}
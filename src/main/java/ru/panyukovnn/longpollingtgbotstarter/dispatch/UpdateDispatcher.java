@@ -0,0 +1,37 @@
+package ru.panyukovnn.longpollingtgbotstarter.dispatch;
+
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+/**
+ * Определяет, в каком потоке обрабатывается входящее обновление
+ * <p>
+ * {@link ru.panyukovnn.longpollingtgbotstarter.config.TgBotApi} передает сюда каждое полученное обновление
+ * вместе с обработчиком, который выполняет команду бота или публикует событие {@link Update}.
+ */
+public interface UpdateDispatcher extends AutoCloseable {
+
+    /**
+     * Передает обновление на обработку
+     *
+     * @param update  входящее обновление
+     * @param handler обработчик обновления
+     */
+    default void dispatch(Update update, Runnable handler) {
+        execute(UpdateKeys.chatKey(update), handler);
+    }
+
+    /**
+     * Передает на обработку задачу, относящуюся к чату
+     *
+     * @param chatKey ключ чата из {@link UpdateKeys}
+     * @param task    обработчик обновления
+     */
+    void execute(long chatKey, Runnable task);
+
+    /**
+     * Останавливает прием обновлений и дожидается обработки уже принятых
+     */
+    @Override
+    default void close() {
+    }
+}
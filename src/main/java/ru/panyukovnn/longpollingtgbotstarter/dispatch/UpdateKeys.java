@@ -0,0 +1,151 @@
+package ru.panyukovnn.longpollingtgbotstarter.dispatch;
+
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+/**
+ * Извлекает из обновления ключ, по которому сохраняется порядок обработки
+ */
+public final class UpdateKeys {
+
+    /**
+     * Ключ обновлений, не относящихся к конкретному чату или пользователю
+     */
+    public static final long NO_CHAT = 0L;
+
+    private UpdateKeys() {
+    }
+
+    /**
+     * Возвращает идентификатор чата обновления, а если чата нет - идентификатор пользователя
+     *
+     * @return идентификатор чата, пользователя или {@link #NO_CHAT}
+     */
+    public static long chatKey(Update update) {
+        Message message = message(update);
+        if (message != null && message.getChatId() != null) {
+            return message.getChatId();
+        }
+
+        if (update.hasCallbackQuery()) {
+            return userKey(update.getCallbackQuery().getFrom());
+        }
+        if (update.hasInlineQuery()) {
+            return userKey(update.getInlineQuery().getFrom());
+        }
+        if (update.hasChosenInlineQuery()) {
+            return userKey(update.getChosenInlineQuery().getFrom());
+        }
+        if (update.hasShippingQuery()) {
+            return userKey(update.getShippingQuery().getFrom());
+        }
+        if (update.hasPreCheckoutQuery()) {
+            return userKey(update.getPreCheckoutQuery().getFrom());
+        }
+        if (update.hasPollAnswer()) {
+            return userKey(update.getPollAnswer().getUser());
+        }
+        if (update.hasMyChatMember()) {
+            return update.getMyChatMember().getChat().getId();
+        }
+        if (update.hasChatMember()) {
+            return update.getChatMember().getChat().getId();
+        }
+        if (update.hasChatJoinRequest()) {
+            return update.getChatJoinRequest().getChat().getId();
+        }
+
+        return NO_CHAT;
+    }
+
+    /**
+     * Тип обновления - имя поля с содержимым в Bot API, как у
+     * {@link ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdate#type()}
+     *
+     * @return тип или null, если тип неизвестен
+     */
+    public static String type(Update update) {
+        if (update.hasMessage()) {
+            return "message";
+        }
+        if (update.hasEditedMessage()) {
+            return "edited_message";
+        }
+        if (update.hasChannelPost()) {
+            return "channel_post";
+        }
+        if (update.hasEditedChannelPost()) {
+            return "edited_channel_post";
+        }
+        if (update.hasCallbackQuery()) {
+            return "callback_query";
+        }
+        if (update.hasInlineQuery()) {
+            return "inline_query";
+        }
+        if (update.hasChosenInlineQuery()) {
+            return "chosen_inline_result";
+        }
+        if (update.hasShippingQuery()) {
+            return "shipping_query";
+        }
+        if (update.hasPreCheckoutQuery()) {
+            return "pre_checkout_query";
+        }
+        if (update.hasPoll()) {
+            return "poll";
+        }
+        if (update.hasPollAnswer()) {
+            return "poll_answer";
+        }
+        if (update.hasMyChatMember()) {
+            return "my_chat_member";
+        }
+        if (update.hasChatMember()) {
+            return "chat_member";
+        }
+        if (update.hasChatJoinRequest()) {
+            return "chat_join_request";
+        }
+
+        return null;
+    }
+
+    /**
+     * Время отправки нового сообщения или поста в канале. У отредактированных сообщений и остальных типов
+     * поле date относится не к самому обновлению, поэтому для них возвращается 0
+     *
+     * @return unix-время в секундах или 0
+     */
+    public static long date(Update update) {
+        Message message = update.hasMessage() ? update.getMessage()
+            : update.hasChannelPost() ? update.getChannelPost() : null;
+
+        return message != null && message.getDate() != null ? message.getDate() : 0;
+    }
+
+    private static Message message(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage();
+        }
+        if (update.hasEditedMessage()) {
+            return update.getEditedMessage();
+        }
+        if (update.hasChannelPost()) {
+            return update.getChannelPost();
+        }
+        if (update.hasEditedChannelPost()) {
+            return update.getEditedChannelPost();
+        }
+        if (update.hasCallbackQuery()) {
+            return update.getCallbackQuery().getMessage();
+        }
+
+        return null;
+    }
+
+    private static long userKey(User user) {
+        return user != null && user.getId() != null ? user.getId() : NO_CHAT;
+    }
+}
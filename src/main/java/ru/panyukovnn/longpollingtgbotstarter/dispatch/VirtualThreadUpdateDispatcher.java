@@ -0,0 +1,142 @@
+package ru.panyukovnn.longpollingtgbotstarter.dispatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Обрабатывает каждое обновление в отдельном виртуальном потоке
+ * <p>
+ * Подходит для обработчиков, которые в основном ждут ввода-вывода (LLM, базы данных, внешние API): ожидание
+ * не занимает платформенные потоки. Порядок обработки обновлений не гарантируется. Чтобы один пользователь
+ * не мог занять систему потоком сообщений, можно ограничить количество одновременно обрабатываемых
+ * обновлений одного чата - остальные ждут разрешения в своих виртуальных потоках.
+ */
+public class VirtualThreadUpdateDispatcher implements UpdateDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadUpdateDispatcher.class);
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final ExecutorService executor;
+    private final int perChatConcurrency;
+    private final Map<Long, ChatPermits> chatPermits = new ConcurrentHashMap<>();
+    private final AtomicInteger activeCount = new AtomicInteger();
+
+    /**
+     * @param perChatConcurrency максимальное количество одновременно обрабатываемых обновлений одного чата,
+     *                           0 - без ограничения
+     */
+    public VirtualThreadUpdateDispatcher(int perChatConcurrency) {
+        if (perChatConcurrency < 0) {
+            throw new IllegalArgumentException("Ограничение обработки обновлений одного чата не может быть отрицательным");
+        }
+
+        this.perChatConcurrency = perChatConcurrency;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("tg-update-", 0).factory());
+    }
+
+    /**
+     * Запускает задачу в новом виртуальном потоке
+     *
+     * @param chatKey ключ чата, по которому применяется ограничение одновременной обработки
+     * @param task    задача
+     * @throws RejectedExecutionException если диспетчер остановлен
+     */
+    @Override
+    public void execute(long chatKey, Runnable task) {
+        activeCount.incrementAndGet();
+
+        try {
+            executor.execute(() -> {
+                try {
+                    if (perChatConcurrency > 0) {
+                        runWithChatPermit(chatKey, task);
+                    } else {
+                        task.run();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Throwable e) {
+                    log.error("Ошибка при обработке обновления чата '{}': {}", chatKey, e.getMessage(), e);
+                } finally {
+                    activeCount.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            activeCount.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Количество обновлений, которые обрабатываются или ждут разрешения своего чата
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    /**
+     * Количество чатов, для которых сейчас есть обрабатываемые обновления
+     */
+    public int getActiveChatCount() {
+        return chatPermits.size();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Не дождались завершения обработки {} обновлений при остановке", activeCount.get());
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    private void runWithChatPermit(long chatKey, Runnable task) throws InterruptedException {
+        ChatPermits permits = chatPermits.compute(chatKey, (key, current) -> {
+            ChatPermits result = current != null ? current : new ChatPermits(perChatConcurrency);
+            result.users++;
+            return result;
+        });
+
+        try {
+            permits.semaphore.acquire();
+            try {
+                task.run();
+            } finally {
+                permits.semaphore.release();
+            }
+        } finally {
+            // Удаляем семафор, когда у чата не осталось обновлений, чтобы карта не росла с количеством чатов
+            chatPermits.computeIfPresent(chatKey, (key, current) -> --current.users == 0 ? null : current);
+        }
+    }
+
+    /**
+     * Семафор чата и количество обновлений, которые его используют. Счетчик изменяется только внутри
+     * compute карты, поэтому отдельная синхронизация не нужна
+     */
+    private static final class ChatPermits {
+
+        private final Semaphore semaphore;
+        private int users;
+
+        ChatPermits(int permits) {
+            this.semaphore = new Semaphore(permits, true);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package ru.panyukovnn.longpollingtgbotstarter.event;
+
+import ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdate;
+
+/**
+ * Входящее обновление одного из ботов telegram.bot.instances.* в режиме telegram.bot.polling.lazy-updates
+ *
+ * @param botId  идентификатор бота - ключ в telegram.bot.instances
+ * @param update обновление
+ */
+public record BotRawUpdateEvent(String botId, RawUpdate update) {
+}
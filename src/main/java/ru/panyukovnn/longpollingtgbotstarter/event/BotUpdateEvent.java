@@ -0,0 +1,14 @@
+package ru.panyukovnn.longpollingtgbotstarter.event;
+
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+/**
+ * Входящее обновление одного из ботов telegram.bot.instances.*
+ * <p>
+ * При нескольких ботах публикуется вместо {@link Update}, чтобы слушатель знал, какому боту отвечать.
+ *
+ * @param botId  идентификатор бота - ключ в telegram.bot.instances
+ * @param update обновление
+ */
+public record BotUpdateEvent(String botId, Update update) {
+}
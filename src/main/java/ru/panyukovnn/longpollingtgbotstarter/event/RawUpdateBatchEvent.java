@@ -0,0 +1,29 @@
+package ru.panyukovnn.longpollingtgbotstarter.event;
+
+import ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdate;
+
+import java.util.List;
+
+/**
+ * Все обновления, полученные одним запросом getUpdates, в виде {@link RawUpdate}
+ * <p>
+ * Аналог {@link UpdateBatchEvent} для telegram.bot.polling.lazy-updates. Удобен для сохранения исходного
+ * JSON пачкой: байты каждого обновления доступны без построения объектов telegrambots.
+ *
+ * @param botId   идентификатор бота из telegram.bot.instances или null, если бот один
+ * @param updates неизменяемый список обновлений в порядке получения
+ */
+public record RawUpdateBatchEvent(String botId, List<RawUpdate> updates) {
+
+    public RawUpdateBatchEvent {
+        updates = List.copyOf(updates);
+    }
+
+    public RawUpdateBatchEvent(List<RawUpdate> updates) {
+        this(null, updates);
+    }
+
+    public int size() {
+        return updates.size();
+    }
+}
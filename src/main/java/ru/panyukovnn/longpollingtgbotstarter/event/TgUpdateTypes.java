@@ -0,0 +1,24 @@
+package ru.panyukovnn.longpollingtgbotstarter.event;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Типы обновлений Telegram, которые обрабатывает слушатель {@link org.telegram.telegrambots.meta.api.objects.Update}
+ * или {@link UpdateBatchEvent}
+ * <p>
+ * Используется при telegram.bot.polling.auto-allowed-updates=true: бот запрашивает у Telegram только
+ * перечисленные типы. Указывается на методе слушателя или на классе для всех его слушателей.
+ * Значения - имена полей обновления из Bot API: message, edited_message, channel_post, callback_query,
+ * inline_query, my_chat_member и т.д.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface TgUpdateTypes {
+
+    String[] value();
+}
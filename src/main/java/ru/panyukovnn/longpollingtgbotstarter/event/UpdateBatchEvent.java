@@ -0,0 +1,31 @@
+package ru.panyukovnn.longpollingtgbotstarter.event;
+
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.List;
+
+/**
+ * Все обновления, полученные одним запросом getUpdates (до 100 штук)
+ * <p>
+ * Публикуется один раз на каждый опрос, если включено telegram.bot.dispatch.batch-event. Позволяет
+ * сохранять или анализировать обновления пачкой, например одной вставкой в базу данных. Событие публикуется
+ * в потоке long polling до передачи обновлений в диспетчер, поэтому следующий опрос не начнется, пока
+ * синхронные слушатели не обработают пачку.
+ *
+ * @param botId   идентификатор бота из telegram.bot.instances или null, если бот один
+ * @param updates неизменяемый список обновлений в порядке получения
+ */
+public record UpdateBatchEvent(String botId, List<Update> updates) {
+
+    public UpdateBatchEvent {
+        updates = List.copyOf(updates);
+    }
+
+    public UpdateBatchEvent(List<Update> updates) {
+        this(null, updates);
+    }
+
+    public int size() {
+        return updates.size();
+    }
+}
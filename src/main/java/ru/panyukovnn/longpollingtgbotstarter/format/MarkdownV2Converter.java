@@ -0,0 +1,211 @@
+package ru.panyukovnn.longpollingtgbotstarter.format;
+
+/**
+ * Преобразует обычный markdown в Telegram MarkdownV2 без регулярных выражений и промежуточных строк
+ * <p>
+ * Токенайзер размечает роли разделителей в массиве {@code byte[]}, обходя только позиции самих
+ * разделителей через {@link String#indexOf(int, int)}, после чего эмиттер за один проход пишет результат
+ * в заранее выделенный {@link StringBuilder}. Приоритет разбора совпадает с прежней цепочкой замен:
+ * ```code``` → `code` → [text](url) → **bold** → __bold__ → *italic* → _italic_
+ */
+public final class MarkdownV2Converter {
+
+    /**
+     * Обычный символ, экранируется при необходимости
+     */
+    private static final byte TEXT = 0;
+    /**
+     * Часть составного разделителя, которая не попадает в результат
+     */
+    private static final byte SKIP = 1;
+    private static final byte CODE = 2;
+    private static final byte LINK = 3;
+    private static final byte BOLD = 4;
+    private static final byte ITALIC = 5;
+
+    private MarkdownV2Converter() {
+    }
+
+    /**
+     * Преобразует обычный markdown в Telegram MarkdownV2 формат
+     * Основные преобразования:
+     * - **text** или __text__ -> *text* (жирный)
+     * - *text* или _text_ -> _text_ (курсив)
+     * Все остальные специальные символы экранируются
+     */
+    public static String convert(String text) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+
+        byte[] roles = new byte[text.length()];
+
+        markCodeBlocks(text, roles);
+        markSinglePairs(text, roles, '`', CODE);
+        markLinks(text, roles);
+        markDoublePairs(text, roles, '*');
+        markDoublePairs(text, roles, '_');
+        markSinglePairs(text, roles, '*', ITALIC);
+        markSinglePairs(text, roles, '_', ITALIC);
+
+        return emit(text, roles);
+    }
+
+    private static String emit(String text, byte[] roles) {
+        int length = text.length();
+        StringBuilder result = new StringBuilder(length + (length >> 3) + 16);
+        int runStart = 0;
+
+        for (int i = 0; i < length; i++) {
+            byte role = roles[i];
+            if (role == TEXT) {
+                continue;
+            }
+
+            TgEscaper.MARKDOWN_V2.escape(text, runStart, i, result);
+            runStart = i + 1;
+
+            switch (role) {
+                case CODE -> result.append('`');
+                case LINK -> result.append(text.charAt(i));
+                case BOLD -> result.append('*');
+                case ITALIC -> result.append('_');
+                default -> {
+                    // SKIP: вторая и третья части составного разделителя
+                }
+            }
+        }
+
+        return TgEscaper.MARKDOWN_V2.escape(text, runStart, length, result).toString();
+    }
+
+    /**
+     * Размечает блоки кода ```code```, содержимое которых не пустое и не содержит обратных кавычек
+     */
+    private static void markCodeBlocks(String text, byte[] roles) {
+        int length = text.length();
+        int pos = text.indexOf('`');
+
+        while (pos >= 0 && pos + 3 < length) {
+            if (text.charAt(pos + 1) == '`' && text.charAt(pos + 2) == '`' && text.charAt(pos + 3) != '`') {
+                int close = text.indexOf('`', pos + 4);
+                if (close < 0) {
+                    return;
+                }
+
+                if (close + 2 < length && text.charAt(close + 1) == '`' && text.charAt(close + 2) == '`') {
+                    markTriple(roles, pos);
+                    markTriple(roles, close);
+                    pos = text.indexOf('`', close + 3);
+                } else {
+                    pos = close;
+                }
+                continue;
+            }
+
+            pos = text.indexOf('`', pos + 1);
+        }
+    }
+
+    private static void markTriple(byte[] roles, int pos) {
+        roles[pos] = CODE;
+        roles[pos + 1] = SKIP;
+        roles[pos + 2] = SKIP;
+    }
+
+    /**
+     * Размечает ссылки [text](url) с непустыми текстом и адресом
+     */
+    private static void markLinks(String text, byte[] roles) {
+        int length = text.length();
+        int pos = text.indexOf('[');
+
+        while (pos >= 0) {
+            int textEnd = text.indexOf(']', pos + 1);
+            if (textEnd < 0) {
+                return;
+            }
+
+            if (textEnd > pos + 1 && textEnd + 1 < length && text.charAt(textEnd + 1) == '(') {
+                int urlEnd = text.indexOf(')', textEnd + 2);
+                if (urlEnd < 0) {
+                    return;
+                }
+
+                if (urlEnd > textEnd + 2) {
+                    roles[pos] = LINK;
+                    roles[textEnd] = LINK;
+                    roles[textEnd + 1] = LINK;
+                    roles[urlEnd] = LINK;
+                    pos = text.indexOf('[', urlEnd + 1);
+                    continue;
+                }
+            }
+
+            // Любая '[' до textEnd упрётся в ту же ']', поэтому сразу переходим за неё
+            pos = text.indexOf('[', textEnd + 1);
+        }
+    }
+
+    /**
+     * Размечает жирный текст вида **text** или __text__, содержимое которого не содержит разделитель
+     */
+    private static void markDoublePairs(String text, byte[] roles, char delimiter) {
+        int length = text.length();
+        int pos = text.indexOf(delimiter);
+
+        while (pos >= 0 && pos + 2 < length) {
+            if (text.charAt(pos + 1) == delimiter && text.charAt(pos + 2) != delimiter) {
+                int close = text.indexOf(delimiter, pos + 3);
+                if (close < 0) {
+                    return;
+                }
+
+                if (close + 1 < length && text.charAt(close + 1) == delimiter) {
+                    roles[pos] = BOLD;
+                    roles[pos + 1] = SKIP;
+                    roles[close] = BOLD;
+                    roles[close + 1] = SKIP;
+                    pos = text.indexOf(delimiter, close + 2);
+                } else {
+                    pos = close;
+                }
+                continue;
+            }
+
+            pos = text.indexOf(delimiter, pos + 1);
+        }
+    }
+
+    /**
+     * Размечает пары одиночных разделителей, ещё не занятых предыдущими правилами
+     */
+    private static void markSinglePairs(String text, byte[] roles, char delimiter, byte role) {
+        int open = nextFree(text, roles, delimiter, 0);
+
+        while (open >= 0) {
+            int close = nextFree(text, roles, delimiter, open + 1);
+            if (close < 0) {
+                return;
+            }
+
+            if (close > open + 1) {
+                roles[open] = role;
+                roles[close] = role;
+                open = nextFree(text, roles, delimiter, close + 1);
+            } else {
+                open = close;
+            }
+        }
+    }
+
+    private static int nextFree(String text, byte[] roles, char delimiter, int from) {
+        int pos = text.indexOf(delimiter, from);
+
+        while (pos >= 0 && roles[pos] != TEXT) {
+            pos = text.indexOf(delimiter, pos + 1);
+        }
+
+        return pos;
+    }
+}
@@ -0,0 +1,224 @@
+package ru.panyukovnn.longpollingtgbotstarter.format;
+
+import java.util.Optional;
+
+/**
+ * Локальная проверка текста на соответствие грамматике Telegram MarkdownV2
+ * <p>
+ * Повторяет разбор сущностей на стороне Telegram (https://core.telegram.org/bots/api#markdownv2-style):
+ * неэкранированные зарезервированные символы, вложенность сущностей, незакрытые маркеры и синтаксис ссылок.
+ * Позволяет сразу отправить некорректное сообщение через запасной путь, не дожидаясь ошибки 400 от Telegram.
+ */
+public final class MarkdownV2Validator {
+
+    private static final int MAX_DEPTH = 64;
+
+    private enum Entity {
+        BOLD, ITALIC, UNDERLINE, STRIKETHROUGH, SPOILER, CODE, PRE, TEXT_URL, CUSTOM_EMOJI
+    }
+
+    private MarkdownV2Validator() {
+    }
+
+    /**
+     * Проверяет текст в формате MarkdownV2
+     *
+     * @param text текст для проверки
+     * @return описание первой найденной ошибки или пустой Optional, если текст корректен
+     */
+    public static Optional<String> validate(String text) {
+        if (text == null || text.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Entity[] stack = new Entity[MAX_DEPTH];
+        int[] offsets = new int[MAX_DEPTH];
+        int depth = 0;
+        int length = text.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+
+            if (c == '\\' && isEscapable(charAt(text, i + 1))) {
+                i++;
+                continue;
+            }
+
+            Entity top = depth > 0 ? stack[depth - 1] : null;
+            boolean insideCode = top == Entity.CODE || top == Entity.PRE;
+            if (insideCode ? c != '`' : !TgEscaper.MARKDOWN_V2.isSpecial(c)) {
+                continue;
+            }
+
+            if (top != null && isEndOf(top, text, i)) {
+                depth--;
+
+                switch (top) {
+                    case UNDERLINE, SPOILER -> i++;
+                    case PRE -> i += 2;
+                    case TEXT_URL -> {
+                        if (charAt(text, i + 1) == '(') {
+                            int urlEnd = findUrlEnd(text, i + 2);
+                            if (urlEnd < 0) {
+                                return Optional.of("Не найден конец URL на позиции " + (i + 2));
+                            }
+                            i = urlEnd;
+                        }
+                    }
+                    case CUSTOM_EMOJI -> {
+                        if (charAt(text, i + 1) != '(') {
+                            return Optional.of("Сущность custom emoji на позиции " + offsets[depth]
+                                + " должна содержать URL tg://emoji");
+                        }
+                        int urlEnd = findUrlEnd(text, i + 2);
+                        if (urlEnd < 0) {
+                            return Optional.of("Не найден конец URL на позиции " + (i + 2));
+                        }
+                        i = urlEnd;
+                    }
+                    default -> {
+                    }
+                }
+                continue;
+            }
+
+            if (c == '>' && (i == 0 || text.charAt(i - 1) == '\n') && depth == 0) {
+                // Цитата в начале строки
+                continue;
+            }
+
+            Entity entity;
+            int offset = i;
+            switch (c) {
+                case '_' -> {
+                    if (charAt(text, i + 1) == '_') {
+                        entity = Entity.UNDERLINE;
+                        i++;
+                    } else {
+                        entity = Entity.ITALIC;
+                    }
+                }
+                case '*' -> entity = Entity.BOLD;
+                case '~' -> entity = Entity.STRIKETHROUGH;
+                case '|' -> {
+                    if (charAt(text, i + 1) != '|') {
+                        return reserved(c, i);
+                    }
+                    entity = Entity.SPOILER;
+                    i++;
+                }
+                case '[' -> entity = Entity.TEXT_URL;
+                case '`' -> {
+                    if (charAt(text, i + 1) == '`' && charAt(text, i + 2) == '`') {
+                        entity = Entity.PRE;
+                        i = skipPreHeader(text, i + 3) - 1;
+                    } else {
+                        entity = Entity.CODE;
+                    }
+                }
+                case '!' -> {
+                    if (charAt(text, i + 1) != '[') {
+                        return reserved(c, i);
+                    }
+                    entity = Entity.CUSTOM_EMOJI;
+                    i++;
+                }
+                default -> {
+                    return reserved(c, i);
+                }
+            }
+
+            if (depth == MAX_DEPTH) {
+                return Optional.of("Слишком глубокая вложенность сущностей на позиции " + offset);
+            }
+            stack[depth] = entity;
+            offsets[depth] = offset;
+            depth++;
+        }
+
+        if (depth > 0) {
+            return Optional.of("Не найден конец сущности " + stack[depth - 1] + " на позиции " + offsets[depth - 1]);
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Проверяет, что текст корректен для отправки с MarkdownV2
+     */
+    public static boolean isValid(String text) {
+        return validate(text).isEmpty();
+    }
+
+    private static boolean isEndOf(Entity entity, String text, int i) {
+        char c = text.charAt(i);
+
+        return switch (entity) {
+            case BOLD -> c == '*';
+            case ITALIC -> c == '_' && charAt(text, i + 1) != '_';
+            case UNDERLINE -> c == '_' && charAt(text, i + 1) == '_';
+            case STRIKETHROUGH -> c == '~';
+            case SPOILER -> c == '|' && charAt(text, i + 1) == '|';
+            case CODE -> c == '`';
+            case PRE -> c == '`' && charAt(text, i + 1) == '`' && charAt(text, i + 2) == '`';
+            case TEXT_URL, CUSTOM_EMOJI -> c == ']';
+        };
+    }
+
+    /**
+     * Пропускает язык блока кода и один перевод строки после открывающих ```
+     *
+     * @return позиция начала содержимого блока
+     */
+    private static int skipPreHeader(String text, int start) {
+        int pos = start;
+        int languageEnd = start;
+        while (languageEnd < text.length() && !Character.isWhitespace(text.charAt(languageEnd))
+            && text.charAt(languageEnd) != '`') {
+            languageEnd++;
+        }
+        if (languageEnd != start && languageEnd < text.length() && text.charAt(languageEnd) != '`') {
+            pos = languageEnd;
+        }
+
+        char c = charAt(text, pos);
+        if (c == '\n' || c == '\r') {
+            char next = charAt(text, pos + 1);
+            pos += (next == '\n' || next == '\r') && next != c ? 2 : 1;
+        }
+
+        return pos;
+    }
+
+    /**
+     * Ищет закрывающую ')' адреса ссылки с учетом экранирования
+     *
+     * @return позиция ')' или -1
+     */
+    private static int findUrlEnd(String text, int start) {
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            if (c == '\\' && isEscapable(charAt(text, i + 1))) {
+                i++;
+            } else if (c == ')') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static Optional<String> reserved(char c, int pos) {
+        return Optional.of("Символ '" + c + "' на позиции " + pos
+            + " зарезервирован и должен быть экранирован символом '\\'");
+    }
+
+    private static boolean isEscapable(char c) {
+        return c > 0 && c <= 126;
+    }
+
+    private static char charAt(String text, int pos) {
+        return pos < text.length() ? text.charAt(pos) : 0;
+    }
+}
@@ -0,0 +1,411 @@
+package ru.panyukovnn.longpollingtgbotstarter.format;
+
+import org.telegram.telegrambots.meta.api.methods.ParseMode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разбивает длинное сообщение на части с учетом markdown/HTML тегов за один проход по тексту
+ * <p>
+ * Курсор движется по исходной строке, а состояние открытых тегов (маркеры MarkdownV2 или стек HTML тегов)
+ * переносится от части к части инкрементально, поэтому каждый символ сканируется один раз и подстроки
+ * остатка не создаются. Каждая часть собирается сразу нужного размера: открытые теги переоткрываются
+ * в начале части и закрываются в её конце.
+ */
+public final class MessageSplitter {
+
+    /**
+     * Размер окна в конце части, в котором ищется перенос строки или пробел
+     */
+    private static final int SPLIT_WINDOW = 200;
+
+    private MessageSplitter() {
+    }
+
+    /**
+     * Разбивает сообщение на части, каждая из которых вместе с переоткрытыми и закрывающими тегами
+     * не длиннее {@code maxLength}
+     *
+     * @param text      текст сообщения
+     * @param parseMode режим парсинга, определяющий отслеживаемые теги
+     * @param maxLength максимальная длина одной части
+     * @return части сообщения
+     */
+    public static List<String> split(String text, String parseMode, int maxLength) {
+        List<String> parts = new ArrayList<>(text.length() / maxLength + 2);
+        OpenTags openTags = OpenTags.empty(parseMode);
+        int length = text.length();
+        int cursor = 0;
+
+        while (openTags.openingLength() + length - cursor > maxLength) {
+            int chunkLength = Math.max(1, maxLength - openTags.openingLength() - openTags.closingLength());
+            int splitPos = findSplitPosition(text, cursor, chunkLength);
+            OpenTags nextOpenTags = openTags.advance(text, cursor, splitPos);
+
+            // Внутри части могли открыться новые теги, и их закрытие не поместилось - укорачиваем часть
+            int excess = openTags.openingLength() + splitPos - cursor + nextOpenTags.closingLength() - maxLength;
+            while (excess > 0 && splitPos - cursor > 1) {
+                chunkLength = Math.max(1, splitPos - cursor - excess);
+                splitPos = findSplitPosition(text, cursor, chunkLength);
+                nextOpenTags = openTags.advance(text, cursor, splitPos);
+                excess = openTags.openingLength() + splitPos - cursor + nextOpenTags.closingLength() - maxLength;
+            }
+
+            parts.add(render(text, cursor, splitPos, openTags, nextOpenTags));
+
+            openTags = nextOpenTags;
+            cursor = splitPos;
+        }
+
+        if (cursor < length || openTags.openingLength() > 0) {
+            parts.add(render(text, cursor, length, openTags, OpenTags.empty(parseMode)));
+        }
+
+        return parts;
+    }
+
+    /**
+     * Находит оптимальную позицию для разбиения текста, начиная с позиции {@code from}
+     * <p>
+     * Предпочитает перенос строки, затем пробел в последних {@value #SPLIT_WINDOW} символах части.
+     *
+     * @return позиция конца части, не дальше {@code from + maxLength}
+     */
+    public static int findSplitPosition(String text, int from, int maxLength) {
+        if (text.length() - from <= maxLength) {
+            return text.length();
+        }
+
+        int limit = from + maxLength;
+        int searchStart = from + Math.max(0, maxLength - SPLIT_WINDOW);
+
+        int pos = lastIndexOf(text, '\n', limit - 1, searchStart);
+        if (pos >= 0) {
+            return pos + 1;
+        }
+
+        pos = lastIndexOf(text, ' ', limit - 1, searchStart);
+        if (pos >= 0) {
+            return pos + 1;
+        }
+
+        return limit;
+    }
+
+    /**
+     * Извлекает теги, оставшиеся открытыми в конце текста, в порядке их открытия
+     */
+    public static List<String> openTags(String text, String parseMode) {
+        return OpenTags.empty(parseMode).advance(text, 0, text.length()).toList();
+    }
+
+    private static String render(String text, int from, int to, OpenTags opening, OpenTags closing) {
+        int size = opening.openingLength() + (to - from) + closing.closingLength();
+        if (size == to - from) {
+            return text.substring(from, to);
+        }
+
+        StringBuilder part = new StringBuilder(size);
+        opening.appendOpening(part);
+        part.append(text, from, to);
+        closing.appendClosing(part);
+
+        return part.toString();
+    }
+
+    /**
+     * Ищет символ в обратном направлении, не заходя левее {@code floor}, чтобы не сканировать весь текст
+     */
+    private static int lastIndexOf(String text, char ch, int from, int floor) {
+        for (int i = from; i >= floor; i--) {
+            if (text.charAt(i) == ch) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Ищет символ только в [from, to): {@link String#indexOf(int, int)} дошел бы до конца текста, и разбор каждой
+     * части без нужного символа просматривал бы весь остаток сообщения
+     */
+    private static int indexOf(String text, char ch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == ch) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Неизменяемое состояние тегов, открытых к текущей позиции курсора
+     */
+    private abstract static class OpenTags {
+
+        static OpenTags empty(String parseMode) {
+            if (ParseMode.MARKDOWNV2.equals(parseMode)) {
+                return MarkdownV2Tags.EMPTY;
+            }
+            if (ParseMode.HTML.equals(parseMode)) {
+                return HtmlTags.EMPTY;
+            }
+
+            return NoTags.INSTANCE;
+        }
+
+        /**
+         * Возвращает состояние после фрагмента текста [from, to)
+         */
+        abstract OpenTags advance(String text, int from, int to);
+
+        abstract int openingLength();
+
+        abstract int closingLength();
+
+        abstract void appendOpening(StringBuilder out);
+
+        abstract void appendClosing(StringBuilder out);
+
+        abstract List<String> toList();
+    }
+
+    private static final class NoTags extends OpenTags {
+
+        static final NoTags INSTANCE = new NoTags();
+
+        @Override
+        OpenTags advance(String text, int from, int to) {
+            return this;
+        }
+
+        @Override
+        int openingLength() {
+            return 0;
+        }
+
+        @Override
+        int closingLength() {
+            return 0;
+        }
+
+        @Override
+        void appendOpening(StringBuilder out) {
+        }
+
+        @Override
+        void appendClosing(StringBuilder out) {
+        }
+
+        @Override
+        List<String> toList() {
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Маркеры MarkdownV2 хранятся битовой маской четности неэкранированных * _ ` ~
+     */
+    private static final class MarkdownV2Tags extends OpenTags {
+
+        private static final char[] MARKERS = {'*', '_', '`', '~'};
+        private static final MarkdownV2Tags[] BY_MASK = new MarkdownV2Tags[1 << MARKERS.length];
+        static final MarkdownV2Tags EMPTY;
+
+        static {
+            for (int mask = 0; mask < BY_MASK.length; mask++) {
+                BY_MASK[mask] = new MarkdownV2Tags(mask);
+            }
+            EMPTY = BY_MASK[0];
+        }
+
+        private final int mask;
+
+        private MarkdownV2Tags(int mask) {
+            this.mask = mask;
+        }
+
+        @Override
+        OpenTags advance(String text, int from, int to) {
+            int result = mask;
+
+            for (int i = from; i < to; i++) {
+                int bit = switch (text.charAt(i)) {
+                    case '*' -> 1;
+                    case '_' -> 2;
+                    case '`' -> 4;
+                    case '~' -> 8;
+                    default -> 0;
+                };
+
+                // Первый символ части экранировать нечем: обратный слэш остался в предыдущей части
+                if (bit != 0 && (i == from || text.charAt(i - 1) != '\\')) {
+                    result ^= bit;
+                }
+            }
+
+            return BY_MASK[result];
+        }
+
+        @Override
+        int openingLength() {
+            return Integer.bitCount(mask);
+        }
+
+        @Override
+        int closingLength() {
+            return Integer.bitCount(mask);
+        }
+
+        @Override
+        void appendOpening(StringBuilder out) {
+            for (int i = 0; i < MARKERS.length; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    out.append(MARKERS[i]);
+                }
+            }
+        }
+
+        @Override
+        void appendClosing(StringBuilder out) {
+            for (int i = MARKERS.length - 1; i >= 0; i--) {
+                if ((mask & (1 << i)) != 0) {
+                    out.append(MARKERS[i]);
+                }
+            }
+        }
+
+        @Override
+        List<String> toList() {
+            List<String> tags = new ArrayList<>(openingLength());
+
+            for (int i = 0; i < MARKERS.length; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    tags.add(String.valueOf(MARKERS[i]));
+                }
+            }
+
+            return tags;
+        }
+    }
+
+    /**
+     * Стек открытых HTML тегов. Закрывающий тег снимает вершину стека только при совпадении имени
+     */
+    private static final class HtmlTags extends OpenTags {
+
+        static final HtmlTags EMPTY = new HtmlTags(new ArrayList<>(), 0);
+
+        private final List<String> stack;
+        private final int nameLength;
+
+        private HtmlTags(List<String> stack, int nameLength) {
+            this.stack = stack;
+            this.nameLength = nameLength;
+        }
+
+        @Override
+        OpenTags advance(String text, int from, int to) {
+            List<String> result = null;
+            int resultNameLength = nameLength;
+            int pos = indexOf(text, '<', from, to);
+
+            while (pos >= 0) {
+                int nameStart = pos + 1;
+                boolean closing = nameStart < to && text.charAt(nameStart) == '/';
+                if (closing) {
+                    nameStart++;
+                }
+
+                int nameEnd = nameStart;
+                while (nameEnd < to && isAsciiLetter(text.charAt(nameEnd))) {
+                    nameEnd++;
+                }
+
+                int tagEnd = -1;
+                if (nameEnd > nameStart && nameEnd < to) {
+                    char next = text.charAt(nameEnd);
+
+                    if (next == '>') {
+                        tagEnd = nameEnd;
+                    } else if (isWhitespace(next)) {
+                        tagEnd = indexOf(text, '>', nameEnd + 1, to);
+                        if (tagEnd < 0) {
+                            // Дальше во фрагменте нет ни одного '>', значит и полных тегов больше нет
+                            break;
+                        }
+                    }
+                }
+
+                if (tagEnd < 0) {
+                    pos = indexOf(text, '<', pos + 1, to);
+                    continue;
+                }
+
+                if (result == null) {
+                    result = new ArrayList<>(stack);
+                }
+
+                int length = nameEnd - nameStart;
+                if (!closing) {
+                    result.add(text.substring(nameStart, nameEnd));
+                    resultNameLength += length;
+                } else if (!result.isEmpty()) {
+                    String top = result.get(result.size() - 1);
+
+                    if (top.length() == length && text.regionMatches(nameStart, top, 0, length)) {
+                        result.remove(result.size() - 1);
+                        resultNameLength -= length;
+                    }
+                }
+
+                pos = indexOf(text, '<', tagEnd + 1, to);
+            }
+
+            return result == null ? this : new HtmlTags(result, resultNameLength);
+        }
+
+        @Override
+        int openingLength() {
+            return 2 * stack.size() + nameLength;
+        }
+
+        @Override
+        int closingLength() {
+            return 3 * stack.size() + nameLength;
+        }
+
+        @Override
+        void appendOpening(StringBuilder out) {
+            for (String tag : stack) {
+                out.append('<').append(tag).append('>');
+            }
+        }
+
+        @Override
+        void appendClosing(StringBuilder out) {
+            for (int i = stack.size() - 1; i >= 0; i--) {
+                out.append("</").append(stack.get(i)).append('>');
+            }
+        }
+
+        @Override
+        List<String> toList() {
+            return new ArrayList<>(stack);
+        }
+
+        private static boolean isAsciiLetter(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+
+        /**
+         * Пробельные символы в смысле {@code \s} регулярных выражений
+         */
+        private static boolean isWhitespace(char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+        }
+    }
+}
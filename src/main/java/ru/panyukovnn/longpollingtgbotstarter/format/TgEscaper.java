@@ -0,0 +1,141 @@
+package ru.panyukovnn.longpollingtgbotstarter.format;
+
+import java.io.IOException;
+
+/**
+ * Табличный экранировщик текста для режимов разбора Telegram
+ * <p>
+ * Для каждого ASCII символа хранит строку замены (или {@code null}, если символ не требует экранирования),
+ * поэтому текст обходится один раз без цепочки {@link String#replace}. Если экранировать нечего,
+ * возвращается исходная строка без копирования.
+ */
+public final class TgEscaper {
+
+    /**
+     * Экранирование для Telegram MarkdownV2
+     * Символы для экранирования: _ * [ ] ( ) ~ ` > # + - = | { } . !
+     * Согласно документации: https://core.telegram.org/bots/api#markdownv2-style
+     */
+    public static final TgEscaper MARKDOWN_V2 = markdownV2();
+
+    /**
+     * Экранирование для Telegram HTML: &amp; &lt; &gt;
+     */
+    public static final TgEscaper HTML = html();
+
+    private final String[] replacements;
+
+    private TgEscaper(String[] replacements) {
+        this.replacements = replacements;
+    }
+
+    /**
+     * Экранирует текст
+     *
+     * @param text исходный текст
+     * @return исходная строка, если экранировать нечего, иначе новая экранированная строка
+     */
+    public String escape(String text) {
+        if (text == null) {
+            return null;
+        }
+
+        int first = indexOfSpecial(text, 0, text.length());
+        if (first < 0) {
+            return text;
+        }
+
+        int length = text.length();
+        StringBuilder result = new StringBuilder(length + (length >> 3) + 16);
+        result.append(text, 0, first);
+
+        return escape(text, first, length, result).toString();
+    }
+
+    /**
+     * Дописывает экранированный текст в {@link StringBuilder}
+     */
+    public StringBuilder escape(CharSequence text, StringBuilder out) {
+        return escape(text, 0, text.length(), out);
+    }
+
+    /**
+     * Дописывает экранированный фрагмент текста [start, end) в {@link StringBuilder}
+     */
+    public StringBuilder escape(CharSequence text, int start, int end, StringBuilder out) {
+        int runStart = start;
+
+        for (int i = start; i < end; i++) {
+            String replacement = replacementFor(text.charAt(i));
+
+            if (replacement != null) {
+                out.append(text, runStart, i).append(replacement);
+                runStart = i + 1;
+            }
+        }
+
+        return out.append(text, runStart, end);
+    }
+
+    /**
+     * Дописывает экранированный текст в произвольный {@link Appendable}, например в {@link java.io.Writer}
+     */
+    public Appendable escape(CharSequence text, Appendable out) throws IOException {
+        int length = text.length();
+        int runStart = 0;
+
+        for (int i = 0; i < length; i++) {
+            String replacement = replacementFor(text.charAt(i));
+
+            if (replacement != null) {
+                out.append(text, runStart, i).append(replacement);
+                runStart = i + 1;
+            }
+        }
+
+        return out.append(text, runStart, length);
+    }
+
+    /**
+     * Проверяет, нужно ли экранировать символ
+     */
+    public boolean isSpecial(char c) {
+        return c < 128 && replacements[c] != null;
+    }
+
+    /**
+     * Возвращает позицию первого символа в [start, end), требующего экранирования, или -1
+     */
+    public int indexOfSpecial(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (isSpecial(text.charAt(i))) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private String replacementFor(char c) {
+        return c < 128 ? replacements[c] : null;
+    }
+
+    private static TgEscaper markdownV2() {
+        String[] replacements = new String[128];
+
+        for (char c : "_*[]()~`>#+-=|{}.!".toCharArray()) {
+            replacements[c] = "\\" + c;
+        }
+
+        return new TgEscaper(replacements);
+    }
+
+    private static TgEscaper html() {
+        String[] replacements = new String[128];
+        replacements['&'] = "&amp;";
+        replacements['<'] = "&lt;";
+        replacements['>'] = "&gt;";
+
+        return new TgEscaper(replacements);
+    }
+}
@@ -0,0 +1,226 @@
+package ru.panyukovnn.longpollingtgbotstarter.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.telegram.telegrambots.meta.api.methods.ParseMode;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.InboundBuffer;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.StripedUpdateDispatcher;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики бота в Micrometer
+ * <p>
+ * Все счетчики и таймеры создаются в конструкторе, а таймеры обработчиков - заранее для каждого типа
+ * обновления из Bot API, поэтому запись метрики не ищет счетчик в реестре и не аллоцирует. Неизвестные типы
+ * учитываются с тегом type=other, так что количество временных рядов не зависит от входящих данных.
+ */
+public class MicrometerTgBotMetrics implements TgBotMetrics {
+
+    static final List<String> UPDATE_TYPES = List.of("message", "edited_message", "channel_post",
+        "edited_channel_post", "inline_query", "chosen_inline_result", "callback_query", "shipping_query",
+        "pre_checkout_query", "poll", "poll_answer", "my_chat_member", "chat_member", "chat_join_request");
+
+    private static final String OTHER_TYPE = "other";
+
+    private final MeterRegistry registry;
+    private final String bot;
+    private final Timer pollDuration;
+    private final DistributionSummary pollUpdates;
+    private final Counter pollErrors;
+    private final Timer updateLag;
+    private final Map<String, Timer> handlerDurations = new HashMap<>();
+    private final Counter duplicateUpdates;
+    private final Timer markdownV2SendDuration;
+    private final Timer htmlSendDuration;
+    private final Timer failedSendDuration;
+    private final DistributionSummary sendParts;
+    private final Counter sendFailures;
+    private final Counter validationFallbacks;
+    private final Counter sendFallbacks;
+    private final Counter rateLimited;
+
+    public MicrometerTgBotMetrics(MeterRegistry registry, String bot) {
+        this.registry = registry;
+        this.bot = bot;
+        this.pollDuration = Timer.builder("tg.bot.poll.duration")
+            .description("Время запроса getUpdates вместе с ожиданием long polling")
+            .tag("bot", bot)
+            .register(registry);
+        this.pollUpdates = DistributionSummary.builder("tg.bot.poll.updates")
+            .description("Количество обновлений в ответе getUpdates")
+            .baseUnit("updates")
+            .tag("bot", bot)
+            .register(registry);
+        this.pollErrors = Counter.builder("tg.bot.poll.errors")
+            .description("Ошибки запроса getUpdates")
+            .tag("bot", bot)
+            .register(registry);
+        this.updateLag = Timer.builder("tg.bot.update.lag")
+            .description("Время от создания обновления в Telegram до начала его обработки")
+            .tag("bot", bot)
+            .register(registry);
+
+        this.duplicateUpdates = Counter.builder("tg.bot.update.duplicates")
+            .description("Повторно полученные обновления, отсеянные до обработки")
+            .tag("bot", bot)
+            .register(registry);
+
+        for (String type : UPDATE_TYPES) {
+            handlerDurations.put(type, handlerTimer(registry, bot, type));
+        }
+        handlerDurations.put(OTHER_TYPE, handlerTimer(registry, bot, OTHER_TYPE));
+
+        this.markdownV2SendDuration = sendTimer(registry, bot, ParseMode.MARKDOWNV2, "success");
+        this.htmlSendDuration = sendTimer(registry, bot, ParseMode.HTML, "success");
+        this.failedSendDuration = sendTimer(registry, bot, "none", "failure");
+        this.sendParts = DistributionSummary.builder("tg.bot.send.parts")
+            .description("Количество частей отправленного сообщения")
+            .baseUnit("parts")
+            .tag("bot", bot)
+            .register(registry);
+        this.sendFailures = Counter.builder("tg.bot.send.failures")
+            .description("Сообщения, которые не удалось отправить и с HTML")
+            .tag("bot", bot)
+            .register(registry);
+        this.validationFallbacks = fallbackCounter(registry, bot, "validation");
+        this.sendFallbacks = fallbackCounter(registry, bot, "rejected");
+        this.rateLimited = Counter.builder("tg.bot.send.rate.limited")
+            .description("Ответы 429 Too Many Requests")
+            .tag("bot", bot)
+            .register(registry);
+    }
+
+    /**
+     * Фабрика метрик для бинов ботов с общим реестром
+     */
+    public static TgBotMetricsFactory factory(MeterRegistry registry) {
+        return bot -> new MicrometerTgBotMetrics(registry, bot);
+    }
+
+    /**
+     * Регистрирует глубину очередей диспетчера. Диспетчер общий для всех ботов, поэтому у метрик нет тега bot
+     */
+    public static void bindDispatcher(MeterRegistry registry, StripedUpdateDispatcher dispatcher) {
+        Gauge.builder("tg.bot.dispatch.queued", dispatcher, StripedUpdateDispatcher::getQueuedCount)
+            .description("Обновления, ожидающие обработки во всех очередях")
+            .baseUnit("updates")
+            .register(registry);
+        Gauge.builder("tg.bot.dispatch.lane.depth.max", dispatcher, StripedUpdateDispatcher::getMaxLaneDepth)
+            .description("Глубина самой загруженной очереди")
+            .baseUnit("updates")
+            .register(registry);
+        for (int lane = 0; lane < dispatcher.getLaneCount(); lane++) {
+            int index = lane;
+            Gauge.builder("tg.bot.dispatch.lane.depth", dispatcher, striped -> striped.getLaneDepth(index))
+                .description("Обновления, ожидающие обработки в очереди")
+                .baseUnit("updates")
+                .tag("lane", String.valueOf(lane))
+                .register(registry);
+        }
+    }
+
+    @Override
+    public void inboundBuffer(InboundBuffer buffer) {
+        Gauge.builder("tg.bot.inbound.queued", buffer, InboundBuffer::getQueuedCount)
+            .description("Принятые и не обработанные обновления")
+            .baseUnit("updates")
+            .tag("bot", bot)
+            .tag("policy", buffer.getPolicy().name().toLowerCase(Locale.ROOT))
+            .register(registry);
+        FunctionCounter.builder("tg.bot.inbound.dropped", buffer, InboundBuffer::getDroppedCount)
+            .description("Обновления, отброшенные при переполнении буфера входящих обновлений")
+            .baseUnit("updates")
+            .tag("bot", bot)
+            .register(registry);
+    }
+
+    @Override
+    public void pollCompleted(long durationNanos, int updates) {
+        pollDuration.record(durationNanos, TimeUnit.NANOSECONDS);
+        pollUpdates.record(updates);
+    }
+
+    @Override
+    public void pollFailed() {
+        pollErrors.increment();
+    }
+
+    @Override
+    public void updateHandled(String updateType, long dateSeconds, long durationNanos) {
+        if (dateSeconds > 0) {
+            long lagMillis = System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(durationNanos)
+                - TimeUnit.SECONDS.toMillis(dateSeconds);
+            updateLag.record(Math.max(0, lagMillis), TimeUnit.MILLISECONDS);
+        }
+
+        Timer timer = updateType != null ? handlerDurations.get(updateType) : null;
+        (timer != null ? timer : handlerDurations.get(OTHER_TYPE)).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void duplicateUpdate() {
+        duplicateUpdates.increment();
+    }
+
+    @Override
+    public void messageSent(String parseMode, int parts, long durationNanos) {
+        (ParseMode.HTML.equals(parseMode) ? htmlSendDuration : markdownV2SendDuration)
+            .record(durationNanos, TimeUnit.NANOSECONDS);
+        sendParts.record(parts);
+    }
+
+    @Override
+    public void messageFailed(long durationNanos) {
+        failedSendDuration.record(durationNanos, TimeUnit.NANOSECONDS);
+        sendFailures.increment();
+    }
+
+    @Override
+    public void markdownV2ValidationFallback() {
+        validationFallbacks.increment();
+    }
+
+    @Override
+    public void markdownV2SendFallback() {
+        sendFallbacks.increment();
+    }
+
+    @Override
+    public void rateLimited() {
+        rateLimited.increment();
+    }
+
+    private static Timer handlerTimer(MeterRegistry registry, String bot, String type) {
+        return Timer.builder("tg.bot.handler.duration")
+            .description("Время обработки обновления командой или слушателями событий")
+            .tag("bot", bot)
+            .tag("type", type)
+            .register(registry);
+    }
+
+    private static Timer sendTimer(MeterRegistry registry, String bot, String parseMode, String outcome) {
+        return Timer.builder("tg.bot.send.duration")
+            .description("Время отправки сообщения со всеми частями")
+            .tag("bot", bot)
+            .tag("parse_mode", parseMode)
+            .tag("outcome", outcome)
+            .register(registry);
+    }
+
+    private static Counter fallbackCounter(MeterRegistry registry, String bot, String reason) {
+        return Counter.builder("tg.bot.send.fallbacks")
+            .description("Переходы с MarkdownV2 на HTML")
+            .tag("bot", bot)
+            .tag("reason", reason)
+            .register(registry);
+    }
+}
@@ -0,0 +1,88 @@
+package ru.panyukovnn.longpollingtgbotstarter.metrics;
+
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.InboundBuffer;
+
+/**
+ * Метрики бота: опрос getUpdates, обработка обновлений и отправка сообщений
+ * <p>
+ * Методы вызываются на горячем пути, поэтому принимают примитивы и строки из ограниченного набора: тип
+ * обновления, режим парсинга. Идентификаторы чатов в метрики не передаются. Реализация по умолчанию
+ * {@link #NOOP} ничего не делает, с Micrometer используется {@link MicrometerTgBotMetrics}.
+ */
+public interface TgBotMetrics {
+
+    TgBotMetrics NOOP = new TgBotMetrics() {
+    };
+
+    /**
+     * Бот ограничивает количество необработанных обновлений буфером. Вызывается один раз при создании бота,
+     * реализация может опрашивать буфер сама
+     */
+    default void inboundBuffer(InboundBuffer buffer) {
+    }
+
+    /**
+     * Запрос getUpdates завершился
+     *
+     * @param durationNanos время запроса вместе с ожиданием long polling
+     * @param updates       количество обновлений в ответе
+     */
+    default void pollCompleted(long durationNanos, int updates) {
+    }
+
+    /**
+     * Запрос getUpdates завершился ошибкой
+     */
+    default void pollFailed() {
+    }
+
+    /**
+     * Обработчик обновления завершился
+     *
+     * @param updateType    тип обновления: message, callback_query и т.д.
+     * @param dateSeconds   время создания обновления из поля date или 0, если у обновления его нет
+     * @param durationNanos время работы обработчика
+     */
+    default void updateHandled(String updateType, long dateSeconds, long durationNanos) {
+    }
+
+    /**
+     * Повторно полученное обновление отсеяно и не обработано
+     */
+    default void duplicateUpdate() {
+    }
+
+    /**
+     * Сообщение отправлено
+     *
+     * @param parseMode     режим парсинга, с которым сообщение доставлено
+     * @param parts         количество отправленных частей
+     * @param durationNanos время отправки всех частей, включая ожидание ограничителя частоты
+     */
+    default void messageSent(String parseMode, int parts, long durationNanos) {
+    }
+
+    /**
+     * Сообщение не удалось отправить и с HTML
+     */
+    default void messageFailed(long durationNanos) {
+    }
+
+    /**
+     * Сообщение не прошло локальную проверку MarkdownV2 и отправлено с HTML
+     */
+    default void markdownV2ValidationFallback() {
+    }
+
+    /**
+     * Telegram отклонил сообщение с MarkdownV2, и оно отправлено с HTML
+     */
+    default void markdownV2SendFallback() {
+    }
+
+    /**
+     * Telegram ответил 429 Too Many Requests
+     */
+    default void rateLimited() {
+    }
+}
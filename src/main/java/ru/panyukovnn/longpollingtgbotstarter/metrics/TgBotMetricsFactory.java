@@ -0,0 +1,14 @@
+package ru.panyukovnn.longpollingtgbotstarter.metrics;
+
+/**
+ * Создает {@link TgBotMetrics} для бота. Бин регистрируется автоконфигурацией, если в контексте есть
+ * MeterRegistry, и может быть переопределен
+ */
+@FunctionalInterface
+public interface TgBotMetricsFactory {
+
+    /**
+     * @param bot имя бота или идентификатор из telegram.bot.instances, используется как тег bot
+     */
+    TgBotMetrics forBot(String bot);
+}
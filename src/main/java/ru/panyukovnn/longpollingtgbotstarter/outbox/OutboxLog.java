@@ -0,0 +1,519 @@
+package ru.panyukovnn.longpollingtgbotstarter.outbox;
+
+import org.telegram.telegrambots.meta.api.methods.ParseMode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал исходящих сообщений с упреждающей записью
+ * <p>
+ * Журнал состоит из сегментов - отображаемых в память файлов фиксированного размера, в которые только
+ * дописываются записи: сообщение поставлено в очередь, часть сообщения отправлена, сообщение завершено.
+ * Запись на диск (fsync) выполняет отдельный поток: пока он сбрасывает одну порцию, следующие записи копятся
+ * в памяти и сбрасываются вместе, поэтому частота постановки в очередь не ограничена задержкой диска.
+ * Сегмент удаляется, когда все сообщения, поставленные в очередь до его закрытия, завершены.
+ * <p>
+ * При открытии журнал читается целиком, и сообщения без записи о завершении доступны через
+ * {@link #takeRecovered()} вместе с количеством уже отправленных частей.
+ */
+public class OutboxLog implements AutoCloseable {
+
+    private static final String SEGMENT_PREFIX = "outbox-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int SEGMENT_HEADER = 8;
+    private static final int RECORD_HEADER = 8;
+    private static final int END_MARKER = 4;
+
+    private static final byte ENQUEUED = 1;
+    private static final byte PART_SENT = 2;
+    private static final byte COMPLETED = 3;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition written = lock.newCondition();
+    private final Condition committed = lock.newCondition();
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final TreeSet<Long> pending = new TreeSet<>();
+    private final Thread committer;
+    private List<PendingMessage> recovered;
+    private long nextId = 1;
+    private long nextSegmentNumber;
+    private long writtenBytes;
+    private long committedBytes;
+    private IOException failure;
+    private boolean running = true;
+
+    /**
+     * Открывает журнал в каталоге и восстанавливает незавершенные сообщения
+     *
+     * @param directory   каталог сегментов, создается при необходимости
+     * @param segmentSize размер сегмента в байтах, ограничивает размер одного сообщения
+     */
+    public OutboxLog(Path directory, int segmentSize) {
+        if (segmentSize < 1024) {
+            throw new IllegalArgumentException("Размер сегмента журнала должен быть не меньше 1024 байт");
+        }
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        try {
+            Files.createDirectories(directory);
+            this.recovered = recover();
+            if (segments.isEmpty()) {
+                segments.addLast(createSegment());
+            }
+        } catch (IOException e) {
+            segments.forEach(Segment::closeQuietly);
+            throw new UncheckedIOException("Не удалось открыть журнал исходящих сообщений " + directory, e);
+        }
+
+        deleteCompletedSegments();
+        this.committer = Thread.ofPlatform().daemon().name("tg-outbox-commit").start(this::commitLoop);
+    }
+
+    /**
+     * Сообщения, которые не были отправлены до остановки приложения. Возвращаются только при первом вызове
+     */
+    public List<PendingMessage> takeRecovered() {
+        lock.lock();
+        try {
+            List<PendingMessage> result = recovered;
+            recovered = List.of();
+
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ставит сообщение в очередь. Запись становится надежной после {@link #sync()}
+     *
+     * @return идентификатор сообщения в журнале
+     */
+    public long append(long chatId, String message) {
+        byte[] text = message.getBytes(StandardCharsets.UTF_8);
+
+        lock.lock();
+        try {
+            long id = nextId++;
+            ByteBuffer body = writeRecord(1 + 8 + 8 + 4 + text.length);
+            body.put(ENQUEUED).putLong(id).putLong(chatId).putInt(text.length).put(text);
+            finishRecord(body);
+            pending.add(id);
+
+            return id;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Отмечает отправку части сообщения и ждет записи отметки на диск, чтобы после перезапуска
+     * часть не была отправлена повторно
+     *
+     * @param parseMode режим парсинга, с которым отправлена часть: от него зависит разбиение на части
+     */
+    public void partSent(long id, String parseMode, int partIndex) throws InterruptedException {
+        lock.lock();
+        try {
+            ByteBuffer body = writeRecord(1 + 8 + 1 + 4);
+            body.put(PART_SENT).putLong(id).put(ParseMode.HTML.equals(parseMode) ? (byte) 1 : 0).putInt(partIndex);
+            finishRecord(body);
+        } finally {
+            lock.unlock();
+        }
+
+        sync();
+    }
+
+    /**
+     * Отмечает сообщение завершенным. Не ждет записи на диск: если отметка потеряется, после перезапуска
+     * сообщение будет восстановлено, но все его части уже отмечены отправленными
+     */
+    public void complete(long id) {
+        lock.lock();
+        try {
+            ByteBuffer body = writeRecord(1 + 8);
+            body.put(COMPLETED).putLong(id);
+            finishRecord(body);
+            pending.remove(id);
+            deleteCompletedSegments();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ждет, пока все сделанные до вызова записи будут сброшены на диск
+     *
+     * @throws UncheckedIOException если сбросить журнал на диск не удалось
+     */
+    public void sync() throws InterruptedException {
+        lock.lock();
+        try {
+            long target = writtenBytes;
+            while (committedBytes < target) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Не удалось записать журнал исходящих сообщений", failure);
+                }
+                committed.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Количество незавершенных сообщений
+     */
+    public int pendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Количество файлов сегментов
+     */
+    public int segmentCount() {
+        lock.lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+            written.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        lock.lock();
+        try {
+            segments.peekLast().force();
+            segments.forEach(Segment::closeQuietly);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Резервирует место под запись в текущем сегменте и возвращает буфер, позиционированный на тело записи
+     */
+    private ByteBuffer writeRecord(int bodyLength) {
+        if (!running) {
+            throw new IllegalStateException("Журнал исходящих сообщений закрыт");
+        }
+
+        int recordLength = RECORD_HEADER + bodyLength;
+        if (SEGMENT_HEADER + recordLength + END_MARKER > segmentSize) {
+            throw new IllegalArgumentException("Запись размером " + recordLength
+                + " байт не помещается в сегмент журнала размером " + segmentSize);
+        }
+
+        Segment segment = segments.peekLast();
+        if (segment.position + recordLength + END_MARKER > segment.buffer.capacity()) {
+            segment = rollSegment();
+        }
+
+        ByteBuffer buffer = segment.buffer;
+        buffer.limit(segment.position + recordLength);
+        buffer.position(segment.position + RECORD_HEADER);
+
+        return buffer;
+    }
+
+    private void finishRecord(ByteBuffer buffer) {
+        Segment segment = segments.peekLast();
+        int start = segment.position;
+        int end = buffer.position();
+        int bodyLength = end - start - RECORD_HEADER;
+
+        buffer.limit(buffer.capacity());
+        buffer.putInt(end, 0);
+        buffer.putInt(start + 4, (int) checksum(buffer, start + RECORD_HEADER, bodyLength));
+        buffer.putInt(start, bodyLength);
+
+        segment.position = end;
+        writtenBytes += end - start;
+        written.signal();
+    }
+
+    private Segment rollSegment() {
+        Segment current = segments.peekLast();
+        current.force();
+
+        try {
+            Segment next = createSegment();
+            segments.addLast(next);
+
+            return next;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать сегмент журнала исходящих сообщений", e);
+        }
+    }
+
+    /**
+     * Удаляет сегменты с начала журнала, если все сообщения, поставленные в очередь до их закрытия, завершены.
+     * Записи незавершенного сообщения всегда находятся в сегменте с его постановкой в очередь или позже
+     */
+    private void deleteCompletedSegments() {
+        while (segments.size() > 1) {
+            Iterator<Segment> iterator = segments.iterator();
+            Segment oldest = iterator.next();
+            long nextFirstId = iterator.next().firstId;
+            if (!pending.isEmpty() && pending.first() < nextFirstId) {
+                return;
+            }
+
+            segments.removeFirst();
+            oldest.closeQuietly();
+            try {
+                Files.deleteIfExists(oldest.path);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось удалить сегмент журнала " + oldest.path, e);
+            }
+        }
+    }
+
+    private void commitLoop() {
+        while (true) {
+            Segment segment;
+            long target;
+            int from;
+            int to;
+
+            lock.lock();
+            try {
+                while (running && committedBytes == writtenBytes) {
+                    written.awaitUninterruptibly();
+                }
+                if (committedBytes == writtenBytes) {
+                    return;
+                }
+
+                target = writtenBytes;
+                segment = segments.peekLast();
+                from = segment.forcedPosition;
+                to = segment.position;
+                segment.forcedPosition = to;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                segment.buffer.force(from, to - from);
+            } catch (UncheckedIOException e) {
+                error = e.getCause();
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                } else {
+                    committedBytes = target;
+                }
+                committed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            if (error != null) {
+                return;
+            }
+        }
+    }
+
+    private List<PendingMessage> recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream
+                .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                .sorted()
+                .toList();
+        }
+
+        Map<Long, PendingMessage> messages = new TreeMap<>();
+        for (Path file : files) {
+            if (Files.size(file) < SEGMENT_HEADER + END_MARKER) {
+                // Сегмент не успел создаться до остановки
+                Files.delete(file);
+                continue;
+            }
+
+            Segment segment = openSegment(file, 0);
+            segments.addLast(segment);
+            nextSegmentNumber = Math.max(nextSegmentNumber, segmentNumber(file) + 1);
+            nextId = Math.max(nextId, segment.firstId);
+            readRecords(segment, messages);
+        }
+
+        pending.addAll(messages.keySet());
+
+        return List.copyOf(messages.values());
+    }
+
+    private void readRecords(Segment segment, Map<Long, PendingMessage> messages) {
+        ByteBuffer buffer = segment.buffer;
+        int position = SEGMENT_HEADER;
+
+        records:
+        while (position + RECORD_HEADER <= buffer.capacity()) {
+            int bodyLength = buffer.getInt(position);
+            int bodyStart = position + RECORD_HEADER;
+            if (bodyLength <= 0 || bodyStart + bodyLength > buffer.capacity()
+                || buffer.getInt(position + 4) != (int) checksum(buffer, bodyStart, bodyLength)) {
+                break;
+            }
+
+            ByteBuffer body = buffer.slice(bodyStart, bodyLength);
+            byte type = body.get();
+            long id = body.getLong();
+            switch (type) {
+                case ENQUEUED -> {
+                    long chatId = body.getLong();
+                    byte[] text = new byte[body.getInt()];
+                    body.get(text);
+                    messages.put(id, new PendingMessage(id, chatId, new String(text, StandardCharsets.UTF_8), null, 0));
+                    nextId = Math.max(nextId, id + 1);
+                }
+                case PART_SENT -> {
+                    String parseMode = body.get() == 1 ? ParseMode.HTML : ParseMode.MARKDOWNV2;
+                    int partIndex = body.getInt();
+                    messages.computeIfPresent(id, (key, message) ->
+                        new PendingMessage(id, message.chatId(), message.message(), parseMode, partIndex + 1));
+                }
+                case COMPLETED -> messages.remove(id);
+                default -> {
+                    break records;
+                }
+            }
+
+            position = bodyStart + bodyLength;
+        }
+
+        segment.position = position;
+        segment.forcedPosition = position;
+    }
+
+    private Segment createSegment() throws IOException {
+        Path file = directory.resolve(SEGMENT_PREFIX + String.format("%020d", nextSegmentNumber++) + SEGMENT_SUFFIX);
+        Segment segment = openSegment(file, segmentSize);
+        segment.buffer.putLong(0, nextId);
+        segment.buffer.putInt(SEGMENT_HEADER, 0);
+        segment.buffer.force(0, SEGMENT_HEADER + END_MARKER);
+
+        return new Segment(file, segment.channel, segment.buffer, nextId);
+    }
+
+    private static Segment openSegment(Path file, int size) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+
+            return new Segment(file, channel, buffer, buffer.getLong(0));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static long checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset, length));
+
+        return crc.getValue();
+    }
+
+    /**
+     * Незавершенное сообщение из журнала
+     *
+     * @param id        идентификатор в журнале
+     * @param chatId    идентификатор чата
+     * @param message   исходный текст сообщения
+     * @param parseMode режим парсинга, с которым отправлялись части, или null, если частей не отправлено
+     * @param sentParts количество частей, отправленных в режиме parseMode
+     */
+    public record PendingMessage(long id, long chatId, String message, String parseMode, int sentParts) {
+    }
+
+    private static final class Segment {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final long firstId;
+        private int position = SEGMENT_HEADER;
+        private int forcedPosition = SEGMENT_HEADER;
+
+        Segment(Path path, FileChannel channel, MappedByteBuffer buffer, long firstId) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.firstId = firstId;
+        }
+
+        void force() {
+            buffer.force(forcedPosition, position - forcedPosition);
+            forcedPosition = position;
+        }
+
+        void closeQuietly() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Отображение в память остается действительным и после закрытия канала
+            }
+        }
+    }
+}
@@ -1,12 +1,32 @@
 package ru.panyukovnn.longpollingtgbotstarter.property;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.DispatchMode;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.OverflowPolicy;
+import ru.panyukovnn.longpollingtgbotstarter.transport.TransportType;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @ConfigurationProperties(prefix = "telegram.bot")
 public class TgBotProperties {
 
     private String name;
     private String token;
+    private String baseUrl = "https://api.telegram.org/bot";
+    private RateLimit rateLimit = new RateLimit();
+    private Dispatch dispatch = new Dispatch();
+    private Polling polling = new Polling();
+    private Transport transport = new Transport();
+    private Map<String, Instance> instances = new LinkedHashMap<>();
+    private Cluster cluster = new Cluster();
+    private Checkpoint checkpoint = new Checkpoint();
+    private Outbox outbox = new Outbox();
+    private Dedup dedup = new Dedup();
+    private Sender sender = new Sender();
 
     public String getName() {
         return name;
@@ -23,4 +43,598 @@ public class TgBotProperties {
     public void setToken(String token) {
         this.token = token;
     }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public void setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(RateLimit rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public Dispatch getDispatch() {
+        return dispatch;
+    }
+
+    public void setDispatch(Dispatch dispatch) {
+        this.dispatch = dispatch;
+    }
+
+    public Polling getPolling() {
+        return polling;
+    }
+
+    public void setPolling(Polling polling) {
+        this.polling = polling;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
+    public Map<String, Instance> getInstances() {
+        return instances;
+    }
+
+    public void setInstances(Map<String, Instance> instances) {
+        this.instances = instances;
+    }
+
+    public Cluster getCluster() {
+        return cluster;
+    }
+
+    public void setCluster(Cluster cluster) {
+        this.cluster = cluster;
+    }
+
+    public Checkpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(Checkpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    public Outbox getOutbox() {
+        return outbox;
+    }
+
+    public void setOutbox(Outbox outbox) {
+        this.outbox = outbox;
+    }
+
+    public Dedup getDedup() {
+        return dedup;
+    }
+
+    public void setDedup(Dedup dedup) {
+        this.dedup = dedup;
+    }
+
+    public Sender getSender() {
+        return sender;
+    }
+
+    public void setSender(Sender sender) {
+        this.sender = sender;
+    }
+
+    /**
+     * Ограничения частоты исходящих сообщений, по умолчанию соответствуют лимитам Telegram
+     */
+    public static class RateLimit {
+
+        private int globalPerSecond = 30;
+        private int chatPerSecond = 1;
+        private int groupPerMinute = 20;
+        private int chatBurst = 3;
+        private int maxRetries = 3;
+
+        public int getGlobalPerSecond() {
+            return globalPerSecond;
+        }
+
+        public void setGlobalPerSecond(int globalPerSecond) {
+            this.globalPerSecond = globalPerSecond;
+        }
+
+        public int getChatPerSecond() {
+            return chatPerSecond;
+        }
+
+        public void setChatPerSecond(int chatPerSecond) {
+            this.chatPerSecond = chatPerSecond;
+        }
+
+        public int getGroupPerMinute() {
+            return groupPerMinute;
+        }
+
+        public void setGroupPerMinute(int groupPerMinute) {
+            this.groupPerMinute = groupPerMinute;
+        }
+
+        public int getChatBurst() {
+            return chatBurst;
+        }
+
+        public void setChatBurst(int chatBurst) {
+            this.chatBurst = chatBurst;
+        }
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+    }
+
+    /**
+     * Обработка входящих обновлений
+     */
+    public static class Dispatch {
+
+        private DispatchMode mode = DispatchMode.DIRECT;
+        private int lanes = Runtime.getRuntime().availableProcessors();
+        private int queueCapacity = 1000;
+        private int perChatConcurrency = 0;
+        private boolean batchEvent = false;
+        private boolean batchOnly = false;
+        private int inboundCapacity = 0;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+        public DispatchMode getMode() {
+            return mode;
+        }
+
+        public void setMode(DispatchMode mode) {
+            this.mode = mode;
+        }
+
+        public int getLanes() {
+            return lanes;
+        }
+
+        public void setLanes(int lanes) {
+            this.lanes = lanes;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getPerChatConcurrency() {
+            return perChatConcurrency;
+        }
+
+        public void setPerChatConcurrency(int perChatConcurrency) {
+            this.perChatConcurrency = perChatConcurrency;
+        }
+
+        public boolean isBatchEvent() {
+            return batchEvent;
+        }
+
+        public void setBatchEvent(boolean batchEvent) {
+            this.batchEvent = batchEvent;
+        }
+
+        public boolean isBatchOnly() {
+            return batchOnly;
+        }
+
+        public void setBatchOnly(boolean batchOnly) {
+            this.batchOnly = batchOnly;
+        }
+
+        public int getInboundCapacity() {
+            return inboundCapacity;
+        }
+
+        public void setInboundCapacity(int inboundCapacity) {
+            this.inboundCapacity = inboundCapacity;
+        }
+
+        public OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
+    }
+
+    /**
+     * Параметры запроса getUpdates
+     */
+    public static class Polling {
+
+        private int limit = 100;
+        private int timeout = 50;
+        private int maxThreads = 1;
+        private List<String> allowedUpdates = new ArrayList<>();
+        private boolean autoAllowedUpdates = false;
+        private boolean lazyUpdates = false;
+
+        public int getLimit() {
+            return limit;
+        }
+
+        public void setLimit(int limit) {
+            this.limit = limit;
+        }
+
+        public int getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(int timeout) {
+            this.timeout = timeout;
+        }
+
+        public int getMaxThreads() {
+            return maxThreads;
+        }
+
+        public void setMaxThreads(int maxThreads) {
+            this.maxThreads = maxThreads;
+        }
+
+        public List<String> getAllowedUpdates() {
+            return allowedUpdates;
+        }
+
+        public void setAllowedUpdates(List<String> allowedUpdates) {
+            this.allowedUpdates = allowedUpdates;
+        }
+
+        public boolean isAutoAllowedUpdates() {
+            return autoAllowedUpdates;
+        }
+
+        public void setAutoAllowedUpdates(boolean autoAllowedUpdates) {
+            this.autoAllowedUpdates = autoAllowedUpdates;
+        }
+
+        public boolean isLazyUpdates() {
+            return lazyUpdates;
+        }
+
+        public void setLazyUpdates(boolean lazyUpdates) {
+            this.lazyUpdates = lazyUpdates;
+        }
+    }
+
+    /**
+     * HTTP транспорт запросов к Bot API
+     */
+    public static class Transport {
+
+        private TransportType type = TransportType.TELEGRAMBOTS;
+        private int connections = 2;
+        private Duration connectTimeout = Duration.ofSeconds(10);
+        private Duration requestTimeout = Duration.ofSeconds(60);
+        private boolean http2 = true;
+
+        public TransportType getType() {
+            return type;
+        }
+
+        public void setType(TransportType type) {
+            this.type = type;
+        }
+
+        public int getConnections() {
+            return connections;
+        }
+
+        public void setConnections(int connections) {
+            this.connections = connections;
+        }
+
+        public Duration getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public Duration getRequestTimeout() {
+            return requestTimeout;
+        }
+
+        public void setRequestTimeout(Duration requestTimeout) {
+            this.requestTimeout = requestTimeout;
+        }
+
+        public boolean isHttp2() {
+            return http2;
+        }
+
+        public void setHttp2(boolean http2) {
+            this.http2 = http2;
+        }
+    }
+
+    /**
+     * Бот из telegram.bot.instances. Остальные настройки (polling, dispatch, transport, rate-limit)
+     * общие для всех ботов
+     */
+    public static class Instance {
+
+        private String name;
+        private String token;
+        private boolean primary = false;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public void setToken(String token) {
+            this.token = token;
+        }
+
+        public boolean isPrimary() {
+            return primary;
+        }
+
+        public void setPrimary(boolean primary) {
+            this.primary = primary;
+        }
+    }
+
+    /**
+     * Распределенная обработка: один узел опрашивает Telegram, остальные получают обновления по партициям
+     */
+    public static class Cluster {
+
+        private boolean enabled = false;
+        private int partitions = 16;
+        private List<Integer> workerPartitions = new ArrayList<>();
+        private boolean worker = true;
+        private String lockFile;
+        private Duration leaderRetryInterval = Duration.ofSeconds(5);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getPartitions() {
+            return partitions;
+        }
+
+        public void setPartitions(int partitions) {
+            this.partitions = partitions;
+        }
+
+        public List<Integer> getWorkerPartitions() {
+            return workerPartitions;
+        }
+
+        public void setWorkerPartitions(List<Integer> workerPartitions) {
+            this.workerPartitions = workerPartitions;
+        }
+
+        public boolean isWorker() {
+            return worker;
+        }
+
+        public void setWorker(boolean worker) {
+            this.worker = worker;
+        }
+
+        public String getLockFile() {
+            return lockFile;
+        }
+
+        public void setLockFile(String lockFile) {
+            this.lockFile = lockFile;
+        }
+
+        public Duration getLeaderRetryInterval() {
+            return leaderRetryInterval;
+        }
+
+        public void setLeaderRetryInterval(Duration leaderRetryInterval) {
+            this.leaderRetryInterval = leaderRetryInterval;
+        }
+    }
+
+    /**
+     * Сохранение смещения обработанных обновлений в файл для обработки at-least-once после перезапуска
+     */
+    public static class Checkpoint {
+
+        private boolean enabled = false;
+        private String file;
+        private Duration flushInterval = Duration.ofSeconds(1);
+        private int maxInFlight = 100;
+        private Duration ackTimeout = Duration.ofMinutes(5);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public void setFile(String file) {
+            this.file = file;
+        }
+
+        public Duration getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public void setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        public Duration getAckTimeout() {
+            return ackTimeout;
+        }
+
+        public void setAckTimeout(Duration ackTimeout) {
+            this.ackTimeout = ackTimeout;
+        }
+    }
+
+    /**
+     * Журнал исходящих сообщений, чтобы сообщения из очереди {@code sendAsync} не терялись при перезапуске
+     */
+    public static class Outbox {
+
+        private boolean enabled = false;
+        private String directory;
+        private int segmentSize = 16 * 1024 * 1024;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public int getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+    }
+
+    /**
+     * Отсеивание повторно полученных обновлений по update_id
+     */
+    public static class Dedup {
+
+        private boolean enabled = false;
+        private int capacity = 10_000;
+        private String snapshotFile;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public String getSnapshotFile() {
+            return snapshotFile;
+        }
+
+        public void setSnapshotFile(String snapshotFile) {
+            this.snapshotFile = snapshotFile;
+        }
+    }
+
+    /**
+     * Отправка сообщений через TgSender
+     */
+    public static class Sender {
+
+        private Duration coalesceWindow = Duration.ZERO;
+
+        private Duration streamInterval = Duration.ofSeconds(1);
+
+        private int executorThreads = 64;
+
+        private int executorQueueCapacity = 10_000;
+
+        public Duration getCoalesceWindow() {
+            return coalesceWindow;
+        }
+
+        public void setCoalesceWindow(Duration coalesceWindow) {
+            this.coalesceWindow = coalesceWindow;
+        }
+
+        public Duration getStreamInterval() {
+            return streamInterval;
+        }
+
+        public void setStreamInterval(Duration streamInterval) {
+            this.streamInterval = streamInterval;
+        }
+
+        public int getExecutorThreads() {
+            return executorThreads;
+        }
+
+        public void setExecutorThreads(int executorThreads) {
+            this.executorThreads = executorThreads;
+        }
+
+        public int getExecutorQueueCapacity() {
+            return executorQueueCapacity;
+        }
+
+        public void setExecutorQueueCapacity(int executorQueueCapacity) {
+            this.executorQueueCapacity = executorQueueCapacity;
+        }
+    }
 }
@@ -0,0 +1,282 @@
+package ru.panyukovnn.longpollingtgbotstarter.raw;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Минимальный сканер JSON поверх массива байт без построения дерева
+ * <p>
+ * Умеет пропускать значения целиком, искать ключ в объекте верхнего уровня и читать числа и строки.
+ * Все методы принимают позицию в массиве и возвращают позицию, поэтому сканер не хранит состояния и
+ * ничего не аллоцирует, кроме прочитанных строк. Некорректный JSON приводит к {@link IllegalArgumentException}.
+ */
+final class JsonScanner {
+
+    static final int NOT_FOUND = -1;
+
+    private JsonScanner() {
+    }
+
+    /**
+     * @return позиция первого непробельного символа, начиная с {@code pos}
+     */
+    static int skipWhitespace(byte[] json, int pos, int end) {
+        while (pos < end) {
+            byte b = json[pos];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return pos;
+            }
+            pos++;
+        }
+
+        return pos;
+    }
+
+    /**
+     * Пропускает значение, начинающееся на позиции {@code pos}
+     *
+     * @return позиция сразу после значения
+     */
+    static int skipValue(byte[] json, int pos, int end) {
+        pos = skipWhitespace(json, pos, end);
+        if (pos >= end) {
+            throw malformed(pos);
+        }
+
+        byte b = json[pos];
+        if (b == '"') {
+            return skipString(json, pos, end);
+        }
+        if (b != '{' && b != '[') {
+            // Число, true, false или null
+            while (pos < end && json[pos] != ',' && json[pos] != '}' && json[pos] != ']'
+                && json[pos] != ' ' && json[pos] != '\n' && json[pos] != '\r' && json[pos] != '\t') {
+                pos++;
+            }
+            return pos;
+        }
+
+        int depth = 0;
+        while (pos < end) {
+            b = json[pos];
+            if (b == '"') {
+                pos = skipString(json, pos, end);
+                continue;
+            }
+            if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                depth--;
+                if (depth == 0) {
+                    return pos + 1;
+                }
+            }
+            pos++;
+        }
+
+        throw malformed(pos);
+    }
+
+    /**
+     * Ищет ключ в объекте, начинающемся на позиции {@code objectStart}. Вложенные значения пропускаются целиком
+     *
+     * @return позиция значения ключа или {@link #NOT_FOUND}
+     */
+    static int findKey(byte[] json, int objectStart, int end, String key) {
+        int pos = skipWhitespace(json, objectStart, end);
+        if (pos >= end || json[pos] != '{') {
+            return NOT_FOUND;
+        }
+        pos++;
+
+        while (true) {
+            pos = skipWhitespace(json, pos, end);
+            if (pos >= end) {
+                throw malformed(pos);
+            }
+            if (json[pos] == '}') {
+                return NOT_FOUND;
+            }
+            if (json[pos] == ',') {
+                pos++;
+                continue;
+            }
+
+            int keyEnd = skipString(json, pos, end);
+            boolean matches = keyEquals(json, pos + 1, keyEnd - 1, key);
+
+            pos = skipWhitespace(json, keyEnd, end);
+            if (pos >= end || json[pos] != ':') {
+                throw malformed(pos);
+            }
+            pos = skipWhitespace(json, pos + 1, end);
+
+            if (matches) {
+                return pos;
+            }
+            pos = skipValue(json, pos, end);
+        }
+    }
+
+    /**
+     * Возвращает первый ключ объекта, отличный от {@code except}
+     */
+    static String firstKeyExcept(byte[] json, int objectStart, int end, String except) {
+        int pos = skipWhitespace(json, objectStart, end);
+        if (pos >= end || json[pos] != '{') {
+            return null;
+        }
+        pos++;
+
+        while (true) {
+            pos = skipWhitespace(json, pos, end);
+            if (pos >= end || json[pos] == '}') {
+                return null;
+            }
+            if (json[pos] == ',') {
+                pos++;
+                continue;
+            }
+
+            int keyEnd = skipString(json, pos, end);
+            if (!keyEquals(json, pos + 1, keyEnd - 1, except)) {
+                return readString(json, pos, end);
+            }
+
+            pos = skipWhitespace(json, keyEnd, end);
+            pos = skipValue(json, pos + 1, end);
+        }
+    }
+
+    /**
+     * Находит значение по пути ключей во вложенных объектах
+     *
+     * @return позиция значения или {@link #NOT_FOUND}
+     */
+    static int findPath(byte[] json, int objectStart, int end, String... keys) {
+        int pos = objectStart;
+        for (String key : keys) {
+            pos = findKey(json, pos, end, key);
+            if (pos == NOT_FOUND) {
+                return NOT_FOUND;
+            }
+        }
+
+        return pos;
+    }
+
+    /**
+     * Читает целое число
+     *
+     * @throws IllegalArgumentException если на позиции не число
+     */
+    static long readLong(byte[] json, int pos, int end) {
+        boolean negative = pos < end && json[pos] == '-';
+        int i = negative ? pos + 1 : pos;
+        if (i >= end || json[i] < '0' || json[i] > '9') {
+            throw malformed(pos);
+        }
+
+        long value = 0;
+        while (i < end && json[i] >= '0' && json[i] <= '9') {
+            value = value * 10 + (json[i] - '0');
+            i++;
+        }
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * Читает строку с раскрытием escape-последовательностей
+     *
+     * @return строка или null, если на позиции не строка
+     */
+    static String readString(byte[] json, int pos, int end) {
+        if (pos >= end || json[pos] != '"') {
+            return null;
+        }
+
+        int stringEnd = skipString(json, pos, end);
+        int start = pos + 1;
+        int contentEnd = stringEnd - 1;
+
+        int escape = indexOf(json, start, contentEnd, (byte) '\\');
+        if (escape < 0) {
+            return new String(json, start, contentEnd - start, StandardCharsets.UTF_8);
+        }
+
+        StringBuilder result = new StringBuilder(contentEnd - start);
+        int runStart = start;
+        int i = escape;
+        while (i < contentEnd) {
+            if (json[i] != '\\') {
+                i++;
+                continue;
+            }
+
+            result.append(new String(json, runStart, i - runStart, StandardCharsets.UTF_8));
+            byte next = json[i + 1];
+            switch (next) {
+                case 'n' -> result.append('\n');
+                case 'r' -> result.append('\r');
+                case 't' -> result.append('\t');
+                case 'b' -> result.append('\b');
+                case 'f' -> result.append('\f');
+                case 'u' -> {
+                    result.append((char) Integer.parseInt(new String(json, i + 2, 4, StandardCharsets.US_ASCII), 16));
+                    i += 4;
+                }
+                default -> result.append((char) next);
+            }
+            i += 2;
+            runStart = i;
+        }
+        result.append(new String(json, runStart, contentEnd - runStart, StandardCharsets.UTF_8));
+
+        return result.toString();
+    }
+
+    private static int skipString(byte[] json, int pos, int end) {
+        if (json[pos] != '"') {
+            throw malformed(pos);
+        }
+
+        for (int i = pos + 1; i < end; i++) {
+            byte b = json[i];
+            if (b == '\\') {
+                i++;
+            } else if (b == '"') {
+                return i + 1;
+            }
+        }
+
+        throw malformed(pos);
+    }
+
+    private static boolean keyEquals(byte[] json, int start, int end, String key) {
+        // Ключи Bot API состоят из ASCII символов и не содержат escape-последовательностей
+        if (end - start != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (json[start + i] != key.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int indexOf(byte[] json, int start, int end, byte value) {
+        for (int i = start; i < end; i++) {
+            if (json[i] == value) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static IllegalArgumentException malformed(int pos) {
+        return new IllegalArgumentException("Некорректный JSON на позиции " + pos);
+    }
+}
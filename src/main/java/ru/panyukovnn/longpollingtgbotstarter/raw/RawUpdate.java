@@ -0,0 +1,228 @@
+package ru.panyukovnn.longpollingtgbotstarter.raw;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.UpdateKeys;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Входящее обновление в виде исходного JSON из ответа getUpdates
+ * <p>
+ * При разборе ответа читаются только update_id и тип обновления. Идентификатор чата и текст извлекаются из
+ * байт при первом обращении, полный объект {@link Update} строится только при вызове {@link #update()}.
+ * Исходные байты можно сохранить как есть через {@link #writeTo(OutputStream)} без повторной сериализации.
+ * <p>
+ * Байты обновления - срез общего буфера ответа, поэтому ответ удерживается в памяти, пока жив хотя бы один
+ * RawUpdate из него. Для долгого хранения используйте {@link #bytes()}.
+ */
+public final class RawUpdate {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final byte[] buffer;
+    private final int offset;
+    private final int length;
+    private final int updateId;
+    private final String type;
+    private volatile Update update;
+    private volatile Long chatKey;
+    private volatile String text;
+    private volatile boolean textResolved;
+    private volatile long date = -1;
+
+    RawUpdate(byte[] buffer, int offset, int length, int updateId, String type) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.updateId = updateId;
+        this.type = type;
+    }
+
+    /**
+     * Создает RawUpdate из уже разобранного обновления, например для транспорта, который не отдает исходные байты
+     */
+    public static RawUpdate of(Update update) {
+        byte[] json;
+        try {
+            json = OBJECT_MAPPER.writeValueAsBytes(update);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Не удалось сериализовать обновление " + update.getUpdateId(), e);
+        }
+
+        RawUpdate raw = new RawUpdate(json, 0, json.length, update.getUpdateId(),
+            JsonScanner.firstKeyExcept(json, 0, json.length, "update_id"));
+        raw.update = update;
+
+        return raw;
+    }
+
+    public int updateId() {
+        return updateId;
+    }
+
+    /**
+     * Тип обновления - имя поля с содержимым: message, callback_query, inline_query и т.д.
+     *
+     * @return тип или null, если обновление не содержит полей кроме update_id
+     */
+    public String type() {
+        return type;
+    }
+
+    /**
+     * Ключ чата, вычисленный так же, как {@link UpdateKeys#chatKey(Update)}: идентификатор чата сообщения,
+     * а если чата нет - идентификатор пользователя
+     *
+     * @return идентификатор чата, пользователя или {@link UpdateKeys#NO_CHAT}
+     */
+    public long chatKey() {
+        Long result = chatKey;
+        if (result == null) {
+            result = resolveChatKey();
+            chatKey = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Текст сообщения, данные callback_query или запрос inline_query
+     *
+     * @return текст или null, если у обновления его нет
+     */
+    public String text() {
+        if (!textResolved) {
+            text = resolveText();
+            textResolved = true;
+        }
+
+        return text;
+    }
+
+    /**
+     * Время отправки сообщения, вычисленное так же, как {@link UpdateKeys#date(Update)}
+     *
+     * @return unix-время в секундах или 0
+     */
+    public long date() {
+        long result = date;
+        if (result < 0) {
+            int pos = "message".equals(type) || "channel_post".equals(type)
+                ? JsonScanner.findPath(buffer, offset, offset + length, type, "date")
+                : JsonScanner.NOT_FOUND;
+            result = pos != JsonScanner.NOT_FOUND ? JsonScanner.readLong(buffer, pos, offset + length) : 0;
+            date = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Полное обновление. Строится из байт при первом вызове, последующие вызовы возвращают тот же объект
+     *
+     * @throws UncheckedIOException если JSON обновления не соответствует модели telegrambots
+     */
+    public Update update() {
+        Update result = update;
+        if (result == null) {
+            synchronized (this) {
+                result = update;
+                if (result == null) {
+                    try {
+                        result = OBJECT_MAPPER.readValue(buffer, offset, length, Update.class);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Не удалось разобрать обновление " + updateId, e);
+                    }
+                    update = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Было ли уже построено полное обновление
+     */
+    public boolean isMaterialized() {
+        return update != null;
+    }
+
+    /**
+     * Размер исходного JSON в байтах
+     */
+    public int size() {
+        return length;
+    }
+
+    /**
+     * Копия исходного JSON обновления
+     */
+    public byte[] bytes() {
+        return Arrays.copyOfRange(buffer, offset, offset + length);
+    }
+
+    /**
+     * Исходный JSON обновления без копирования
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(buffer, offset, length).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Записывает исходный JSON обновления в поток без копирования
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, offset, length);
+    }
+
+    @Override
+    public String toString() {
+        return "RawUpdate{updateId=" + updateId + ", type=" + type + ", size=" + length + "}";
+    }
+
+    private long resolveChatKey() {
+        if (type == null) {
+            return UpdateKeys.NO_CHAT;
+        }
+
+        int end = offset + length;
+        int pos = switch (type) {
+            case "callback_query" -> {
+                int chatId = JsonScanner.findPath(buffer, offset, end, type, "message", "chat", "id");
+                yield chatId != JsonScanner.NOT_FOUND
+                    ? chatId
+                    : JsonScanner.findPath(buffer, offset, end, type, "from", "id");
+            }
+            case "inline_query", "chosen_inline_result", "shipping_query", "pre_checkout_query" ->
+                JsonScanner.findPath(buffer, offset, end, type, "from", "id");
+            case "poll_answer" -> JsonScanner.findPath(buffer, offset, end, type, "user", "id");
+            default -> JsonScanner.findPath(buffer, offset, end, type, "chat", "id");
+        };
+
+        return pos != JsonScanner.NOT_FOUND ? JsonScanner.readLong(buffer, pos, end) : UpdateKeys.NO_CHAT;
+    }
+
+    private String resolveText() {
+        if (type == null) {
+            return null;
+        }
+
+        int end = offset + length;
+        int pos = switch (type) {
+            case "callback_query" -> JsonScanner.findPath(buffer, offset, end, type, "data");
+            case "inline_query", "chosen_inline_result" -> JsonScanner.findPath(buffer, offset, end, type, "query");
+            default -> JsonScanner.findPath(buffer, offset, end, type, "text");
+        };
+
+        return pos != JsonScanner.NOT_FOUND ? JsonScanner.readString(buffer, pos, end) : null;
+    }
+}
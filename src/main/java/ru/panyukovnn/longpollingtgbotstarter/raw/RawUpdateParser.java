@@ -0,0 +1,93 @@
+package ru.panyukovnn.longpollingtgbotstarter.raw;
+
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разбирает ответ getUpdates на отдельные {@link RawUpdate} без построения объектов telegrambots
+ * <p>
+ * Ответ просматривается один раз: массив result делится на срезы байт по границам обновлений,
+ * у каждого обновления читаются только update_id и имя поля с содержимым.
+ */
+public final class RawUpdateParser {
+
+    private RawUpdateParser() {
+    }
+
+    /**
+     * @param json       тело ответа getUpdates
+     * @param getUpdates запрос, используется для разбора ответа с ошибкой
+     * @return обновления в порядке ответа
+     * @throws TelegramApiRequestException если Telegram вернул ok=false
+     * @throws TelegramApiException        если ответ не является корректным JSON
+     */
+    public static List<RawUpdate> parse(byte[] json, GetUpdates getUpdates) throws TelegramApiException {
+        try {
+            int end = json.length;
+            int ok = JsonScanner.findKey(json, 0, end, "ok");
+            if (ok == JsonScanner.NOT_FOUND || json[ok] != 't') {
+                // Ошибку с description и retry_after разбирает telegrambots
+                getUpdates.deserializeResponse(new String(json, StandardCharsets.UTF_8));
+                throw new TelegramApiRequestException("Неожиданный ответ getUpdates без ok=true");
+            }
+
+            int result = JsonScanner.findKey(json, 0, end, "result");
+            if (result == JsonScanner.NOT_FOUND || json[result] != '[') {
+                throw new TelegramApiRequestException("Ответ getUpdates не содержит массив result");
+            }
+
+            return splitUpdates(json, result, end);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new TelegramApiException("Не удалось разобрать ответ getUpdates", e);
+        }
+    }
+
+    /**
+     * Разбирает JSON одного обновления, например полученный от другого узла через {@link RawUpdate#writeTo}
+     *
+     * @throws IllegalArgumentException если JSON некорректен или не содержит update_id
+     */
+    public static RawUpdate parseUpdate(byte[] json) {
+        int start = JsonScanner.skipWhitespace(json, 0, json.length);
+
+        return slice(json, start, JsonScanner.skipValue(json, start, json.length));
+    }
+
+    private static List<RawUpdate> splitUpdates(byte[] json, int arrayStart, int end) {
+        List<RawUpdate> updates = new ArrayList<>();
+
+        int pos = arrayStart + 1;
+        while (true) {
+            pos = JsonScanner.skipWhitespace(json, pos, end);
+            if (pos >= end) {
+                throw new IllegalArgumentException("Массив result не закрыт");
+            }
+            if (json[pos] == ']') {
+                return updates;
+            }
+            if (json[pos] == ',') {
+                pos++;
+                continue;
+            }
+
+            int updateEnd = JsonScanner.skipValue(json, pos, end);
+            updates.add(slice(json, pos, updateEnd));
+            pos = updateEnd;
+        }
+    }
+
+    private static RawUpdate slice(byte[] json, int start, int end) {
+        int updateId = JsonScanner.findKey(json, start, end, "update_id");
+        if (updateId == JsonScanner.NOT_FOUND) {
+            throw new IllegalArgumentException("Обновление на позиции " + start + " не содержит update_id");
+        }
+
+        return new RawUpdate(json, start, end - start, (int) JsonScanner.readLong(json, updateId, end),
+            JsonScanner.firstKeyExcept(json, start, end, "update_id"));
+    }
+}
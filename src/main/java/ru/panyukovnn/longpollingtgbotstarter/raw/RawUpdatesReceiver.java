@@ -0,0 +1,16 @@
+package ru.panyukovnn.longpollingtgbotstarter.raw;
+
+import java.util.List;
+
+/**
+ * Получатель обновлений в виде {@link RawUpdate}. Если бот реализует этот интерфейс и включено свойство
+ * telegram.bot.polling.lazy-updates, {@link ru.panyukovnn.longpollingtgbotstarter.transport.TgPollingSession}
+ * передает обновления сюда, не строя объекты {@link org.telegram.telegrambots.meta.api.objects.Update}
+ */
+public interface RawUpdatesReceiver {
+
+    /**
+     * @param updates новые обновления одного ответа getUpdates, упорядоченные по update_id
+     */
+    void onRawUpdatesReceived(List<RawUpdate> updates);
+}
@@ -0,0 +1,75 @@
+package ru.panyukovnn.longpollingtgbotstarter.router;
+
+import java.util.Arrays;
+
+/**
+ * Узел префиксного дерева символов, общий для {@link TgUpdateRouter} и команд
+ * {@link ru.panyukovnn.longpollingtgbotstarter.command.TgCommandRouter}
+ * <p>
+ * Дочерние узлы отсортированы по символу и ищутся двоичным поиском. Дерево заполняется при старте одним
+ * потоком, после публикации через volatile поле только читается.
+ *
+ * @param <V> значение узла
+ */
+public final class CharTrie<V> {
+
+    private char[] labels = new char[0];
+    private CharTrie<V>[] children = newArray(0);
+    private V value;
+
+    public CharTrie<V> child(char label) {
+        int index = Arrays.binarySearch(labels, label);
+
+        return index >= 0 ? children[index] : null;
+    }
+
+    /**
+     * Возвращает узел ключа, создавая недостающие узлы
+     */
+    public CharTrie<V> descend(CharSequence key) {
+        CharTrie<V> node = this;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.childOrCreate(key.charAt(i));
+        }
+
+        return node;
+    }
+
+    /**
+     * @return значение узла или null, если оно не задано
+     */
+    public V value() {
+        return value;
+    }
+
+    public void value(V value) {
+        this.value = value;
+    }
+
+    private CharTrie<V> childOrCreate(char label) {
+        int index = Arrays.binarySearch(labels, label);
+        if (index >= 0) {
+            return children[index];
+        }
+
+        int insertAt = -index - 1;
+        CharTrie<V> child = new CharTrie<>();
+        char[] grownLabels = new char[labels.length + 1];
+        System.arraycopy(labels, 0, grownLabels, 0, insertAt);
+        grownLabels[insertAt] = label;
+        System.arraycopy(labels, insertAt, grownLabels, insertAt + 1, labels.length - insertAt);
+        labels = grownLabels;
+        CharTrie<V>[] grown = newArray(children.length + 1);
+        System.arraycopy(children, 0, grown, 0, insertAt);
+        grown[insertAt] = child;
+        System.arraycopy(children, insertAt, grown, insertAt + 1, children.length - insertAt);
+        children = grown;
+
+        return child;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> CharTrie<V>[] newArray(int length) {
+        return (CharTrie<V>[]) new CharTrie<?>[length];
+    }
+}
@@ -0,0 +1,82 @@
+package ru.panyukovnn.longpollingtgbotstarter.router;
+
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.function.Function;
+
+/**
+ * Приводит методы обработчиков и команд к общей сигнатуре, чтобы вызывать их через {@link MethodHandle}
+ * без рефлексии на каждом обновлении
+ */
+public final class MethodInvokers {
+
+    private MethodInvokers() {
+    }
+
+    /**
+     * @return метод, привязанный к бину
+     * @throws IllegalStateException если к методу нет доступа
+     */
+    public static MethodHandle bind(Object bean, Method method) {
+        try {
+            ReflectionUtils.makeAccessible(method);
+
+            return MethodHandles.lookup().unreflect(method).bindTo(bean);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Нет доступа к методу " + method, e);
+        }
+    }
+
+    /**
+     * Приводит обработчик к виду invokerType с результатом void: каждый параметр получается фильтром из
+     * параметров invokerType, затем аргументы переставляются под общую сигнатуру. Параметр, для которого
+     * parameterFilters не вернул фильтр, получает параметр invokerType совместимого типа, кроме {@link Object}
+     *
+     * @param parameterFilters фильтр для типа параметра или null. Фильтр принимает один параметр invokerType
+     * @param source           описание обработчика для сообщения об ошибке
+     * @throws IllegalStateException если тип параметра не поддерживается
+     */
+    public static MethodHandle adapt(MethodHandle target, Class<?>[] parameterTypes, MethodType invokerType,
+                                     Function<Class<?>, MethodHandle> parameterFilters, String source) {
+        target = target.asType(target.type().changeReturnType(void.class));
+
+        MethodHandle[] filters = new MethodHandle[parameterTypes.length];
+        int[] reorder = new int[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Class<?> parameterType = parameterTypes[i];
+            MethodHandle filter = parameterFilters.apply(parameterType);
+            if (filter == null) {
+                filter = identity(parameterType, invokerType);
+            }
+            if (filter == null) {
+                throw new IllegalStateException("Неподдерживаемый тип параметра " + parameterType.getName()
+                    + " в " + source);
+            }
+
+            filters[i] = filter;
+            reorder[i] = invokerType.parameterList().indexOf(filter.type().parameterType(0));
+        }
+
+        MethodHandle filtered = MethodHandles.filterArguments(target, 0, filters);
+
+        return MethodHandles.permuteArguments(filtered, invokerType, reorder);
+    }
+
+    private static MethodHandle identity(Class<?> parameterType, MethodType invokerType) {
+        if (parameterType == Object.class) {
+            return null;
+        }
+        for (Class<?> invokerParameter : invokerType.parameterList()) {
+            if (parameterType.isAssignableFrom(invokerParameter)) {
+                return MethodHandles.identity(invokerParameter)
+                    .asType(MethodType.methodType(parameterType, invokerParameter));
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,47 @@
+package ru.panyukovnn.longpollingtgbotstarter.router;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Метод бина, обрабатывающий входящие обновления, которые выбирает {@link TgUpdateRouter}
+ * <p>
+ * В отличие от {@code @EventListener(Update.class)} метод вызывается только для подходящих обновлений:
+ * при старте обработчики раскладываются по типам обновлений и префиксам, поэтому стоимость выбора не
+ * зависит от количества обработчиков. Параметры метода могут быть любыми из {@code Update},
+ * {@code TgBotApi}, {@code Message}, {@code CallbackQuery} и {@code InlineQuery} в любом порядке,
+ * возвращаемое значение игнорируется.
+ * <p>
+ * Если ни один обработчик не подошел, обновление публикуется как событие Spring, как и раньше.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface TgHandler {
+
+    /**
+     * Типы обновлений - имена полей из Bot API: message, edited_message, callback_query и т.д.
+     * Если не заданы, тип определяется префиксами: textPrefix относится к message, callbackPrefix -
+     * к callback_query, а обработчик без префиксов получает обновления любого типа
+     */
+    String[] type() default {};
+
+    /**
+     * Типы чатов: private, group, supergroup, channel. Если не заданы, тип чата не проверяется
+     */
+    String[] chatType() default {};
+
+    /**
+     * Префиксы текста сообщения для message, edited_message, channel_post, edited_channel_post и запроса
+     * inline_query
+     */
+    String[] textPrefix() default {};
+
+    /**
+     * Префиксы данных callback_query
+     */
+    String[] callbackPrefix() default {};
+}
@@ -0,0 +1,422 @@
+package ru.panyukovnn.longpollingtgbotstarter.router;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.util.ClassUtils;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.InlineQuery;
+import ru.panyukovnn.longpollingtgbotstarter.config.TgBotApi;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.UpdateKeys;
+import ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdate;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Выбирает обработчики {@link TgHandler} для входящих обновлений
+ * <p>
+ * При старте методы {@link TgHandler} всех бинов раскладываются в индекс: по типу обновления, затем по
+ * префиксному дереву символов текста сообщения, данных callback_query или запроса inline_query. Каждый
+ * метод вызывается через {@link MethodHandle} с заранее подготовленными параметрами, без рефлексии на
+ * каждом обновлении. Выбор обработчиков стоит один поиск по типу и проход по символам ключа, сколько бы
+ * обработчиков ни было зарегистрировано.
+ * <p>
+ * Побеждает самый длинный подходящий префикс: вызываются все обработчики самого глубокого узла дерева,
+ * у которого подошел тип чата. Обработчики без типа и префиксов вызываются, только если не подошел ни один
+ * обработчик конкретного типа. Обновления, пришедшие до построения индекса, ждут его завершения.
+ */
+public class TgUpdateRouter implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(TgUpdateRouter.class);
+
+    public static final String MESSAGE = "message";
+    public static final String CALLBACK_QUERY = "callback_query";
+    public static final String INLINE_QUERY = "inline_query";
+
+    /**
+     * Типы обновлений, ключ которых - текст сообщения
+     */
+    private static final Set<String> TEXT_TYPES = Set.of(MESSAGE, "edited_message", "channel_post",
+        "edited_channel_post");
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(void.class, TgBotApi.class, Update.class);
+    private static final MethodHandle MESSAGE_PARAMETER;
+    private static final MethodHandle CALLBACK_QUERY_PARAMETER;
+    private static final MethodHandle INLINE_QUERY_PARAMETER;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MESSAGE_PARAMETER = lookup.findStatic(TgUpdateRouter.class, "message",
+                MethodType.methodType(Message.class, Update.class));
+            CALLBACK_QUERY_PARAMETER = lookup.findVirtual(Update.class, "getCallbackQuery",
+                MethodType.methodType(CallbackQuery.class));
+            INLINE_QUERY_PARAMETER = lookup.findVirtual(Update.class, "getInlineQuery",
+                MethodType.methodType(InlineQuery.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final ListableBeanFactory beanFactory;
+    private final CountDownLatch initialized = new CountDownLatch(1);
+    private volatile Index index;
+
+    /**
+     * Роутер, который соберет обработчики из бинов контекста после создания всех синглтонов
+     */
+    public TgUpdateRouter(ListableBeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    /**
+     * Роутер с обработчиками из переданных объектов, без контекста Spring
+     */
+    public static TgUpdateRouter of(Object... handlerBeans) {
+        TgUpdateRouter router = new TgUpdateRouter(null);
+        router.build(Arrays.asList(handlerBeans));
+
+        return router;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        List<Object> handlerBeans = new ArrayList<>();
+        for (String beanName : beanFactory.getBeanDefinitionNames()) {
+            Class<?> beanType = beanFactory.getType(beanName, false);
+            if (beanType != null && hasHandlers(ClassUtils.getUserClass(beanType))) {
+                handlerBeans.add(beanFactory.getBean(beanName));
+            }
+        }
+
+        build(handlerBeans);
+    }
+
+    /**
+     * Вызывает обработчики, подходящие обновлению
+     *
+     * @return true, если был вызван хотя бы один обработчик
+     */
+    public boolean route(TgBotApi botApi, Update update) {
+        Index current = awaitIndex();
+        if (current == null) {
+            return false;
+        }
+
+        String type = UpdateKeys.type(update);
+        CharTrie<Handler[]> root = type != null ? current.byType.get(type) : null;
+        String chatType = chatType(update);
+
+        if (root != null && route(root, routingKey(type, update), 0, botApi, update, chatType)) {
+            return true;
+        }
+
+        return invoke(current.anyType, botApi, update, chatType);
+    }
+
+    /**
+     * Вариант {@link #route(TgBotApi, Update)} для ленивых обновлений. Полное {@link Update} строится,
+     * только если по типу и ключу нашелся хотя бы один кандидат
+     *
+     * @return true, если был вызван хотя бы один обработчик
+     */
+    public boolean route(TgBotApi botApi, RawUpdate update) {
+        Index current = awaitIndex();
+        if (current == null || !hasCandidates(current, update.type(), update.text())) {
+            return false;
+        }
+
+        return route(botApi, update.update());
+    }
+
+    /**
+     * Типы обновлений, которые получает обработчик
+     *
+     * @return типы или пустое множество, если обработчик получает обновления любого типа
+     * @throws IllegalStateException если префикс объявлен для типа, у которого нет ключа
+     */
+    public static Set<String> handledTypes(TgHandler handler) {
+        Set<String> types = new LinkedHashSet<>(Arrays.asList(handler.type()));
+        boolean textPrefixes = handler.textPrefix().length > 0;
+        boolean callbackPrefixes = handler.callbackPrefix().length > 0;
+
+        if (types.isEmpty()) {
+            if (textPrefixes) {
+                types.add(MESSAGE);
+            }
+            if (callbackPrefixes) {
+                types.add(CALLBACK_QUERY);
+            }
+
+            return types;
+        }
+
+        if (textPrefixes || callbackPrefixes) {
+            for (String type : types) {
+                if (prefixes(handler, type).length == 0) {
+                    throw new IllegalStateException("Префиксы обработчика не относятся к типу обновления " + type);
+                }
+            }
+        }
+
+        return types;
+    }
+
+    private boolean route(CharTrie<Handler[]> node, String key, int depth, TgBotApi botApi, Update update,
+                          String chatType) {
+        if (key != null && depth < key.length()) {
+            CharTrie<Handler[]> child = node.child(key.charAt(depth));
+            if (child != null && route(child, key, depth + 1, botApi, update, chatType)) {
+                return true;
+            }
+        }
+
+        return invoke(node.value(), botApi, update, chatType);
+    }
+
+    private static boolean invoke(Handler[] handlers, TgBotApi botApi, Update update, String chatType) {
+        if (handlers == null) {
+            return false;
+        }
+
+        boolean invoked = false;
+        for (Handler handler : handlers) {
+            if (handler.accepts(chatType)) {
+                handler.invoke(botApi, update);
+                invoked = true;
+            }
+        }
+
+        return invoked;
+    }
+
+    private static boolean hasCandidates(Index index, String type, String key) {
+        if (index.anyType.length > 0) {
+            return true;
+        }
+
+        CharTrie<Handler[]> node = type != null ? index.byType.get(type) : null;
+        for (int depth = 0; node != null; depth++) {
+            if (node.value() != null) {
+                return true;
+            }
+            node = key != null && depth < key.length() ? node.child(key.charAt(depth)) : null;
+        }
+
+        return false;
+    }
+
+    private Index awaitIndex() {
+        Index current = index;
+        if (current != null) {
+            return current;
+        }
+
+        try {
+            initialized.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        return index;
+    }
+
+    private void build(List<Object> handlerBeans) {
+        Map<String, CharTrie<Handler[]>> byType = new HashMap<>();
+        List<Handler> anyType = new ArrayList<>();
+        int count = 0;
+
+        for (Object bean : handlerBeans) {
+            Class<?> userClass = ClassUtils.getUserClass(bean.getClass());
+            for (Method method : userClass.getMethods()) {
+                TgHandler annotation = AnnotatedElementUtils.findMergedAnnotation(method, TgHandler.class);
+                if (annotation == null) {
+                    continue;
+                }
+
+                Handler handler = new Handler(userClass.getSimpleName() + "." + method.getName(),
+                    invoker(bean, method), annotation.chatType());
+                Set<String> types = handledTypes(annotation);
+                if (types.isEmpty()) {
+                    anyType.add(handler);
+                }
+                for (String type : types) {
+                    CharTrie<Handler[]> root = byType.computeIfAbsent(type, key -> new CharTrie<>());
+                    String[] prefixes = prefixes(annotation, type);
+                    if (prefixes.length == 0) {
+                        add(root, handler);
+                    }
+                    for (String prefix : prefixes) {
+                        add(root.descend(prefix), handler);
+                    }
+                }
+                count++;
+            }
+        }
+
+        index = new Index(byType, anyType.toArray(Handler[]::new));
+        initialized.countDown();
+        log.info("Зарегистрировано обработчиков @TgHandler: {}", count);
+    }
+
+    private static void add(CharTrie<Handler[]> node, Handler handler) {
+        Handler[] handlers = node.value();
+        if (handlers == null) {
+            node.value(new Handler[]{handler});
+        } else if (!Arrays.asList(handlers).contains(handler)) {
+            handlers = Arrays.copyOf(handlers, handlers.length + 1);
+            handlers[handlers.length - 1] = handler;
+            node.value(handlers);
+        }
+    }
+
+    private static String[] prefixes(TgHandler handler, String type) {
+        if (TEXT_TYPES.contains(type) || INLINE_QUERY.equals(type)) {
+            return handler.textPrefix();
+        }
+        if (CALLBACK_QUERY.equals(type)) {
+            return handler.callbackPrefix();
+        }
+
+        return new String[0];
+    }
+
+    private static boolean hasHandlers(Class<?> type) {
+        for (Method method : type.getMethods()) {
+            if (AnnotatedElementUtils.hasAnnotation(method, TgHandler.class)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Приводит метод к виду (TgBotApi, Update)void. Кроме бота и обновления метод может принимать сообщение,
+     * callback_query или inline_query обновления
+     */
+    private static MethodHandle invoker(Object bean, Method method) {
+        MethodHandle target = MethodInvokers.bind(bean, AopUtils.selectInvocableMethod(method, bean.getClass()));
+
+        return MethodInvokers.adapt(target, method.getParameterTypes(), INVOKER_TYPE, parameterType -> {
+            if (parameterType == Message.class) {
+                return MESSAGE_PARAMETER;
+            }
+            if (parameterType == CallbackQuery.class) {
+                return CALLBACK_QUERY_PARAMETER;
+            }
+            if (parameterType == InlineQuery.class) {
+                return INLINE_QUERY_PARAMETER;
+            }
+
+            return null;
+        }, "обработчике " + method);
+    }
+
+    /**
+     * Ключ для поиска по префиксам: текст сообщения, данные callback_query или запрос inline_query
+     */
+    private static String routingKey(String type, Update update) {
+        if (TEXT_TYPES.contains(type)) {
+            Message message = message(update);
+            return message != null ? message.getText() : null;
+        }
+
+        return switch (type) {
+            case CALLBACK_QUERY -> update.getCallbackQuery().getData();
+            case INLINE_QUERY -> update.getInlineQuery().getQuery();
+            default -> null;
+        };
+    }
+
+    private static String chatType(Update update) {
+        if (update.hasInlineQuery()) {
+            return update.getInlineQuery().getChatType();
+        }
+
+        Chat chat = null;
+        Message message = message(update);
+        if (message != null) {
+            chat = message.getChat();
+        } else if (update.hasMyChatMember()) {
+            chat = update.getMyChatMember().getChat();
+        } else if (update.hasChatMember()) {
+            chat = update.getChatMember().getChat();
+        } else if (update.hasChatJoinRequest()) {
+            chat = update.getChatJoinRequest().getChat();
+        }
+
+        return chat != null ? chat.getType() : null;
+    }
+
+    /**
+     * Сообщение обновления: новое, отредактированное, пост канала или сообщение с кнопкой callback_query
+     */
+    private static Message message(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage();
+        }
+        if (update.hasEditedMessage()) {
+            return update.getEditedMessage();
+        }
+        if (update.hasChannelPost()) {
+            return update.getChannelPost();
+        }
+        if (update.hasEditedChannelPost()) {
+            return update.getEditedChannelPost();
+        }
+        if (update.hasCallbackQuery()) {
+            return update.getCallbackQuery().getMessage();
+        }
+
+        return null;
+    }
+
+    private record Index(Map<String, CharTrie<Handler[]>> byType, Handler[] anyType) {
+    }
+
+    private record Handler(String name, MethodHandle invoker, String[] chatTypes) {
+
+        boolean accepts(String chatType) {
+            if (chatTypes.length == 0) {
+                return true;
+            }
+            for (String accepted : chatTypes) {
+                if (accepted.equals(chatType)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        void invoke(TgBotApi botApi, Update update) {
+            try {
+                invoker.invokeExact(botApi, update);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new UndeclaredThrowableException(e, "Обработчик " + name + " выбросил исключение");
+            }
+        }
+    }
+}
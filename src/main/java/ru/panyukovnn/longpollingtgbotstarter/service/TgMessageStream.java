@@ -0,0 +1,258 @@
+package ru.panyukovnn.longpollingtgbotstarter.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.methods.ParseMode;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сообщение, текст которого дописывается по фрагментам, например ответ языковой модели по мере генерации
+ * <p>
+ * Накопленный текст показывается отрисовками, как бы часто ни приходили фрагменты. Время отрисовок выдает
+ * {@link TgSender} по чату: все сообщения в один чат вместе отрисовываются не чаще одного раза за интервал.
+ * Одна отрисовка выполняет не больше одного запроса, поэтому разбиение на несколько частей или переход
+ * с MarkdownV2 на HTML показываются за несколько интервалов. Правка пропускается, если текст части после
+ * преобразования в MarkdownV2 не изменился. Когда текст перестает помещаться в {@link TgSender#MAX_TG_MESSAGE_LENGTH},
+ * он разбивается так же, как при обычной отправке, и следующие части уходят новыми сообщениями. Создается
+ * {@link TgSender#stream(Long)}.
+ */
+public class TgMessageStream {
+
+    private static final Logger log = LoggerFactory.getLogger(TgMessageStream.class);
+
+    /**
+     * Сколько запросов выполняет одна отрисовка
+     */
+    static final int MAX_REQUESTS_PER_RENDER = 1;
+
+    private final TgSender sender;
+    private final Long chatId;
+    private final Executor executor;
+    private final StringBuilder text = new StringBuilder();
+    /**
+     * Отправленные части. Запланирована не больше чем одна отрисовка, поэтому отрисовки не пересекаются
+     */
+    private final List<SentPart> parts = new ArrayList<>();
+    private boolean scheduled;
+    private boolean changed;
+    private CompletableFuture<List<Message>> result;
+
+    TgMessageStream(TgSender sender, Long chatId, Executor executor) {
+        this.sender = sender;
+        this.chatId = chatId;
+        this.executor = executor;
+    }
+
+    public Long getChatId() {
+        return chatId;
+    }
+
+    /**
+     * Дописывает фрагмент к тексту сообщения. Не блокирует вызывающий поток: если отрисовка еще не запланирована,
+     * она выполняется в исполнителе {@link TgSender} в ближайшее время, выделенное чату
+     *
+     * @throws IllegalStateException если сообщение уже завершено {@link #finish()}
+     */
+    public TgMessageStream append(String delta) {
+        synchronized (this) {
+            if (result != null) {
+                throw new IllegalStateException("Сообщение в чат '" + chatId + "' уже завершено");
+            }
+
+            text.append(delta);
+            changed = true;
+            if (scheduled) {
+                return this;
+            }
+
+            scheduled = true;
+        }
+
+        schedule();
+
+        return this;
+    }
+
+    /**
+     * Завершает сообщение: показывает весь накопленный текст, выполняя по одному запросу в выделенное чату
+     * время. Ответы 429 повторяются так же, как при обычной отправке. Повторный вызов возвращает тот же future
+     *
+     * @return future с сообщениями, по одному на каждую часть текста. При ошибке завершается исключением Bot API
+     */
+    public CompletableFuture<List<Message>> finish() {
+        synchronized (this) {
+            if (result != null) {
+                return result;
+            }
+
+            result = new CompletableFuture<>();
+            result.whenComplete((messages, e) -> sender.streamFinished(this));
+            if (scheduled) {
+                return result;
+            }
+
+            scheduled = true;
+        }
+
+        schedule();
+
+        return result;
+    }
+
+    private void schedule() {
+        long delayNanos = sender.reserveStreamRender(chatId);
+
+        try {
+            CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS, executor).execute(this::render);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<List<Message>> finishing;
+            synchronized (this) {
+                scheduled = false;
+                finishing = result;
+            }
+
+            if (finishing != null) {
+                finishing.completeExceptionally(e);
+            } else {
+                log.warn("Не удалось запланировать обновление сообщения в чат '{}': {}", chatId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Одна отрисовка. Ошибки промежуточной отрисовки не прерывают поток: после ответа 429 чат ставится на паузу,
+     * а текст будет показан следующей отрисовкой. Если после отрисовки остались непоказанные изменения,
+     * планируется следующая, а когда завершенное сообщение показано полностью, завершается {@link #result}
+     */
+    private void render() {
+        String snapshot;
+        CompletableFuture<List<Message>> finishing;
+        synchronized (this) {
+            snapshot = text.toString();
+            changed = false;
+            finishing = result;
+        }
+
+        boolean pending;
+        try {
+            pending = render(snapshot, finishing != null ? sender.getMaxRetries() : 0);
+        } catch (Throwable e) {
+            if (finishing != null) {
+                finishing.completeExceptionally(e);
+                return;
+            }
+
+            log.warn("Ошибка при обновлении сообщения в чат '{}': {}", chatId, e.getMessage());
+            pending = false;
+        }
+
+        boolean again;
+        synchronized (this) {
+            again = pending || changed || result != finishing;
+            scheduled = again;
+        }
+
+        if (again) {
+            schedule();
+        } else if (finishing != null) {
+            finishing.complete(parts.stream().map(SentPart::message).toList());
+        }
+    }
+
+    /**
+     * Разбивает текст на части и приводит к нему отправленные сообщения: части без сообщения отправляются,
+     * измененные части редактируются, остальные не трогаются. Выполняет не больше
+     * {@link #MAX_REQUESTS_PER_RENDER} запросов, начиная с первой измененной части
+     *
+     * @param retries сколько раз повторять запрос после ответа 429
+     * @return остались ли части, которые еще нужно отправить или отредактировать
+     */
+    private boolean render(String snapshot, int retries) throws Exception {
+        if (snapshot.isBlank()) {
+            return false;
+        }
+
+        String parseMode = ParseMode.MARKDOWNV2;
+        List<String> texts = split(sender.convertMarkdownToTelegramMarkdownV2(snapshot), parseMode);
+        if (sender.validateMarkdownV2(texts).isPresent()) {
+            // Незакрытая разметка в недописанном тексте, пока показываем его без форматирования
+            parseMode = ParseMode.HTML;
+            texts = split(sender.escapeHtml(snapshot), parseMode);
+        }
+
+        int requests = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            String partText = texts.get(i);
+            boolean sent = i < parts.size();
+            if (sent && parts.get(i).shows(partText, parseMode)) {
+                continue;
+            }
+            if (requests == MAX_REQUESTS_PER_RENDER) {
+                return true;
+            }
+
+            requests++;
+            if (sent) {
+                parts.set(i, edit(parts.get(i), partText, parseMode, retries));
+            } else {
+                SendMessage sendMessage = SendMessage.builder()
+                    .chatId(chatId)
+                    .parseMode(parseMode)
+                    .text(partText)
+                    .build();
+                parts.add(new SentPart(sender.executeLimited(chatId, sendMessage, retries), partText, parseMode));
+            }
+        }
+
+        return false;
+    }
+
+    private SentPart edit(SentPart part, String partText, String parseMode, int retries) throws Exception {
+        EditMessageText editMessageText = EditMessageText.builder()
+            .chatId(chatId.toString())
+            .messageId(part.message().getMessageId())
+            .parseMode(parseMode)
+            .text(partText)
+            .build();
+
+        try {
+            Serializable edited = sender.executeLimited(chatId, editMessageText, retries);
+
+            return new SentPart(edited instanceof Message message ? message : part.message(), partText, parseMode);
+        } catch (TelegramApiRequestException e) {
+            if (e.getApiResponse() == null || !e.getApiResponse().contains("message is not modified")) {
+                throw e;
+            }
+
+            // Telegram сравнивает текст после разбора разметки, поэтому разные исходные тексты могут совпасть
+            return new SentPart(part.message(), partText, parseMode);
+        }
+    }
+
+    private List<String> split(String message, String parseMode) {
+        return message.length() <= TgSender.MAX_TG_MESSAGE_LENGTH
+            ? List.of(message)
+            : sender.splitMessageIntoParts(message, parseMode);
+    }
+
+    /**
+     * Отправленная часть и текст, который она сейчас показывает
+     */
+    private record SentPart(Message message, String text, String parseMode) {
+
+        boolean shows(String text, String parseMode) {
+            return this.text.equals(text) && this.parseMode.equals(parseMode);
+        }
+    }
+}
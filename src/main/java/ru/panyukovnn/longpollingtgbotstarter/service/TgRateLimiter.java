@@ -0,0 +1,192 @@
+package ru.panyukovnn.longpollingtgbotstarter.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ограничитель частоты исходящих сообщений по лимитам Telegram
+ * <p>
+ * Каждое ограничение - это token bucket в форме GCRA: для корзины хранится теоретическое время следующей
+ * отправки, поэтому резервирование выполняется за O(1) без фоновых потоков и таймеров. Сообщение ждет,
+ * пока освободится место и в глобальной корзине, и в корзине чата. Для групп и каналов (отрицательный
+ * идентификатор чата) действует отдельный, более строгий лимит.
+ * <p>
+ * Ответ 429 с {@code retry_after} приостанавливает только корзину конкретного чата.
+ */
+public class TgRateLimiter {
+
+    /**
+     * После скольких отслеживаемых чатов запускать очистку простаивающих корзин
+     */
+    private static final int CLEANUP_THRESHOLD = 10_000;
+
+    /**
+     * Как часто запускать очистку, если чатов больше {@link #CLEANUP_THRESHOLD}. Без ограничения при большом
+     * количестве активных чатов полный обход выполнялся бы при каждой отправке
+     */
+    private static final long CLEANUP_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Bucket global;
+    private final long chatInterval;
+    private final long chatTolerance;
+    private final long groupInterval;
+    private final long groupTolerance;
+    private final Map<Long, Bucket> chats = new ConcurrentHashMap<>();
+    private final AtomicLong nextCleanupAt = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * @param globalPerSecond максимальное количество сообщений в секунду для всего бота
+     * @param chatPerSecond   максимальное количество сообщений в секунду в личный чат
+     * @param groupPerMinute  максимальное количество сообщений в минуту в группу или канал
+     * @param chatBurst       сколько сообщений подряд можно отправить в один чат без ожидания
+     */
+    public TgRateLimiter(int globalPerSecond, int chatPerSecond, int groupPerMinute, int chatBurst) {
+        long globalInterval = TimeUnit.SECONDS.toNanos(1) / globalPerSecond;
+        this.global = new Bucket(globalInterval, 0);
+        this.chatInterval = TimeUnit.SECONDS.toNanos(1) / chatPerSecond;
+        this.chatTolerance = chatInterval * (chatBurst - 1);
+        this.groupInterval = TimeUnit.MINUTES.toNanos(1) / groupPerMinute;
+        this.groupTolerance = groupInterval * (chatBurst - 1);
+    }
+
+    /**
+     * Ограничитель с лимитами Telegram по умолчанию: 30 сообщений в секунду на бота,
+     * 1 сообщение в секунду в чат и 20 сообщений в минуту в группу
+     */
+    public static TgRateLimiter telegramDefaults() {
+        return new TgRateLimiter(30, 1, 20, 3);
+    }
+
+    /**
+     * Ограничитель, который никогда не ждет
+     */
+    public static TgRateLimiter unlimited() {
+        return new TgRateLimiter(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, 1) {
+            @Override
+            public void acquire(Long chatId) {
+            }
+
+            @Override
+            public void pauseChat(Long chatId, Duration duration) {
+            }
+        };
+    }
+
+    /**
+     * Блокирует текущий поток, пока отправка сообщения в чат не станет допустимой
+     * <p>
+     * Место в глобальной корзине резервируется только после ожидания корзины чата, чтобы приостановленный
+     * или перегруженный чат не занимал глобальные слоты в будущем и не задерживал остальные чаты.
+     *
+     * @throws InterruptedException если поток был прерван во время ожидания
+     */
+    public void acquire(Long chatId) throws InterruptedException {
+        parkUntil(reserveChat(chatId, System.nanoTime()));
+        parkUntil(reserveGlobal(System.nanoTime()));
+    }
+
+    /**
+     * Приостанавливает отправку в чат, например по {@code retry_after} из ответа 429
+     */
+    public void pauseChat(Long chatId, Duration duration) {
+        chatBucket(chatId).pauseUntil(System.nanoTime() + duration.toNanos());
+    }
+
+    /**
+     * Резервирует место в корзине чата для отправки не раньше {@code now}
+     *
+     * @return момент, начиная с которого отправка в чат допустима
+     */
+    long reserveChat(Long chatId, long now) {
+        if (chats.size() > CLEANUP_THRESHOLD) {
+            removeIdleChats(now);
+        }
+
+        return chatBucket(chatId).reserve(now);
+    }
+
+    /**
+     * Количество чатов, для которых хранится корзина
+     */
+    int trackedChatCount() {
+        return chats.size();
+    }
+
+    /**
+     * Удаляет корзины простаивающих чатов не чаще раза в {@link #CLEANUP_INTERVAL_NANOS}. Очистку выполняет
+     * только поток, успевший сдвинуть время следующей очистки
+     */
+    private void removeIdleChats(long now) {
+        long next = nextCleanupAt.get();
+        boolean due = next == Long.MIN_VALUE || now - next >= 0;
+        if (due && nextCleanupAt.compareAndSet(next, now + CLEANUP_INTERVAL_NANOS)) {
+            chats.values().removeIf(bucket -> bucket.isIdle(now));
+        }
+    }
+
+    /**
+     * Резервирует место в глобальной корзине для отправки не раньше {@code now}
+     *
+     * @return момент, начиная с которого отправка допустима
+     */
+    long reserveGlobal(long now) {
+        return global.reserve(now);
+    }
+
+    private void parkUntil(long deadline) throws InterruptedException {
+        for (long waitNanos = deadline - System.nanoTime(); waitNanos > 0; waitNanos = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(this, waitNanos);
+
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    private Bucket chatBucket(Long chatId) {
+        return chats.computeIfAbsent(chatId, id -> id < 0
+            ? new Bucket(groupInterval, groupTolerance)
+            : new Bucket(chatInterval, chatTolerance));
+    }
+
+    /**
+     * Корзина GCRA: {@code interval} - интервал между сообщениями, {@code tolerance} - допустимый всплеск
+     */
+    private static final class Bucket {
+
+        private final long interval;
+        private final long tolerance;
+        private long theoreticalArrival = Long.MIN_VALUE;
+        private long pausedUntil = Long.MIN_VALUE;
+
+        Bucket(long interval, long tolerance) {
+            this.interval = interval;
+            this.tolerance = tolerance;
+        }
+
+        /**
+         * @return самый ранний момент отправки, не раньше {@code at}
+         */
+        synchronized long reserve(long at) {
+            long start = Math.max(at, pausedUntil);
+            long arrival = Math.max(theoreticalArrival, start);
+            long allowedAt = Math.max(start, arrival - tolerance);
+
+            theoreticalArrival = arrival + interval;
+
+            return allowedAt;
+        }
+
+        synchronized void pauseUntil(long until) {
+            pausedUntil = Math.max(pausedUntil, until);
+        }
+
+        synchronized boolean isIdle(long now) {
+            return theoreticalArrival < now && pausedUntil < now;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package ru.panyukovnn.longpollingtgbotstarter.service;
+
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ошибка отправки одной из частей сообщения
+ * <p>
+ * Содержит уже доставленные части, чтобы вызывающий код мог решить, что делать с остальными.
+ */
+public class TgSendException extends TelegramApiException {
+
+    private final Long chatId;
+    private final String parseMode;
+    private final int failedPartIndex;
+    private final int partsCount;
+    private final List<Message> sentMessages;
+
+    public TgSendException(Long chatId, String parseMode, int failedPartIndex, int partsCount,
+                           List<Message> sentMessages, Throwable cause) {
+        super("Ошибка при отправке части " + (failedPartIndex + 1) + " из " + partsCount + " в чат '" + chatId
+            + "' с " + parseMode + ": " + cause.getMessage(), cause);
+        this.chatId = chatId;
+        this.parseMode = parseMode;
+        this.failedPartIndex = failedPartIndex;
+        this.partsCount = partsCount;
+        this.sentMessages = Collections.unmodifiableList(new ArrayList<>(sentMessages));
+    }
+
+    public Long getChatId() {
+        return chatId;
+    }
+
+    public String getParseMode() {
+        return parseMode;
+    }
+
+    /**
+     * Индекс части, отправка которой завершилась ошибкой, начиная с 0
+     */
+    public int getFailedPartIndex() {
+        return failedPartIndex;
+    }
+
+    public int getPartsCount() {
+        return partsCount;
+    }
+
+    /**
+     * Части, успешно доставленные до ошибки
+     */
+    public List<Message> getSentMessages() {
+        return sentMessages;
+    }
+}
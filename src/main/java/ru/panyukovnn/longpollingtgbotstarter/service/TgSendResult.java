@@ -0,0 +1,22 @@
+package ru.panyukovnn.longpollingtgbotstarter.service;
+
+import org.telegram.telegrambots.meta.api.objects.Message;
+
+import java.util.List;
+
+/**
+ * Результат отправки сообщения через {@link TgSender}
+ *
+ * @param messages       отправленные сообщения, по одному на каждую часть
+ * @param parseMode      режим парсинга, с которым сообщение было доставлено
+ * @param fallbackReason причина перехода с MarkdownV2 на HTML или {@code null}, если перехода не было
+ */
+public record TgSendResult(List<Message> messages, String parseMode, String fallbackReason) {
+
+    /**
+     * Было ли сообщение доставлено через запасной путь HTML
+     */
+    public boolean isFallback() {
+        return fallbackReason != null;
+    }
+}
@@ -4,126 +4,590 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.telegram.telegrambots.meta.api.methods.ParseMode;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
 import ru.panyukovnn.longpollingtgbotstarter.config.TgBotApi;
-
+import ru.panyukovnn.longpollingtgbotstarter.format.MarkdownV2Converter;
+import ru.panyukovnn.longpollingtgbotstarter.format.MarkdownV2Validator;
+import ru.panyukovnn.longpollingtgbotstarter.format.MessageSplitter;
+import ru.panyukovnn.longpollingtgbotstarter.format.TgEscaper;
+import ru.panyukovnn.longpollingtgbotstarter.metrics.TgBotMetrics;
+import ru.panyukovnn.longpollingtgbotstarter.outbox.OutboxLog;
+import ru.panyukovnn.longpollingtgbotstarter.transport.AbsSenderTgTransport;
+import ru.panyukovnn.longpollingtgbotstarter.transport.TgTransport;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Stack;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-public class TgSender {
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TgSender implements AutoCloseable {
 
     private static final Logger log = LoggerFactory.getLogger(TgSender.class);
 
     public static final int MAX_TG_MESSAGE_LENGTH = 4096;
 
-    private final TgBotApi tgBotApi;
+    /**
+     * Сколько раз повторять отправку части после ответа 429 по умолчанию
+     */
+    public static final int DEFAULT_MAX_RETRIES = 3;
 
+    /**
+     * Интервал между отрисовками сообщений {@link #stream} в один чат по умолчанию
+     */
+    public static final Duration DEFAULT_STREAM_INTERVAL = Duration.ofSeconds(1);
+
+    private final TgTransport transport;
+    private final Executor executor;
+    private final TgRateLimiter rateLimiter;
+    private final int maxRetries;
+    private final OutboxLog outbox;
+    private final TgBotMetrics metrics;
+    private final ThreadLocal<OutboxLog.PendingMessage> currentOutboxMessage = new ThreadLocal<>();
+    private final AtomicLong markdownV2ValidationFallbacks = new AtomicLong();
+    private final AtomicLong markdownV2SendFallbacks = new AtomicLong();
+    private final Duration coalesceWindow;
+    private final ConcurrentHashMap<Long, Batch> batches = new ConcurrentHashMap<>();
+    private final long streamIntervalNanos;
+    private final Set<TgMessageStream> streams = ConcurrentHashMap.newKeySet();
+    /**
+     * Время {@link System#nanoTime()}, раньше которого нельзя отрисовывать сообщения {@link #stream} в чат
+     */
+    private final ConcurrentHashMap<Long, Long> nextStreamRenders = new ConcurrentHashMap<>();
+    private final ExecutorService ownedExecutor;
+
+    /**
+     * Создает отправитель с собственным исполнителем {@link #newDefaultExecutor()}, который останавливается
+     * в {@link #close()}
+     */
     public TgSender(TgBotApi tgBotApi) {
-        this.tgBotApi = tgBotApi;
+        this(builder(new AbsSenderTgTransport(tgBotApi)));
+    }
+
+    /**
+     * @param tgBotApi интерфейс бота
+     * @param executor исполнитель для асинхронной отправки {@link #sendAsync}
+     */
+    public TgSender(TgBotApi tgBotApi, Executor executor) {
+        this(builder(new AbsSenderTgTransport(tgBotApi)).executor(executor));
+    }
+
+    protected TgSender(Builder builder) {
+        this.transport = builder.transport;
+        this.ownedExecutor = builder.executor == null ? newDefaultExecutor() : null;
+        this.executor = builder.executor != null ? builder.executor : ownedExecutor;
+        this.rateLimiter = builder.rateLimiter;
+        this.maxRetries = builder.maxRetries;
+        this.outbox = builder.outbox;
+        this.metrics = builder.metrics;
+        this.coalesceWindow = builder.coalesceWindow;
+        this.streamIntervalNanos = builder.streamInterval.toNanos();
+    }
+
+    /**
+     * Отправитель, параметры которого не заданы в {@link Builder}, работает так же, как
+     * {@link #TgSender(TgBotApi)}
+     *
+     * @param transport транспорт запросов к Bot API
+     */
+    public static Builder builder(TgTransport transport) {
+        return new Builder(transport);
+    }
+
+    /**
+     * Создает исполнитель по умолчанию: каждая отправка выполняется в отдельном виртуальном потоке,
+     * поэтому ожидание ответа Telegram и паузы между частями не занимают платформенные потоки
+     */
+    public static ExecutorService newDefaultExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("tg-sender-", 0).factory());
+    }
+
+    /**
+     * Создает ограниченный исполнитель на виртуальных потоках: одновременно выполняется не больше threads отправок,
+     * остальные ждут в очереди. Когда очередь заполнена, {@link #sendAsync} завершается
+     * {@link RejectedExecutionException}
+     *
+     * @param threads       сколько отправок выполняется одновременно
+     * @param queueCapacity сколько отправок может ждать в очереди
+     */
+    public static ExecutorService newBoundedExecutor(int threads, int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(queueCapacity), Thread.ofVirtual().name("tg-sender-", 0).factory());
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
     }
 
     public void send(Long chatId, String message) {
         try {
-            String markdownV2Message = convertMarkdownToTelegramMarkdownV2(message);
+            sendAndThrow(chatId, message);
+        } catch (TgSendException e) {
+            logHtmlFailure(chatId, message, e);
+        }
+    }
+
+    /**
+     * Асинхронно отправляет сообщение, не блокируя вызывающий поток
+     *
+     * @return future с отправленными сообщениями, по одному на каждую часть. При ошибке завершается
+     * с {@link TgSendException}, содержащим уже доставленные части
+     */
+    public CompletableFuture<List<Message>> sendAsync(Long chatId, String message) {
+        return sendWithResultAsync(chatId, message).thenApply(TgSendResult::messages);
+    }
+
+    /**
+     * Асинхронно отправляет сообщение и возвращает полный результат, включая информацию о переходе на HTML.
+     * При заданном окне объединения сообщение может уйти вместе с соседними сообщениями в тот же чат, тогда
+     * их future завершаются одним общим результатом
+     */
+    public CompletableFuture<TgSendResult> sendWithResultAsync(Long chatId, String message) {
+        if (outbox == null) {
+            return coalesceWindow.isZero() ? submit(() -> sendAndThrow(chatId, message)) : coalesce(chatId, message);
+        }
+
+        OutboxLog.PendingMessage pending = new OutboxLog.PendingMessage(outbox.append(chatId, message), chatId,
+            message, null, 0);
+
+        return submit(() -> sendLogged(pending));
+    }
+
+    /**
+     * Досылает сообщения, которые остались в журнале исходящих сообщений с прошлого запуска. Уже отправленные
+     * части повторно не отправляются, поэтому в результате есть только оставшиеся части
+     *
+     * @return future по одному на каждое восстановленное сообщение
+     */
+    public List<CompletableFuture<TgSendResult>> resumePending() {
+        if (outbox == null) {
+            return List.of();
+        }
+
+        List<OutboxLog.PendingMessage> pending = outbox.takeRecovered();
+        if (!pending.isEmpty()) {
+            log.info("Досылаем {} сообщений из журнала исходящих сообщений", pending.size());
+        }
+
+        return pending.stream()
+            .map(message -> submit(() -> sendLogged(message)))
+            .toList();
+    }
+
+    /**
+     * Начинает сообщение, текст которого дописывается по фрагментам {@link TgMessageStream#append}, например
+     * ответ языковой модели по мере генерации. Все сообщения в один чат вместе отправляют или редактируют
+     * не больше одной части за интервал telegram.bot.sender.stream-interval. Завершается
+     * {@link TgMessageStream#finish()}
+     */
+    public TgMessageStream stream(Long chatId) {
+        TgMessageStream stream = new TgMessageStream(this, chatId, executor);
+        streams.add(stream);
+
+        return stream;
+    }
+
+    /**
+     * Отправляет сразу все сообщения, которые ждут окончания окна объединения, завершает незавершенные
+     * сообщения {@link #stream} и ждет завершения отправки. Вызывается при остановке, чтобы сообщения не потерялись
+     */
+    public void flush() {
+        List<CompletableFuture<?>> sent = new ArrayList<>();
+        for (Long chatId : batches.keySet()) {
+            Batch batch = batches.get(chatId);
+            if (batch != null && batches.remove(chatId, batch)) {
+                sent.add(send(chatId, batch));
+            }
+        }
+        for (TgMessageStream stream : streams) {
+            sent.add(stream.finish());
+        }
+
+        CompletableFuture.allOf(sent.toArray(CompletableFuture[]::new))
+            .exceptionally(e -> null)
+            .join();
+    }
+
+    /**
+     * Отправляет ожидающие сообщения {@link #flush()} и останавливает исполнитель, если его создал сам отправитель.
+     * Исполнитель, переданный в конструктор, не останавливается
+     */
+    @Override
+    public void close() {
+        flush();
+        if (ownedExecutor != null) {
+            ownedExecutor.close();
+        }
+    }
+
+    /**
+     * Добавляет сообщение к ожидающим отправки в чат. Каждое сообщение заранее преобразуется в MarkdownV2
+     * отдельно, поэтому разметка и экранирование не переходят через границу сообщений. Если сообщение не
+     * помещается в {@link #MAX_TG_MESSAGE_LENGTH} вместе с ожидающими, они отправляются, а окно начинается заново
+     */
+    private CompletableFuture<TgSendResult> coalesce(Long chatId, String message) {
+        String markdownV2Message = convertMarkdownToTelegramMarkdownV2(message);
+        if (markdownV2Message.length() > MAX_TG_MESSAGE_LENGTH) {
+            return submit(() -> sendAndThrow(chatId, message, markdownV2Message));
+        }
+
+        CompletableFuture<TgSendResult> future = new CompletableFuture<>();
+        Batch[] full = new Batch[1];
+        Batch[] opened = new Batch[1];
+        batches.compute(chatId, (key, batch) -> {
+            if (batch != null && batch.fits(markdownV2Message)) {
+                batch.add(message, markdownV2Message, future);
+                return batch;
+            }
+
+            full[0] = batch;
+            opened[0] = new Batch();
+            opened[0].add(message, markdownV2Message, future);
+
+            return opened[0];
+        });
+
+        if (full[0] != null) {
+            send(chatId, full[0]);
+        }
+        if (opened[0] != null) {
+            Batch batch = opened[0];
+            CompletableFuture.delayedExecutor(coalesceWindow.toNanos(), TimeUnit.NANOSECONDS)
+                .execute(() -> flush(chatId, batch));
+        }
+
+        return future;
+    }
+
+    private void flush(Long chatId, Batch batch) {
+        if (batches.remove(chatId, batch)) {
+            send(chatId, batch);
+        }
+    }
+
+    private CompletableFuture<TgSendResult> send(Long chatId, Batch batch) {
+        String message = String.join("\n", batch.messages);
+        String markdownV2Message = String.join("\n", batch.markdownV2Messages);
+        if (batch.futures.size() > 1) {
+            log.debug("Объединено {} сообщений в чат '{}'", batch.futures.size(), chatId);
+        }
+
+        return submit(() -> sendAndThrow(chatId, message, markdownV2Message)).whenComplete((result, e) -> {
+            for (CompletableFuture<TgSendResult> future : batch.futures) {
+                if (e != null) {
+                    future.completeExceptionally(e);
+                } else {
+                    future.complete(result);
+                }
+            }
+        });
+    }
+
+    private CompletableFuture<TgSendResult> submit(SendTask task) {
+        CompletableFuture<TgSendResult> future = new CompletableFuture<>();
+
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(task.send());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    /**
+     * Отправляет сообщение из журнала: ждет записи постановки в очередь на диск, отмечает каждую отправленную
+     * часть и завершает сообщение. Если отправку прервала остановка приложения, сообщение остается в журнале
+     */
+    private TgSendResult sendLogged(OutboxLog.PendingMessage pending) throws TgSendException, InterruptedException {
+        currentOutboxMessage.set(pending);
+        try {
+            outbox.sync();
+
+            return sendAndThrow(pending.chatId(), pending.message());
+        } finally {
+            currentOutboxMessage.remove();
+            if (!Thread.currentThread().isInterrupted()) {
+                outbox.complete(pending.id());
+            }
+        }
+    }
+
+    /**
+     * Отправляет сообщение с MarkdownV2, а если оно не прошло проверку или было отклонено Telegram - с HTML
+     *
+     * @return результат отправки
+     * @throws TgSendException если не удалось отправить сообщение и с HTML
+     */
+    protected TgSendResult sendAndThrow(Long chatId, String message) throws TgSendException {
+        return sendAndThrow(chatId, message, null);
+    }
+
+    /**
+     * @param markdownV2Message сообщение, уже преобразованное в MarkdownV2, или null
+     */
+    private TgSendResult sendAndThrow(Long chatId, String message, String markdownV2Message) throws TgSendException {
+        long start = System.nanoTime();
+        try {
+            TgSendResult result = sendWithFallback(chatId, message, markdownV2Message);
+            metrics.messageSent(result.parseMode(), result.messages().size(), System.nanoTime() - start);
+
+            return result;
+        } catch (TgSendException e) {
+            metrics.messageFailed(System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    private TgSendResult sendWithFallback(Long chatId, String message, String markdownV2Message)
+        throws TgSendException {
+        OutboxLog.PendingMessage pending = currentOutboxMessage.get();
+        if (pending != null && ParseMode.HTML.equals(pending.parseMode())) {
+            // До остановки часть сообщения уже ушла с HTML, продолжаем с тем же разбиением
+            return new TgSendResult(sendSimpleHtmlMessageAndThrow(chatId, message), ParseMode.HTML,
+                "Отправка с HTML возобновлена из журнала исходящих сообщений");
+        }
 
-            sendMessageWithParseModeAndThrow(chatId, markdownV2Message, ParseMode.MARKDOWNV2);
+        if (markdownV2Message == null) {
+            markdownV2Message = convertMarkdownToTelegramMarkdownV2(message);
+        }
+        List<String> parts = splitIfTooLong(chatId, markdownV2Message, ParseMode.MARKDOWNV2);
+
+        Optional<String> validationError = validateMarkdownV2(parts);
+        if (validationError.isPresent()) {
+            markdownV2ValidationFallbacks.incrementAndGet();
+            metrics.markdownV2ValidationFallback();
+            log.warn("Сообщение в чат '{}' не прошло локальную проверку MarkdownV2, отправляем с HTML. Ошибка: {}",
+                chatId, validationError.get());
+
+            return sendHtmlFallback(chatId, message, validationError.get(), null);
+        }
+
+        try {
+            List<Message> messages = sendPartsWithParseModeAndThrow(chatId, parts, ParseMode.MARKDOWNV2);
             log.info("Сообщение успешно отправлено в чат '{}' с MarkdownV2. Первые 100 символов: '{}'",
                 chatId, message.substring(0, Math.min(100, message.length())));
-        } catch (Exception e) {
+
+            return new TgSendResult(messages, ParseMode.MARKDOWNV2, null);
+        } catch (TgSendException e) {
+            if (!isMarkdownV2Rejected(e)) {
+                throw e;
+            }
+
+            markdownV2SendFallbacks.incrementAndGet();
+            metrics.markdownV2SendFallback();
+            if (e.getFailedPartIndex() > 0) {
+                log.warn("Telegram отклонил разметку части {} из {} в чат '{}', остальные части отправляем с HTML. "
+                    + "Ошибка: {}", e.getFailedPartIndex() + 1, parts.size(), chatId, e.getMessage());
+
+                return new TgSendResult(sendRemainingPartsWithHtml(chatId, parts, e), ParseMode.HTML, e.getMessage());
+            }
+
             log.warn("Ошибка при отправке с MarkdownV2 в чат '{}', пробуем отправить с HTML. Ошибка: {}",
                 chatId, e.getMessage());
 
-            sendSimpleHtmlMessage(chatId, message);
+            return sendHtmlFallback(chatId, message, e.getMessage(), e);
         }
     }
 
-    protected void sendSimpleHtmlMessage(Long chatId, String message) {
-        String escapedMessage = escapeHtml(message);
-
-        try {
-            sendMessageWithParseModeAndThrow(chatId, escapedMessage, ParseMode.HTML);
+    /**
+     * Отклонил ли Telegram разметку MarkdownV2. Только в этом случае сообщение повторяется с HTML: ошибки сети,
+     * ответы 429 после повторов и другие ответы Telegram повторная отправка не исправит, а уже доставленные
+     * части пришли бы дважды. Ошибка без ответа Telegram и без сетевой причины считается отклонением разметки
+     */
+    protected boolean isMarkdownV2Rejected(TgSendException e) {
+        if (e.getCause() instanceof TelegramApiRequestException requestException) {
+            return Integer.valueOf(400).equals(requestException.getErrorCode())
+                && requestException.getApiResponse() != null
+                && requestException.getApiResponse().toLowerCase(Locale.ROOT).contains("can't parse entities");
+        }
 
-            log.info("Сообщение успешно отправлено в чат '{}' при Simple HTML форматировании. " +
-                            "Первые 100 символов: '{}'",
-                    chatId, message.substring(0, Math.min(100, message.length())));
-        } catch (Exception e) {
-            log.warn("Ошибка при отправке сообщения в чат '{}' при Simple HTML форматировании. " +
-                            "Первые 100 символов: '{}'. Ошибка: {}",
-                    chatId, message.substring(0, Math.min(100, message.length())), e.getMessage(), e);
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException || cause instanceof InterruptedException) {
+                return false;
+            }
         }
+
+        return true;
     }
 
-    protected String escapeHtml(String text) {
-        if (text == null) {
-            return null;
+    /**
+     * Отправляет части, начиная с отклоненной, без разметки MarkdownV2 с HTML. Уже доставленные части
+     * не повторяются. В журнале исходящих сообщений части отмечаются по разбиению MarkdownV2, поэтому после
+     * перезапуска отправка продолжится со следующей части
+     *
+     * @return все доставленные части сообщения
+     */
+    private List<Message> sendRemainingPartsWithHtml(Long chatId, List<String> markdownV2Parts,
+                                                     TgSendException rejection) throws TgSendException {
+        List<Message> messages = new ArrayList<>(rejection.getSentMessages());
+        OutboxLog.PendingMessage pending = currentOutboxMessage.get();
+
+        for (int i = rejection.getFailedPartIndex(); i < markdownV2Parts.size(); i++) {
+            String html = escapeHtml(stripMarkdownV2(markdownV2Parts.get(i)));
+            currentOutboxMessage.remove();
+            try {
+                messages.addAll(sendPartsWithParseModeAndThrow(chatId, List.of(html), ParseMode.HTML));
+            } catch (TgSendException e) {
+                TgSendException failure = new TgSendException(chatId, ParseMode.HTML, i, markdownV2Parts.size(),
+                    messages, e.getCause());
+                failure.addSuppressed(rejection);
+                throw failure;
+            } finally {
+                if (pending != null) {
+                    currentOutboxMessage.set(pending);
+                }
+            }
+            if (pending != null) {
+                try {
+                    outbox.partSent(pending.id(), ParseMode.MARKDOWNV2, i);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new TgSendException(chatId, ParseMode.HTML, i, markdownV2Parts.size(), messages, e);
+                }
+            }
         }
 
-        return text.replace("&", "&amp;")
-            .replace("<", "&lt;")
-            .replace(">", "&gt;");
+        return messages;
     }
 
     /**
-     * Преобразует обычный markdown в Telegram MarkdownV2 формат
-     * Основные преобразования:
-     * - **text** или __text__ -> *text* (жирный)
-     * - *text* или _text_ -> _text_ (курсив)
-     * После преобразования экранирует специальные символы
+     * Убирает из текста MarkdownV2 экранирование и маркеры форматирования, оставляя текст как есть
      */
-    protected String convertMarkdownToTelegramMarkdownV2(String text) {
-        if (text == null) {
-            return null;
+    private static String stripMarkdownV2(String text) {
+        StringBuilder plain = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                plain.append(text.charAt(++i));
+            } else if (c != '*' && c != '_' && c != '~' && c != '|' && c != '`') {
+                plain.append(c);
+            }
+        }
+
+        return plain.toString();
+    }
+
+    private TgSendResult sendHtmlFallback(Long chatId, String message, String reason,
+                                          TgSendException markdownV2Error) throws TgSendException {
+        try {
+            return new TgSendResult(sendSimpleHtmlMessageAndThrow(chatId, message), ParseMode.HTML, reason);
+        } catch (TgSendException e) {
+            if (markdownV2Error != null) {
+                e.addSuppressed(markdownV2Error);
+            }
+            throw e;
         }
+    }
 
-        String result = text;
+    /**
+     * Количество сообщений, отправленных через HTML без попытки MarkdownV2, потому что они не прошли
+     * локальную проверку {@link MarkdownV2Validator}
+     */
+    public long getMarkdownV2ValidationFallbackCount() {
+        return markdownV2ValidationFallbacks.get();
+    }
 
-        // Используем символы из Private Use Area (U+E000-U+F8FF), которые не экранируются
-        String boldMarkerStart = "\uE000";
-        String boldMarkerEnd = "\uE001";
-        String italicMarkerStart = "\uE002";
-        String italicMarkerEnd = "\uE003";
-        String codeMarkerStart = "\uE004";
-        String codeMarkerEnd = "\uE005";
-        String linkMarkerStart = "\uE006";
-        String linkMarkerMid = "\uE007";
-        String linkMarkerEnd = "\uE008";
+    /**
+     * Количество сообщений, прошедших локальную проверку, но отклоненных Telegram при отправке с MarkdownV2
+     */
+    public long getMarkdownV2SendFallbackCount() {
+        return markdownV2SendFallbacks.get();
+    }
+
+    /**
+     * Проверяет все части сообщения до отправки первой из них, чтобы не отправлять часть сообщения дважды
+     *
+     * @return описание первой найденной ошибки или пустой Optional
+     */
+    protected Optional<String> validateMarkdownV2(List<String> parts) {
+        for (String part : parts) {
+            Optional<String> error = MarkdownV2Validator.validate(part);
+            if (error.isPresent()) {
+                return error;
+            }
+        }
 
-        // Сохраняем блоки кода (```code```)
-        result = result.replaceAll("```([^`]+)```", codeMarkerStart + "$1" + codeMarkerEnd);
+        return Optional.empty();
+    }
 
-        // Сохраняем инлайн код (`code`)
-        result = result.replaceAll("`([^`]+)`", codeMarkerStart + "$1" + codeMarkerEnd);
+    /**
+     * Отправляет сообщение с HTML, предварительно экранировав его, и логирует ошибку отправки
+     *
+     * @deprecated Метод больше не вызывается при отправке сообщений, и его переопределение ни на что не влияет.
+     * Резервная отправка с HTML выполняется через {@link #sendSimpleHtmlMessageAndThrow}
+     */
+    @Deprecated
+    protected void sendSimpleHtmlMessage(Long chatId, String message) {
+        try {
+            sendSimpleHtmlMessageAndThrow(chatId, message);
+        } catch (TgSendException e) {
+            logHtmlFailure(chatId, message, e);
+        }
+    }
 
-        // Сохраняем ссылки [text](url)
-        result = result.replaceAll("\\[([^\\]]+)\\]\\(([^)]+)\\)",
-            linkMarkerStart + "$1" + linkMarkerMid + "$2" + linkMarkerEnd);
+    /**
+     * Отправляет сообщение с HTML, предварительно экранировав его, и пробрасывает исключения
+     */
+    protected List<Message> sendSimpleHtmlMessageAndThrow(Long chatId, String message) throws TgSendException {
+        String escapedMessage = escapeHtml(message);
 
-        // Преобразуем жирный текст: **text** или __text__ -> маркеры
-        result = result.replaceAll("\\*\\*([^*]+)\\*\\*", boldMarkerStart + "$1" + boldMarkerEnd);
-        result = result.replaceAll("__([^_]+)__", boldMarkerStart + "$1" + boldMarkerEnd);
+        List<Message> messages = sendMessageWithParseModeForResult(chatId, escapedMessage, ParseMode.HTML);
 
-        // Преобразуем курсив: *text* или _text_ -> маркеры
-        result = result.replaceAll("\\*([^*]+)\\*", italicMarkerStart + "$1" + italicMarkerEnd);
-        result = result.replaceAll("_([^_]+)_", italicMarkerStart + "$1" + italicMarkerEnd);
+        log.info("Сообщение успешно отправлено в чат '{}' при Simple HTML форматировании. " +
+                        "Первые 100 символов: '{}'",
+                chatId, message.substring(0, Math.min(100, message.length())));
 
-        // Экранируем все специальные символы MarkdownV2
-        result = escapeMarkdownV2(result);
+        return messages;
+    }
 
-        // Восстанавливаем форматирование из маркеров
-        result = result.replace(boldMarkerStart, "*");
-        result = result.replace(boldMarkerEnd, "*");
-        result = result.replace(italicMarkerStart, "_");
-        result = result.replace(italicMarkerEnd, "_");
-        result = result.replace(codeMarkerStart, "`");
-        result = result.replace(codeMarkerEnd, "`");
-        result = result.replace(linkMarkerStart, "[");
-        result = result.replace(linkMarkerMid, "](");
-        result = result.replace(linkMarkerEnd, ")");
+    private void logHtmlFailure(Long chatId, String message, TgSendException e) {
+        log.warn("Ошибка при отправке сообщения в чат '{}' при Simple HTML форматировании. " +
+                        "Первые 100 символов: '{}'. Ошибка: {}",
+                chatId, message.substring(0, Math.min(100, message.length())), e.getMessage(), e);
+    }
 
-        return result;
+    /**
+     * Экранирует специальные символы для Telegram HTML: &amp; &lt; &gt;
+     *
+     * @see TgEscaper#HTML
+     */
+    protected String escapeHtml(String text) {
+        return TgEscaper.HTML.escape(text);
+    }
+
+    /**
+     * Преобразует обычный markdown в Telegram MarkdownV2 формат
+     * Основные преобразования:
+     * - **text** или __text__ -> *text* (жирный)
+     * - *text* или _text_ -> _text_ (курсив)
+     * После преобразования экранирует специальные символы
+     *
+     * @see MarkdownV2Converter
+     */
+    protected String convertMarkdownToTelegramMarkdownV2(String text) {
+        return MarkdownV2Converter.convert(text);
     }
 
     /**
@@ -132,50 +596,171 @@ public class TgSender {
      * Согласно документации: https://core.telegram.org/bots/api#markdownv2-style
      */
     protected String escapeMarkdownV2(String text) {
-        if (text == null) {
-            return null;
-        }
-
-        return text.replace("_", "\\_")
-            .replace("*", "\\*")
-            .replace("[", "\\[")
-            .replace("]", "\\]")
-            .replace("(", "\\(")
-            .replace(")", "\\)")
-            .replace("~", "\\~")
-            .replace("`", "\\`")
-            .replace(">", "\\>")
-            .replace("#", "\\#")
-            .replace("+", "\\+")
-            .replace("-", "\\-")
-            .replace("=", "\\=")
-            .replace("|", "\\|")
-            .replace("{", "\\{")
-            .replace("}", "\\}")
-            .replace(".", "\\.")
-            .replace("!", "\\!");
+        return TgEscaper.MARKDOWN_V2.escape(text);
     }
 
     /**
      * Отправляет одно сообщение с указанным режимом парсинга
+     *
+     * @deprecated Метод больше не вызывается при отправке сообщений, и его переопределение ни на что не влияет.
+     * Каждая часть сообщения отправляется через {@link #sendSingleMessageForResult}
      */
+    @Deprecated
     protected void sendSingleMessage(Long chatId, String message, String parseMode) throws Exception {
+        sendSingleMessageForResult(chatId, message, parseMode);
+    }
+
+    /**
+     * Отправляет одно сообщение с указанным режимом парсинга
+     *
+     * @return отправленное сообщение
+     */
+    protected Message sendSingleMessageForResult(Long chatId, String message, String parseMode) throws Exception {
         SendMessage sendMessage = SendMessage.builder()
                 .chatId(chatId)
                 .parseMode(parseMode)
                 .text(message)
                 .build();
 
-        tgBotApi.execute(sendMessage);
+        return transport.execute(sendMessage);
     }
 
     /**
      * Отправляет сообщение с указанным режимом парсинга и пробрасывает исключения
+     *
+     * @deprecated Метод больше не вызывается при отправке сообщений, и его переопределение ни на что не влияет.
+     * Сообщения отправляются через {@link #sendMessageWithParseModeForResult}
      */
+    @Deprecated
     protected void sendMessageWithParseModeAndThrow(Long chatId, String message, String parseMode) throws Exception {
+        sendMessageWithParseModeForResult(chatId, message, parseMode);
+    }
+
+    /**
+     * Отправляет сообщение с указанным режимом парсинга и пробрасывает исключения
+     *
+     * @return отправленные сообщения, по одному на каждую часть
+     */
+    protected List<Message> sendMessageWithParseModeForResult(Long chatId, String message, String parseMode)
+            throws TgSendException {
+        return sendPartsWithParseModeAndThrow(chatId, splitIfTooLong(chatId, message, parseMode), parseMode);
+    }
+
+    /**
+     * Отправляет заранее подготовленные части сообщения по очереди и пробрасывает исключения
+     *
+     * @return отправленные сообщения
+     * @throws TgSendException с номером части, на которой произошла ошибка, и уже отправленными частями
+     */
+    protected List<Message> sendPartsWithParseModeAndThrow(Long chatId, List<String> parts, String parseMode)
+            throws TgSendException {
+        List<Message> messages = new ArrayList<>(parts.size());
+        OutboxLog.PendingMessage pending = currentOutboxMessage.get();
+        int firstPart = pending != null && parseMode.equals(pending.parseMode()) ? pending.sentParts() : 0;
+
+        for (int i = firstPart; i < parts.size(); i++) {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    rateLimiter.acquire(chatId);
+                    messages.add(sendSingleMessageForResult(chatId, parts.get(i), parseMode));
+                    if (pending != null) {
+                        outbox.partSent(pending.id(), parseMode, i);
+                    }
+                    break;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new TgSendException(chatId, parseMode, i, parts.size(), messages, e);
+                } catch (Exception e) {
+                    Integer retryAfter = retryAfterSeconds(e);
+                    if (retryAfter != null) {
+                        metrics.rateLimited();
+                    }
+                    if (retryAfter == null || attempt >= maxRetries) {
+                        throw new TgSendException(chatId, parseMode, i, parts.size(), messages, e);
+                    }
+
+                    log.warn("Telegram ограничил частоту отправки в чат '{}', повтор через {} с", chatId, retryAfter);
+                    rateLimiter.pauseChat(chatId, Duration.ofSeconds(retryAfter));
+                }
+            }
+        }
+
+        return messages;
+    }
+
+    /**
+     * Выполняет запрос сообщения {@link #stream} через ограничитель частоты
+     *
+     * @param retries сколько раз повторять запрос после ответа 429 с {@code retry_after}
+     */
+    <T extends Serializable> T executeLimited(Long chatId, BotApiMethod<T> method, int retries) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            rateLimiter.acquire(chatId);
+            try {
+                return transport.execute(method);
+            } catch (TelegramApiRequestException e) {
+                Integer retryAfter = retryAfterSeconds(e);
+                if (retryAfter == null) {
+                    throw e;
+                }
+
+                metrics.rateLimited();
+                rateLimiter.pauseChat(chatId, Duration.ofSeconds(retryAfter));
+                if (attempt >= retries) {
+                    throw e;
+                }
+
+                log.warn("Telegram ограничил частоту отправки в чат '{}', повтор через {} с", chatId, retryAfter);
+            }
+        }
+    }
+
+    /**
+     * Выделяет отрисовке сообщения {@link #stream} ближайшее свободное время чата и сдвигает следующее
+     * на интервал, чтобы несколько сообщений в один чат не редактировались чаще, чем одно
+     *
+     * @return через сколько наносекунд можно выполнить отрисовку
+     */
+    long reserveStreamRender(Long chatId) {
+        long now = System.nanoTime();
+        long next = nextStreamRenders.merge(chatId, now + streamIntervalNanos,
+            (reserved, ignored) -> (reserved - now > 0 ? reserved : now) + streamIntervalNanos);
+
+        return Math.max(0, next - streamIntervalNanos - now);
+    }
+
+    void streamFinished(TgMessageStream stream) {
+        streams.remove(stream);
+
+        // Прошедшее время чата ничего не ограничивает, поэтому его можно забыть
+        long now = System.nanoTime();
+        nextStreamRenders.values().removeIf(next -> next - now <= 0);
+    }
+
+    int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Извлекает {@code retry_after} из ответа Telegram 429 Too Many Requests
+     *
+     * @return количество секунд ожидания или null, если ошибка не связана с ограничением частоты
+     */
+    private static Integer retryAfterSeconds(Exception e) {
+        if (e instanceof TelegramApiRequestException requestException
+            && requestException.getParameters() != null) {
+            return requestException.getParameters().getRetryAfter();
+        }
+
+        return null;
+    }
+
+    /**
+     * Разбивает сообщение на части, если оно длиннее {@link #MAX_TG_MESSAGE_LENGTH}
+     */
+    protected List<String> splitIfTooLong(Long chatId, String message, String parseMode) {
         if (message.length() <= MAX_TG_MESSAGE_LENGTH) {
-            sendSingleMessage(chatId, message, parseMode);
-            return;
+            return List.of(message);
         }
 
         log.info("Сообщение слишком длинное ({} символов) в чат '{}', разбиваем на части",
@@ -185,17 +770,7 @@ public class TgSender {
 
         log.info("Сообщение в чат '{}' разбито на {} частей", chatId, parts.size());
 
-        for (int i = 0; i < parts.size(); i++) {
-            sendSingleMessage(chatId, parts.get(i), parseMode);
-
-            if (i < parts.size() - 1) {
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-            }
-        }
+        return parts;
     }
 
     /**
@@ -303,76 +878,21 @@ public class TgSender {
      * Находит оптимальную позицию для разбиения текста
      */
     protected int findSplitPosition(String text, int maxLength) {
-        if (text.length() <= maxLength) {
-            return text.length();
-        }
-
-        int searchStart = Math.max(0, maxLength - 200);
-
-        int pos = text.lastIndexOf('\n', maxLength);
-        if (pos >= searchStart) {
-            return pos + 1;
-        }
-
-        pos = text.lastIndexOf(' ', maxLength);
-        if (pos >= searchStart) {
-            return pos + 1;
-        }
-
-        return maxLength;
+        return MessageSplitter.findSplitPosition(text, 0, maxLength);
     }
 
     /**
      * Извлекает открытые теги в зависимости от режима парсинга
      */
     protected List<String> extractOpenTags(String text, String parseMode) {
-        List<String> openTags = new ArrayList<>();
-
-        if (ParseMode.MARKDOWNV2.equals(parseMode)) {
-            if (countUnescapedChar(text, '*') % 2 != 0) {
-                openTags.add("*");
-            }
-            if (countUnescapedChar(text, '_') % 2 != 0) {
-                openTags.add("_");
-            }
-            if (countUnescapedChar(text, '`') % 2 != 0) {
-                openTags.add("`");
-            }
-            if (countUnescapedChar(text, '~') % 2 != 0) {
-                openTags.add("~");
-            }
-        } else if (ParseMode.HTML.equals(parseMode)) {
-            openTags = extractOpenHtmlTags(text);
-        }
-
-        return openTags;
+        return MessageSplitter.openTags(text, parseMode);
     }
 
     /**
      * Извлекает открытые HTML теги из текста
      */
     protected List<String> extractOpenHtmlTags(String text) {
-        List<String> openTags = new ArrayList<>();
-        Stack<String> tagStack = new Stack<>();
-
-        Pattern tagPattern = Pattern.compile("<(/?)([a-z]+)(?:\\s[^>]*)?>",
-                Pattern.CASE_INSENSITIVE);
-        Matcher matcher = tagPattern.matcher(text);
-
-        while (matcher.find()) {
-            String slash = matcher.group(1);
-            String tagName = matcher.group(2);
-
-            if (slash.isEmpty()) {
-                tagStack.push(tagName);
-            } else if (!tagStack.isEmpty() && tagStack.peek().equals(tagName)) {
-                tagStack.pop();
-            }
-        }
-
-        openTags.addAll(tagStack);
-
-        return openTags;
+        return MessageSplitter.openTags(text, ParseMode.HTML);
     }
 
     /**
@@ -446,38 +966,123 @@ public class TgSender {
 
     /**
      * Разбивает длинное сообщение на части с учетом markdown/HTML тегов
+     *
+     * @see MessageSplitter
      */
     protected List<String> splitMessageIntoParts(String message, String parseMode) {
-        List<String> parts = new ArrayList<>();
-        String remainingText = message;
-        List<String> currentOpenTags = new ArrayList<>();
+        return MessageSplitter.split(message, parseMode, MAX_TG_MESSAGE_LENGTH);
+    }
 
-        while (remainingText.length() > MAX_TG_MESSAGE_LENGTH) {
-            int tagsOverhead = calculateTagsOverhead(currentOpenTags, parseMode);
-            int maxChunkSize = MAX_TG_MESSAGE_LENGTH - tagsOverhead;
+    /**
+     * Сообщения в один чат, ожидающие окончания окна объединения. Изменяется только внутри
+     * {@link ConcurrentHashMap#compute}, а читается после удаления из карты
+     */
+    private static final class Batch {
 
-            int splitPos = findSplitPosition(remainingText, maxChunkSize);
+        private final List<String> messages = new ArrayList<>();
+        private final List<String> markdownV2Messages = new ArrayList<>();
+        private final List<CompletableFuture<TgSendResult>> futures = new ArrayList<>();
+        private int markdownV2Length;
 
-            String part = remainingText.substring(0, splitPos);
+        boolean fits(String markdownV2Message) {
+            return markdownV2Length + 1 + markdownV2Message.length() <= MAX_TG_MESSAGE_LENGTH;
+        }
 
-            List<String> openTagsInPart = extractOpenTags(part, parseMode);
+        void add(String message, String markdownV2Message, CompletableFuture<TgSendResult> future) {
+            if (!messages.isEmpty()) {
+                markdownV2Length++;
+            }
+            messages.add(message);
+            markdownV2Messages.add(markdownV2Message);
+            futures.add(future);
+            markdownV2Length += markdownV2Message.length();
+        }
+    }
 
-            String closedPart = closeOpenTagsInPart(part, openTagsInPart, parseMode);
-            parts.add(closedPart);
+    @FunctionalInterface
+    private interface SendTask {
 
-            currentOpenTags = openTagsInPart;
+        TgSendResult send() throws Exception;
+    }
 
-            remainingText = remainingText.substring(splitPos);
+    public static class Builder {
 
-            if (!currentOpenTags.isEmpty()) {
-                remainingText = reopenTagsInPart(remainingText, currentOpenTags, parseMode);
-            }
+        private final TgTransport transport;
+        private Executor executor;
+        private TgRateLimiter rateLimiter = TgRateLimiter.telegramDefaults();
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+        private OutboxLog outbox;
+        private TgBotMetrics metrics = TgBotMetrics.NOOP;
+        private Duration coalesceWindow = Duration.ZERO;
+        private Duration streamInterval = DEFAULT_STREAM_INTERVAL;
+
+        protected Builder(TgTransport transport) {
+            this.transport = transport;
         }
 
-        if (!remainingText.isEmpty()) {
-            parts.add(remainingText);
+        /**
+         * @param executor исполнитель для асинхронной отправки {@link #sendAsync}. Если не задан, отправитель
+         *                 создает собственный {@link #newDefaultExecutor()} и останавливает его в {@link #close()}
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
         }
 
-        return parts;
+        /**
+         * @param rateLimiter ограничитель частоты отправки, через который проходит каждое сообщение
+         */
+        public Builder rateLimiter(TgRateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        /**
+         * @param maxRetries сколько раз повторять отправку части после ответа 429 с {@code retry_after}
+         */
+        public Builder maxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * @param outbox журнал исходящих сообщений. Если задан, сообщения {@link #sendAsync} записываются в него
+         *               до отправки, а сообщения, не отправленные до остановки, можно дослать
+         *               {@link #resumePending()}
+         */
+        public Builder outbox(OutboxLog outbox) {
+            this.outbox = outbox;
+            return this;
+        }
+
+        /**
+         * @param metrics метрики времени отправки, количества частей, переходов на HTML и ответов 429
+         */
+        public Builder metrics(TgBotMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @param coalesceWindow окно объединения сообщений {@link #sendAsync} в один чат. Сообщения, отправленные
+         *                       в чат в течение окна после первого из них, уходят одним сообщением. Без журнала
+         *                       исходящих сообщений; 0 - не объединять
+         */
+        public Builder coalesceWindow(Duration coalesceWindow) {
+            this.coalesceWindow = coalesceWindow;
+            return this;
+        }
+
+        /**
+         * @param streamInterval минимальный интервал между отрисовками сообщений {@link #stream} в один чат
+         */
+        public Builder streamInterval(Duration streamInterval) {
+            this.streamInterval = streamInterval;
+            return this;
+        }
+
+        public TgSender build() {
+            return new TgSender(this);
+        }
     }
 }
@@ -0,0 +1,32 @@
+package ru.panyukovnn.longpollingtgbotstarter.transport;
+
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import ru.panyukovnn.longpollingtgbotstarter.config.TgBotApi;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Транспорт через HTTP клиент библиотеки telegrambots, встроенный в {@link TgBotApi}
+ */
+public class AbsSenderTgTransport implements TgTransport {
+
+    private final TgBotApi botApi;
+
+    public AbsSenderTgTransport(TgBotApi botApi) {
+        this.botApi = botApi;
+    }
+
+    @Override
+    public <T extends Serializable> T execute(BotApiMethod<T> method) throws TelegramApiException {
+        return botApi.execute(method);
+    }
+
+    @Override
+    public List<Update> getUpdates(GetUpdates getUpdates) throws TelegramApiException {
+        return botApi.execute(getUpdates);
+    }
+}
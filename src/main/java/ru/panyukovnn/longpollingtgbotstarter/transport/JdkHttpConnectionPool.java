@@ -0,0 +1,75 @@
+package ru.panyukovnn.longpollingtgbotstarter.transport;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Набор клиентов {@link HttpClient} для {@link JdkHttpTgTransport}
+ * <p>
+ * Клиенты не привязаны к токену, поэтому один пул могут использовать транспорты нескольких ботов: количество
+ * соединений и потоков не растет с количеством ботов. Все клиенты выполняют обработку ответов в общем
+ * исполнителе на виртуальных потоках.
+ * <p>
+ * Время жизни простаивающих соединений JDK HttpClient задается только на всю JVM системными свойствами
+ * {@code jdk.httpclient.keepalive.timeout} и {@code jdk.httpclient.keepalive.timeout.h2}, которые читаются при
+ * первом использовании HttpClient. Пул их не меняет: при необходимости задайте их при запуске JVM.
+ */
+public class JdkHttpConnectionPool implements AutoCloseable {
+
+    private final HttpClient[] clients;
+    private final HttpClient pollingClient;
+    private final ExecutorService executor;
+    private final AtomicInteger nextClient = new AtomicInteger();
+
+    /**
+     * @param connections    количество клиентов для отправки запросов, у каждого свое соединение
+     * @param connectTimeout таймаут установки соединения
+     * @param http2          использовать HTTP/2, если сервер его поддерживает
+     */
+    public JdkHttpConnectionPool(int connections, Duration connectTimeout, boolean http2) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("Количество соединений должно быть положительным");
+        }
+
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("tg-http-", 0).factory());
+        this.clients = new HttpClient[connections];
+        for (int i = 0; i < connections; i++) {
+            clients[i] = newClient(connectTimeout, http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1);
+        }
+        this.pollingClient = newClient(connectTimeout, HttpClient.Version.HTTP_1_1);
+    }
+
+    /**
+     * Следующий клиент для отправки запроса, клиенты выбираются по кругу
+     */
+    HttpClient nextClient() {
+        return clients[Math.floorMod(nextClient.getAndIncrement(), clients.length)];
+    }
+
+    /**
+     * Клиент для long polling. Долгие запросы getUpdates не занимают соединения отправки
+     */
+    HttpClient pollingClient() {
+        return pollingClient;
+    }
+
+    @Override
+    public void close() {
+        pollingClient.shutdownNow();
+        for (HttpClient client : clients) {
+            client.close();
+        }
+        executor.shutdownNow();
+    }
+
+    private HttpClient newClient(Duration connectTimeout, HttpClient.Version version) {
+        return HttpClient.newBuilder()
+            .version(version)
+            .connectTimeout(connectTimeout)
+            .executor(executor)
+            .build();
+    }
+}
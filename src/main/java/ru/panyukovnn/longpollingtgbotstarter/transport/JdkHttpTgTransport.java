@@ -0,0 +1,127 @@
+package ru.panyukovnn.longpollingtgbotstarter.transport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdate;
+import ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdateParser;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Транспорт на {@link HttpClient} из JDK
+ * <p>
+ * Запросы отправки распределяются по кругу между {@code connections} клиентами, у каждого из которых свое
+ * соединение. При HTTP/2 одно соединение мультиплексирует все параллельные запросы, поэтому всплеск отправок
+ * не открывает новых соединений и не повторяет TLS handshake. getUpdates выполняется отдельным клиентом,
+ * и отправка никогда не стоит в очереди за долгим запросом long polling. Клиенты хранятся в
+ * {@link JdkHttpConnectionPool}, который может быть общим для нескольких ботов.
+ */
+public class JdkHttpTgTransport implements TgTransport {
+
+    private final String botUrl;
+    private final Duration requestTimeout;
+    private final JdkHttpConnectionPool connectionPool;
+    private final boolean ownsConnectionPool;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param baseUrl        адрес Bot API с префиксом бота, например https://api.telegram.org/bot
+     * @param token          токен бота
+     * @param connections    количество соединений для отправки запросов
+     * @param connectTimeout таймаут установки соединения
+     * @param requestTimeout таймаут запроса, для getUpdates добавляется к таймауту long polling
+     * @param http2          использовать HTTP/2, если сервер его поддерживает
+     */
+    public JdkHttpTgTransport(String baseUrl, String token, int connections, Duration connectTimeout,
+                              Duration requestTimeout, boolean http2) {
+        this(new JdkHttpConnectionPool(connections, connectTimeout, http2), true,
+            baseUrl, token, requestTimeout);
+    }
+
+    /**
+     * Транспорт поверх общего пула соединений. Пул не закрывается вместе с транспортом
+     *
+     * @param connectionPool пул соединений, общий для нескольких ботов
+     * @param baseUrl        адрес Bot API с префиксом бота, например https://api.telegram.org/bot
+     * @param token          токен бота
+     * @param requestTimeout таймаут запроса, для getUpdates добавляется к таймауту long polling
+     */
+    public JdkHttpTgTransport(JdkHttpConnectionPool connectionPool, String baseUrl, String token,
+                              Duration requestTimeout) {
+        this(connectionPool, false, baseUrl, token, requestTimeout);
+    }
+
+    private JdkHttpTgTransport(JdkHttpConnectionPool connectionPool, boolean ownsConnectionPool,
+                               String baseUrl, String token, Duration requestTimeout) {
+        this.connectionPool = connectionPool;
+        this.ownsConnectionPool = ownsConnectionPool;
+        this.botUrl = baseUrl + token + "/";
+        this.requestTimeout = requestTimeout;
+    }
+
+    @Override
+    public <T extends Serializable> T execute(BotApiMethod<T> method) throws TelegramApiException {
+        return method.deserializeResponse(
+            post(connectionPool.nextClient(), method, requestTimeout, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public List<Update> getUpdates(GetUpdates getUpdates) throws TelegramApiException {
+        return getUpdates.deserializeResponse(
+            post(connectionPool.pollingClient(), getUpdates, pollingTimeout(getUpdates), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Получает тело ответа байтами и делит его на обновления без построения объектов telegrambots
+     */
+    @Override
+    public List<RawUpdate> getRawUpdates(GetUpdates getUpdates) throws TelegramApiException {
+        return RawUpdateParser.parse(
+            post(connectionPool.pollingClient(), getUpdates, pollingTimeout(getUpdates), HttpResponse.BodyHandlers.ofByteArray()),
+            getUpdates);
+    }
+
+    @Override
+    public void close() {
+        if (ownsConnectionPool) {
+            connectionPool.close();
+        }
+    }
+
+    private Duration pollingTimeout(GetUpdates getUpdates) {
+        int pollSeconds = getUpdates.getTimeout() != null ? getUpdates.getTimeout() : 0;
+
+        return requestTimeout.plusSeconds(pollSeconds);
+    }
+
+    private <B> B post(HttpClient client, BotApiMethod<?> method, Duration timeout,
+                       HttpResponse.BodyHandler<B> bodyHandler) throws TelegramApiException {
+        method.validate();
+
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(botUrl + method.getMethod()))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(method)))
+                .build();
+
+            return client.send(request, bodyHandler).body();
+        } catch (IOException e) {
+            throw new TelegramApiException("Не удалось выполнить метод " + method.getMethod(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TelegramApiException("Прерван запрос метода " + method.getMethod(), e);
+        }
+    }
+}
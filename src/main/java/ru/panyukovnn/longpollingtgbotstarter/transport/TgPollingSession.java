@@ -0,0 +1,272 @@
+package ru.panyukovnn.longpollingtgbotstarter.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import org.telegram.telegrambots.meta.generics.LongPollingBot;
+import ru.panyukovnn.longpollingtgbotstarter.checkpoint.AckWatermark;
+import ru.panyukovnn.longpollingtgbotstarter.metrics.TgBotMetrics;
+import ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdate;
+import ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdatesReceiver;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.ToIntFunction;
+
+/**
+ * Сессия long polling поверх {@link TgTransport}
+ * <p>
+ * Замена DefaultBotSession из telegrambots: в отдельном потоке запрашивает getUpdates через транспорт,
+ * отбрасывает уже полученные обновления и передает новые в {@link LongPollingBot#onUpdatesReceived}.
+ * При ошибке повторяет запрос с экспоненциальной задержкой. Смещение сдвигается только после того, как бот
+ * принял пачку, поэтому пачка, передача которой завершилась исключением, будет запрошена повторно.
+ * В ленивом режиме обновления передаются в {@link RawUpdatesReceiver#onRawUpdatesReceived} в виде {@link RawUpdate}.
+ * <p>
+ * С {@link AckWatermark} в getUpdates передается граница обработанных обновлений, а не последнего полученного:
+ * Telegram удаляет обновления только после запроса с большим смещением, поэтому необработанные к моменту
+ * остановки обновления будут получены снова. Уже переданные боту обновления из повторных ответов отбрасываются.
+ * Ответ начинается с первого обновления после границы и содержит не больше limit обновлений, поэтому одно
+ * неподтвержденное обновление, за которым получено limit - 1 обновлений, останавливает получение новых
+ * обновлений, пока граница не сдвинется, в том числе по ackTimeout {@link AckWatermark}.
+ */
+public class TgPollingSession {
+
+    private static final Logger log = LoggerFactory.getLogger(TgPollingSession.class);
+
+    private static final long MIN_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final Duration ACK_WAIT = Duration.ofMillis(250);
+
+    private final LongPollingBot bot;
+    private final TgTransport transport;
+    private final DefaultBotOptions options;
+    private final boolean lazyUpdates;
+    private final ThreadFactory threadFactory;
+    private final AckWatermark ackWatermark;
+    private final TgBotMetrics metrics;
+    private volatile Thread thread;
+    private volatile boolean running;
+    private int lastUpdateId;
+
+    public TgPollingSession(LongPollingBot bot, TgTransport transport, DefaultBotOptions options) {
+        this(builder(bot, transport, options));
+    }
+
+    private TgPollingSession(Builder builder) {
+        if (builder.lazyUpdates && !(builder.bot instanceof RawUpdatesReceiver)) {
+            throw new IllegalArgumentException("Для ленивого разбора обновлений бот должен реализовывать RawUpdatesReceiver");
+        }
+
+        this.bot = builder.bot;
+        this.transport = builder.transport;
+        this.options = builder.options;
+        this.lazyUpdates = builder.lazyUpdates;
+        this.threadFactory = builder.threadFactory;
+        this.ackWatermark = builder.ackWatermark;
+        this.metrics = builder.metrics;
+        this.lastUpdateId = ackWatermark != null ? (int) ackWatermark.watermark() : 0;
+    }
+
+    /**
+     * Сессия, параметры которой не заданы в {@link Builder}, работает так же, как
+     * {@link #TgPollingSession(LongPollingBot, TgTransport, DefaultBotOptions)}
+     */
+    public static Builder builder(LongPollingBot bot, TgTransport transport, DefaultBotOptions options) {
+        return new Builder(bot, transport, options);
+    }
+
+    /**
+     * Удаляет webhook бота и запускает поток опроса
+     */
+    public synchronized void start() throws TelegramApiRequestException {
+        if (running) {
+            throw new IllegalStateException("Сессия уже запущена");
+        }
+
+        bot.clearWebhook();
+        bot.onRegister();
+
+        running = true;
+        thread = threadFactory.newThread(this::pollLoop);
+        thread.setName(bot.getBotUsername() + " tg-polling");
+        thread.start();
+    }
+
+    /**
+     * Останавливает опрос и дожидается завершения обработки текущей пачки обновлений
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        bot.onClosing();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void pollLoop() {
+        long backoffMillis = MIN_BACKOFF_MILLIS;
+
+        while (running) {
+            try {
+                long committed = ackWatermark != null ? ackWatermark.watermark() : lastUpdateId;
+                GetUpdates.GetUpdatesBuilder getUpdatesBuilder = GetUpdates.builder()
+                    .offset((int) committed + 1)
+                    .limit(options.getGetUpdatesLimit())
+                    .timeout(options.getGetUpdatesTimeout());
+                if (options.getAllowedUpdates() != null) {
+                    getUpdatesBuilder.allowedUpdates(options.getAllowedUpdates());
+                }
+                GetUpdates getUpdates = getUpdatesBuilder.build();
+
+                if (lazyUpdates) {
+                    long start = System.nanoTime();
+                    List<RawUpdate> updates = transport.getRawUpdates(getUpdates);
+                    metrics.pollCompleted(System.nanoTime() - start, updates.size());
+                    List<RawUpdate> newUpdates = newUpdates(updates, RawUpdate::updateId);
+                    backoffMillis = MIN_BACKOFF_MILLIS;
+                    if (!newUpdates.isEmpty()) {
+                        ((RawUpdatesReceiver) bot).onRawUpdatesReceived(newUpdates);
+                        lastUpdateId = newUpdates.get(newUpdates.size() - 1).updateId();
+                    } else if (!updates.isEmpty()) {
+                        awaitAck(committed);
+                    }
+                } else {
+                    long start = System.nanoTime();
+                    List<Update> updates = transport.getUpdates(getUpdates);
+                    metrics.pollCompleted(System.nanoTime() - start, updates.size());
+                    List<Update> newUpdates = newUpdates(updates, Update::getUpdateId);
+                    backoffMillis = MIN_BACKOFF_MILLIS;
+                    if (!newUpdates.isEmpty()) {
+                        bot.onUpdatesReceived(newUpdates);
+                        lastUpdateId = newUpdates.get(newUpdates.size() - 1).getUpdateId();
+                    } else if (!updates.isEmpty()) {
+                        awaitAck(committed);
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+
+                metrics.pollFailed();
+                long delayMillis = retryAfterMillis(e, backoffMillis);
+                log.error("Ошибка получения обновлений, повтор через {} мс: {}", delayMillis, e.getMessage(), e);
+                backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Ответ состоял только из переданных, но еще не подтвержденных обновлений: Telegram вернет их снова,
+     * пока граница не сдвинется, поэтому вместо немедленного повтора запроса ждем подтверждений
+     */
+    private void awaitAck(long committed) throws InterruptedException {
+        if (ackWatermark != null) {
+            ackWatermark.awaitAdvance(committed, ACK_WAIT);
+        }
+    }
+
+    /**
+     * Отбрасывает обновления, которые уже были переданы боту, и упорядочивает остальные по update_id
+     */
+    private <U> List<U> newUpdates(List<U> updates, ToIntFunction<U> updateId) {
+        List<U> result = new ArrayList<>(updates.size());
+        for (U update : updates) {
+            if (updateId.applyAsInt(update) > lastUpdateId) {
+                result.add(update);
+            }
+        }
+        result.sort(Comparator.comparingInt(updateId));
+
+        return result;
+    }
+
+    private static long retryAfterMillis(Exception e, long backoffMillis) {
+        if (e instanceof TelegramApiRequestException requestException
+            && requestException.getParameters() != null
+            && requestException.getParameters().getRetryAfter() != null) {
+            return Duration.ofSeconds(requestException.getParameters().getRetryAfter()).toMillis();
+        }
+
+        return backoffMillis;
+    }
+
+    public static final class Builder {
+
+        private final LongPollingBot bot;
+        private final TgTransport transport;
+        private final DefaultBotOptions options;
+        private boolean lazyUpdates;
+        private ThreadFactory threadFactory = Thread.ofPlatform().factory();
+        private AckWatermark ackWatermark;
+        private TgBotMetrics metrics = TgBotMetrics.NOOP;
+
+        private Builder(LongPollingBot bot, TgTransport transport, DefaultBotOptions options) {
+            this.bot = bot;
+            this.transport = transport;
+            this.options = options;
+        }
+
+        /**
+         * @param lazyUpdates передавать обновления в виде {@link RawUpdate}, бот должен реализовывать
+         *                    {@link RawUpdatesReceiver}
+         */
+        public Builder lazyUpdates(boolean lazyUpdates) {
+            this.lazyUpdates = lazyUpdates;
+            return this;
+        }
+
+        /**
+         * @param threadFactory фабрика потока опроса. Виртуальные потоки позволяют опрашивать много ботов,
+         *                      не занимая на каждого платформенный поток
+         */
+        public Builder threadFactory(ThreadFactory threadFactory) {
+            this.threadFactory = threadFactory;
+            return this;
+        }
+
+        /**
+         * @param ackWatermark граница обработанных обновлений, с которой начинается опрос и которая передается
+         *                     в getUpdates как смещение. Бот должен подтверждать в ней переданные обновления
+         */
+        public Builder ackWatermark(AckWatermark ackWatermark) {
+            this.ackWatermark = ackWatermark;
+            return this;
+        }
+
+        /**
+         * @param metrics метрики времени запросов getUpdates и количества обновлений в ответе
+         */
+        public Builder metrics(TgBotMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public TgPollingSession build() {
+            return new TgPollingSession(this);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ru.panyukovnn.longpollingtgbotstarter.transport;
+
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdate;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Транспорт запросов к Telegram Bot API
+ * <p>
+ * Через транспорт {@link ru.panyukovnn.longpollingtgbotstarter.service.TgSender} отправляет сообщения,
+ * а {@link TgPollingSession} получает обновления. Реализация выбирается свойством telegram.bot.transport.type.
+ */
+public interface TgTransport extends AutoCloseable {
+
+    /**
+     * Выполняет метод Bot API
+     *
+     * @return результат метода
+     * @throws TelegramApiException при ошибке сети или ответе Telegram с ok=false
+     */
+    <T extends Serializable> T execute(BotApiMethod<T> method) throws TelegramApiException;
+
+    /**
+     * Выполняет long polling запрос getUpdates. Реализации могут использовать для него отдельное соединение,
+     * чтобы отправка сообщений не ждала ответа на долгий запрос
+     *
+     * @return полученные обновления
+     */
+    List<Update> getUpdates(GetUpdates getUpdates) throws TelegramApiException;
+
+    /**
+     * Выполняет getUpdates и возвращает обновления с исходным JSON. Реализация по умолчанию получает
+     * обычные обновления и сериализует их заново, транспорты с доступом к телу ответа переопределяют метод
+     *
+     * @return полученные обновления
+     */
+    default List<RawUpdate> getRawUpdates(GetUpdates getUpdates) throws TelegramApiException {
+        return getUpdates(getUpdates).stream()
+            .map(RawUpdate::of)
+            .toList();
+    }
+
+    @Override
+    default void close() {
+    }
+}
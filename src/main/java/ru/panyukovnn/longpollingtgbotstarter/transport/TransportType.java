@@ -0,0 +1,17 @@
+package ru.panyukovnn.longpollingtgbotstarter.transport;
+
+/**
+ * Реализация транспорта запросов к Bot API
+ */
+public enum TransportType {
+
+    /**
+     * HTTP клиент библиотеки telegrambots и ее сессия long polling
+     */
+    TELEGRAMBOTS,
+
+    /**
+     * {@link java.net.http.HttpClient} с HTTP/2 и отдельным соединением для long polling
+     */
+    JDK
+}
@@ -0,0 +1,99 @@
+package ru.panyukovnn.longpollingtgbotstarter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.assertj.AssertableApplicationContext;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import ru.panyukovnn.longpollingtgbotstarter.checkpoint.OffsetCheckpoint;
+import ru.panyukovnn.longpollingtgbotstarter.fake.FakeBotApiServer;
+import ru.panyukovnn.longpollingtgbotstarter.outbox.OutboxLog;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+class LongPollingTgBotStarterAutoConfigurationUnitTest {
+
+    private FakeBotApiServer fake;
+
+    @TempDir
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fake = FakeBotApiServer.start("token");
+    }
+
+    @AfterEach
+    void tearDown() {
+        fake.close();
+    }
+
+    @Test
+    void when_outboxEnabled_withoutDirectory_then_contextFails() {
+        contextRunner()
+            .withPropertyValues("telegram.bot.outbox.enabled=true")
+            .run(context -> assertStartupFailure(context, "telegram.bot.outbox.directory"));
+    }
+
+    @Test
+    void when_outboxEnabled_withDirectory_then_outboxCreated() {
+        contextRunner()
+            .withPropertyValues(
+                "telegram.bot.outbox.enabled=true",
+                "telegram.bot.outbox.directory=" + directory.resolve("outbox"))
+            .run(context -> {
+                assertThat(context.getStartupFailure(), nullValue());
+                assertThat(context.getBean(OutboxLog.class), notNullValue());
+            });
+    }
+
+    @Test
+    void when_checkpointEnabled_withoutFile_then_contextFails() {
+        contextRunner()
+            .withPropertyValues("telegram.bot.checkpoint.enabled=true")
+            .run(context -> assertStartupFailure(context, "telegram.bot.checkpoint.file"));
+    }
+
+    @Test
+    void when_checkpointEnabled_withFile_then_checkpointCreated() {
+        contextRunner()
+            .withPropertyValues(
+                "telegram.bot.checkpoint.enabled=true",
+                "telegram.bot.checkpoint.file=" + directory.resolve("offset"))
+            .run(context -> {
+                assertThat(context.getStartupFailure(), nullValue());
+                assertThat(context.getBean(OffsetCheckpoint.class), notNullValue());
+            });
+    }
+
+    private static void assertStartupFailure(AssertableApplicationContext context, String property) {
+        assertThat(context.getStartupFailure(), notNullValue());
+
+        Throwable cause = context.getStartupFailure();
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        assertThat(cause, instanceOf(IllegalStateException.class));
+        assertThat(cause.getMessage(), containsString(property));
+    }
+
+    private ApplicationContextRunner contextRunner() {
+        return new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(LongPollingTgBotStarterAutoConfiguration.class))
+            .withPropertyValues(
+                "telegram.bot.name=bot",
+                "telegram.bot.token=" + fake.getToken(),
+                "telegram.bot.base-url=" + fake.getBaseUrl(),
+                "telegram.bot.transport.type=jdk",
+                "telegram.bot.polling.timeout=1");
+    }
+}
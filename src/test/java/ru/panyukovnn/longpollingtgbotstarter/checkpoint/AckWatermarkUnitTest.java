@@ -0,0 +1,113 @@
+package ru.panyukovnn.longpollingtgbotstarter.checkpoint;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AckWatermarkUnitTest {
+
+    @Test
+    void when_ackedOutOfOrder_then_watermarkStopsAtFirstPending() {
+        AckWatermark watermark = new AckWatermark(10, 16);
+        long first = watermark.register(11);
+        long second = watermark.register(12);
+        long third = watermark.register(15);
+
+        watermark.ack(third);
+        watermark.ack(second);
+        assertThat(watermark.watermark(), equalTo(10L));
+
+        watermark.ack(first);
+        assertThat(watermark.watermark(), equalTo(15L));
+        assertThat(watermark.inFlight(), equalTo(0));
+    }
+
+    @Test
+    void when_ackDeferred_then_updateAckedByHandle() {
+        AckWatermark watermark = new AckWatermark(0, 16);
+        List<Runnable> tasks = new ArrayList<>();
+        List<UpdateAcks.AckHandle> handles = new ArrayList<>();
+
+        watermark.submit(1, () -> handles.add(UpdateAcks.defer()), tasks::add);
+        tasks.forEach(Runnable::run);
+        assertThat(watermark.watermark(), equalTo(0L));
+
+        handles.get(0).ack();
+        handles.get(0).ack();
+        assertThat(watermark.watermark(), equalTo(1L));
+    }
+
+    @Test
+    void when_taskFails_then_updateStillAcked() {
+        AckWatermark watermark = new AckWatermark(0, 16);
+        List<Runnable> tasks = new ArrayList<>();
+
+        watermark.submit(1, () -> {
+            throw new IllegalStateException("boom");
+        }, tasks::add);
+
+        assertThrows(IllegalStateException.class, () -> tasks.get(0).run());
+        assertThat(watermark.watermark(), equalTo(1L));
+    }
+
+    @Test
+    void when_executorRejects_then_registrationCancelled() {
+        AckWatermark watermark = new AckWatermark(0, 16);
+
+        assertThrows(RejectedExecutionException.class, () -> watermark.submit(1, () -> {
+        }, task -> {
+            throw new RejectedExecutionException("full");
+        }));
+
+        assertThat(watermark.inFlight(), equalTo(0));
+        watermark.ack(watermark.register(2));
+        assertThat(watermark.watermark(), equalTo(2L));
+    }
+
+    @Test
+    void when_ackTimeoutExpires_then_oldestPendingForceAcked() throws Exception {
+        AckWatermark watermark = new AckWatermark(0, 16, Duration.ofMillis(50));
+        watermark.register(1);
+        long second = watermark.register(2);
+        watermark.ack(second);
+
+        assertThat(watermark.awaitAdvance(0, Duration.ofSeconds(5)), equalTo(true));
+
+        assertThat(watermark.watermark(), equalTo(2L));
+        assertThat(watermark.getForcedAckCount(), equalTo(1L));
+        assertThat(watermark.inFlight(), equalTo(0));
+    }
+
+    @Test
+    void when_fullAndAckTimeoutExpires_then_registerDoesNotBlockForever() {
+        AckWatermark watermark = new AckWatermark(0, 1, Duration.ofMillis(50));
+        watermark.register(1);
+
+        long ticket = watermark.register(2);
+
+        assertThat(watermark.watermark(), equalTo(1L));
+        watermark.ack(ticket);
+        assertThat(watermark.watermark(), equalTo(2L));
+    }
+
+    @Test
+    void when_withoutAckTimeout_then_pendingUpdateHoldsWatermark() throws Exception {
+        AckWatermark watermark = new AckWatermark(0, 16);
+        watermark.register(1);
+
+        assertThat(watermark.awaitAdvance(0, Duration.ofMillis(100)), equalTo(false));
+        assertThat(watermark.getForcedAckCount(), equalTo(0L));
+    }
+
+    @Test
+    void when_deferCalledOutsideUpdate_then_noOpHandle() {
+        UpdateAcks.defer().ack();
+    }
+}
@@ -0,0 +1,68 @@
+package ru.panyukovnn.longpollingtgbotstarter.checkpoint;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+class OffsetCheckpointUnitTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void when_reopened_then_lastWrittenOffsetRead() {
+        Path file = tempDir.resolve("bot.offset");
+
+        try (OffsetCheckpoint checkpoint = new OffsetCheckpoint(file)) {
+            assertThat(checkpoint.read(), equalTo(0L));
+            checkpoint.write(100);
+            checkpoint.write(105);
+        }
+
+        try (OffsetCheckpoint checkpoint = new OffsetCheckpoint(file)) {
+            assertThat(checkpoint.read(), equalTo(105L));
+        }
+    }
+
+    @Test
+    void when_lastSlotCorrupted_then_previousOffsetRead() throws Exception {
+        Path file = tempDir.resolve("bot.offset");
+
+        try (OffsetCheckpoint checkpoint = new OffsetCheckpoint(file)) {
+            checkpoint.write(100);
+            checkpoint.write(105);
+        }
+
+        // Вторая запись попала в ячейку со смещением 8 + 24 * 0, портим ее update_id
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8).putLong(0, 999), 16);
+        }
+
+        try (OffsetCheckpoint checkpoint = new OffsetCheckpoint(file)) {
+            assertThat(checkpoint.read(), equalTo(100L));
+        }
+    }
+
+    @Test
+    void when_writerClosed_then_watermarkFlushed() {
+        Path file = tempDir.resolve("bot.offset");
+        AckWatermark watermark = new AckWatermark(0, 16);
+
+        try (OffsetCheckpoint checkpoint = new OffsetCheckpoint(file)) {
+            CheckpointWriter writer = new CheckpointWriter(checkpoint, watermark, Duration.ofMinutes(1));
+            writer.start();
+            watermark.ack(watermark.register(42));
+            writer.close();
+
+            assertThat(checkpoint.read(), equalTo(42L));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ru.panyukovnn.longpollingtgbotstarter.cluster;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import ru.panyukovnn.longpollingtgbotstarter.config.TgBotApi;
+import ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdate;
+import ru.panyukovnn.longpollingtgbotstarter.raw.RawUpdateParser;
+import ru.panyukovnn.longpollingtgbotstarter.transport.TgTransport;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ClusterPollerUnitTest {
+
+    private static final String RESPONSE = "{\"ok\":true,\"result\":["
+        + "{\"update_id\":1,\"message\":{\"chat\":{\"id\":5},\"text\":\"first\"}},"
+        + "{\"update_id\":2,\"message\":{\"chat\":{\"id\":6},\"text\":\"other\"}},"
+        + "{\"update_id\":3,\"message\":{\"chat\":{\"id\":5},\"text\":\"second\"}}]}";
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Test
+    void when_onRawUpdatesReceived_then_workerPublishesUpdatesOfChatInOrder() throws Exception {
+        TgBotApi botApi = new TgBotApi(eventPublisher, "bot", "token");
+        LoopbackClusterTransport clusterTransport = new LoopbackClusterTransport();
+        ClusterWorker worker = new ClusterWorker(clusterTransport, botApi, Set.of(0, 1, 2, 3), true);
+        ClusterPoller poller = new ClusterPoller(botApi, mock(TgTransport.class), clusterTransport,
+            mock(LeaderElection.class), 4);
+        worker.start();
+
+        poller.onRawUpdatesReceived(parse(RESPONSE));
+
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, atLeastOnce()).publishEvent(events.capture());
+        List<String> chatFive = events.getAllValues().stream()
+            .map(RawUpdate.class::cast)
+            .filter(update -> update.chatKey() == 5)
+            .map(RawUpdate::text)
+            .toList();
+        assertThat(chatFive, contains("first", "second"));
+        assertThat(events.getAllValues().size(), equalTo(3));
+    }
+
+    @Test
+    void when_onRawUpdatesReceived_withoutWorker_then_failsForRetry() throws Exception {
+        TgBotApi botApi = new TgBotApi(eventPublisher, "bot", "token");
+        ClusterPoller poller = new ClusterPoller(botApi, mock(TgTransport.class), new LoopbackClusterTransport(),
+            mock(LeaderElection.class), 4);
+        List<RawUpdate> updates = parse(RESPONSE);
+
+        assertThrows(UncheckedIOException.class, () -> poller.onRawUpdatesReceived(updates));
+    }
+
+    @Test
+    void when_partition_then_sameChatSamePartition() {
+        assertThat(UpdatePartitioner.partition(5, 16), equalTo(UpdatePartitioner.partition(5, 16)));
+        assertThat(UpdatePartitioner.partition(-100123L, 16) < 16, equalTo(true));
+        assertThat(UpdatePartitioner.partition(-100123L, 16) >= 0, equalTo(true));
+    }
+
+    private static List<RawUpdate> parse(String json) throws Exception {
+        return RawUpdateParser.parse(json.getBytes(StandardCharsets.UTF_8), null);
+    }
+}
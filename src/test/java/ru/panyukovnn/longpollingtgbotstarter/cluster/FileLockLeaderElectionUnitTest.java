@@ -0,0 +1,60 @@
+package ru.panyukovnn.longpollingtgbotstarter.cluster;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+class FileLockLeaderElectionUnitTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void when_leaderClosed_then_secondNodeTakesOver() throws Exception {
+        Path lockFile = tempDir.resolve("bot.lock");
+        RecordingListener firstListener = new RecordingListener();
+        RecordingListener secondListener = new RecordingListener();
+        FileLockLeaderElection first = new FileLockLeaderElection(lockFile, Duration.ofMillis(20));
+        FileLockLeaderElection second = new FileLockLeaderElection(lockFile, Duration.ofMillis(20));
+
+        first.start(firstListener);
+        assertThat(firstListener.granted.await(5, TimeUnit.SECONDS), equalTo(true));
+        second.start(secondListener);
+        Thread.sleep(100);
+
+        assertThat(first.isLeader(), equalTo(true));
+        assertThat(second.isLeader(), equalTo(false));
+
+        first.close();
+
+        assertThat(firstListener.revoked.getCount(), equalTo(0L));
+        assertThat(secondListener.granted.await(5, TimeUnit.SECONDS), equalTo(true));
+        assertThat(second.isLeader(), equalTo(true));
+
+        second.close();
+        assertThat(second.isLeader(), equalTo(false));
+    }
+
+    private static final class RecordingListener implements LeadershipListener {
+
+        private final CountDownLatch granted = new CountDownLatch(1);
+        private final CountDownLatch revoked = new CountDownLatch(1);
+
+        @Override
+        public void onGranted() {
+            granted.countDown();
+        }
+
+        @Override
+        public void onRevoked() {
+            revoked.countDown();
+        }
+    }
+}
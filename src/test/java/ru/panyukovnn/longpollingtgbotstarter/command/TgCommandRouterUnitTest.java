@@ -0,0 +1,159 @@
+package ru.panyukovnn.longpollingtgbotstarter.command;
+
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.extensions.bots.commandbot.commands.IBotCommand;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import ru.panyukovnn.longpollingtgbotstarter.config.TgBotApi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TgCommandRouterUnitTest {
+
+    private final Commands commands = new Commands();
+    private final TgCommandRouter router = TgCommandRouter.of(commands, new HelpCommand(commands.calls));
+    private final TgBotApi botApi = mock(TgBotApi.class);
+
+    TgCommandRouterUnitTest() {
+        when(botApi.getBotUsername()).thenReturn("MyBot");
+    }
+
+    @Test
+    void when_route_withNameAndAlias_then_argumentsTokenized() {
+        assertThat(router.route(botApi, message("/start  a  b")), equalTo(true));
+        assertThat(router.route(botApi, message("/s")), equalTo(true));
+
+        assertThat(commands.calls, contains("start:[a, b]", "start:[]"));
+    }
+
+    @Test
+    void when_route_withMention_then_onlyOwnBotCommandsExecuted() {
+        router.route(botApi, message("/start@mybot x"));
+        boolean routed = router.route(botApi, message("/start@OtherBot x"));
+
+        assertThat(routed, equalTo(false));
+        assertThat(commands.calls, contains("start:[x]"));
+    }
+
+    @Test
+    void when_route_withPrefixCommand_then_exactNameWinsAndSuffixPassed() {
+        router.route(botApi, message("/user_42"));
+        router.route(botApi, message("/user_admin 1 2"));
+
+        assertThat(commands.calls, contains("user:42", "admin:[1, 2]"));
+    }
+
+    @Test
+    void when_route_botCommandBean_then_processMessageCalledWithArguments() {
+        router.route(botApi, message("/help@MyBot topic"));
+        router.route(botApi, message("/h"));
+
+        assertThat(commands.calls, contains("help:[topic]", "help:[]"));
+    }
+
+    @Test
+    void when_route_withUnknownCommandOrText_then_false() {
+        assertThat(router.route(botApi, message("/unknown")), equalTo(false));
+        assertThat(router.route(botApi, message("/st")), equalTo(false));
+        assertThat(router.route(botApi, message("/")), equalTo(false));
+        assertThat(router.route(botApi, message("start")), equalTo(false));
+        assertThat(commands.calls, empty());
+    }
+
+    @Test
+    void when_route_withExecutor_then_commandExecutedInIt() throws Exception {
+        ExecutorService heavyExecutor = Executors.newSingleThreadExecutor(task -> new Thread(task, "heavy"));
+        HeavyCommand heavyCommand = new HeavyCommand();
+        TgCommandRouter heavyRouter = TgCommandRouter.of(Map.of("heavyExecutor", heavyExecutor), heavyCommand);
+
+        heavyRouter.route(botApi, message("/report"));
+        heavyExecutor.shutdown();
+        heavyExecutor.awaitTermination(5, TimeUnit.SECONDS);
+
+        assertThat(heavyCommand.threads, contains("heavy"));
+    }
+
+    @Test
+    void when_of_withDuplicateName_then_exception() {
+        assertThrows(IllegalStateException.class, () -> TgCommandRouter.of(new Commands(), new Commands()));
+    }
+
+    private static Update message(String text) {
+        Message message = mock(Message.class);
+        when(message.getText()).thenReturn(text);
+        Update update = mock(Update.class);
+        when(update.hasMessage()).thenReturn(true);
+        when(update.getMessage()).thenReturn(message);
+
+        return update;
+    }
+
+    public static class Commands {
+
+        private final List<String> calls = new ArrayList<>();
+
+        @TgCommand({"start", "s"})
+        public void start(TgCommandArgs args) {
+            calls.add("start:" + args);
+        }
+
+        @TgCommand(value = "user_", prefix = true)
+        public void user(TgCommandArgs args) {
+            calls.add("user:" + args.suffix());
+        }
+
+        @TgCommand("user_admin")
+        public void admin(Message message, String[] args) {
+            calls.add("admin:" + List.of(args));
+        }
+    }
+
+    @TgCommand("h")
+    public static class HelpCommand implements IBotCommand {
+
+        private final List<String> calls;
+
+        HelpCommand(List<String> calls) {
+            this.calls = calls;
+        }
+
+        @Override
+        public String getCommandIdentifier() {
+            return "help";
+        }
+
+        @Override
+        public String getDescription() {
+            return "Справка";
+        }
+
+        @Override
+        public void processMessage(AbsSender absSender, Message message, String[] arguments) {
+            calls.add("help:" + List.of(arguments));
+        }
+    }
+
+    public static class HeavyCommand {
+
+        private final List<String> threads = new ArrayList<>();
+
+        @TgCommand(value = "report", executor = "heavyExecutor")
+        public void report() {
+            threads.add(Thread.currentThread().getName());
+        }
+    }
+}
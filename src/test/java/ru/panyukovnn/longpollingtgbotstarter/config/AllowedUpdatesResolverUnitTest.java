@@ -0,0 +1,181 @@
+package ru.panyukovnn.longpollingtgbotstarter.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.PayloadApplicationEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.telegram.telegrambots.extensions.bots.commandbot.commands.BotCommand;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import ru.panyukovnn.longpollingtgbotstarter.event.TgUpdateTypes;
+import ru.panyukovnn.longpollingtgbotstarter.event.UpdateBatchEvent;
+import ru.panyukovnn.longpollingtgbotstarter.router.TgHandler;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AllowedUpdatesResolverUnitTest {
+
+    @Test
+    void when_resolve_withAnnotatedListenersAndCommands_then_unionOfTypes() {
+        ListableBeanFactory beanFactory = beanFactory(CallbackListener.class, BatchListener.class, BotCommand.class);
+
+        List<String> allowedUpdates = AllowedUpdatesResolver.resolve(beanFactory);
+
+        assertThat(allowedUpdates, contains("callback_query", "message", "edited_message"));
+    }
+
+    @Test
+    void when_resolve_withUndeclaredListener_then_empty() {
+        ListableBeanFactory beanFactory = beanFactory(CallbackListener.class, PlainListener.class);
+
+        assertThat(AllowedUpdatesResolver.resolve(beanFactory), empty());
+    }
+
+    @Test
+    void when_resolve_withUnrelatedListener_then_ignored() {
+        ListableBeanFactory beanFactory = beanFactory(StringListener.class, CallbackListener.class);
+
+        assertThat(AllowedUpdatesResolver.resolve(beanFactory), contains("callback_query"));
+    }
+
+    @Test
+    void when_resolve_withTgHandlers_then_typesFromHandlers() {
+        ListableBeanFactory beanFactory = beanFactory(PrefixHandlers.class, CallbackListener.class);
+
+        assertThat(AllowedUpdatesResolver.resolve(beanFactory),
+            containsInAnyOrder("message", "inline_query", "callback_query"));
+    }
+
+    @Test
+    void when_resolve_withAnyTypeTgHandler_then_empty() {
+        ListableBeanFactory beanFactory = beanFactory(CallbackListener.class, AnyTypeHandler.class);
+
+        assertThat(AllowedUpdatesResolver.resolve(beanFactory), empty());
+    }
+
+    @Test
+    void when_resolve_withNonPublicUndeclaredListener_then_empty() {
+        ListableBeanFactory beanFactory = beanFactory(CallbackListener.class, PackagePrivateListener.class);
+
+        assertThat(AllowedUpdatesResolver.resolve(beanFactory), empty());
+    }
+
+    @Test
+    void when_resolve_withPayloadApplicationListener_then_empty() {
+        ListableBeanFactory beanFactory = beanFactory(CallbackListener.class, PayloadListener.class);
+
+        assertThat(AllowedUpdatesResolver.resolve(beanFactory), empty());
+    }
+
+    @Test
+    void when_resolve_withAnnotatedPayloadApplicationListener_then_typesFromAnnotation() {
+        ListableBeanFactory beanFactory = beanFactory(CallbackListener.class, AnnotatedPayloadListener.class);
+
+        assertThat(AllowedUpdatesResolver.resolve(beanFactory), contains("callback_query", "message"));
+    }
+
+    @Test
+    void when_resolve_withUnrelatedApplicationListener_then_ignored() {
+        ListableBeanFactory beanFactory = beanFactory(RefreshListener.class, CallbackListener.class);
+
+        assertThat(AllowedUpdatesResolver.resolve(beanFactory), contains("callback_query"));
+    }
+
+    private static ListableBeanFactory beanFactory(Class<?>... beanTypes) {
+        ListableBeanFactory beanFactory = mock(ListableBeanFactory.class);
+        String[] names = new String[beanTypes.length];
+        for (int i = 0; i < beanTypes.length; i++) {
+            names[i] = "bean" + i;
+            when(beanFactory.getType(names[i], false)).thenAnswer(invocation -> beanTypes[Integer.parseInt(
+                invocation.<String>getArgument(0).substring(4))]);
+        }
+        when(beanFactory.getBeanDefinitionNames()).thenReturn(names);
+
+        return beanFactory;
+    }
+
+    public static class CallbackListener {
+
+        @TgUpdateTypes("callback_query")
+        @EventListener
+        public void onUpdate(Update update) {
+        }
+    }
+
+    @TgUpdateTypes({"message", "edited_message"})
+    public static class BatchListener {
+
+        @EventListener
+        public void onBatch(UpdateBatchEvent batch) {
+        }
+    }
+
+    public static class PlainListener {
+
+        @EventListener(Update.class)
+        public void onUpdate() {
+        }
+    }
+
+    public static class StringListener {
+
+        @EventListener
+        public void onString(String event) {
+        }
+    }
+
+    public static class PrefixHandlers {
+
+        @TgHandler(textPrefix = "/start")
+        public void onStart(Update update) {
+        }
+
+        @TgHandler(type = "inline_query")
+        public void onInlineQuery(Update update) {
+        }
+    }
+
+    public static class AnyTypeHandler {
+
+        @TgHandler
+        public void onUpdate(Update update) {
+        }
+    }
+
+    public static class PackagePrivateListener {
+
+        @EventListener
+        void onUpdate(Update update) {
+        }
+    }
+
+    public static class PayloadListener implements ApplicationListener<PayloadApplicationEvent<Update>> {
+
+        @Override
+        public void onApplicationEvent(PayloadApplicationEvent<Update> event) {
+        }
+    }
+
+    @TgUpdateTypes("message")
+    public static class AnnotatedPayloadListener implements ApplicationListener<PayloadApplicationEvent<Update>> {
+
+        @Override
+        public void onApplicationEvent(PayloadApplicationEvent<Update> event) {
+        }
+    }
+
+    public static class RefreshListener implements ApplicationListener<ContextRefreshedEvent> {
+
+        @Override
+        public void onApplicationEvent(ContextRefreshedEvent event) {
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package ru.panyukovnn.longpollingtgbotstarter.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import ru.panyukovnn.longpollingtgbotstarter.checkpoint.AckWatermark;
+import ru.panyukovnn.longpollingtgbotstarter.dedup.UpdateDeduplicator;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.InboundBuffer;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.OverflowPolicy;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.UpdateDispatcher;
+import ru.panyukovnn.longpollingtgbotstarter.event.BotUpdateEvent;
+import ru.panyukovnn.longpollingtgbotstarter.event.UpdateBatchEvent;
+import ru.panyukovnn.longpollingtgbotstarter.router.TgHandler;
+import ru.panyukovnn.longpollingtgbotstarter.router.TgUpdateRouter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TgBotApiUnitTest {
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Test
+    void when_onUpdatesReceived_withBatchEvent_then_batchPublishedOnceBeforeUpdates() {
+        TgBotApi botApi = TgBotApi.builder(eventPublisher, "bot", "token")
+            .publishBatchEvents(true)
+            .build();
+        Update first = mock(Update.class);
+        Update second = mock(Update.class);
+
+        botApi.onUpdatesReceived(List.of(first, second));
+
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(3)).publishEvent(events.capture());
+        assertThat(events.getAllValues().get(0), instanceOf(UpdateBatchEvent.class));
+        assertThat(((UpdateBatchEvent) events.getAllValues().get(0)).updates(), contains(first, second));
+        assertThat(events.getAllValues().subList(1, 3), contains(first, second));
+    }
+
+    @Test
+    void when_onUpdatesReceived_withBatchOnly_then_onlyBatchPublished() {
+        TgBotApi botApi = TgBotApi.builder(eventPublisher, "bot", "token")
+            .publishBatchEvents(true)
+            .publishUpdateEvents(false)
+            .build();
+        Update first = mock(Update.class);
+        Update second = mock(Update.class);
+
+        botApi.onUpdatesReceived(List.of(first, second));
+
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher).publishEvent(events.capture());
+        assertThat(((UpdateBatchEvent) events.getValue()).updates(), contains(first, second));
+    }
+
+    @Test
+    void when_onUpdatesReceived_withoutBatchEvent_then_onlyUpdatesPublished() {
+        TgBotApi botApi = new TgBotApi(eventPublisher, "bot", "token");
+        Update update = mock(Update.class);
+
+        botApi.onUpdatesReceived(List.of(update));
+
+        verify(eventPublisher).publishEvent(update);
+        verify(eventPublisher, never()).publishEvent(any(UpdateBatchEvent.class));
+    }
+
+    @Test
+    void when_onUpdatesReceived_withBotId_then_eventsCarryBotId() {
+        TgBotApi botApi = TgBotApi.builder(eventPublisher, "bot", "token")
+            .publishBatchEvents(true)
+            .botId("support")
+            .build();
+        Update update = mock(Update.class);
+
+        botApi.onUpdatesReceived(List.of(update));
+
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        assertThat(((UpdateBatchEvent) events.getAllValues().get(0)).botId(), equalTo("support"));
+        assertThat(events.getAllValues().get(1), equalTo(new BotUpdateEvent("support", update)));
+    }
+
+    @Test
+    void when_onUpdatesReceived_withDeduplicator_then_repeatedUpdatesSkipped() {
+        TgBotApi botApi = TgBotApi.builder(eventPublisher, "bot", "token")
+            .publishBatchEvents(true)
+            .deduplicator(new UpdateDeduplicator(100))
+            .build();
+        Update first = mock(Update.class);
+        Update second = mock(Update.class);
+        when(first.getUpdateId()).thenReturn(1);
+        when(second.getUpdateId()).thenReturn(2);
+
+        botApi.onUpdatesReceived(List.of(first));
+        botApi.onUpdatesReceived(List.of(first, second));
+
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(4)).publishEvent(events.capture());
+        assertThat(((UpdateBatchEvent) events.getAllValues().get(2)).updates(), contains(second));
+        assertThat(events.getAllValues().get(3), equalTo(second));
+    }
+
+    @Test
+    void when_onUpdatesReceived_withDeduplicatorAndRejectedTask_then_unacceptedTailRedelivered() {
+        UpdateDispatcher dispatcher = mock(UpdateDispatcher.class);
+        TgBotApi botApi = TgBotApi.builder(eventPublisher, "bot", "token")
+            .updateDispatcher(dispatcher)
+            .deduplicator(new UpdateDeduplicator(100))
+            .build();
+        Update first = mock(Update.class);
+        Update second = mock(Update.class);
+        Update third = mock(Update.class);
+        when(first.getUpdateId()).thenReturn(1);
+        when(second.getUpdateId()).thenReturn(2);
+        when(third.getUpdateId()).thenReturn(3);
+        doNothing()
+            .doThrow(new RejectedExecutionException("full"))
+            .doNothing()
+            .when(dispatcher).dispatch(any(), any());
+
+        assertThrows(RejectedExecutionException.class,
+            () -> botApi.onUpdatesReceived(List.of(first, second, third)));
+        botApi.onUpdatesReceived(List.of(first, second, third));
+
+        ArgumentCaptor<Update> dispatched = ArgumentCaptor.forClass(Update.class);
+        verify(dispatcher, times(4)).dispatch(dispatched.capture(), any());
+        assertThat(dispatched.getAllValues(), contains(first, second, second, third));
+    }
+
+    @Test
+    void when_onUpdatesReceived_withShedUpdateAndCheckpoint_then_watermarkPassesShedUpdate() {
+        List<Runnable> tasks = new ArrayList<>();
+        AckWatermark watermark = new AckWatermark(0, 10);
+        TgBotApi botApi = TgBotApi.builder(eventPublisher, "bot", "token")
+            .updateDispatcher((chatKey, task) -> tasks.add(task))
+            .inboundBuffer(new InboundBuffer(1, OverflowPolicy.SHED_NON_MESSAGE))
+            .ackWatermark(watermark)
+            .publishUpdateEvents(false)
+            .build();
+        Message chatMessage = new Message();
+        chatMessage.setChat(new Chat(42L, "private"));
+        Update message = new Update();
+        message.setUpdateId(1);
+        message.setMessage(chatMessage);
+        Update callback = new Update();
+        callback.setUpdateId(2);
+
+        botApi.onUpdatesReceived(List.of(message, callback));
+        tasks.forEach(Runnable::run);
+
+        assertThat(tasks.size(), equalTo(1));
+        assertThat(botApi.getInboundBuffer().getDroppedCount(), equalTo(1L));
+        assertThat(watermark.watermark(), equalTo(2L));
+        assertThat(watermark.inFlight(), equalTo(0));
+    }
+
+    @Test
+    void when_onUpdatesReceived_withMatchingHandler_then_eventNotPublished() {
+        MessageHandler handler = new MessageHandler();
+        TgBotApi botApi = TgBotApi.builder(eventPublisher, "bot", "token")
+            .router(TgUpdateRouter.of(handler))
+            .build();
+        Update update = mock(Update.class);
+        when(update.hasMessage()).thenReturn(true);
+        when(update.getMessage()).thenReturn(mock(Message.class));
+
+        botApi.onUpdatesReceived(List.of(update));
+
+        assertThat(handler.updates, contains(update));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    public static class MessageHandler {
+
+        private final List<Update> updates = new ArrayList<>();
+
+        @TgHandler(type = "message")
+        public void onMessage(Update update) {
+            updates.add(update);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package ru.panyukovnn.longpollingtgbotstarter.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import ru.panyukovnn.longpollingtgbotstarter.LongPollingTgBotStarterAutoConfiguration;
+import ru.panyukovnn.longpollingtgbotstarter.fake.FakeBotApiServer;
+import ru.panyukovnn.longpollingtgbotstarter.service.TgSender;
+import ru.panyukovnn.longpollingtgbotstarter.transport.JdkHttpConnectionPool;
+import ru.panyukovnn.longpollingtgbotstarter.transport.TgPollingSession;
+import ru.panyukovnn.longpollingtgbotstarter.transport.TgTransport;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.aMapWithSize;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+class TgBotInstancesRegistrarUnitTest {
+
+    private FakeBotApiServer fake;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fake = FakeBotApiServer.start("token");
+    }
+
+    @AfterEach
+    void tearDown() {
+        fake.close();
+    }
+
+    @Test
+    void when_instancesConfigured_then_beansRegisteredPerBot() {
+        contextRunner().run(context -> {
+            assertThat(context.getBeansOfType(TgBotApi.class), aMapWithSize(2));
+            assertThat(context.getBeansOfType(TgTransport.class), aMapWithSize(2));
+            assertThat(context.getBeansOfType(TgPollingSession.class), aMapWithSize(2));
+            assertThat(context.getBeansOfType(TgSender.class), aMapWithSize(2));
+
+            TgBots tgBots = context.getBean(TgBots.class);
+            assertThat(List.copyOf(tgBots.getBotIds()), equalTo(List.of("support", "news")));
+            assertThat(tgBots.getBotApi("news"), sameInstance(context.getBean("newsTgBotApi")));
+            assertThat(tgBots.getBotApi("news").getBotId(), equalTo("news"));
+            assertThat(tgBots.getBotApi("news").getBotUsername(), equalTo("news_bot"));
+            assertThat(tgBots.getSender("news"), sameInstance(context.getBean("newsTgSender")));
+        });
+    }
+
+    @Test
+    void when_instancesConfigured_then_primaryBotInjectedWithoutQualifier() {
+        contextRunner().run(context -> {
+            assertThat(context.getBean(TgBotApi.class), sameInstance(context.getBean("supportTgBotApi")));
+            assertThat(context.getBean(TgSender.class), sameInstance(context.getBean("supportTgSender")));
+        });
+    }
+
+    @Test
+    void when_instancesConfigured_then_connectionPoolAndSenderExecutorShared() {
+        contextRunner()
+            .withPropertyValues(
+                "telegram.bot.sender.executor-threads=4",
+                "telegram.bot.sender.executor-queue-capacity=100")
+            .run(context -> {
+                assertThat(context.getBeansOfType(JdkHttpConnectionPool.class), aMapWithSize(1));
+
+                Object executor = context.getBean(LongPollingTgBotStarterAutoConfiguration.TG_SENDER_EXECUTOR);
+                assertThat(executor, instanceOf(ThreadPoolExecutor.class));
+                assertThat(((ThreadPoolExecutor) executor).getMaximumPoolSize(), equalTo(4));
+                assertThat(((ThreadPoolExecutor) executor).getQueue().remainingCapacity(), equalTo(100));
+            });
+    }
+
+    @Test
+    void when_instancesConfiguredWithSingleBotFeatures_then_contextFails() {
+        contextRunner()
+            .withPropertyValues(
+                "telegram.bot.dedup.enabled=true",
+                "telegram.bot.outbox.enabled=true")
+            .run(context -> {
+                assertThat(context.getStartupFailure(), notNullValue());
+
+                Throwable cause = context.getStartupFailure();
+                while (cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                assertThat(cause, instanceOf(IllegalStateException.class));
+                assertThat(cause.getMessage(), containsString("telegram.bot.outbox.enabled"));
+                assertThat(cause.getMessage(), containsString("telegram.bot.dedup.enabled"));
+            });
+    }
+
+    private ApplicationContextRunner contextRunner() {
+        return new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(LongPollingTgBotStarterAutoConfiguration.class))
+            .withPropertyValues(
+                "telegram.bot.base-url=" + fake.getBaseUrl(),
+                "telegram.bot.transport.type=jdk",
+                "telegram.bot.polling.timeout=1",
+                "telegram.bot.instances.support.name=support_bot",
+                "telegram.bot.instances.support.token=" + fake.getToken(),
+                "telegram.bot.instances.support.primary=true",
+                "telegram.bot.instances.news.name=news_bot",
+                "telegram.bot.instances.news.token=" + fake.getToken());
+    }
+}
@@ -0,0 +1,79 @@
+package ru.panyukovnn.longpollingtgbotstarter.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LongRingSetUnitTest {
+
+    @Test
+    void when_addExisting_then_false() {
+        LongRingSet set = new LongRingSet(4);
+
+        assertThat(set.add(10), equalTo(true));
+        assertThat(set.add(10), equalTo(false));
+        assertThat(set.size(), equalTo(1));
+    }
+
+    @Test
+    void when_full_then_oldestEvicted() {
+        LongRingSet set = new LongRingSet(3);
+        set.add(1);
+        set.add(2);
+        set.add(3);
+
+        set.add(4);
+
+        assertThat(set.contains(1), equalTo(false));
+        assertThat(set.add(2), equalTo(false));
+        long[] values = new long[3];
+        set.copyTo(values);
+        assertThat(values, equalTo(new long[]{2, 3, 4}));
+    }
+
+    @Test
+    void when_randomValues_then_sameAsReferenceWithEviction() {
+        Random random = new Random(42);
+
+        for (int capacity : new int[]{1, 5, 64, 1000}) {
+            LongRingSet set = new LongRingSet(capacity);
+            Deque<Long> order = new ArrayDeque<>();
+            Set<Long> reference = new HashSet<>();
+
+            for (int i = 0; i < 100_000; i++) {
+                long value = random.nextInt(capacity * 3) - capacity;
+                boolean expected = !reference.contains(value);
+                if (expected) {
+                    if (order.size() == capacity) {
+                        reference.remove(order.pollFirst());
+                    }
+                    order.addLast(value);
+                    reference.add(value);
+                }
+
+                assertThat(set.add(value), equalTo(expected));
+            }
+
+            long[] values = new long[set.size()];
+            set.copyTo(values);
+            assertThat(values, equalTo(order.stream().mapToLong(Long::longValue).toArray()));
+            assertThat(Arrays.stream(values).allMatch(set::contains), equalTo(true));
+        }
+    }
+
+    @Test
+    void when_addMinValue_then_rejected() {
+        LongRingSet set = new LongRingSet(2);
+
+        assertThrows(IllegalArgumentException.class, () -> set.add(Long.MIN_VALUE));
+    }
+}
@@ -0,0 +1,96 @@
+package ru.panyukovnn.longpollingtgbotstarter.dedup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.panyukovnn.longpollingtgbotstarter.checkpoint.AckWatermark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+class UpdateDeduplicatorUnitTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void when_sameUpdateIdTwice_then_secondIsDuplicate() {
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(10);
+
+        assertThat(deduplicator.firstSeen(100), equalTo(true));
+        assertThat(deduplicator.firstSeen(100), equalTo(false));
+        assertThat(deduplicator.getDuplicateCount(), equalTo(1L));
+    }
+
+    @Test
+    void when_reopenedFromSnapshot_then_previousUpdateIdsAreDuplicates() {
+        Path file = tempDir.resolve("bot.dedup");
+
+        try (UpdateDeduplicator deduplicator = new UpdateDeduplicator(10, file)) {
+            deduplicator.firstSeen(100);
+            deduplicator.firstSeen(101);
+        }
+
+        UpdateDeduplicator restored = new UpdateDeduplicator(10, file);
+        assertThat(restored.firstSeen(100), equalTo(false));
+        assertThat(restored.firstSeen(101), equalTo(false));
+        assertThat(restored.firstSeen(102), equalTo(true));
+    }
+
+    @Test
+    void when_savedWithAckWatermark_then_unprocessedUpdateIdsNotPersisted() {
+        Path file = tempDir.resolve("bot.dedup");
+        AckWatermark ackWatermark = new AckWatermark(100, 10);
+
+        try (UpdateDeduplicator deduplicator = new UpdateDeduplicator(10, file, ackWatermark)) {
+            deduplicator.markSeen(100);
+            deduplicator.markSeen(101);
+        }
+
+        UpdateDeduplicator restored = new UpdateDeduplicator(10, file);
+        assertThat(restored.isDuplicate(100), equalTo(true));
+        assertThat(restored.isDuplicate(101), equalTo(false));
+    }
+
+    @Test
+    void when_isDuplicate_then_updateIdNotRemembered() {
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(10);
+
+        assertThat(deduplicator.isDuplicate(100), equalTo(false));
+        assertThat(deduplicator.isDuplicate(100), equalTo(false));
+        deduplicator.markSeen(100);
+        assertThat(deduplicator.isDuplicate(100), equalTo(true));
+        assertThat(deduplicator.getDuplicateCount(), equalTo(1L));
+    }
+
+    @Test
+    void when_snapshotLargerThanCapacity_then_newestUpdateIdsKept() {
+        Path file = tempDir.resolve("bot.dedup");
+
+        try (UpdateDeduplicator deduplicator = new UpdateDeduplicator(10, file)) {
+            for (int updateId = 1; updateId <= 5; updateId++) {
+                deduplicator.firstSeen(updateId);
+            }
+        }
+
+        UpdateDeduplicator restored = new UpdateDeduplicator(2, file);
+        assertThat(restored.firstSeen(5), equalTo(false));
+        assertThat(restored.firstSeen(4), equalTo(false));
+        assertThat(restored.firstSeen(1), equalTo(true));
+    }
+
+    @Test
+    void when_snapshotCorrupted_then_startsEmpty() throws Exception {
+        Path file = tempDir.resolve("bot.dedup");
+        try (UpdateDeduplicator deduplicator = new UpdateDeduplicator(10, file)) {
+            deduplicator.firstSeen(100);
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 5] ^= 1;
+        Files.write(file, bytes);
+
+        assertThat(new UpdateDeduplicator(10, file).firstSeen(100), equalTo(true));
+    }
+}
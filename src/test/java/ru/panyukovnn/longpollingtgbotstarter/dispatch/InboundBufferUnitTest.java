@@ -0,0 +1,94 @@
+package ru.panyukovnn.longpollingtgbotstarter.dispatch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class InboundBufferUnitTest {
+
+    private final List<String> handled = new ArrayList<>();
+
+    @Test
+    void when_dropOldest_then_oldestWaitingUpdateOfSameChatSkipped() {
+        InboundBuffer buffer = new InboundBuffer(2, OverflowPolicy.DROP_OLDEST);
+
+        InboundBuffer.Entry first = buffer.admit(1, "message", () -> handled.add("a"));
+        InboundBuffer.Entry other = buffer.admit(2, "message", () -> handled.add("b"));
+        InboundBuffer.Entry newest = buffer.admit(1, "message", () -> handled.add("c"));
+        first.run();
+        other.run();
+        newest.run();
+
+        assertThat(handled, equalTo(List.of("b", "c")));
+        assertThat(buffer.getDroppedCount(), equalTo(1L));
+        assertThat(buffer.getQueuedCount(), equalTo(0));
+    }
+
+    @Test
+    void when_dropOldest_withoutWaitingUpdatesOfChat_then_oldestWaitingUpdateSkipped() {
+        InboundBuffer buffer = new InboundBuffer(2, OverflowPolicy.DROP_OLDEST);
+
+        InboundBuffer.Entry oldest = buffer.admit(1, "message", () -> handled.add("a"));
+        InboundBuffer.Entry other = buffer.admit(2, "callback_query", () -> handled.add("b"));
+        InboundBuffer.Entry newest = buffer.admit(3, "message", () -> handled.add("c"));
+        oldest.run();
+        other.run();
+        newest.run();
+
+        assertThat(handled, equalTo(List.of("b", "c")));
+    }
+
+    @Test
+    void when_shedNonMessage_then_nonMessageUpdatesDroppedFirst() {
+        InboundBuffer buffer = new InboundBuffer(2, OverflowPolicy.SHED_NON_MESSAGE);
+
+        InboundBuffer.Entry message = buffer.admit(1, "message", () -> handled.add("m1"));
+        InboundBuffer.Entry callback = buffer.admit(1, "callback_query", () -> handled.add("cb"));
+        InboundBuffer.Entry secondMessage = buffer.admit(2, "message", () -> handled.add("m2"));
+        InboundBuffer.Entry edit = buffer.admit(3, "edited_message", () -> handled.add("edit"));
+        message.run();
+        callback.run();
+        secondMessage.run();
+
+        assertThat(edit, nullValue());
+        assertThat(handled, equalTo(List.of("m1", "m2")));
+        assertThat(buffer.getDroppedCount(), equalTo(2L));
+    }
+
+    @Test
+    void when_block_then_admitWaitsForHandledUpdate() throws Exception {
+        InboundBuffer buffer = new InboundBuffer(1, OverflowPolicy.BLOCK);
+        InboundBuffer.Entry first = buffer.admit(1, "message", () -> handled.add("a"));
+
+        CompletableFuture<InboundBuffer.Entry> second = CompletableFuture.supplyAsync(
+            () -> buffer.admit(2, "message", () -> handled.add("b")));
+
+        assertThrows(TimeoutException.class, () -> second.get(200, TimeUnit.MILLISECONDS));
+        first.run();
+        second.get(5, TimeUnit.SECONDS).run();
+
+        assertThat(handled, equalTo(List.of("a", "b")));
+        assertThat(buffer.getDroppedCount(), equalTo(0L));
+    }
+
+    @Test
+    void when_cancel_then_placeReleasedAndHandlerNotCalled() {
+        InboundBuffer buffer = new InboundBuffer(1, OverflowPolicy.BLOCK);
+
+        InboundBuffer.Entry entry = buffer.admit(1, "message", () -> handled.add("a"));
+        entry.cancel();
+        entry.run();
+
+        assertThat(buffer.getQueuedCount(), equalTo(0));
+        assertThat(handled, equalTo(List.of()));
+    }
+}
@@ -0,0 +1,141 @@
+package ru.panyukovnn.longpollingtgbotstarter.dispatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StripedUpdateDispatcherUnitTest {
+
+    private StripedUpdateDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.close();
+    }
+
+    @Test
+    void when_execute_withSameChat_then_tasksRunInOrder() throws Exception {
+        dispatcher = new StripedUpdateDispatcher(4, 100);
+        List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(50);
+
+        for (int i = 0; i < 50; i++) {
+            int number = i;
+            dispatcher.execute(42L, () -> {
+                processed.add(number);
+                done.countDown();
+            });
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS), equalTo(true));
+        assertThat(processed, equalTo(IntStream.range(0, 50).boxed().toList()));
+    }
+
+    @Test
+    void when_execute_withBlockedChat_then_otherLaneNotBlocked() throws Exception {
+        dispatcher = new StripedUpdateDispatcher(2, 100);
+        long blockedChat = 1L;
+        long otherChat = IntStream.range(2, 100).filter(id -> dispatcher.laneIndex(id) != dispatcher.laneIndex(blockedChat))
+            .findFirst()
+            .orElseThrow();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherProcessed = new CountDownLatch(1);
+
+        dispatcher.execute(blockedChat, () -> {
+            started.countDown();
+            await(release);
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS), equalTo(true));
+        dispatcher.execute(blockedChat, () -> {
+        });
+        dispatcher.execute(otherChat, otherProcessed::countDown);
+
+        assertThat(otherProcessed.await(5, TimeUnit.SECONDS), equalTo(true));
+        assertThat(dispatcher.getLaneDepth(dispatcher.laneIndex(blockedChat)), equalTo(1));
+        assertThat(dispatcher.getQueuedCount(), equalTo(1));
+        assertThat(dispatcher.getMaxLaneDepth(), equalTo(1));
+
+        release.countDown();
+    }
+
+    @Test
+    void when_laneIndex_withSequentialChatIds_then_allLanesUsed() {
+        dispatcher = new StripedUpdateDispatcher(8, 1);
+
+        long usedLanes = IntStream.range(0, 64).map(id -> dispatcher.laneIndex(id)).distinct().count();
+
+        assertThat(usedLanes, equalTo(8L));
+    }
+
+    @Test
+    void when_execute_withFailingTask_then_laneKeepsWorking() throws Exception {
+        dispatcher = new StripedUpdateDispatcher(1, 10);
+        CountDownLatch processed = new CountDownLatch(1);
+
+        dispatcher.execute(1L, () -> {
+            throw new IllegalStateException("listener failure");
+        });
+        dispatcher.execute(1L, processed::countDown);
+
+        assertThat(processed.await(5, TimeUnit.SECONDS), equalTo(true));
+    }
+
+    @Test
+    void when_close_then_acceptedTasksProcessedAndNewRejected() {
+        dispatcher = new StripedUpdateDispatcher(1, 10);
+        List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+
+        for (int i = 0; i < 5; i++) {
+            int number = i;
+            dispatcher.execute(1L, () -> processed.add(number));
+        }
+        dispatcher.close();
+
+        assertThat(processed.size(), equalTo(5));
+        assertThrows(RejectedExecutionException.class, () -> dispatcher.execute(1L, () -> {
+        }));
+    }
+
+    @Test
+    void when_close_withBlockingHandler_then_runningAndQueuedTasksNotInterrupted() throws Exception {
+        dispatcher = new StripedUpdateDispatcher(1, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        List<Boolean> interrupted = Collections.synchronizedList(new ArrayList<>());
+
+        dispatcher.execute(1L, () -> {
+            started.countDown();
+            try {
+                Thread.sleep(300);
+                interrupted.add(false);
+            } catch (InterruptedException e) {
+                interrupted.add(true);
+            }
+        });
+        dispatcher.execute(1L, () -> interrupted.add(Thread.currentThread().isInterrupted()));
+        assertThat(started.await(5, TimeUnit.SECONDS), equalTo(true));
+
+        dispatcher.close();
+
+        assertThat(interrupted, equalTo(List.of(false, false)));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.panyukovnn.longpollingtgbotstarter.dispatch;
+
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UpdateKeysUnitTest {
+
+    @Test
+    void when_chatKey_withMessage_then_chatId() {
+        Update update = mock(Update.class);
+        Message message = mock(Message.class);
+
+        when(update.hasMessage()).thenReturn(true);
+        when(update.getMessage()).thenReturn(message);
+        when(message.getChatId()).thenReturn(-100L);
+
+        assertThat(UpdateKeys.chatKey(update), equalTo(-100L));
+    }
+
+    @Test
+    void when_chatKey_withInlineCallbackQuery_then_userId() {
+        Update update = mock(Update.class);
+        CallbackQuery callbackQuery = mock(CallbackQuery.class);
+        User user = mock(User.class);
+
+        when(update.hasCallbackQuery()).thenReturn(true);
+        when(update.getCallbackQuery()).thenReturn(callbackQuery);
+        when(callbackQuery.getFrom()).thenReturn(user);
+        when(user.getId()).thenReturn(7L);
+
+        assertThat(UpdateKeys.chatKey(update), equalTo(7L));
+    }
+
+    @Test
+    void when_chatKey_withoutChat_then_noChat() {
+        assertThat(UpdateKeys.chatKey(mock(Update.class)), equalTo(UpdateKeys.NO_CHAT));
+    }
+}
@@ -0,0 +1,105 @@
+package ru.panyukovnn.longpollingtgbotstarter.dispatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+class VirtualThreadUpdateDispatcherUnitTest {
+
+    private VirtualThreadUpdateDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.close();
+    }
+
+    @Test
+    void when_execute_then_taskRunsOnVirtualThread() throws Exception {
+        dispatcher = new VirtualThreadUpdateDispatcher(0);
+        AtomicBoolean virtual = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(1);
+
+        dispatcher.execute(1L, () -> {
+            virtual.set(Thread.currentThread().isVirtual());
+            done.countDown();
+        });
+
+        assertThat(done.await(5, TimeUnit.SECONDS), equalTo(true));
+        assertThat(virtual.get(), equalTo(true));
+    }
+
+    @Test
+    void when_execute_withPerChatLimit_then_chatConcurrencyBounded() throws Exception {
+        dispatcher = new VirtualThreadUpdateDispatcher(2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(20);
+
+        for (int i = 0; i < 20; i++) {
+            dispatcher.execute(1L, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(10);
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS), equalTo(true));
+        assertThat(maxRunning.get(), equalTo(2));
+    }
+
+    @Test
+    void when_execute_withBusyChat_then_otherChatNotBlocked() throws Exception {
+        dispatcher = new VirtualThreadUpdateDispatcher(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherProcessed = new CountDownLatch(1);
+
+        dispatcher.execute(1L, () -> await(release));
+        dispatcher.execute(1L, () -> await(release));
+        dispatcher.execute(2L, otherProcessed::countDown);
+
+        assertThat(otherProcessed.await(5, TimeUnit.SECONDS), equalTo(true));
+        assertThat(dispatcher.getActiveCount(), greaterThan(0));
+
+        release.countDown();
+    }
+
+    @Test
+    void when_allChatUpdatesProcessed_then_chatPermitsReleased() throws Exception {
+        dispatcher = new VirtualThreadUpdateDispatcher(1);
+        CountDownLatch done = new CountDownLatch(10);
+
+        for (long chat = 0; chat < 10; chat++) {
+            dispatcher.execute(chat, done::countDown);
+        }
+        dispatcher.close();
+
+        assertThat(done.getCount(), equalTo(0L));
+        assertThat(dispatcher.getActiveChatCount(), equalTo(0));
+        assertThat(dispatcher.getActiveCount(), equalTo(0));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
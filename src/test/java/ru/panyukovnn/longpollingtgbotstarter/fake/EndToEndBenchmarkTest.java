@@ -0,0 +1,159 @@
+package ru.panyukovnn.longpollingtgbotstarter.fake;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import ru.panyukovnn.longpollingtgbotstarter.LongPollingTgBotStarterAutoConfiguration;
+import ru.panyukovnn.longpollingtgbotstarter.service.TgSender;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Сквозной замер стартера на {@link FakeBotApiServer}: опрос, диспетчеризация, обработчик и {@link TgSender}
+ * <p>
+ * Запуск: {@code ./gradlew benchmarkTest --tests '*EndToEndBenchmarkTest'}. Обработчик отвечает
+ * на каждое сообщение его update_id, поэтому задержка считается от добавления обновления в заменитель
+ * до получения им первого успешного sendMessage с ответом. Ограничитель частоты отключен большими лимитами,
+ * чтобы измерялся сам стартер, а не лимиты Telegram.
+ */
+@EnabledIfSystemProperty(named = "tg.benchmark", matches = "true")
+class EndToEndBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(EndToEndBenchmarkTest.class);
+    private static final String TOKEN = "token";
+    private static final int CHATS = 100;
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+    @Test
+    void burst() throws Exception {
+        report("burst", 20_000, 0, fake -> {
+        });
+    }
+
+    @Test
+    void paced() throws Exception {
+        report("paced", 10_000, 2_000, fake -> {
+        });
+    }
+
+    /**
+     * Задержка сети, редкие 429 и 5xx и отклонение части MarkdownV2, после которого TgSender повторяет с HTML
+     */
+    @Test
+    void pacedWithFaults() throws Exception {
+        report("faults", 10_000, 2_000, fake -> {
+            fake.setLatency(Duration.ofMillis(20));
+            fake.failEvery(FakeBotApiServer.SEND_MESSAGE, 500, FakeBotApiServer.Fault.tooManyRequests(1));
+            fake.failEvery(FakeBotApiServer.GET_UPDATES, 50, FakeBotApiServer.Fault.serverError(502));
+            fake.rejectMarkdownV2(text -> text.endsWith("7"));
+        });
+    }
+
+    private static void report(String name, int updates, int perSecond, Consumer<FakeBotApiServer> faults)
+        throws Exception {
+        try (FakeBotApiServer fake = FakeBotApiServer.start(TOKEN)) {
+            faults.accept(fake);
+
+            contextRunner(fake).run(context -> {
+                EchoListener listener = context.getBean(EchoListener.class);
+
+                long start = System.nanoTime();
+                fake.streamMessages(updates, CHATS, perSecond);
+                if (!fake.awaitSentMessages(updates, TIMEOUT)) {
+                    throw new AssertionError("За " + TIMEOUT + " отправлено только " + fake.getSentMessages().size()
+                        + " из " + updates + " ответов");
+                }
+
+                List<FakeBotApiServer.SentMessage> sent = fake.getSentMessages();
+                long lastSentNanos = sent.get(sent.size() - 1).receivedNanos();
+                long[] latencies = latencies(fake, sent);
+
+                log.info(String.format("%-8s %8.0f updates/s, %8.0f sends/s, p50 %7.1f ms, p99 %7.1f ms", name,
+                    updates / seconds(listener.lastHandledNanos.get() - start),
+                    sent.size() / seconds(lastSentNanos - start),
+                    percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6));
+            });
+        }
+    }
+
+    private static ApplicationContextRunner contextRunner(FakeBotApiServer fake) {
+        return new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(LongPollingTgBotStarterAutoConfiguration.class))
+            .withUserConfiguration(EchoBotConfiguration.class)
+            .withPropertyValues(
+                "telegram.bot.name=benchmark",
+                "telegram.bot.token=" + fake.getToken(),
+                "telegram.bot.base-url=" + fake.getBaseUrl(),
+                "telegram.bot.transport.type=jdk",
+                "telegram.bot.polling.timeout=1",
+                "telegram.bot.rate-limit.global-per-second=1000000",
+                "telegram.bot.rate-limit.chat-per-second=1000000",
+                "telegram.bot.rate-limit.chat-burst=1000000",
+                "telegram.bot.rate-limit.group-per-minute=1000000");
+    }
+
+    /**
+     * Задержки ответов на каждое обновление по первой успешной отправке
+     */
+    private static long[] latencies(FakeBotApiServer fake, List<FakeBotApiServer.SentMessage> sent) {
+        Set<Integer> answered = new HashSet<>();
+        long[] latencies = new long[sent.size()];
+        int count = 0;
+        for (FakeBotApiServer.SentMessage message : sent) {
+            int updateId = Integer.parseInt(message.text());
+            if (answered.add(updateId)) {
+                latencies[count++] = message.receivedNanos() - fake.getPushedNanos(updateId);
+            }
+        }
+        latencies = Arrays.copyOf(latencies, count);
+        Arrays.sort(latencies);
+
+        return latencies;
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    static class EchoBotConfiguration {
+
+        @Bean
+        EchoListener echoListener(TgSender tgSender) {
+            return new EchoListener(tgSender);
+        }
+    }
+
+    static class EchoListener {
+
+        private final TgSender tgSender;
+        private final AtomicLong lastHandledNanos = new AtomicLong();
+
+        EchoListener(TgSender tgSender) {
+            this.tgSender = tgSender;
+        }
+
+        @EventListener
+        public void onUpdate(Update update) {
+            tgSender.sendAsync(update.getMessage().getChatId(), String.valueOf(update.getUpdateId()));
+            lastHandledNanos.accumulateAndGet(System.nanoTime(), Math::max);
+        }
+    }
+}
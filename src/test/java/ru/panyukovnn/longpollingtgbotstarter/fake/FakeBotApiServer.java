@@ -0,0 +1,476 @@
+package ru.panyukovnn.longpollingtgbotstarter.fake;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ru.panyukovnn.longpollingtgbotstarter.format.MarkdownV2Validator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Локальный заменитель Bot API для нагрузочных и сквозных тестов
+ * <p>
+ * Поддерживает методы getUpdates, sendMessage, editMessageText, getMe, deleteWebhook и setMyCommands, имена
+ * методов не зависят от регистра, как и в Telegram. Обновления добавляются в очередь тестом и отдаются
+ * long polling с учетом offset, limit и timeout. Успешные sendMessage и editMessageText записываются
+ * вместе с временем получения. Для проверки обработки ошибок можно задать задержку ответа, ответы
+ * 429 с retry_after и 5xx, а также отклонение текста с MarkdownV2.
+ * <p>
+ * Тела запросов принимаются только в JSON, как их отправляют оба транспорта стартера.
+ * <p>
+ * Сервер лежит в тестовых исходниках, а не в отдельном модуле: его используют и обычные тесты автоконфигурации,
+ * и замеры {@code *BenchmarkTest}, а в артефакт стартера он попадать не должен. Замеры исключены из задачи test
+ * и запускаются отдельно: {@code ./gradlew benchmarkTest}.
+ */
+public class FakeBotApiServer implements AutoCloseable {
+
+    public static final String GET_UPDATES = "getupdates";
+    public static final String SEND_MESSAGE = "sendmessage";
+    public static final String EDIT_MESSAGE_TEXT = "editmessagetext";
+    public static final String GET_ME = "getme";
+    public static final String DELETE_WEBHOOK = "deletewebhook";
+    public static final String SET_MY_COMMANDS = "setmycommands";
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final String MARKDOWN_V2 = "markdownv2";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String token;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final ReentrantLock updatesLock = new ReentrantLock();
+    private final Condition updatesPushed = updatesLock.newCondition();
+    private final Deque<PendingUpdate> updates = new ArrayDeque<>();
+    private int nextUpdateId = 1;
+    private int lastDeliveredId;
+    private boolean closed;
+
+    private final Map<Integer, Long> pushedNanos = new ConcurrentHashMap<>();
+    private final Queue<SentMessage> sentMessages = new ConcurrentLinkedQueue<>();
+    private final Map<String, LongAdder> calls = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> callNumbers = new ConcurrentHashMap<>();
+    private final Map<String, Queue<Fault>> nextFaults = new ConcurrentHashMap<>();
+    private final Map<String, EveryNth> periodicFaults = new ConcurrentHashMap<>();
+    private final AtomicInteger nextMessageId = new AtomicInteger(1);
+
+    private volatile Duration latency = Duration.ZERO;
+    private volatile Predicate<String> markdownV2Rejection = text -> false;
+    private volatile boolean validateMarkdownV2 = true;
+
+    private FakeBotApiServer(String token) throws IOException {
+        this.token = token;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.setExecutor(executor);
+        server.createContext("/bot" + token + "/", this::handle);
+    }
+
+    /**
+     * Запускает сервер на свободном порту 127.0.0.1
+     */
+    public static FakeBotApiServer start(String token) throws IOException {
+        FakeBotApiServer fake = new FakeBotApiServer(token);
+        fake.server.start();
+
+        return fake;
+    }
+
+    /**
+     * Значение для telegram.bot.base-url
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/bot";
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * Добавляет обновление с содержимым в поле type
+     *
+     * @param type    тип обновления, например message или callback_query
+     * @param payload JSON содержимого обновления
+     * @return update_id нового обновления
+     */
+    public int pushUpdate(String type, JsonNode payload) {
+        updatesLock.lock();
+        try {
+            int updateId = nextUpdateId++;
+            ObjectNode update = objectMapper.createObjectNode();
+            update.put("update_id", updateId);
+            update.set(type, payload);
+
+            pushedNanos.put(updateId, System.nanoTime());
+            updates.addLast(new PendingUpdate(updateId, update));
+            updatesPushed.signalAll();
+
+            return updateId;
+        } finally {
+            updatesLock.unlock();
+        }
+    }
+
+    /**
+     * Добавляет текстовое сообщение пользователя в личном чате
+     *
+     * @return update_id нового обновления
+     */
+    public int pushMessage(long chatId, String text) {
+        ObjectNode message = objectMapper.createObjectNode();
+        message.put("message_id", nextMessageId.getAndIncrement());
+        message.put("date", System.currentTimeMillis() / 1000);
+        message.set("chat", objectMapper.createObjectNode().put("id", chatId).put("type", "private"));
+        message.set("from", objectMapper.createObjectNode()
+            .put("id", chatId)
+            .put("is_bot", false)
+            .put("first_name", "user" + chatId));
+        message.put("text", text);
+
+        return pushUpdate("message", message);
+    }
+
+    /**
+     * Добавляет поток сообщений из chats чатов по кругу с текстами m0, m1, ...
+     *
+     * @param count     количество сообщений
+     * @param chats     количество чатов, идентификаторы чатов начинаются с 1
+     * @param perSecond частота добавления, 0 - добавить все сразу
+     * @return завершается, когда добавлено последнее сообщение
+     */
+    public CompletableFuture<Void> streamMessages(int count, int chats, int perSecond) {
+        return CompletableFuture.runAsync(() -> {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                if (perSecond > 0) {
+                    long dueNanos = start + i * 1_000_000_000L / perSecond;
+                    long waitNanos = dueNanos - System.nanoTime();
+                    if (waitNanos > 0) {
+                        sleep(waitNanos);
+                    }
+                }
+                pushMessage(1 + i % chats, "m" + i);
+            }
+        }, executor);
+    }
+
+    /**
+     * Задержка перед каждым ответом, имитирует сетевую задержку до Telegram
+     */
+    public void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Следующий вызов метода завершится ошибкой fault. Ошибки одного метода выдаются по порядку добавления
+     */
+    public void failNext(String method, Fault fault) {
+        nextFaults.computeIfAbsent(method.toLowerCase(Locale.ROOT), key -> new ConcurrentLinkedQueue<>()).add(fault);
+    }
+
+    /**
+     * Каждый n-й вызов метода завершится ошибкой fault
+     */
+    public void failEvery(String method, int n, Fault fault) {
+        if (n < 1) {
+            throw new IllegalArgumentException("Период ошибок должен быть положительным");
+        }
+
+        periodicFaults.put(method.toLowerCase(Locale.ROOT), new EveryNth(n, fault));
+    }
+
+    /**
+     * Тексты с parse_mode=MarkdownV2, для которых выполнено условие, отклоняются с 400 can't parse entities,
+     * даже если они проходят {@link MarkdownV2Validator}
+     */
+    public void rejectMarkdownV2(Predicate<String> rejection) {
+        this.markdownV2Rejection = rejection;
+    }
+
+    /**
+     * Проверять ли тексты с MarkdownV2 через {@link MarkdownV2Validator}, по умолчанию true
+     */
+    public void setValidateMarkdownV2(boolean validateMarkdownV2) {
+        this.validateMarkdownV2 = validateMarkdownV2;
+    }
+
+    /**
+     * Успешные sendMessage и editMessageText в порядке получения
+     */
+    public List<SentMessage> getSentMessages() {
+        return new ArrayList<>(sentMessages);
+    }
+
+    /**
+     * Количество вызовов метода, включая завершившиеся ошибкой
+     */
+    public long getCallCount(String method) {
+        LongAdder counter = calls.get(method.toLowerCase(Locale.ROOT));
+
+        return counter != null ? counter.sum() : 0;
+    }
+
+    /**
+     * Время добавления обновления по {@link System#nanoTime()}
+     */
+    public long getPushedNanos(int updateId) {
+        Long nanos = pushedNanos.get(updateId);
+        if (nanos == null) {
+            throw new IllegalArgumentException("Обновление " + updateId + " не добавлялось");
+        }
+
+        return nanos;
+    }
+
+    /**
+     * Максимальный update_id, отданный getUpdates
+     */
+    public int getLastDeliveredId() {
+        updatesLock.lock();
+        try {
+            return lastDeliveredId;
+        } finally {
+            updatesLock.unlock();
+        }
+    }
+
+    /**
+     * Ждет, пока не будет записано хотя бы count успешных отправок
+     *
+     * @return true, если отправки записаны до истечения timeout
+     */
+    public boolean awaitSentMessages(int count, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (sentMessages.size() < count) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+
+        return true;
+    }
+
+    @Override
+    public void close() {
+        updatesLock.lock();
+        try {
+            closed = true;
+            updatesPushed.signalAll();
+        } finally {
+            updatesLock.unlock();
+        }
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            String method = path.substring(path.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            JsonNode request = body.length > 0 ? objectMapper.readTree(body) : objectMapper.createObjectNode();
+
+            calls.computeIfAbsent(method, key -> new LongAdder()).increment();
+            if (!latency.isZero()) {
+                sleep(latency.toNanos());
+            }
+
+            Fault fault = fault(method);
+            if (fault != null) {
+                respond(exchange, fault.status(), error(fault));
+                return;
+            }
+
+            switch (method) {
+                case GET_UPDATES -> respond(exchange, 200, ok(getUpdates(request)));
+                case SEND_MESSAGE, EDIT_MESSAGE_TEXT -> sendMessage(exchange, method, request);
+                case GET_ME -> respond(exchange, 200, ok(objectMapper.createObjectNode()
+                    .put("id", 1)
+                    .put("is_bot", true)
+                    .put("first_name", "fake")
+                    .put("username", "fake_bot")));
+                case DELETE_WEBHOOK, SET_MY_COMMANDS -> respond(exchange, 200, ok(objectMapper.getNodeFactory()
+                    .booleanNode(true)));
+                default -> respond(exchange, 404, error(new Fault(404, "Not Found: method not found", null)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private JsonNode getUpdates(JsonNode request) throws InterruptedException {
+        long offset = request.path("offset").asLong(0);
+        int limit = request.path("limit").asInt(DEFAULT_LIMIT);
+        long waitNanos = TimeUnit.SECONDS.toNanos(request.path("timeout").asInt(0));
+
+        updatesLock.lock();
+        try {
+            // Как и Telegram, подтверждаем все обновления до offset
+            while (!updates.isEmpty() && updates.peekFirst().updateId() < offset) {
+                updates.pollFirst();
+            }
+            while (updates.isEmpty() && waitNanos > 0 && !closed) {
+                waitNanos = updatesPushed.awaitNanos(waitNanos);
+                while (!updates.isEmpty() && updates.peekFirst().updateId() < offset) {
+                    updates.pollFirst();
+                }
+            }
+
+            List<JsonNode> result = new ArrayList<>(Math.min(limit, updates.size()));
+            for (PendingUpdate update : updates) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                result.add(update.json());
+                lastDeliveredId = Math.max(lastDeliveredId, update.updateId());
+            }
+
+            return objectMapper.createArrayNode().addAll(result);
+        } finally {
+            updatesLock.unlock();
+        }
+    }
+
+    private void sendMessage(HttpExchange exchange, String method, JsonNode request) throws IOException {
+        long chatId = request.path("chat_id").asLong();
+        String text = request.path("text").asText();
+        String parseMode = request.hasNonNull("parse_mode") ? request.get("parse_mode").asText() : null;
+
+        if (parseMode != null && MARKDOWN_V2.equalsIgnoreCase(parseMode)) {
+            Optional<String> parseError = validateMarkdownV2 ? MarkdownV2Validator.validate(text) : Optional.empty();
+            if (parseError.isEmpty() && markdownV2Rejection.test(text)) {
+                parseError = Optional.of("rejected by test rule");
+            }
+            if (parseError.isPresent()) {
+                respond(exchange, 400, error(Fault.badRequest("Bad Request: can't parse entities: "
+                    + parseError.get())));
+                return;
+            }
+        }
+
+        int messageId = method.equals(EDIT_MESSAGE_TEXT)
+            ? request.path("message_id").asInt()
+            : nextMessageId.getAndIncrement();
+        sentMessages.add(new SentMessage(method, chatId, messageId, text, parseMode, System.nanoTime()));
+
+        ObjectNode message = objectMapper.createObjectNode();
+        message.put("message_id", messageId);
+        message.put("date", System.currentTimeMillis() / 1000);
+        message.set("chat", objectMapper.createObjectNode().put("id", chatId).put("type", "private"));
+        message.put("text", text);
+        respond(exchange, 200, ok(message));
+    }
+
+    private Fault fault(String method) {
+        Queue<Fault> queue = nextFaults.get(method);
+        Fault next = queue != null ? queue.poll() : null;
+        if (next != null) {
+            return next;
+        }
+
+        EveryNth periodic = periodicFaults.get(method);
+        int callNumber = callNumbers.computeIfAbsent(method, key -> new AtomicInteger()).incrementAndGet();
+
+        return periodic != null && callNumber % periodic.n() == 0 ? periodic.fault() : null;
+    }
+
+    private ObjectNode ok(JsonNode result) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("ok", true);
+        response.set("result", result);
+
+        return response;
+    }
+
+    private ObjectNode error(Fault fault) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("ok", false);
+        response.put("error_code", fault.status());
+        response.put("description", fault.description());
+        if (fault.retryAfter() != null) {
+            response.set("parameters", objectMapper.createObjectNode().put("retry_after", fault.retryAfter()));
+        }
+
+        return response;
+    }
+
+    private void respond(HttpExchange exchange, int status, JsonNode response) throws IOException {
+        byte[] body = objectMapper.writeValueAsBytes(response);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Ответ Bot API с ошибкой
+     *
+     * @param status      HTTP статус и error_code
+     * @param description описание ошибки
+     * @param retryAfter  parameters.retry_after в секундах или null
+     */
+    public record Fault(int status, String description, Integer retryAfter) {
+
+        public static Fault tooManyRequests(int retryAfterSeconds) {
+            return new Fault(429, "Too Many Requests: retry after " + retryAfterSeconds, retryAfterSeconds);
+        }
+
+        public static Fault serverError(int status) {
+            return new Fault(status, "Internal Server Error", null);
+        }
+
+        public static Fault badRequest(String description) {
+            return new Fault(400, description, null);
+        }
+    }
+
+    /**
+     * Успешный вызов sendMessage или editMessageText
+     *
+     * @param method        sendmessage или editmessagetext
+     * @param receivedNanos время получения запроса по {@link System#nanoTime()}
+     */
+    public record SentMessage(String method, long chatId, int messageId, String text, String parseMode,
+                              long receivedNanos) {
+    }
+
+    private record PendingUpdate(int updateId, JsonNode json) {
+    }
+
+    private record EveryNth(int n, Fault fault) {
+    }
+}
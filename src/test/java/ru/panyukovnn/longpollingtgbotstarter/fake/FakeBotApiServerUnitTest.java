@@ -0,0 +1,91 @@
+package ru.panyukovnn.longpollingtgbotstarter.fake;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.ParseMode;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import ru.panyukovnn.longpollingtgbotstarter.transport.JdkHttpTgTransport;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FakeBotApiServerUnitTest {
+
+    private FakeBotApiServer fake;
+    private JdkHttpTgTransport transport;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fake = FakeBotApiServer.start("token");
+        transport = new JdkHttpTgTransport(fake.getBaseUrl(), "token", 1, Duration.ofSeconds(5),
+            Duration.ofSeconds(5), false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transport.close();
+        fake.close();
+    }
+
+    @Test
+    void when_getUpdates_withOffset_then_confirmedUpdatesNotReturned() throws Exception {
+        int first = fake.pushMessage(1, "a");
+        int second = fake.pushMessage(2, "b");
+
+        List<Update> all = transport.getUpdates(GetUpdates.builder().timeout(0).build());
+        List<Update> rest = transport.getUpdates(GetUpdates.builder().offset(second).timeout(0).build());
+
+        assertThat(all.stream().map(Update::getUpdateId).toList(), equalTo(List.of(first, second)));
+        assertThat(rest.stream().map(Update::getUpdateId).toList(), equalTo(List.of(second)));
+        assertThat(rest.get(0).getMessage().getText(), equalTo("b"));
+    }
+
+    @Test
+    void when_getUpdates_withTimeoutAndNoUpdates_then_waitsForTimeout() throws Exception {
+        long start = System.nanoTime();
+
+        List<Update> updates = transport.getUpdates(GetUpdates.builder().timeout(1).build());
+
+        assertThat(updates, empty());
+        assertThat(System.nanoTime() - start, greaterThanOrEqualTo(Duration.ofSeconds(1).toNanos()));
+    }
+
+    @Test
+    void when_failNext_tooManyRequests_then_retryAfterReturnedOnce() throws Exception {
+        fake.failNext(FakeBotApiServer.SEND_MESSAGE, FakeBotApiServer.Fault.tooManyRequests(3));
+
+        TelegramApiRequestException exception = assertThrows(TelegramApiRequestException.class,
+            () -> transport.execute(SendMessage.builder().chatId(1L).text("hi").build()));
+        transport.execute(SendMessage.builder().chatId(1L).text("hi").build());
+
+        assertThat(exception.getErrorCode(), equalTo(429));
+        assertThat(exception.getParameters().getRetryAfter(), equalTo(3));
+        assertThat(fake.getCallCount(FakeBotApiServer.SEND_MESSAGE), equalTo(2L));
+        assertThat(fake.getSentMessages().size(), equalTo(1));
+    }
+
+    @Test
+    void when_sendMessage_withRejectedMarkdownV2_then_cantParseEntities() throws Exception {
+        fake.rejectMarkdownV2(text -> text.contains("bad"));
+
+        TelegramApiRequestException exception = assertThrows(TelegramApiRequestException.class,
+            () -> transport.execute(SendMessage.builder().chatId(1L).text("bad").parseMode(ParseMode.MARKDOWNV2).build()));
+        transport.execute(SendMessage.builder().chatId(1L).text("bad").parseMode(ParseMode.HTML).build());
+
+        assertThat(exception.getErrorCode(), equalTo(400));
+        assertThat(exception.getApiResponse(), containsString("can't parse entities"));
+        assertThat(fake.getSentMessages().get(0).parseMode(), equalTo(ParseMode.HTML));
+    }
+}
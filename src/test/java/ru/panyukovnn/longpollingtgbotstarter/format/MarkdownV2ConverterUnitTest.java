@@ -0,0 +1,77 @@
+package ru.panyukovnn.longpollingtgbotstarter.format;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+class MarkdownV2ConverterUnitTest {
+
+    @Test
+    void when_convert_withBoldDoubleAsterisks_then_singleAsterisks() {
+        String result = MarkdownV2Converter.convert("**bold text**");
+
+        assertThat(result, equalTo("*bold text*"));
+    }
+
+    @Test
+    void when_convert_withBoldUnderscores_then_singleAsterisks() {
+        String result = MarkdownV2Converter.convert("__bold text__");
+
+        assertThat(result, equalTo("*bold text*"));
+    }
+
+    @Test
+    void when_convert_withItalicAsterisks_then_underscores() {
+        String result = MarkdownV2Converter.convert("*italic text*");
+
+        assertThat(result, equalTo("_italic text_"));
+    }
+
+    @Test
+    void when_convert_withBlockCode_then_singleBackticks() {
+        String result = MarkdownV2Converter.convert("```code block```");
+
+        assertThat(result, equalTo("`code block`"));
+    }
+
+    @Test
+    void when_convert_withLink_then_linkPreservedAndUrlEscaped() {
+        String result = MarkdownV2Converter.convert("[link text](https://example.com)");
+
+        assertThat(result, equalTo("[link text](https://example\\.com)"));
+    }
+
+    @Test
+    void when_convert_withNestedBoldInsideBold_then_sameAsRegexChain() {
+        String result = MarkdownV2Converter.convert("__a **b** c__");
+
+        assertThat(result, equalTo("*a *b* c*"));
+    }
+
+    @Test
+    void when_convert_withTripleAsterisks_then_sameAsRegexChain() {
+        String result = MarkdownV2Converter.convert("***a**");
+
+        assertThat(result, equalTo("\\**a*"));
+    }
+
+    @Test
+    void when_convert_withUnclosedMarkers_then_escaped() {
+        String result = MarkdownV2Converter.convert("a * b _ c [d] (e) `f");
+
+        assertThat(result, equalTo("a \\* b \\_ c \\[d\\] \\(e\\) \\`f"));
+    }
+
+    @Test
+    void when_convert_withEmptyDelimiterContent_then_escaped() {
+        String result = MarkdownV2Converter.convert("**** `` []()");
+
+        assertThat(result, equalTo("\\*\\*\\*\\* \\`\\` \\[\\]\\(\\)"));
+    }
+
+    @Test
+    void when_convert_withNullText_then_returnNull() {
+        assertThat(MarkdownV2Converter.convert(null), equalTo(null));
+    }
+}
@@ -0,0 +1,55 @@
+package ru.panyukovnn.longpollingtgbotstarter.format;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+class MarkdownV2ValidatorUnitTest {
+
+    @Test
+    void when_validate_withAllEntityTypes_then_valid() {
+        String text = "*bold* _italic_ __underline__ ~strike~ ||spoiler|| `code` [link](http://x.com/\\)) \\.";
+
+        assertThat(MarkdownV2Validator.isValid(text), equalTo(true));
+    }
+
+    @Test
+    void when_validate_withPreBlockAndLanguage_then_valid() {
+        String text = "```java\nSystem.out.println(\"*_[\");\n```";
+
+        assertThat(MarkdownV2Validator.isValid(text), equalTo(true));
+    }
+
+    @Test
+    void when_validate_withUnescapedReservedChar_then_invalid() {
+        assertThat(MarkdownV2Validator.isValid("Hello."), equalTo(false));
+    }
+
+    @Test
+    void when_validate_withUnclosedBold_then_invalid() {
+        assertThat(MarkdownV2Validator.isValid("*bold"), equalTo(false));
+    }
+
+    @Test
+    void when_validate_withCrossedEntities_then_invalid() {
+        assertThat(MarkdownV2Validator.isValid("_a `b_ c`"), equalTo(false));
+    }
+
+    @Test
+    void when_validate_withUnclosedLinkUrl_then_invalid() {
+        assertThat(MarkdownV2Validator.isValid("[text](http://x.com"), equalTo(false));
+    }
+
+    @Test
+    void when_validate_withSingleVerticalBar_then_invalid() {
+        assertThat(MarkdownV2Validator.isValid("a | b"), equalTo(false));
+    }
+
+    @Test
+    void when_validate_withConvertedMarkdown_then_valid() {
+        String text = MarkdownV2Converter.convert("**Итог:** см. [доку](https://example.com) и `код`! (1 + 1 = 2)");
+
+        assertThat(MarkdownV2Validator.isValid(text), equalTo(true));
+    }
+}
@@ -0,0 +1,105 @@
+package ru.panyukovnn.longpollingtgbotstarter.format;
+
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.ParseMode;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+class MessageSplitterUnitTest {
+
+    @Test
+    void when_splitShortMessage_then_singlePart() {
+        List<String> parts = MessageSplitter.split("Short message", ParseMode.MARKDOWNV2, 4096);
+
+        assertThat(parts, contains("Short message"));
+    }
+
+    @Test
+    void when_splitLongMessageWithLines_then_splitAtNewlineAndContentPreserved() {
+        String message = "line of text\n".repeat(1000);
+
+        List<String> parts = MessageSplitter.split(message, ParseMode.MARKDOWNV2, 4096);
+
+        assertThat(parts.get(0), endsWith("\n"));
+        assertThat(String.join("", parts), equalTo(message));
+    }
+
+    @Test
+    void when_splitMarkdownWithOpenMarkers_then_markersClosedAndReopened() {
+        String message = "*_" + "x".repeat(5000) + "_*";
+
+        List<String> parts = MessageSplitter.split(message, ParseMode.MARKDOWNV2, 4096);
+
+        assertThat(parts.size(), equalTo(2));
+        assertThat(parts.get(0), startsWith("*_x"));
+        assertThat(parts.get(0), endsWith("x_*"));
+        assertThat(parts.get(1), startsWith("*_x"));
+    }
+
+    @Test
+    void when_splitHtmlWithNestedTags_then_tagsClosedAndReopenedInOrder() {
+        String message = "<b><i>" + "x".repeat(5000) + "</i></b>";
+
+        List<String> parts = MessageSplitter.split(message, ParseMode.HTML, 4096);
+
+        assertThat(parts.size(), equalTo(2));
+        assertThat(parts.get(0), endsWith("x</i></b>"));
+        assertThat(parts.get(1), startsWith("<b><i>x"));
+    }
+
+    @Test
+    void when_tagOpenedNearSplitPosition_then_partStillFitsLimit() {
+        String message = "x".repeat(4090) + "<b>" + "y".repeat(100) + "</b>";
+
+        List<String> parts = MessageSplitter.split(message, ParseMode.HTML, 4096);
+
+        assertThat(parts.stream().map(String::length).toList(), everyItem(lessThanOrEqualTo(4096)));
+    }
+
+    @Test
+    void when_splitHugeMessage_then_allPartsFitLimit() {
+        String message = "Some *bold* text and _italic_ words ".repeat(30_000);
+
+        List<String> parts = MessageSplitter.split(message, ParseMode.MARKDOWNV2, 4096);
+
+        assertThat(parts.stream().map(String::length).toList(), everyItem(lessThanOrEqualTo(4096)));
+    }
+
+    /**
+     * Разбор каждой части не должен просматривать остаток текста: при квадратичной сложности 16 млн символов
+     * разбиваются секунды, при линейной - десятки миллисекунд
+     */
+    @Test
+    void when_splitHugeHtmlWithoutTags_then_linearTime() {
+        String message = "Привет, мир. ".repeat(16 * 1024 * 1024 / 13);
+
+        List<String> parts = assertTimeout(Duration.ofSeconds(2),
+            () -> MessageSplitter.split(message, ParseMode.HTML, 4096));
+
+        assertThat(parts.stream().mapToInt(String::length).sum(), equalTo(message.length()));
+    }
+
+    @Test
+    void when_openTags_withEscapedMarker_then_ignored() {
+        List<String> tags = MessageSplitter.openTags("\\* and *bold and _italic", ParseMode.MARKDOWNV2);
+
+        assertThat(tags, contains("*", "_"));
+    }
+
+    @Test
+    void when_openTags_withUnmatchedCloseTag_then_stackKept() {
+        List<String> tags = MessageSplitter.openTags("<b>text <a href=\"x\">link</i>", ParseMode.HTML);
+
+        assertThat(tags, contains("b", "a"));
+    }
+}
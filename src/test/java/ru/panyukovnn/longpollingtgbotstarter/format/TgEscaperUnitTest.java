@@ -0,0 +1,67 @@
+package ru.panyukovnn.longpollingtgbotstarter.format;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+class TgEscaperUnitTest {
+
+    @Test
+    void when_escapeMarkdownV2_withAllSpecialChars_then_escaped() {
+        String result = TgEscaper.MARKDOWN_V2.escape("_*[]()~`>#+-=|{}.!");
+
+        assertThat(result, equalTo("\\_\\*\\[\\]\\(\\)\\~\\`\\>\\#\\+\\-\\=\\|\\{\\}\\.\\!"));
+    }
+
+    @Test
+    void when_escapeMarkdownV2_withPlainText_then_sameInstanceReturned() {
+        String text = "Привет, мир";
+
+        String result = TgEscaper.MARKDOWN_V2.escape(text);
+
+        assertThat(result, sameInstance(text));
+    }
+
+    @Test
+    void when_escapeHtml_withSpecialChars_then_escaped() {
+        String result = TgEscaper.HTML.escape("<b>Tom & Jerry</b>");
+
+        assertThat(result, equalTo("&lt;b&gt;Tom &amp; Jerry&lt;/b&gt;"));
+    }
+
+    @Test
+    void when_escapeHtml_withMarkdownChars_then_unchanged() {
+        String text = "*bold* _italic_ [link](url)";
+
+        String result = TgEscaper.HTML.escape(text);
+
+        assertThat(result, sameInstance(text));
+    }
+
+    @Test
+    void when_escapeRangeIntoStringBuilder_then_onlyRangeAppended() {
+        StringBuilder out = new StringBuilder("> ");
+
+        TgEscaper.MARKDOWN_V2.escape("skip a.b skip", 5, 8, out);
+
+        assertThat(out.toString(), equalTo("> a\\.b"));
+    }
+
+    @Test
+    void when_escapeIntoAppendable_then_escapedTextWritten() throws Exception {
+        StringWriter writer = new StringWriter();
+
+        TgEscaper.HTML.escape("1 < 2 & 3 > 2", writer);
+
+        assertThat(writer.toString(), equalTo("1 &lt; 2 &amp; 3 &gt; 2"));
+    }
+
+    @Test
+    void when_escape_withNullText_then_returnNull() {
+        assertThat(TgEscaper.MARKDOWN_V2.escape((String) null), equalTo(null));
+    }
+}
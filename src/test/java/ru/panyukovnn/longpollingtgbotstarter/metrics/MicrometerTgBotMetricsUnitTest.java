@@ -0,0 +1,121 @@
+package ru.panyukovnn.longpollingtgbotstarter.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.ParseMode;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.ResponseParameters;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import ru.panyukovnn.longpollingtgbotstarter.dispatch.StripedUpdateDispatcher;
+import ru.panyukovnn.longpollingtgbotstarter.service.TgRateLimiter;
+import ru.panyukovnn.longpollingtgbotstarter.service.TgSender;
+import ru.panyukovnn.longpollingtgbotstarter.transport.TgTransport;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MicrometerTgBotMetricsUnitTest {
+
+    private SimpleMeterRegistry registry;
+    private MicrometerTgBotMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new MicrometerTgBotMetrics(registry, "test-bot");
+    }
+
+    @Test
+    void when_updateHandled_withUnknownType_then_recordedAsOther() {
+        metrics.updateHandled("message", 0, TimeUnit.MILLISECONDS.toNanos(5));
+        metrics.updateHandled("business_message", 0, TimeUnit.MILLISECONDS.toNanos(5));
+        metrics.updateHandled(null, 0, TimeUnit.MILLISECONDS.toNanos(5));
+
+        assertThat(registry.get("tg.bot.handler.duration").tag("type", "message").timer().count(), equalTo(1L));
+        assertThat(registry.get("tg.bot.handler.duration").tag("type", "other").timer().count(), equalTo(2L));
+        assertThat(registry.get("tg.bot.update.lag").timer().count(), equalTo(0L));
+    }
+
+    @Test
+    void when_updateHandled_withDate_then_lagRecorded() {
+        long tenSecondsAgo = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - 10;
+
+        metrics.updateHandled("message", tenSecondsAgo, 0);
+
+        assertThat(registry.get("tg.bot.update.lag").timer().totalTime(TimeUnit.SECONDS), greaterThan(9.0));
+    }
+
+    @Test
+    void when_pollCompleted_then_durationAndUpdatesRecorded() {
+        metrics.pollCompleted(TimeUnit.SECONDS.toNanos(1), 3);
+        metrics.pollFailed();
+
+        assertThat(registry.get("tg.bot.poll.duration").tag("bot", "test-bot").timer().count(), equalTo(1L));
+        assertThat(registry.get("tg.bot.poll.updates").summary().totalAmount(), equalTo(3.0));
+        assertThat(registry.get("tg.bot.poll.errors").counter().count(), equalTo(1.0));
+    }
+
+    @Test
+    void when_bindDispatcher_then_laneDepthGaugesRegistered() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (StripedUpdateDispatcher dispatcher = new StripedUpdateDispatcher(2, 10)) {
+            MicrometerTgBotMetrics.bindDispatcher(registry, dispatcher);
+            dispatcher.execute(0, () -> await(release));
+            dispatcher.execute(0, () -> {
+            });
+            dispatcher.execute(0, () -> {
+            });
+
+            assertThat(registry.get("tg.bot.dispatch.lane.depth").tags("lane", "0").gauge().value(),
+                greaterThan(0.0));
+            assertThat(registry.get("tg.bot.dispatch.lane.depth").tags("lane", "1").gauge().value(), equalTo(0.0));
+            assertThat(registry.get("tg.bot.dispatch.lane.depth.max").gauge().value(), greaterThan(0.0));
+            assertThat(registry.get("tg.bot.dispatch.queued").gauge().value(), greaterThan(0.0));
+            release.countDown();
+        }
+    }
+
+    @Test
+    void when_send_withMarkdownV2ErrorAndRetryAfter_then_fallbackAndRateLimitCounted() throws Exception {
+        TgTransport transport = mock(TgTransport.class);
+        ResponseParameters parameters = mock(ResponseParameters.class);
+        TelegramApiRequestException tooManyRequests = mock(TelegramApiRequestException.class);
+        when(parameters.getRetryAfter()).thenReturn(0);
+        when(tooManyRequests.getParameters()).thenReturn(parameters);
+        when(transport.execute(any(SendMessage.class)))
+            .thenThrow(tooManyRequests)
+            .thenThrow(new TelegramApiException("can't parse entities"))
+            .thenReturn(new Message());
+        TgSender sender = TgSender.builder(transport)
+            .executor(Runnable::run)
+            .rateLimiter(TgRateLimiter.unlimited())
+            .metrics(metrics)
+            .build();
+
+        sender.send(1L, "text");
+
+        assertThat(registry.get("tg.bot.send.rate.limited").counter().count(), equalTo(1.0));
+        assertThat(registry.get("tg.bot.send.fallbacks").tag("reason", "rejected").counter().count(), equalTo(1.0));
+        assertThat(registry.get("tg.bot.send.duration").tag("parse_mode", ParseMode.HTML).timer().count(),
+            equalTo(1L));
+        assertThat(registry.get("tg.bot.send.parts").summary().totalAmount(), equalTo(1.0));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package ru.panyukovnn.longpollingtgbotstarter.outbox;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.telegram.telegrambots.meta.api.methods.ParseMode;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import ru.panyukovnn.longpollingtgbotstarter.service.TgRateLimiter;
+import ru.panyukovnn.longpollingtgbotstarter.service.TgSendResult;
+import ru.panyukovnn.longpollingtgbotstarter.service.TgSender;
+import ru.panyukovnn.longpollingtgbotstarter.transport.TgTransport;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxLogUnitTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void when_reopened_then_onlyIncompleteMessagesRecovered() throws Exception {
+        try (OutboxLog log = new OutboxLog(tempDir, 4096)) {
+            long first = log.append(1L, "first");
+            long second = log.append(2L, "second");
+            log.append(3L, "third");
+            log.partSent(second, ParseMode.HTML, 0);
+            log.complete(first);
+            log.sync();
+        }
+
+        try (OutboxLog log = new OutboxLog(tempDir, 4096)) {
+            assertThat(log.takeRecovered(), contains(
+                new OutboxLog.PendingMessage(2, 2L, "second", ParseMode.HTML, 1),
+                new OutboxLog.PendingMessage(3, 3L, "third", null, 0)));
+            assertThat(log.takeRecovered(), empty());
+            assertThat(log.append(4L, "fourth"), equalTo(4L));
+        }
+    }
+
+    @Test
+    void when_allMessagesCompleted_then_closedSegmentsDeleted() {
+        try (OutboxLog log = new OutboxLog(tempDir, 1024)) {
+            for (int i = 0; i < 100; i++) {
+                log.complete(log.append(i, "message " + i));
+            }
+
+            assertThat(log.segmentCount(), equalTo(1));
+            assertThat(log.pendingCount(), equalTo(0));
+        }
+    }
+
+    @Test
+    void when_oldMessagePending_then_segmentsKept() throws Exception {
+        try (OutboxLog log = new OutboxLog(tempDir, 1024)) {
+            long pending = log.append(0L, "pending");
+            for (int i = 1; i < 100; i++) {
+                log.complete(log.append(i, "message " + i));
+            }
+            log.partSent(pending, ParseMode.MARKDOWNV2, 0);
+
+            assertThat(log.segmentCount() > 1, equalTo(true));
+        }
+
+        try (OutboxLog log = new OutboxLog(tempDir, 1024)) {
+            assertThat(log.takeRecovered(), contains(
+                new OutboxLog.PendingMessage(1, 0L, "pending", ParseMode.MARKDOWNV2, 1)));
+        }
+    }
+
+    @Test
+    void when_resumePending_then_onlyRemainingPartsSent() throws Exception {
+        String message = "word ".repeat(2000);
+        TgTransport transport = mock(TgTransport.class);
+        when(transport.execute(any(SendMessage.class))).thenReturn(new Message());
+
+        try (OutboxLog log = new OutboxLog(tempDir, 64 * 1024)) {
+            long id = log.append(1L, message);
+            log.partSent(id, ParseMode.MARKDOWNV2, 0);
+        }
+
+        try (OutboxLog log = new OutboxLog(tempDir, 64 * 1024)) {
+            TgSender sender = TgSender.builder(transport)
+                .executor(Runnable::run)
+                .rateLimiter(TgRateLimiter.unlimited())
+                .outbox(log)
+                .build();
+
+            List<CompletableFuture<TgSendResult>> resumed = sender.resumePending();
+
+            assertThat(resumed.size(), equalTo(1));
+            assertThat(resumed.get(0).get().messages().size(), equalTo(2));
+            verify(transport, times(2)).execute(any(SendMessage.class));
+            assertThat(log.pendingCount(), equalTo(0));
+        }
+    }
+}
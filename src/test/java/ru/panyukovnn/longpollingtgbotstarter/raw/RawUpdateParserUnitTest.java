@@ -0,0 +1,105 @@
+package ru.panyukovnn.longpollingtgbotstarter.raw;
+
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RawUpdateParserUnitTest {
+
+    private static final String MESSAGE = """
+        {"update_id":10,"message":{"message_id":1,"from":{"id":5,"first_name":"a]}\\""},\
+        "chat":{"id":-100123,"type":"group"},"text":"/start \\u043f\\n\\"x\\" привет"}}""";
+    private static final String CALLBACK = """
+        {"update_id":11,"callback_query":{"id":"q","from":{"id":77},"data":"btn:1"}}""";
+    private static final String POLL_ANSWER = """
+        {"update_id":12,"poll_answer":{"poll_id":"p","user":{"id":9},"option_ids":[1,2]}}""";
+
+    private final GetUpdates getUpdates = GetUpdates.builder().build();
+
+    @Test
+    void when_parse_then_updatesSplitWithOriginalBytes() throws TelegramApiException {
+        List<RawUpdate> updates = parse("{\"ok\":true,\"result\":[ " + MESSAGE + ",\n" + CALLBACK + "," + POLL_ANSWER + " ]}");
+
+        assertThat(updates, hasSize(3));
+        assertThat(updates.get(0).updateId(), equalTo(10));
+        assertThat(updates.get(0).type(), equalTo("message"));
+        assertThat(new String(updates.get(0).bytes(), StandardCharsets.UTF_8), equalTo(MESSAGE));
+        assertThat(new String(updates.get(1).bytes(), StandardCharsets.UTF_8), equalTo(CALLBACK));
+        assertThat(updates.get(2).type(), equalTo("poll_answer"));
+    }
+
+    @Test
+    void when_chatKeyAndText_then_readFromBytes() throws TelegramApiException {
+        List<RawUpdate> updates = parse("{\"ok\":true,\"result\":[" + MESSAGE + "," + CALLBACK + "," + POLL_ANSWER + "]}");
+
+        assertThat(updates.get(0).chatKey(), equalTo(-100123L));
+        assertThat(updates.get(0).text(), equalTo("/start п\n\"x\" привет"));
+        assertThat(updates.get(1).chatKey(), equalTo(77L));
+        assertThat(updates.get(1).text(), equalTo("btn:1"));
+        assertThat(updates.get(2).chatKey(), equalTo(9L));
+        assertThat(updates.get(2).text(), nullValue());
+    }
+
+    @Test
+    void when_writeTo_then_originalBytesWritten() throws Exception {
+        RawUpdate update = parse("{\"result\":[" + CALLBACK + "],\"ok\":true}").get(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        update.writeTo(out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8), equalTo(CALLBACK));
+        assertThat(update.asByteBuffer().remaining(), equalTo(CALLBACK.length()));
+    }
+
+    @Test
+    void when_update_then_materializedOnce() throws TelegramApiException {
+        RawUpdate raw = parse("{\"ok\":true,\"result\":[" + MESSAGE + "]}").get(0);
+
+        assertFalse(raw.isMaterialized());
+
+        Update update = raw.update();
+
+        assertTrue(raw.isMaterialized());
+        assertThat(update.getUpdateId(), equalTo(10));
+        assertThat(update.getMessage().getChatId(), equalTo(-100123L));
+        assertThat(raw.update(), sameInstance(update));
+    }
+
+    @Test
+    void when_parse_withEmptyResult_then_emptyList() throws TelegramApiException {
+        assertThat(parse("{\"ok\":true,\"result\":[]}"), hasSize(0));
+    }
+
+    @Test
+    void when_parse_withError_then_requestException() {
+        TelegramApiRequestException exception = assertThrows(TelegramApiRequestException.class,
+            () -> parse("{\"ok\":false,\"error_code\":429,\"description\":\"Too Many Requests\",\"parameters\":{\"retry_after\":3}}"));
+
+        assertThat(exception.getErrorCode(), equalTo(429));
+        assertThat(exception.getParameters().getRetryAfter(), equalTo(3));
+    }
+
+    @Test
+    void when_parse_withTruncatedJson_then_apiException() {
+        assertThrows(TelegramApiException.class, () -> parse("{\"ok\":true,\"result\":[" + CALLBACK));
+    }
+
+    private List<RawUpdate> parse(String json) throws TelegramApiException {
+        return RawUpdateParser.parse(json.getBytes(StandardCharsets.UTF_8), getUpdates);
+    }
+}
@@ -0,0 +1,153 @@
+package ru.panyukovnn.longpollingtgbotstarter.router;
+
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import ru.panyukovnn.longpollingtgbotstarter.config.TgBotApi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TgUpdateRouterUnitTest {
+
+    private final Handlers handlers = new Handlers();
+    private final TgUpdateRouter router = TgUpdateRouter.of(handlers);
+    private final TgBotApi botApi = mock(TgBotApi.class);
+
+    @Test
+    void when_route_withSeveralPrefixes_then_longestPrefixWins() {
+        boolean routed = router.route(botApi, message("/start now", "private"));
+
+        assertThat(routed, equalTo(true));
+        assertThat(handlers.calls, contains("start:/start now"));
+    }
+
+    @Test
+    void when_route_withChatType_then_onlyMatchingHandlersOfNodeCalled() {
+        router.route(botApi, message("/start", "group"));
+
+        assertThat(handlers.calls, containsInAnyOrder("start:/start", "startInGroup"));
+    }
+
+    @Test
+    void when_route_withoutPrefixMatch_then_shorterPrefixAndTypeHandlersUsed() {
+        router.route(botApi, message("/stop", "private"));
+        router.route(botApi, message("hello", "private"));
+
+        assertThat(handlers.calls, contains("st", "message"));
+    }
+
+    @Test
+    void when_route_callbackQuery_then_callbackPrefixUsed() {
+        router.route(botApi, callback("menu:1"));
+
+        assertThat(handlers.calls, contains("menu:menu:1"));
+    }
+
+    @Test
+    void when_route_withoutTypedHandlers_then_anyTypeHandlerCalled() {
+        boolean routed = router.route(botApi, callback("other"));
+
+        assertThat(routed, equalTo(true));
+        assertThat(handlers.calls, contains("any"));
+    }
+
+    @Test
+    void when_route_withoutHandlers_then_false() {
+        TgUpdateRouter emptyRouter = TgUpdateRouter.of();
+
+        assertThat(emptyRouter.route(botApi, message("/start", "private")), equalTo(false));
+        assertThat(handlers.calls, empty());
+    }
+
+    @Test
+    void when_handledTypes_then_typesDerivedFromPrefixes() throws Exception {
+        assertThat(TgUpdateRouter.handledTypes(annotation("menu", CallbackQuery.class)), contains("callback_query"));
+        assertThat(TgUpdateRouter.handledTypes(annotation("any", Update.class)), empty());
+    }
+
+    @Test
+    void when_of_withUnsupportedParameter_then_exception() {
+        assertThrows(IllegalStateException.class, () -> TgUpdateRouter.of(new UnsupportedHandler()));
+    }
+
+    private static TgHandler annotation(String method, Class<?>... parameterTypes) throws Exception {
+        return Handlers.class.getMethod(method, parameterTypes).getAnnotation(TgHandler.class);
+    }
+
+    private static Update message(String text, String chatType) {
+        Chat chat = mock(Chat.class);
+        when(chat.getType()).thenReturn(chatType);
+        Message message = mock(Message.class);
+        when(message.getText()).thenReturn(text);
+        when(message.getChat()).thenReturn(chat);
+        Update update = mock(Update.class);
+        when(update.hasMessage()).thenReturn(true);
+        when(update.getMessage()).thenReturn(message);
+
+        return update;
+    }
+
+    private static Update callback(String data) {
+        CallbackQuery callbackQuery = mock(CallbackQuery.class);
+        when(callbackQuery.getData()).thenReturn(data);
+        Update update = mock(Update.class);
+        when(update.hasCallbackQuery()).thenReturn(true);
+        when(update.getCallbackQuery()).thenReturn(callbackQuery);
+
+        return update;
+    }
+
+    public static class Handlers {
+
+        private final List<String> calls = new ArrayList<>();
+
+        @TgHandler(textPrefix = "/start")
+        public void start(Message message, TgBotApi botApi) {
+            calls.add("start:" + message.getText());
+        }
+
+        @TgHandler(textPrefix = "/start", chatType = "group")
+        public void startInGroup() {
+            calls.add("startInGroup");
+        }
+
+        @TgHandler(textPrefix = "/st")
+        public void st(Update update) {
+            calls.add("st");
+        }
+
+        @TgHandler(type = "message")
+        public void message() {
+            calls.add("message");
+        }
+
+        @TgHandler(callbackPrefix = {"menu:", "m:"})
+        public void menu(CallbackQuery callbackQuery) {
+            calls.add("menu:" + callbackQuery.getData());
+        }
+
+        @TgHandler
+        public void any(Update update) {
+            calls.add("any");
+        }
+    }
+
+    public static class UnsupportedHandler {
+
+        @TgHandler
+        public void handle(String text) {
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ru.panyukovnn.longpollingtgbotstarter.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+class TgRateLimiterUnitTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void when_reserveChat_withinBurst_then_noWait() {
+        TgRateLimiter rateLimiter = new TgRateLimiter(30, 1, 20, 3);
+
+        assertThat(rateLimiter.reserveChat(1L, 0), equalTo(0L));
+        assertThat(rateLimiter.reserveChat(1L, 0), equalTo(0L));
+        assertThat(rateLimiter.reserveChat(1L, 0), equalTo(0L));
+        assertThat(rateLimiter.reserveChat(1L, 0), equalTo(SECOND));
+    }
+
+    @Test
+    void when_reserveChat_forGroup_then_groupLimitApplied() {
+        TgRateLimiter rateLimiter = new TgRateLimiter(30, 1, 20, 1);
+
+        rateLimiter.reserveChat(-100L, 0);
+
+        assertThat(rateLimiter.reserveChat(-100L, 0), equalTo(TimeUnit.MINUTES.toNanos(1) / 20));
+    }
+
+    @Test
+    void when_reserveChat_forDifferentChats_then_bucketsIndependent() {
+        TgRateLimiter rateLimiter = new TgRateLimiter(30, 1, 20, 1);
+
+        rateLimiter.reserveChat(1L, 0);
+
+        assertThat(rateLimiter.reserveChat(2L, 0), equalTo(0L));
+    }
+
+    @Test
+    void when_reserveGlobal_then_messagesSpacedByGlobalInterval() {
+        TgRateLimiter rateLimiter = new TgRateLimiter(30, 1, 20, 1);
+
+        rateLimiter.reserveGlobal(0);
+
+        assertThat(rateLimiter.reserveGlobal(0), equalTo(SECOND / 30));
+    }
+
+    @Test
+    void when_pauseChat_then_otherChatsNotAffected() {
+        TgRateLimiter rateLimiter = new TgRateLimiter(30, 1, 20, 3);
+
+        rateLimiter.pauseChat(1L, Duration.ofSeconds(10));
+        long now = System.nanoTime();
+
+        assertThat(rateLimiter.reserveChat(1L, now) - now, greaterThan(9 * SECOND));
+        assertThat(rateLimiter.reserveChat(2L, now) - now, lessThanOrEqualTo(0L));
+        assertThat(rateLimiter.reserveGlobal(now) - now, lessThanOrEqualTo(0L));
+    }
+
+    @Test
+    void when_reserveChat_overCleanupThreshold_then_idleChatsRemovedOncePerInterval() {
+        TgRateLimiter rateLimiter = new TgRateLimiter(30, 1, 20, 1);
+        for (long chatId = 1; chatId <= 10_001; chatId++) {
+            rateLimiter.reserveChat(chatId, 0);
+        }
+
+        rateLimiter.reserveChat(0L, 2 * SECOND);
+        assertThat(rateLimiter.trackedChatCount(), equalTo(1));
+
+        for (long chatId = 1; chatId <= 10_001; chatId++) {
+            rateLimiter.reserveChat(chatId, 2 * SECOND);
+        }
+        rateLimiter.reserveChat(0L, 4 * SECOND);
+        assertThat(rateLimiter.trackedChatCount(), equalTo(10_002));
+    }
+}
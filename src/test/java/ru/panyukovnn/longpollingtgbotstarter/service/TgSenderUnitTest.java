@@ -1,24 +1,49 @@
 package ru.panyukovnn.longpollingtgbotstarter.service;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.telegram.telegrambots.meta.api.methods.ParseMode;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.ResponseParameters;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
 import ru.panyukovnn.longpollingtgbotstarter.config.TgBotApi;
+import ru.panyukovnn.longpollingtgbotstarter.transport.AbsSenderTgTransport;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -29,9 +54,16 @@ class TgSenderUnitTest {
     @Mock
     private TgBotApi tgBotApi;
 
-    @InjectMocks
     private TgSender tgSender;
 
+    @BeforeEach
+    void setUp() {
+        tgSender = TgSender.builder(new AbsSenderTgTransport(tgBotApi))
+            .executor(Runnable::run)
+            .rateLimiter(TgRateLimiter.unlimited())
+            .build();
+    }
+
     @Nested
     class SendMethodTests {
 
@@ -59,6 +91,78 @@ class TgSenderUnitTest {
             assertDoesNotThrow(() -> tgSender.send(chatId, message));
 
             verify(tgBotApi, times(2)).execute(any(SendMessage.class));
+            assertThat(tgSender.getMarkdownV2SendFallbackCount(), equalTo(1L));
+        }
+
+        @Test
+        void when_send_withInvalidMarkdownV2_then_htmlSentWithoutMarkdownV2Attempt() throws Exception {
+            Long chatId = 123L;
+            String message = "*a `b* c`";
+
+            when(tgBotApi.execute(any(SendMessage.class))).thenReturn(null);
+
+            assertDoesNotThrow(() -> tgSender.send(chatId, message));
+
+            verify(tgBotApi, times(1)).execute(any(SendMessage.class));
+            assertThat(tgSender.getMarkdownV2ValidationFallbackCount(), equalTo(1L));
+        }
+
+        @Test
+        void when_send_withTooManyRequests_then_retriedWithoutFallback() throws Exception {
+            Long chatId = 123L;
+            ResponseParameters parameters = mock(ResponseParameters.class);
+            TelegramApiRequestException tooManyRequests = mock(TelegramApiRequestException.class);
+
+            when(parameters.getRetryAfter()).thenReturn(0);
+            when(tooManyRequests.getParameters()).thenReturn(parameters);
+            when(tgBotApi.execute(any(SendMessage.class)))
+                .thenThrow(tooManyRequests)
+                .thenReturn(null);
+
+            assertDoesNotThrow(() -> tgSender.send(chatId, "Hello world"));
+
+            verify(tgBotApi, times(2)).execute(any(SendMessage.class));
+            assertThat(tgSender.getMarkdownV2SendFallbackCount(), equalTo(0L));
+        }
+
+        @Test
+        void when_send_withTransportError_then_failedWithoutFallback() throws Exception {
+            when(tgBotApi.execute(any(SendMessage.class)))
+                .thenThrow(new TelegramApiException("Unable to execute sendmessage method",
+                    new IOException("Connection reset")));
+
+            ExecutionException e = assertThrows(ExecutionException.class,
+                () -> tgSender.sendWithResultAsync(123L, "Hello world").get());
+
+            assertThat(e.getCause(), instanceOf(TgSendException.class));
+            assertThat(((TgSendException) e.getCause()).getParseMode(), equalTo(ParseMode.MARKDOWNV2));
+            verify(tgBotApi, times(1)).execute(any(SendMessage.class));
+            assertThat(tgSender.getMarkdownV2SendFallbackCount(), equalTo(0L));
+        }
+
+        @Test
+        void when_send_withSecondPartEntitiesRejected_then_onlyRemainingPartSentWithHtml() throws Exception {
+            TelegramApiRequestException rejected = mock(TelegramApiRequestException.class);
+            Message firstPart = new Message();
+            ArgumentCaptor<SendMessage> sent = ArgumentCaptor.forClass(SendMessage.class);
+
+            when(rejected.getErrorCode()).thenReturn(400);
+            when(rejected.getApiResponse()).thenReturn("Bad Request: can't parse entities: unexpected end");
+            when(tgBotApi.execute(sent.capture()))
+                .thenReturn(firstPart)
+                .thenThrow(rejected)
+                .thenReturn(new Message());
+
+            TgSendResult result = tgSender.sendWithResultAsync(123L, "a".repeat(5000) + " *b*").get();
+
+            assertThat(sent.getAllValues().size(), equalTo(3));
+            assertThat(sent.getAllValues().get(2).getParseMode(), equalTo(ParseMode.HTML));
+            assertThat(sent.getAllValues().get(2).getText(),
+                equalTo(sent.getAllValues().get(1).getText().replace("_", "")));
+            assertThat(result.parseMode(), equalTo(ParseMode.HTML));
+            assertThat(result.messages().size(), equalTo(2));
+            assertThat(result.messages().get(0), sameInstance(firstPart));
+            assertThat(tgSender.getMarkdownV2SendFallbackCount(), equalTo(1L));
         }
 
         @Test
@@ -86,6 +190,274 @@ class TgSenderUnitTest {
         }
     }
 
+    @Nested
+    class SendAsyncTests {
+
+        @Test
+        void when_sendAsync_then_futureCompletedWithSentMessages() throws Exception {
+            TgSender asyncSender = new TgSender(tgBotApi, Runnable::run);
+            Message sentMessage = new Message();
+
+            when(tgBotApi.execute(any(SendMessage.class))).thenReturn(sentMessage);
+
+            List<Message> result = asyncSender.sendAsync(123L, "Hello world").get();
+
+            assertThat(result, contains(sentMessage));
+        }
+
+        @Test
+        void when_sendWithResultAsync_withMarkdownV2Error_then_fallbackReported() throws Exception {
+            TgSender asyncSender = new TgSender(tgBotApi, Runnable::run);
+
+            when(tgBotApi.execute(any(SendMessage.class)))
+                .thenThrow(new TelegramApiException("MarkdownV2 parsing error"))
+                .thenReturn(new Message());
+
+            TgSendResult result = asyncSender.sendWithResultAsync(123L, "Test message").get();
+
+            assertThat(result.isFallback(), equalTo(true));
+            assertThat(result.parseMode(), equalTo(ParseMode.HTML));
+            assertThat(result.fallbackReason(), containsString("MarkdownV2 parsing error"));
+        }
+
+        @Test
+        void when_sendAsync_withHtmlFailure_then_futureCompletedWithSendException() throws Exception {
+            TgSender asyncSender = new TgSender(tgBotApi, Runnable::run);
+
+            doThrow(new TelegramApiException("Send failed")).when(tgBotApi).execute(any(SendMessage.class));
+
+            ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> asyncSender.sendAsync(123L, "Test message").get());
+
+            assertThat(exception.getCause(), instanceOf(TgSendException.class));
+            assertThat(((TgSendException) exception.getCause()).getFailedPartIndex(), equalTo(0));
+        }
+
+        @Test
+        void when_close_withOwnExecutor_then_executorStopped() {
+            TgSender ownExecutorSender = new TgSender(tgBotApi);
+
+            ownExecutorSender.close();
+
+            ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> ownExecutorSender.sendAsync(123L, "Test message").get());
+            assertThat(exception.getCause(), instanceOf(RejectedExecutionException.class));
+        }
+    }
+
+    @Nested
+    class CoalesceTests {
+
+        private TgSender coalescingSender;
+
+        @BeforeEach
+        void setUp() {
+            coalescingSender = TgSender.builder(new AbsSenderTgTransport(tgBotApi))
+                .executor(Runnable::run)
+                .rateLimiter(TgRateLimiter.unlimited())
+                .coalesceWindow(Duration.ofMinutes(1))
+                .build();
+        }
+
+        @Test
+        void when_sendAsync_withinWindow_then_messagesMergedAndEachFutureCompleted() throws Exception {
+            Message sentMessage = new Message();
+            when(tgBotApi.execute(any(SendMessage.class))).thenReturn(sentMessage);
+
+            CompletableFuture<List<Message>> first = coalescingSender.sendAsync(123L, "Загрузка 1.");
+            CompletableFuture<List<Message>> second = coalescingSender.sendAsync(123L, "Готово!");
+            coalescingSender.flush();
+
+            ArgumentCaptor<SendMessage> sent = ArgumentCaptor.forClass(SendMessage.class);
+            verify(tgBotApi, times(1)).execute(sent.capture());
+            assertThat(sent.getValue().getText(), equalTo(
+                tgSender.convertMarkdownToTelegramMarkdownV2("Загрузка 1.") + "\n"
+                    + tgSender.convertMarkdownToTelegramMarkdownV2("Готово!")));
+            assertThat(first.get(), contains(sentMessage));
+            assertThat(second.get(), contains(sentMessage));
+        }
+
+        @Test
+        void when_sendAsync_toDifferentChats_then_notMerged() throws Exception {
+            when(tgBotApi.execute(any(SendMessage.class))).thenReturn(new Message());
+
+            coalescingSender.sendAsync(1L, "first");
+            coalescingSender.sendAsync(2L, "second");
+            coalescingSender.flush();
+
+            verify(tgBotApi, times(2)).execute(any(SendMessage.class));
+        }
+
+        @Test
+        void when_sendAsync_overMaxLength_then_pendingMessagesSentSeparately() throws Exception {
+            when(tgBotApi.execute(any(SendMessage.class))).thenReturn(new Message());
+
+            CompletableFuture<List<Message>> first = coalescingSender.sendAsync(123L, "a".repeat(3000));
+            coalescingSender.sendAsync(123L, "b".repeat(3000));
+
+            assertThat(first.isDone(), equalTo(true));
+            coalescingSender.flush();
+
+            ArgumentCaptor<SendMessage> sent = ArgumentCaptor.forClass(SendMessage.class);
+            verify(tgBotApi, times(2)).execute(sent.capture());
+            assertThat(sent.getAllValues().get(1).getText(), equalTo("b".repeat(3000)));
+        }
+    }
+
+    @Nested
+    class StreamTests {
+
+        private static final Duration STREAM_INTERVAL = Duration.ofMillis(200);
+        /**
+         * Запас на задержку планировщика: отрисовки одного чата не могут идти чаще половины интервала
+         */
+        private static final long MIN_GAP_NANOS = STREAM_INTERVAL.toNanos() / 2;
+
+        private TgSender streamingSender;
+
+        @BeforeEach
+        void setUp() {
+            streamingSender = TgSender.builder(new AbsSenderTgTransport(tgBotApi))
+                .executor(Runnable::run)
+                .rateLimiter(TgRateLimiter.unlimited())
+                .streamInterval(Duration.ZERO)
+                .build();
+        }
+
+        @Test
+        void when_stream_withUnchangedText_then_notEdited() throws Exception {
+            mockSentMessage();
+            TgMessageStream stream = streamingSender.stream(123L);
+
+            stream.append("Hello");
+            stream.finish().get();
+
+            verify(tgBotApi, times(1)).execute(any(SendMessage.class));
+            verify(tgBotApi, never()).execute(any(EditMessageText.class));
+        }
+
+        @Test
+        void when_stream_withAppendedText_then_messageEditedToFullText() throws Exception {
+            mockSentMessage();
+            TgMessageStream stream = streamingSender.stream(123L);
+
+            stream.append("Hello");
+            verify(tgBotApi, timeout(1000)).execute(any(SendMessage.class));
+            stream.append(" world");
+            stream.finish().get();
+
+            verify(tgBotApi, times(1)).execute(any(EditMessageText.class));
+            ArgumentCaptor<EditMessageText> edited = ArgumentCaptor.forClass(EditMessageText.class);
+            verify(tgBotApi, atLeastOnce()).execute(edited.capture());
+            assertThat(edited.getValue().getText(), equalTo("Hello world"));
+            assertThat(edited.getValue().getMessageId(), equalTo(1));
+        }
+
+        @Test
+        void when_stream_overMaxLength_then_rolledOverIntoNewMessage() throws Exception {
+            mockSentMessage();
+            TgMessageStream stream = streamingSender.stream(123L);
+
+            stream.append("a".repeat(5000));
+            List<Message> messages = stream.finish().get();
+
+            assertThat(messages.size(), equalTo(2));
+            verify(tgBotApi, times(2)).execute(any(SendMessage.class));
+        }
+
+        @Test
+        void when_append_afterFinish_then_exception() {
+            TgMessageStream stream = streamingSender.stream(123L);
+            stream.finish();
+
+            assertThrows(IllegalStateException.class, () -> stream.append("late"));
+        }
+
+        @Test
+        void when_stream_withIntervalAndSeveralParts_then_onePartSentPerInterval() throws Exception {
+            List<Long> sentNanos = recordSentMessages();
+            TgSender pacedSender = pacedSender(STREAM_INTERVAL);
+            TgMessageStream stream = pacedSender.stream(123L);
+
+            stream.append("a".repeat(TgSender.MAX_TG_MESSAGE_LENGTH * 2 + 100));
+            List<Message> messages = stream.finish().get();
+
+            assertThat(messages.size(), equalTo(3));
+            assertThat(sentNanos.size(), equalTo(3));
+            assertThat(sentNanos.get(1) - sentNanos.get(0), greaterThanOrEqualTo(MIN_GAP_NANOS));
+            assertThat(sentNanos.get(2) - sentNanos.get(1), greaterThanOrEqualTo(MIN_GAP_NANOS));
+        }
+
+        @Test
+        void when_stream_withIntervalAndTwoStreamsInChat_then_intervalShared() throws Exception {
+            List<Long> sentNanos = recordSentMessages();
+            TgSender pacedSender = pacedSender(STREAM_INTERVAL);
+            TgMessageStream first = pacedSender.stream(123L);
+            TgMessageStream second = pacedSender.stream(123L);
+
+            first.append("first");
+            second.append("second");
+            first.finish().get();
+            second.finish().get();
+
+            assertThat(sentNanos.size(), equalTo(2));
+            assertThat(Math.abs(sentNanos.get(1) - sentNanos.get(0)), greaterThanOrEqualTo(MIN_GAP_NANOS));
+        }
+
+        @Test
+        void when_stream_withIntervalAndFrequentAppends_then_editedOncePerInterval() throws Exception {
+            mockSentMessage();
+            List<Long> editedNanos = new CopyOnWriteArrayList<>();
+            when(tgBotApi.execute(any(EditMessageText.class))).thenAnswer(invocation -> {
+                editedNanos.add(System.nanoTime());
+                return null;
+            });
+            TgSender pacedSender = pacedSender(STREAM_INTERVAL);
+            TgMessageStream stream = pacedSender.stream(123L);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < 30; i++) {
+                stream.append("word ");
+                Thread.sleep(20);
+            }
+            stream.finish().get();
+            long elapsed = System.nanoTime() - start;
+
+            verify(tgBotApi, times(1)).execute(any(SendMessage.class));
+            assertThat((long) editedNanos.size(), lessThanOrEqualTo(elapsed / STREAM_INTERVAL.toNanos() + 1));
+            for (int i = 1; i < editedNanos.size(); i++) {
+                assertThat(editedNanos.get(i) - editedNanos.get(i - 1), greaterThanOrEqualTo(MIN_GAP_NANOS));
+            }
+        }
+
+        private TgSender pacedSender(Duration streamInterval) {
+            return TgSender.builder(new AbsSenderTgTransport(tgBotApi))
+                .executor(Runnable::run)
+                .rateLimiter(TgRateLimiter.unlimited())
+                .streamInterval(streamInterval)
+                .build();
+        }
+
+        private List<Long> recordSentMessages() throws Exception {
+            List<Long> sentNanos = new CopyOnWriteArrayList<>();
+            AtomicInteger messageIds = new AtomicInteger();
+            when(tgBotApi.execute(any(SendMessage.class))).thenAnswer(invocation -> {
+                sentNanos.add(System.nanoTime());
+                Message sentMessage = new Message();
+                sentMessage.setMessageId(messageIds.incrementAndGet());
+                return sentMessage;
+            });
+
+            return sentNanos;
+        }
+
+        private void mockSentMessage() throws Exception {
+            Message sentMessage = new Message();
+            sentMessage.setMessageId(1);
+            when(tgBotApi.execute(any(SendMessage.class))).thenReturn(sentMessage);
+        }
+    }
+
     @Nested
     class SendSimpleHtmlMessageTests {
 
@@ -0,0 +1,105 @@
+package ru.panyukovnn.longpollingtgbotstarter.transport;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.GetMe;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JdkHttpTgTransportUnitTest {
+
+    private final Map<String, String> requests = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private JdkHttpTgTransport transport;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/bottoken/", exchange -> {
+            String method = exchange.getRequestURI().getPath().substring("/bottoken/".length());
+            requests.put(method, new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+
+            String response = switch (method) {
+                case "sendmessage" -> "{\"ok\":true,\"result\":{\"message_id\":7,\"date\":0,"
+                    + "\"chat\":{\"id\":123,\"type\":\"private\"},\"text\":\"hi\"}}";
+                case "getupdates" -> "{\"ok\":true,\"result\":[{\"update_id\":10},{\"update_id\":11}]}";
+                default -> "{\"ok\":false,\"error_code\":400,\"description\":\"Bad Request: unknown method\"}";
+            };
+            byte[] body = response.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(method.equals("sendmessage") || method.equals("getupdates") ? 200 : 400,
+                body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        transport = new JdkHttpTgTransport("http://127.0.0.1:" + server.getAddress().getPort() + "/bot", "token",
+            2, Duration.ofSeconds(5), Duration.ofSeconds(5), true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transport.close();
+        server.stop(0);
+    }
+
+    @Test
+    void when_execute_then_methodPostedAsJsonAndResultParsed() throws Exception {
+        Message message = transport.execute(SendMessage.builder().chatId(123L).text("hi").build());
+
+        assertThat(message.getMessageId(), equalTo(7));
+        assertThat(requests.get("sendmessage"), containsString("\"chat_id\""));
+        assertThat(requests.get("sendmessage"), containsString("123"));
+    }
+
+    @Test
+    void when_getUpdates_then_updatesParsed() throws Exception {
+        List<Update> updates = transport.getUpdates(GetUpdates.builder().offset(10).timeout(0).build());
+
+        assertThat(updates.stream().map(Update::getUpdateId).toList(), equalTo(List.of(10, 11)));
+        assertThat(requests.get("getupdates"), containsString("\"offset\":10"));
+    }
+
+    @Test
+    void when_execute_withErrorResponse_then_requestExceptionWithCode() {
+        TelegramApiRequestException exception = assertThrows(TelegramApiRequestException.class,
+            () -> transport.execute(new GetMe()));
+
+        assertThat(exception.getErrorCode(), equalTo(400));
+    }
+
+    @Test
+    void when_close_withSharedConnectionPool_then_poolStillUsable() throws Exception {
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/bot";
+
+        try (JdkHttpConnectionPool pool = new JdkHttpConnectionPool(1, Duration.ofSeconds(5), true)) {
+            new JdkHttpTgTransport(pool, baseUrl, "token", Duration.ofSeconds(5)).close();
+
+            Message message = new JdkHttpTgTransport(pool, baseUrl, "token", Duration.ofSeconds(5))
+                .execute(SendMessage.builder().chatId(123L).text("hi").build());
+
+            assertThat(message.getMessageId(), equalTo(7));
+        }
+    }
+}
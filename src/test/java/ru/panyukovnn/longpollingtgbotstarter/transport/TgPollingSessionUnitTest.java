@@ -0,0 +1,119 @@
+package ru.panyukovnn.longpollingtgbotstarter.transport;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.generics.LongPollingBot;
+import ru.panyukovnn.longpollingtgbotstarter.checkpoint.AckWatermark;
+import ru.panyukovnn.longpollingtgbotstarter.fake.FakeBotApiServer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TgPollingSessionUnitTest {
+
+    @Test
+    void when_polling_then_newUpdatesDeliveredInOrderAndOffsetAdvanced() throws Exception {
+        LongPollingBot bot = mock(LongPollingBot.class);
+        TgTransport transport = mock(TgTransport.class);
+        Update first = update(5);
+        Update second = update(6);
+        CountDownLatch thirdPoll = new CountDownLatch(1);
+
+        when(bot.getBotUsername()).thenReturn("bot");
+        when(transport.getUpdates(any(GetUpdates.class)))
+            .thenReturn(List.of(second, first))
+            .thenReturn(List.of(second))
+            .thenAnswer(invocation -> {
+                thirdPoll.countDown();
+                Thread.sleep(10_000);
+                return List.of();
+            });
+
+        TgPollingSession session = new TgPollingSession(bot, transport, new DefaultBotOptions());
+        session.start();
+        assertThat(thirdPoll.await(5, TimeUnit.SECONDS), equalTo(true));
+        session.stop();
+
+        verify(bot).clearWebhook();
+        verify(bot, times(1)).onUpdatesReceived(List.of(first, second));
+        verify(bot).onClosing();
+
+        ArgumentCaptor<GetUpdates> requests = ArgumentCaptor.forClass(GetUpdates.class);
+        verify(transport, atLeast(3)).getUpdates(requests.capture());
+        assertThat(requests.getAllValues().stream().map(GetUpdates::getOffset).limit(3).toList(), contains(1, 7, 7));
+        assertThat(session.isRunning(), equalTo(false));
+    }
+
+    @Test
+    void when_oldestUpdateNotAcked_withLimitReached_then_pollingStallsUntilAckTimeout() throws Exception {
+        try (FakeBotApiServer fake = FakeBotApiServer.start("token");
+             JdkHttpTgTransport transport = new JdkHttpTgTransport(fake.getBaseUrl(), fake.getToken(), 2,
+                 Duration.ofSeconds(5), Duration.ofSeconds(5), false)) {
+            AckWatermark watermark = new AckWatermark(0, 100, Duration.ofSeconds(2));
+            LongPollingBot bot = mock(LongPollingBot.class);
+            List<Integer> received = new CopyOnWriteArrayList<>();
+            DefaultBotOptions options = new DefaultBotOptions();
+            options.setGetUpdatesLimit(2);
+            options.setGetUpdatesTimeout(1);
+
+            int stuck = fake.pushMessage(1L, "stuck");
+            fake.pushMessage(2L, "acked");
+            int blocked = fake.pushMessage(3L, "blocked");
+            when(bot.getBotUsername()).thenReturn("bot");
+            doAnswer(invocation -> {
+                for (Update update : invocation.<List<Update>>getArgument(0)) {
+                    long ticket = watermark.register(update.getUpdateId());
+                    if (update.getUpdateId() != stuck) {
+                        watermark.ack(ticket);
+                    }
+                    received.add(update.getUpdateId());
+                }
+                return null;
+            }).when(bot).onUpdatesReceived(any());
+
+            TgPollingSession session = TgPollingSession.builder(bot, transport, options)
+                .ackWatermark(watermark)
+                .build();
+            session.start();
+            try {
+                Thread.sleep(1000);
+                assertThat(received.contains(blocked), equalTo(false));
+                assertThat(watermark.watermark(), equalTo(0L));
+
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (!received.contains(blocked) && System.nanoTime() < deadline) {
+                    Thread.sleep(50);
+                }
+            } finally {
+                session.stop();
+            }
+
+            assertThat(received.contains(blocked), equalTo(true));
+            assertThat(watermark.getForcedAckCount(), equalTo(1L));
+        }
+    }
+
+    private static Update update(int updateId) {
+        Update update = mock(Update.class);
+        when(update.getUpdateId()).thenReturn(updateId);
+
+        return update;
+    }
+}
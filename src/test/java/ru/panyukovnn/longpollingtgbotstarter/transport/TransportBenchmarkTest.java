@@ -0,0 +1,104 @@
+package ru.panyukovnn.longpollingtgbotstarter.transport;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import ru.panyukovnn.longpollingtgbotstarter.config.TgBotApi;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Сравнение транспортов на всплеске параллельных отправок к локальному заменителю Bot API
+ * <p>
+ * Запуск: {@code ./gradlew benchmarkTest --tests '*TransportBenchmarkTest'}. Задача включает
+ * sun.net.httpserver.nodelay: без него локальный сервер отвечает с задержкой около 40 мс из-за алгоритма Нейгла,
+ * и оба транспорта упираются в нее. Сервер работает по HTTP/1.1 без TLS, поэтому показывает
+ * выигрыш от переиспользования соединений и отдельного клиента для long polling, но не экономию на TLS handshake.
+ */
+@EnabledIfSystemProperty(named = "tg.benchmark", matches = "true")
+class TransportBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(TransportBenchmarkTest.class);
+    private static final int WARMUP_REQUESTS = 2_000;
+    private static final int REQUESTS = 20_000;
+    private static final int CONCURRENCY = 64;
+    private static final String RESPONSE = "{\"ok\":true,\"result\":{\"message_id\":1,\"date\":0,"
+        + "\"chat\":{\"id\":1,\"type\":\"private\"},\"text\":\"x\"}}";
+
+    @Test
+    void compareTransports() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/bot";
+
+        try {
+            DefaultBotOptions options = new DefaultBotOptions();
+            options.setBaseUrl(baseUrl);
+            TgBotApi botApi = TgBotApi.builder(mock(ApplicationEventPublisher.class), "bot", "token")
+                .botOptions(options)
+                .build();
+
+            try (TgTransport telegrambots = new AbsSenderTgTransport(botApi);
+                 TgTransport jdk = new JdkHttpTgTransport(baseUrl, "token", 2, Duration.ofSeconds(5),
+                     Duration.ofSeconds(30), true)) {
+                report("telegrambots", telegrambots);
+                report("jdk", jdk);
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static void report(String name, TgTransport transport) throws Exception {
+        run(transport, WARMUP_REQUESTS);
+
+        long start = System.nanoTime();
+        run(transport, REQUESTS);
+        long elapsedNanos = System.nanoTime() - start;
+
+        log.info(String.format("%-12s %8.0f req/s, %6.1f us/req", name,
+            REQUESTS / (elapsedNanos / 1e9), elapsedNanos / 1e3 / REQUESTS));
+    }
+
+    private static void run(TgTransport transport, int requests) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENCY);
+        try {
+            List<Future<?>> futures = new ArrayList<>(requests);
+            for (int i = 0; i < requests; i++) {
+                futures.add(executor.submit(() -> transport.execute(SendMessage.builder().chatId(1L).text("x").build())));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+}